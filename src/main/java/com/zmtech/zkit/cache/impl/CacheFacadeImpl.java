@@ -2,10 +2,13 @@ package com.zmtech.zkit.cache.impl;
 
 import com.zmtech.zkit.cache.CacheFacade;
 import com.zmtech.zkit.context.impl.ExecutionContextFactoryImpl;
+import com.zmtech.zkit.entity.impl.EntityFacadeImpl;
 import com.zmtech.zkit.tools.impl.ZCacheToolFactory;
 import com.zmtech.zkit.util.CollectionUtil;
+import com.zmtech.zkit.util.ContextJavaUtil;
 import com.zmtech.zkit.util.MNode;
 import com.zmtech.zkit.util.ObjectUtil;
+import com.zmtech.zkit.util.SimpleTopic;
 import groovy.lang.Closure;
 import org.apache.groovy.util.Maps;
 import org.slf4j.Logger;
@@ -19,8 +22,12 @@ import javax.cache.configuration.MutableConfiguration;
 import javax.cache.expiry.*;
 import java.sql.Timestamp;
 import java.util.*;
+import java.io.File;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 @SuppressWarnings("unused")
@@ -28,34 +35,92 @@ public class CacheFacadeImpl implements CacheFacade {
     protected final static Logger logger = LoggerFactory.getLogger(CacheFacadeImpl.class);
 
     protected final ExecutionContextFactoryImpl ecfi;
+    protected final MNode cacheListNode;
 
     protected CacheManager localCacheManagerInternal = null;
     protected CacheManager distCacheManagerInternal = null;
 
     public final ConcurrentMap<String, Cache> localCacheMap = new ConcurrentHashMap<>();
+    /** 按缓存名称前缀注册的堆外存储值序列化器 */
+    private final Map<String, ZValueSerializer> valueSerializerByPrefix = new ConcurrentHashMap<>();
+    /** 按缓存名称前缀注册的refresh-after-write加载器 */
+    private final Map<String, ZCacheLoader> cacheLoaderByPrefix = new ConcurrentHashMap<>();
+    /** 按缓存名称前缀注册的字节估算器 */
+    private final Map<String, ZWeigher> weigherByPrefix = new ConcurrentHashMap<>();
+    /** cache-list.max-bytes配置的共享字节预算，没有配置时为null */
+    private final ZWeightBudget globalWeightBudget;
+    /** 本节点的标识，用于忽略本节点发出的近端缓存失效通知和实体缓存清除消息 */
+    private final String nodeId = UUID.randomUUID().toString();
+    private SimpleTopic<ZNearCache.NearCacheInvalidate> nearCacheTopic = null;
+    private boolean nearCacheTopicInit = false;
+    /** 按缓存名称前缀注册的快照校验处理 */
+    private final Map<String, ZSnapshotHandler> snapshotHandlerByPrefix = new ConcurrentHashMap<>();
+    private ScheduledExecutorService snapshotExecutor = null;
 
     public CacheFacadeImpl(ExecutionContextFactoryImpl ecfi) {
         this.ecfi = ecfi;
 
-        MNode cacheListNode = ecfi.getConfXmlRoot().first("cache-list");
+        cacheListNode = ecfi.getConfXmlRoot().first("cache-list");
         String localCacheFactoryName = cacheListNode.attribute("local-factory") != null ? cacheListNode.attribute("local-factory") : ZCacheToolFactory.TOOL_NAME;
         localCacheManagerInternal = ecfi.getTool(localCacheFactoryName, CacheManager.class);
+
+        String globalMaxBytesStr = cacheListNode.attribute("max-bytes");
+        globalWeightBudget = globalMaxBytesStr != null && !globalMaxBytesStr.equals("0") ?
+                new ZWeightBudget(Long.parseLong(globalMaxBytesStr)) : null;
+    }
+
+    /** 不通过ExecutionContextFactoryImpl，直接使用cache-list节点和缓存管理器，用于测试；不支持refresh-after-write和near-topic-factory */
+    CacheFacadeImpl(MNode cacheListNode, CacheManager localCacheManager, CacheManager distCacheManager) {
+        this.ecfi = null;
+        this.cacheListNode = cacheListNode;
+        localCacheManagerInternal = localCacheManager;
+        distCacheManagerInternal = distCacheManager;
+        globalWeightBudget = null;
     }
 
     public CacheManager getDistCacheManager() {
         if (distCacheManagerInternal == null) {
-            MNode cacheListNode = ecfi.getConfXmlRoot().first("cache-list");
             String distCacheFactoryName = cacheListNode.attribute("distributed-factory") != null ? cacheListNode.attribute("distributed-factory") : ZCacheToolFactory.TOOL_NAME;
             distCacheManagerInternal = ecfi.getTool(distCacheFactoryName, CacheManager.class);
         }
         return distCacheManagerInternal;
     }
 
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /** cache-list.near-topic-factory配置的近端缓存失效通知主题，没有配置时为null（只有一个节点） */
+    @SuppressWarnings("unchecked")
+    public synchronized SimpleTopic<ZNearCache.NearCacheInvalidate> getNearCacheTopic() {
+        if (!nearCacheTopicInit) {
+            String nearTopicFactory = cacheListNode.attribute("near-topic-factory");
+            if (nearTopicFactory != null) nearCacheTopic = (SimpleTopic<ZNearCache.NearCacheInvalidate>) ecfi.getTool(nearTopicFactory, SimpleTopic.class);
+            nearCacheTopicInit = true;
+        }
+        return nearCacheTopic;
+    }
+
+    /** 代替near-topic-factory配置的主题，只影响之后创建的近端缓存 */
+    public synchronized void setNearCacheTopic(SimpleTopic<ZNearCache.NearCacheInvalidate> topic) {
+        nearCacheTopic = topic;
+        nearCacheTopicInit = true;
+    }
+
+    /** 主题的订阅者收到其他节点的近端缓存失效通知时调用，删除本节点L1中的键 */
+    public void receiveNearCacheInvalidate(ZNearCache.NearCacheInvalidate message) {
+        Cache cache = localCacheMap.get(message.getCacheName());
+        if (cache instanceof ZNearCache) ((ZNearCache) cache).onInvalidate(message);
+    }
+
     public void destroy() {
         if (localCacheManagerInternal != null) {
             for (String cacheName : localCacheManagerInternal.getCacheNames())
                 localCacheManagerInternal.destroyCache(cacheName);
         }
+        // 近端缓存的L1不在缓存管理器中
+        for (Cache cache : localCacheMap.values())
+            if (cache instanceof ZNearCache && !cache.isClosed()) cache.close();
         localCacheMap.clear();
         if (distCacheManagerInternal != null) {
             for (String cacheName : distCacheManagerInternal.getCacheNames())
@@ -115,6 +180,172 @@ public class CacheFacadeImpl implements CacheFacade {
         localCacheMap.putIfAbsent(cacheName, cache);
     }
 
+    /**
+     * 为名称以prefix开头的缓存注册堆外存储使用的值序列化器，只影响之后创建的缓存。
+     */
+    public void registerValueSerializer(String prefix, ZValueSerializer serializer) {
+        valueSerializerByPrefix.put(prefix, serializer);
+    }
+
+    protected ZValueSerializer getValueSerializer(String cacheName) {
+        for (Map.Entry<String, ZValueSerializer> entry : valueSerializerByPrefix.entrySet())
+            if (cacheName.startsWith(entry.getKey())) return entry.getValue();
+        return null;
+    }
+
+    /**
+     * 为名称以prefix开头的缓存注册refresh-after-write使用的加载器，已经创建的ZCache也会使用。
+     */
+    @SuppressWarnings("unchecked")
+    public void registerCacheLoader(String prefix, ZCacheLoader loader) {
+        cacheLoaderByPrefix.put(prefix, loader);
+        for (Map.Entry<String, Cache> entry : localCacheMap.entrySet()) {
+            if (entry.getKey().startsWith(prefix) && entry.getValue() instanceof ZCache)
+                ((ZCache) entry.getValue()).setCacheLoader(loader);
+        }
+    }
+
+    protected ZCacheLoader getCacheLoader(String cacheName) {
+        for (Map.Entry<String, ZCacheLoader> entry : cacheLoaderByPrefix.entrySet())
+            if (cacheName.startsWith(entry.getKey())) return entry.getValue();
+        return null;
+    }
+
+    /**
+     * 为名称以prefix开头的缓存注册按字节限制时使用的估算器，只影响之后创建的缓存。
+     * 配置了cache-list.max-bytes时，注册了估算器的缓存都使用共享字节预算。
+     */
+    public void registerWeigher(String prefix, ZWeigher weigher) {
+        weigherByPrefix.put(prefix, weigher);
+    }
+
+    protected ZWeigher getWeigher(String cacheName) {
+        for (Map.Entry<String, ZWeigher> entry : weigherByPrefix.entrySet())
+            if (cacheName.startsWith(entry.getKey())) return entry.getValue();
+        return null;
+    }
+
+    public ZWeightBudget getGlobalWeightBudget() {
+        return globalWeightBudget;
+    }
+
+    /**
+     * 为名称以prefix开头的缓存注册快照的校验处理，在restoreSnapshots()之前注册。
+     * 配置了snapshot="true"但没有注册处理的缓存恢复时不校验，只能用于自己能检查数据是否过期的缓存。
+     */
+    public void registerSnapshotHandler(String prefix, ZSnapshotHandler handler) {
+        snapshotHandlerByPrefix.put(prefix, handler);
+    }
+
+    protected ZSnapshotHandler getSnapshotHandler(String cacheName) {
+        for (Map.Entry<String, ZSnapshotHandler> entry : snapshotHandlerByPrefix.entrySet())
+            if (cacheName.startsWith(entry.getKey())) return entry.getValue();
+        return null;
+    }
+
+    /** cache-list.snapshot-directory，默认为runtime/cache-snapshot */
+    protected File getSnapshotDirectory() {
+        String snapshotDirectory = ecfi.getConfXmlRoot().first("cache-list").attribute("snapshot-directory");
+        if (snapshotDirectory == null || snapshotDirectory.isEmpty()) return new File(ecfi.getRuntimePath(), "cache-snapshot");
+        File directory = new File(snapshotDirectory);
+        return directory.isAbsolute() ? directory : new File(ecfi.getRuntimePath(), snapshotDirectory);
+    }
+
+    private boolean isSnapshotEnabled(String cacheName) {
+        MNode cacheNode = getCacheNode(cacheName);
+        return cacheNode != null && "true".equals(cacheNode.attribute("snapshot"));
+    }
+
+    /**
+     * 把配置了snapshot="true"的本地ZCache写到快照目录，ZSnapshotHandler.makeStamp()返回null的缓存跳过。
+     * @return 写入的缓存数
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized int saveSnapshots() {
+        File directory = getSnapshotDirectory();
+        long startTime = System.currentTimeMillis();
+        int cacheCount = 0;
+        int entryCount = 0;
+        for (Map.Entry<String, Cache> entry : localCacheMap.entrySet()) {
+            String cacheName = entry.getKey();
+            if (!(entry.getValue() instanceof ZCache) || entry.getValue().isClosed() || !isSnapshotEnabled(cacheName)) continue;
+            try {
+                ZSnapshotHandler handler = getSnapshotHandler(cacheName);
+                Object stamp = handler != null ? handler.makeStamp(cacheName) : null;
+                if (handler != null && stamp == null) continue;
+                if (!directory.exists() && !directory.mkdirs()) {
+                    logger.error("缓存操作错误: 无法创建缓存快照目录 [" + directory.getPath() + "]");
+                    return cacheCount;
+                }
+                entryCount += ZCacheSnapshot.write((ZCache) entry.getValue(), ZCacheSnapshot.getSnapshotFile(directory, cacheName), stamp);
+                cacheCount++;
+            } catch (Throwable t) {
+                logger.error("缓存操作错误: 写入缓存 [" + cacheName + "] 的快照失败", t);
+            }
+        }
+        if (cacheCount > 0) logger.info("缓存操作信息: 写入了 [" + cacheCount + "] 个缓存的快照, 共 [" + entryCount + "] 个条目, 用时 [" + (System.currentTimeMillis() - startTime) + "] 毫秒");
+        return cacheCount;
+    }
+
+    /**
+     * 在workerPool中并行读取快照目录中的所有快照，全部完成后返回，应在接受请求之前调用。
+     * 配置了cache-list.snapshot-interval（秒）时之后按该间隔定期写快照。
+     */
+    public void restoreSnapshots() {
+        File directory = getSnapshotDirectory();
+        File[] snapshotFiles = directory.listFiles((dir, fileName) -> fileName.endsWith(ZCacheSnapshot.FILE_SUFFIX));
+        if (snapshotFiles != null && snapshotFiles.length > 0) {
+            long startTime = System.currentTimeMillis();
+            List<CompletableFuture<Integer>> futureList = new ArrayList<>(snapshotFiles.length);
+            for (File snapshotFile : snapshotFiles) {
+                futureList.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return ZCacheSnapshot.read(snapshotFile, this::getSnapshotCache, this::getSnapshotHandler);
+                    } catch (Throwable t) {
+                        logger.error("缓存操作错误: 读取缓存快照 [" + snapshotFile.getName() + "] 失败", t);
+                        return -1;
+                    }
+                }, ecfi.workerPool));
+            }
+            int cacheCount = 0;
+            int entryCount = 0;
+            for (CompletableFuture<Integer> future : futureList) {
+                int count = future.join();
+                if (count < 0) continue;
+                cacheCount++;
+                entryCount += count;
+            }
+            logger.info("缓存操作信息: 从快照恢复了 [" + cacheCount + "/" + snapshotFiles.length + "] 个缓存, 共 [" + entryCount + "] 个条目, 用时 [" + (System.currentTimeMillis() - startTime) + "] 毫秒");
+        }
+
+        String snapshotIntervalStr = ecfi.getConfXmlRoot().first("cache-list").attribute("snapshot-interval");
+        if (snapshotIntervalStr != null && !snapshotIntervalStr.equals("0") && snapshotExecutor == null) {
+            long snapshotInterval = Long.parseLong(snapshotIntervalStr);
+            snapshotExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "ZCacheSnapshot");
+                thread.setDaemon(true);
+                return thread;
+            });
+            snapshotExecutor.scheduleWithFixedDelay(this::saveSnapshots, snapshotInterval, snapshotInterval, TimeUnit.SECONDS);
+        }
+    }
+
+    /** 停止定期快照并写入最后一次快照，在实体等数据源关闭之前调用 */
+    public void shutdownSnapshots() {
+        if (snapshotExecutor != null) {
+            snapshotExecutor.shutdownNow();
+            snapshotExecutor = null;
+        }
+        saveSnapshots();
+    }
+
+    private ZCache getSnapshotCache(String cacheName) {
+        // 快照写入后配置可能已经修改
+        if (!isSnapshotEnabled(cacheName)) return null;
+        Cache cache = getCache(cacheName);
+        return cache instanceof ZCache ? (ZCache) cache : null;
+    }
+
     @Override
     public boolean cacheExists(String cacheName) {
         return localCacheMap.containsKey(cacheName);
@@ -150,17 +381,23 @@ public class CacheFacadeImpl implements CacheFacade {
                         expireCount:0] as Map<String, Object>)
             } else
             */
-            if (co instanceof ZCache) {
-                ZCache mc = (ZCache) co.unwrap(ZCache.class);
+            // 近端缓存显示本节点L1的统计信息
+            ZCache mc = co instanceof ZNearCache ? ((ZNearCache) co).getNearCache() :
+                    (co instanceof ZCache ? (ZCache) co.unwrap(ZCache.class) : null);
+            if (mc != null) {
                 ZStats stats = mc.getMStats();
                 long expireIdle = mc.getAccessDuration() != null ? mc.getAccessDuration().getDurationAmount() : 0;
                 long expireLive = mc.getCreationDuration() != null ? mc.getCreationDuration().getDurationAmount() : 0;
                 ci.add(Maps.of(
                         "name", co.getName(),
+                        "near", co instanceof ZNearCache,
                         "expireTimeIdle", expireIdle,
                         "expireTimeLive", expireLive,
+                        "refreshAfterWrite", mc.getRefreshAfterWriteMillis() / 1000,
                         "maxElements", mc.getMaxEntries(),
-                        "evictionStrategy", "LRU",
+                        "maxBytes", mc.getMaxBytes(),
+                        "weightedSize", mc.getWeightedSize(),
+                        "evictionStrategy", mc.getEvictionStrategy(),
                         "size", mc.size(),
                         "getCount", stats.getCacheGets(),
                         "putCount", stats.getCachePuts(),
@@ -168,19 +405,37 @@ public class CacheFacadeImpl implements CacheFacade {
                         "missCountTotal", stats.getCacheMisses(),
                         "evictionCount", stats.getCacheEvictions(),
                         "removeCount", stats.getCacheRemovals(),
-                        "expireCount", stats.getCacheExpires()
+                        "expireCount", stats.getCacheExpires(),
+                        "onHeapSize", mc.getOnHeapSize(),
+                        "offHeapUsedBytes", mc.getOffHeapUsedBytes(),
+                        "offHeapMaxBytes", mc.getOffHeapMaxBytes(),
+                        "hitPercentage", stats.getCacheHitPercentage(),
+                        "avgGetMicros", stats.getAverageGetTime(),
+                        "avgPutMicros", stats.getAveragePutTime(),
+                        "avgLoadMicros", stats.getAverageLoadTime(),
+                        "getP99Micros", stats.isLatencyEnabled() ? stats.getGetLatency().getPercentileMicros(99) : 0f,
+                        "putP99Micros", stats.isLatencyEnabled() ? stats.getPutLatency().getPercentileMicros(99) : 0f,
+                        "loadP99Micros", stats.isLatencyEnabled() ? stats.getLoadLatency().getPercentileMicros(99) : 0f
                 ));
             } else {
                 logger.warn("缓存操作警告: 无法获取名称为: [" + cn + "] 类型为: [" + co.getClass().getName() + "] 的详细信息");
             }
         }
+        // 自适应实体缓存的统计和决定，每个实体的one、list、count各一行
+        EntityFacadeImpl efi = (EntityFacadeImpl) ecfi.getEntity();
+        if (efi != null && efi.getEntityCache() != null) ci.addAll(efi.getEntityCache().getAdaptiveCacheInfo(filterRegexp));
+        // 事务连接PreparedStatement缓存的统计，所有连接合计一行
+        if (!hasFilterRegexp || "entity.statement".matches("(?i).*" + filterRegexp + ".*")) {
+            Map<String, Object> statementInfo = ContextJavaUtil.ConnectionWrapper.getStatementCacheInfo();
+            statementInfo.put("name", "entity.statement");
+            ci.add(statementInfo);
+        }
         if (orderByField != null && !orderByField.isEmpty())
             CollectionUtil.orderMapList(ci, Collections.singletonList(orderByField));
         return ci;
     }
 
     protected MNode getCacheNode(String cacheName) {
-        MNode cacheListNode = ecfi.getConfXmlRoot().first("cache-list");
         MNode cacheElement = cacheListNode.first(new Closure<Boolean>(this) {
             @Override
             public Boolean call(Object arg) {
@@ -230,6 +485,8 @@ public class CacheFacadeImpl implements CacheFacade {
                 cacheManager = localCacheManagerInternal;
             } else if ("distributed".equals(cacheType)) {
                 cacheManager = getDistCacheManager();
+            } else if ("near".equals(cacheType)) {
+                return initNearCache(cacheName, cacheNode, keyType, valueType, expiryPolicyFactory);
             } else {
                 throw new IllegalArgumentException("缓存操作错误: 不支持 [" + cacheType + "] 类型的缓存");
             }
@@ -237,18 +494,7 @@ public class CacheFacadeImpl implements CacheFacade {
             Configuration config;
             if (cacheManager instanceof ZCacheManager) {
                 // 使用 ZCache
-                ZCacheConfiguration mConf = new ZCacheConfiguration();
-                mConf.setTypes(keyType, valueType);
-                mConf.setStoreByValue(false).setStatisticsEnabled(true);
-                mConf.setExpiryPolicyFactory(expiryPolicyFactory);
-
-                String maxElementsStr = cacheNode.attribute("max-elements");
-                if (maxElementsStr != null && !maxElementsStr.equals("0")) {
-                    int maxElements = Integer.parseInt(maxElementsStr);
-                    mConf.setMaxEntries(maxElements);
-                }
-
-                config = mConf;
+                config = makeZCacheConfiguration(cacheName, cacheNode, keyType, valueType, expiryPolicyFactory);
             /* TODO：以某种方式支持外部缓存配置，如Hazelcast，通过某种接口，可能会将cacheNode传递给Cache工厂？
                注意：这并不是那么重要，因为我们没有很好的分布式缓存用例，可以通过hazelcast.xml或其他Hazelcast配置直接配置它们
             } else if (cacheManager instanceof AbstractHazelcastCacheManager) {
@@ -307,6 +553,74 @@ public class CacheFacadeImpl implements CacheFacade {
         return newCache;
     }
 
+    /**
+     * 近端缓存：L1为本节点的ZCache，使用cache元素的max-elements、expire-time-*等属性；L2为分布式缓存管理器中的同名缓存。
+     * 其他节点的写入通过near-topic-factory的主题通知，通知是异步的，L1应配置较短的expire-time-live来限制读到旧值的时长。
+     */
+    @SuppressWarnings("unchecked")
+    protected Cache initNearCache(String cacheName, MNode cacheNode, Class keyType, Class valueType,
+                                  Factory<ExpiryPolicy> expiryPolicyFactory) {
+        CacheManager distCacheManager = getDistCacheManager();
+        Cache remoteCache = distCacheManager.getCache(cacheName);
+        if (remoteCache == null) {
+            MutableConfiguration mutConfig = new MutableConfiguration();
+            mutConfig.setTypes(keyType, valueType);
+            mutConfig.setStoreByValue(true).setStatisticsEnabled(true);
+            remoteCache = distCacheManager.createCache(cacheName, mutConfig);
+        }
+        if (expiryPolicyFactory.create() instanceof EternalExpiryPolicy)
+            logger.warn("缓存操作警告: 近端缓存 [" + cacheName + "] 没有配置expire-time-live或expire-time-idle, 失效通知丢失时L1不会更新");
+        // L1不注册到缓存管理器中，避免与同名的L2冲突
+        ZCache nearCache = new ZCache(cacheName, null, makeZCacheConfiguration(cacheName, cacheNode, keyType, valueType, expiryPolicyFactory));
+        return new ZNearCache(cacheName, nearCache, remoteCache, getNearCacheTopic(), nodeId);
+    }
+
+    /** 按cache元素的属性创建ZCache的配置，local类型的缓存和near类型缓存的L1都使用 */
+    protected ZCacheConfiguration makeZCacheConfiguration(String cacheName, MNode cacheNode, Class keyType, Class valueType,
+                                                          Factory<ExpiryPolicy> expiryPolicyFactory) {
+        ZCacheConfiguration mConf = new ZCacheConfiguration();
+        mConf.setTypes(keyType, valueType);
+        mConf.setStoreByValue(false).setStatisticsEnabled(true);
+        mConf.setExpiryPolicyFactory(expiryPolicyFactory);
+
+        String maxElementsStr = cacheNode.attribute("max-elements");
+        if (maxElementsStr != null && !maxElementsStr.equals("0")) {
+            int maxElements = Integer.parseInt(maxElementsStr);
+            mConf.setMaxEntries(maxElements);
+        }
+        // tiny-lfu: put时按W-TinyLFU持续淘汰；其他值仍由ZCacheEvict线程定期淘汰
+        if ("tiny-lfu".equals(cacheNode.attribute("eviction-strategy")))
+            mConf.setEvictionMode(ZCacheConfiguration.EvictionMode.TINY_LFU);
+        if ("true".equals(cacheNode.attribute("latency-stats"))) mConf.setLatencyStats(true);
+
+        String offHeapBytesStr = cacheNode.attribute("off-heap-bytes");
+        if (offHeapBytesStr != null && !offHeapBytesStr.equals("0")) {
+            mConf.setOffHeapMaxBytes(Long.parseLong(offHeapBytesStr));
+            String onHeapEntriesStr = cacheNode.attribute("on-heap-entries");
+            if (onHeapEntriesStr != null) mConf.setOnHeapEntries(Integer.parseInt(onHeapEntriesStr));
+            mConf.setOffHeapDirectory(cacheNode.attribute("off-heap-directory"));
+            mConf.setValueSerializer(getValueSerializer(cacheName));
+        }
+
+        // max-bytes: 按字节限制，代替max-elements；cache-list.max-bytes为所有按字节限制的缓存共享的预算
+        String maxBytesStr = cacheNode.attribute("max-bytes");
+        ZWeigher weigher = getWeigher(cacheName);
+        if (maxBytesStr != null && !maxBytesStr.equals("0")) mConf.setMaxBytes(Long.parseLong(maxBytesStr));
+        if (globalWeightBudget != null && (mConf.getMaxBytes() > 0 || weigher != null))
+            mConf.setWeightBudget(globalWeightBudget);
+        if (mConf.getMaxBytes() > 0 || mConf.getWeightBudget() != null) mConf.setWeigher(weigher);
+
+        // refresh-after-write: 秒，超过后读取时在workerPool中异步重新加载，需要用registerCacheLoader()注册加载器
+        String refreshAfterWriteStr = cacheNode.attribute("refresh-after-write");
+        if (refreshAfterWriteStr != null && !refreshAfterWriteStr.equals("0")) {
+            mConf.setRefreshAfterWrite(Long.parseLong(refreshAfterWriteStr), TimeUnit.SECONDS);
+            mConf.setRefreshExecutor(ecfi.workerPool);
+            mConf.setCacheLoader(getCacheLoader(cacheName));
+        }
+
+        return mConf;
+    }
+
     public List<Map<String, Object>> makeElementInfoList(String cacheName, String orderByField) {
         Cache cache = getCache(cacheName);
         if (cache instanceof ZCache) {
@@ -19,6 +19,8 @@ import javax.cache.processor.EntryProcessorResult;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
 
 /**
  * javax.cache.Cache接口的简单实现。 基本上是一个包含统计和到期的Map的包装器。
@@ -31,12 +33,16 @@ public class ZCache<K, V> implements Cache<K, V> {
     private CacheManager manager;
     private Configuration<K, V> configuration;
     // NOTE: use ConcurrentHashMap for write locks and such even if can't so easily use putIfAbsent/etc
-    private ConcurrentHashMap<K, ZEntry<K, V>> entryStore = new ConcurrentHashMap<>();
+    ConcurrentHashMap<K, ZEntry<K, V>> entryStore = new ConcurrentHashMap<>();
+    // computeIfAbsent正在加载的键，同一个键的并发未命中等待同一个加载结果
+    private final ConcurrentHashMap<K, CompletableFuture<V>> loadingStore = new ConcurrentHashMap<>();
+    // refreshAfterWrite正在后台刷新的键，与loadingStore分开，computeIfAbsent不会得到刷新的结果
+    private final Set<K> refreshingKeys = ConcurrentHashMap.newKeySet();
     // currently for future reference, no runtime type checking
     // private Class<K> keyClass = null;
     // private Class<V> valueClass = null;
 
-    private ZStats stats = new ZStats();
+    private ZStats stats;
     private boolean statsEnabled = true;
 
     private Duration accessDuration = null;
@@ -47,6 +53,18 @@ public class ZCache<K, V> implements Cache<K, V> {
 
     private EvictRunnable evictRunnable = null;
     private ScheduledFuture<?> evictFuture = null;
+    // EvictionMode.TINY_LFU 时使用，为null时按EvictRunnable定期淘汰或不限制
+    private volatile ZTinyLfuEviction<K, V> tinyLfu = null;
+    // 按字节限制（maxBytes或共享的weightBudget）时使用，tinyLfu按ZEntry.weight计算大小
+    private ZWeigher<K, V> weigher = null;
+    // ZCacheConfiguration.offHeapMaxBytes > 0 时使用，热窗口之外的值保存在堆外
+    private ZOffHeapStore<K, V> offHeap = null;
+    // 有到期策略时使用，按到期时间索引条目，由ZCacheEvict线程每秒推进
+    private ZTimerWheel<K, V> timerWheel = null;
+    // refreshAfterWriteMillis > 0 且有cacheLoader时，写入后超过该时间的条目在读取时由refreshExecutor异步重新加载
+    private long refreshAfterWriteMillis = 0;
+    private volatile ZCacheLoader<K, V> cacheLoader = null;
+    private Executor refreshExecutor = null;
 
     private static class WorkerThreadFactory implements ThreadFactory {
         private final ThreadGroup workerGroup = new ThreadGroup("ZCacheEvict");
@@ -64,11 +82,28 @@ public class ZCache<K, V> implements Cache<K, V> {
         workerPool.setRemoveOnCancelPolicy(true);
     }
 
+    // 有到期策略的缓存，由一个定时任务每秒推进所有缓存的时间轮，不是每个缓存一个任务
+    static final Set<ZCache> expiringCaches = ConcurrentHashMap.newKeySet();
+    private static ScheduledFuture<?> expireFuture = null;
+
+    private static synchronized void registerExpiring(ZCache cache) {
+        expiringCaches.add(cache);
+        if (expireFuture == null) expireFuture = workerPool.scheduleWithFixedDelay(new ExpireRunnable(), 1, 1, TimeUnit.SECONDS);
+    }
+
+    private static synchronized void deregisterExpiring(ZCache cache) {
+        if (expiringCaches.remove(cache) && expiringCaches.isEmpty() && expireFuture != null) {
+            expireFuture.cancel(false);
+            expireFuture = null;
+        }
+    }
+
     /**
      * 支持一些配置，但管理器和配置都可以为空。
      */
     public ZCache(String name, CacheManager manager, Configuration<K, V> configuration) {
         this.name = name;
+        this.stats = new ZStats(configuration instanceof ZCacheConfiguration && ((ZCacheConfiguration) configuration).latencyStats);
         this.manager = manager;
         this.configuration = configuration;
         if (configuration != null) {
@@ -95,16 +130,49 @@ public class ZCache<K, V> implements Cache<K, V> {
             if (configuration instanceof ZCacheConfiguration) {
                 ZCacheConfiguration<K, V> zCacheConf = (ZCacheConfiguration<K, V>) configuration;
 
-                if (zCacheConf.maxEntries > 0) {
+                if (zCacheConf.offHeapMaxBytes > 0) offHeap = new ZOffHeapStore<>(this, zCacheConf);
+
+                refreshAfterWriteMillis = zCacheConf.refreshAfterWriteMillis;
+                cacheLoader = zCacheConf.cacheLoader;
+                refreshExecutor = zCacheConf.refreshExecutor != null ? zCacheConf.refreshExecutor : ForkJoinPool.commonPool();
+
+                if (zCacheConf.maxBytes > 0 || zCacheConf.weightBudget != null) {
+                    // 按字节限制总是使用W-TinyLFU在put时淘汰，maxEntries不再使用
+                    weigher = zCacheConf.weigher != null ? zCacheConf.weigher : new ZWeigher.ObjectWeigher<>();
+                    tinyLfu = new ZTinyLfuEviction<>(this, zCacheConf.maxBytes > 0 ? zCacheConf.maxBytes : Long.MAX_VALUE,
+                            true, zCacheConf.weightBudget);
+                } else if (zCacheConf.maxEntries > 0 && zCacheConf.evictionMode == ZCacheConfiguration.EvictionMode.TINY_LFU) {
+                    tinyLfu = new ZTinyLfuEviction<>(this, zCacheConf.maxEntries);
+                } else if (zCacheConf.maxEntries > 0) {
                     evictRunnable = new EvictRunnable(this, zCacheConf.maxEntries);
                     evictFuture = workerPool.scheduleWithFixedDelay(evictRunnable, 30, zCacheConf.maxCheckSeconds, TimeUnit.SECONDS);
                 }
             }
         }
         hasExpiry = accessDuration != null || creationDuration != null || updateDuration != null;
+        if (hasExpiry) {
+            timerWheel = new ZTimerWheel<>(this, System.currentTimeMillis());
+            registerExpiring(this);
+        }
     }
 
     public synchronized void setMaxEntries(int elements) {
+        // 按字节限制时条目数上限不起作用，使用setMaxBytes()
+        if (weigher != null) return;
+        if (isTinyLfuMode()) {
+            if (elements == 0) {
+                ZTinyLfuEviction<K, V> oldTinyLfu = tinyLfu;
+                tinyLfu = null;
+                if (oldTinyLfu != null) oldTinyLfu.clear();
+            } else if (tinyLfu != null) {
+                tinyLfu.setMaximum(elements);
+            } else {
+                ZTinyLfuEviction<K, V> newTinyLfu = new ZTinyLfuEviction<>(this, elements);
+                tinyLfu = newTinyLfu;
+                for (ZEntry<K, V> entry : entryStore.values()) newTinyLfu.onAdd(entry);
+            }
+            return;
+        }
         if (elements == 0) {
             if (evictRunnable != null) {
                 evictRunnable = null;
@@ -125,9 +193,188 @@ public class ZCache<K, V> implements Cache<K, V> {
     }
 
     public int getMaxEntries() {
+        ZTinyLfuEviction<K, V> curTinyLfu = tinyLfu;
+        if (curTinyLfu != null) return curTinyLfu.isWeighted() ? 0 : (int) curTinyLfu.getMaximum();
         return evictRunnable != null ? evictRunnable.maxEntries : 0;
     }
 
+    /** 按字节限制时设置字节上限，只对配置了maxBytes或weightBudget的缓存有效 */
+    public synchronized void setMaxBytes(long bytes) {
+        ZTinyLfuEviction<K, V> curTinyLfu = tinyLfu;
+        if (curTinyLfu == null || !curTinyLfu.isWeighted())
+            throw new IllegalStateException("ZCache缓存错误: 缓存 [" + name + "] 没有配置按字节限制");
+        curTinyLfu.setMaximum(bytes > 0 ? bytes : Long.MAX_VALUE);
+    }
+
+    /** 字节上限，没有按字节限制或只使用共享预算时为0 */
+    public long getMaxBytes() {
+        ZTinyLfuEviction<K, V> curTinyLfu = tinyLfu;
+        if (curTinyLfu == null || !curTinyLfu.isWeighted() || curTinyLfu.getMaximum() == Long.MAX_VALUE) return 0;
+        return curTinyLfu.getMaximum();
+    }
+
+    /** 按字节限制时所有条目的估算字节数，否则为0 */
+    public long getWeightedSize() {
+        ZTinyLfuEviction<K, V> curTinyLfu = tinyLfu;
+        return curTinyLfu != null && curTinyLfu.isWeighted() ? curTinyLfu.size() : 0;
+    }
+
+    private boolean isTinyLfuMode() {
+        return configuration instanceof ZCacheConfiguration &&
+                ((ZCacheConfiguration) configuration).evictionMode == ZCacheConfiguration.EvictionMode.TINY_LFU;
+    }
+
+    /** 设置refreshAfterWrite使用的加载器，为null时停止刷新 */
+    public void setCacheLoader(ZCacheLoader<K, V> loader) {
+        cacheLoader = loader;
+    }
+
+    public ZCacheLoader<K, V> getCacheLoader() {
+        return cacheLoader;
+    }
+
+    public long getRefreshAfterWriteMillis() {
+        return refreshAfterWriteMillis;
+    }
+
+    public String getEvictionStrategy() {
+        return tinyLfu != null ? "W-TinyLFU" : "LRU";
+    }
+
+    /** 从entryStore删除并通知淘汰策略，返回删除的条目 */
+    private ZEntry<K, V> removeEntry(K key) {
+        ZEntry<K, V> removed = entryStore.remove(key);
+        if (removed == null) return null;
+        entryRemoved(removed);
+        return removed;
+    }
+
+    /** 条目从entryStore删除后调用，从淘汰策略、时间轮和堆外存储中移除，所有删除路径都要经过这里 */
+    private void entryRemoved(ZEntry<K, V> removed) {
+        ZTinyLfuEviction<K, V> curTinyLfu = tinyLfu;
+        if (curTinyLfu != null) curTinyLfu.onRemove(removed);
+        if (timerWheel != null) timerWheel.unschedule(removed);
+        if (offHeap != null) offHeap.onRemove(removed);
+    }
+
+    /** 新条目放入entryStore后调用，替换掉的旧条目（如果有）从淘汰策略中移除 */
+    private void entryAdded(ZEntry<K, V> entry, ZEntry<K, V> replaced) {
+        if (weigher != null) entry.weight = weigh(entry.getKey(), entry.value);
+        ZTinyLfuEviction<K, V> curTinyLfu = tinyLfu;
+        if (curTinyLfu != null) {
+            if (replaced != null && replaced != entry) curTinyLfu.onRemove(replaced);
+            curTinyLfu.onAdd(entry);
+        }
+        if (timerWheel != null) {
+            if (replaced != null && replaced != entry) timerWheel.unschedule(replaced);
+            timerWheel.schedule(entry);
+        }
+        if (offHeap != null) {
+            if (replaced != null && replaced != entry) offHeap.onRemove(replaced);
+            offHeap.onHeapValue(entry);
+        }
+    }
+
+    /** 已有条目的值更新后调用 */
+    private void valueUpdated(ZEntry<K, V> entry, V value) {
+        if (weigher != null) {
+            ZTinyLfuEviction<K, V> curTinyLfu = tinyLfu;
+            if (curTinyLfu != null) curTinyLfu.onWeightChange(entry, weigh(entry.getKey(), value));
+        }
+        if (offHeap != null) offHeap.onHeapValue(entry);
+    }
+
+    private int weigh(K key, V value) {
+        try {
+            return Math.max(0, weigher.weigh(key, value));
+        } catch (RuntimeException e) {
+            logger.warn("ZCache缓存警告: 缓存 [" + name + "] 估算键 [" + key + "] 的字节数失败: " + e.toString());
+            return ZWeigher.ObjectWeigher.OBJECT_BYTES;
+        }
+    }
+
+    /** 由ZTinyLfuEviction（在其锁内）、ZOffHeapStore或EvictRunnable调用，只有entryStore中仍是该条目时才删除 */
+    boolean evictEntry(ZEntry<K, V> entry) {
+        if (!removeIfSame(entry)) return false;
+        stats.countEviction();
+        entryRemoved(entry);
+        return true;
+    }
+
+    /** 由ZTimerWheel在锁外调用，只有entryStore中仍是该条目时才删除 */
+    boolean expireEntry(ZEntry<K, V> entry) {
+        if (!removeIfSame(entry)) return false;
+        entry.isExpired = true;
+        if (statsEnabled) stats.countExpire();
+        ZTinyLfuEviction<K, V> curTinyLfu = tinyLfu;
+        if (curTinyLfu != null) curTinyLfu.onRemove(entry);
+        if (offHeap != null) offHeap.onRemove(entry);
+        return true;
+    }
+
+    private boolean removeIfSame(ZEntry<K, V> entry) {
+        boolean[] removed = new boolean[1];
+        entryStore.computeIfPresent(entry.getKey(), (k, cur) -> {
+            if (cur != entry) return cur;
+            removed[0] = true;
+            return null;
+        });
+        return removed[0];
+    }
+
+    /** 条目按缓存到期策略的到期时间，永不到期时为Long.MAX_VALUE */
+    long expireDeadline(ZEntry<K, V> entry) {
+        long deadline = Long.MAX_VALUE;
+        if (accessDuration != null) deadline = Math.min(deadline, accessDuration.getAdjustedTime(entry.lastAccessTime));
+        if (creationDuration != null) deadline = Math.min(deadline, creationDuration.getAdjustedTime(entry.getCreatedTime()));
+        if (updateDuration != null) deadline = Math.min(deadline, updateDuration.getAdjustedTime(entry.lastUpdatedTime));
+        return deadline;
+    }
+
+    /** 缓存命中时调用，条目写入（或上次刷新）超过refreshAfterWriteMillis时提交后台刷新，同一个键同时只有一个加载 */
+    private void checkRefresh(ZEntry<K, V> entry, long currentTime) {
+        ZCacheLoader<K, V> loader = cacheLoader;
+        if (loader == null) return;
+        if (currentTime == 0) currentTime = System.currentTimeMillis();
+        if (currentTime - Math.max(entry.lastUpdatedTime, entry.refreshTime) < refreshAfterWriteMillis) return;
+
+        K key = entry.getKey();
+        if (!refreshingKeys.add(key)) return;
+        entry.refreshTime = currentTime;
+        final long expectedUpdatedTime = entry.lastUpdatedTime;
+        try {
+            refreshExecutor.execute(() -> refreshEntry(entry, expectedUpdatedTime, loader));
+        } catch (RejectedExecutionException e) {
+            // 线程池已满，继续使用当前值，超过refreshAfterWriteMillis后再次尝试
+            refreshingKeys.remove(key);
+        }
+    }
+
+    private void refreshEntry(ZEntry<K, V> entry, long expectedUpdatedTime, ZCacheLoader<K, V> loader) {
+        K key = entry.getKey();
+        try {
+            final long startNanos = stats.latencyEnabled ? System.nanoTime() : 0;
+            V newValue = loader.load(key);
+            if (startNanos != 0) stats.recordLoadNanos(System.nanoTime() - startNanos);
+            // 刷新期间被删除、替换或更新的条目不写回
+            if (entryStore.get(key) == entry) {
+                if (newValue == null) {
+                    if (removeIfSame(entry)) {
+                        entryRemoved(entry);
+                        if (statsEnabled) stats.countRemoval();
+                    }
+                } else if (entry.setRefreshedValue(expectedUpdatedTime, newValue, System.currentTimeMillis())) {
+                    valueUpdated(entry, newValue);
+                    if (statsEnabled) stats.countPut();
+                }
+            }
+        } catch (Throwable t) {
+            logger.warn("ZCache缓存警告: 缓存 [" + name + "] 刷新键 [" + key + "] 失败, 继续使用原值: " + t.toString());
+        } finally {
+            refreshingKeys.remove(key);
+        }
+    }
+
     @Override
     public String getName() {
         return name;
@@ -137,13 +384,13 @@ public class ZCache<K, V> implements Cache<K, V> {
     public V get(K key) {
         ZEntry<K, V> entry = getEntryInternal(key, null, null, 0);
         if (entry == null) return null;
-        return entry.value;
+        return entry.getValue();
     }
 
     public V get(K key, ExpiryPolicy policy) {
         ZEntry<K, V> entry = getEntryInternal(key, policy, null, 0);
         if (entry == null) return null;
-        return entry.value;
+        return entry.getValue();
     }
 
     /**
@@ -153,7 +400,7 @@ public class ZCache<K, V> implements Cache<K, V> {
     public V get(K key, long expireBeforeTime) {
         ZEntry<K, V> entry = getEntryInternal(key, null, expireBeforeTime, 0);
         if (entry == null) return null;
-        return entry.value;
+        return entry.getValue();
     }
 
     /**
@@ -171,18 +418,15 @@ public class ZCache<K, V> implements Cache<K, V> {
         if (key == null) throw new IllegalArgumentException("ZCache缓存错误: 缓存键不能为空!");
         ZEntry<K, V> entry = entryStore.get(key);
         if (entry != null) {
-            if (statsEnabled) {
-                stats.gets++;
-                stats.hits++;
-            }
+            if (statsEnabled) stats.countHit();
             long accessTime = System.currentTimeMillis();
             entry.accessCount++;
             if (accessTime > entry.lastAccessTime) entry.lastAccessTime = accessTime;
+            ZTinyLfuEviction<K, V> curTinyLfu = tinyLfu;
+            if (curTinyLfu != null) curTinyLfu.onAccess(entry);
+            if (refreshAfterWriteMillis > 0) checkRefresh(entry, accessTime);
         } else {
-            if (statsEnabled) {
-                stats.gets++;
-                stats.misses++;
-            }
+            if (statsEnabled) stats.countMiss();
         }
         return entry;
     }
@@ -190,54 +434,50 @@ public class ZCache<K, V> implements Cache<K, V> {
     private ZEntry<K, V> getEntryInternal(final K key, final ExpiryPolicy policy, final Long expireBeforeTime, long currentTime) {
         if (isClosed) throw new IllegalStateException("ZCache缓存错误: [" + name + "] 已经关闭!");
         if (key == null) throw new IllegalArgumentException("ZCache缓存错误: 缓存不能为空!");
+        final long startNanos = stats.latencyEnabled ? System.nanoTime() : 0;
         ZEntry<K, V> entry = entryStore.get(key);
 
         if (entry != null) {
             if (policy != null) {
                 if (currentTime == 0) currentTime = System.currentTimeMillis();
                 if (entry.isExpired(currentTime, policy)) {
-                    entryStore.remove(key);
+                    removeEntry(key);
                     entry = null;
                     if (statsEnabled) stats.countExpire();
                 }
             } else if (hasExpiry) {
                 if (currentTime == 0) currentTime = System.currentTimeMillis();
                 if (entry.isExpired(currentTime, accessDuration, creationDuration, updateDuration)) {
-                    entryStore.remove(key);
+                    removeEntry(key);
                     entry = null;
                     if (statsEnabled) stats.countExpire();
                 }
             }
 
             if (expireBeforeTime != null && entry != null && entry.lastUpdatedTime < expireBeforeTime) {
-                entryStore.remove(key);
+                removeEntry(key);
                 entry = null;
                 if (statsEnabled) stats.countExpire();
             }
 
             if (entry != null) {
-                if (statsEnabled) {
-                    stats.gets++;
-                    stats.hits++;
-                }
+                if (statsEnabled) stats.countHit();
                 entry.accessCount++;
+                ZTinyLfuEviction<K, V> curTinyLfu = tinyLfu;
+                if (curTinyLfu != null) curTinyLfu.onAccess(entry);
                 // 此时如果使用ad-hoc策略或hasExpiry == true 将设置currentTime，
                 // 否则将为0意味着我们不需要跟踪lastAccessTime 我们只需要System.currentTimeMillis（））
                 // if（currentTime == 0）currentTime = System.currentTimeMillis（）;
                 if (currentTime > entry.lastAccessTime) entry.lastAccessTime = currentTime;
+                if (refreshAfterWriteMillis > 0) checkRefresh(entry, currentTime);
             } else {
-                if (statsEnabled) {
-                    stats.gets++;
-                    stats.misses++;
-                }
+                if (statsEnabled) stats.countMiss();
             }
         } else {
-            if (statsEnabled) {
-                stats.gets++;
-                stats.misses++;
-            }
+            if (statsEnabled) stats.countMiss();
         }
 
+        if (startNanos != 0) stats.recordGetNanos(System.nanoTime() - startNanos);
         return entry;
     }
 
@@ -246,7 +486,7 @@ public class ZCache<K, V> implements Cache<K, V> {
         if (key == null) throw new IllegalArgumentException("ZCache缓存错误: Cache key cannot be null");
         ZEntry<K, V> entry = entryStore.get(key);
         if (hasExpiry && entry != null && entry.isExpired(accessDuration, creationDuration, updateDuration)) {
-            entryStore.remove(key);
+            removeEntry(key);
             entry = null;
             if (statsEnabled) stats.countExpire();
         }
@@ -258,7 +498,7 @@ public class ZCache<K, V> implements Cache<K, V> {
         if (key == null) throw new IllegalArgumentException("ZCache缓存错误: 缓存键不能为空!");
         ZEntry<K, V> entry = entryStore.get(key);
         if (hasExpiry && entry != null && entry.isExpired(currentTime, accessDuration, creationDuration, updateDuration)) {
-            entryStore.remove(key);
+            removeEntry(key);
             entry = null;
             if (statsEnabled) stats.countExpire();
         }
@@ -271,7 +511,7 @@ public class ZCache<K, V> implements Cache<K, V> {
         Map<K, V> results = new HashMap<>();
         for (K key : keys) {
             ZEntry<K, V> entry = getEntryInternal(key, null, null, currentTime);
-            results.put(key, entry != null ? entry.value : null);
+            results.put(key, entry != null ? entry.getValue() : null);
         }
         return results;
     }
@@ -284,17 +524,20 @@ public class ZCache<K, V> implements Cache<K, V> {
 
     @Override
     public void put(K key, V value) {
+        final long startNanos = stats.latencyEnabled ? System.nanoTime() : 0;
         long currentTime = System.currentTimeMillis();
         // get entry, count hit/miss
         ZEntry<K, V> entry = getCheckExpired(key, currentTime);
         if (entry != null) {
             entry.setValue(value, currentTime);
-            if (statsEnabled) stats.puts++;
+            valueUpdated(entry, value);
+            if (statsEnabled) stats.countPut();
         } else {
             entry = new ZEntry<>(key, value, currentTime);
-            entryStore.put(key, entry);
-            if (statsEnabled) stats.puts++;
+            entryAdded(entry, entryStore.put(key, entry));
+            if (statsEnabled) stats.countPut();
         }
+        if (startNanos != 0) stats.recordPutNanos(System.nanoTime() - startNanos);
     }
 
     @Override
@@ -303,14 +546,15 @@ public class ZCache<K, V> implements Cache<K, V> {
         // get entry, count hit/miss
         ZEntry<K, V> entry = getCheckExpired(key, currentTime);
         if (entry != null) {
-            V oldValue = entry.value;
+            V oldValue = entry.getValue();
             entry.setValue(value, currentTime);
-            if (statsEnabled) stats.puts++;
+            valueUpdated(entry, value);
+            if (statsEnabled) stats.countPut();
             return oldValue;
         } else {
             entry = new ZEntry<>(key, value, currentTime);
-            entryStore.put(key, entry);
-            if (statsEnabled) stats.puts++;
+            entryAdded(entry, entryStore.put(key, entry));
+            if (statsEnabled) stats.countPut();
             return null;
         }
     }
@@ -331,7 +575,8 @@ public class ZCache<K, V> implements Cache<K, V> {
             entry = new ZEntry<>(key, value, currentTime);
             ZEntry<K, V> existingValue = entryStore.putIfAbsent(key, entry);
             if (existingValue == null) {
-                if (statsEnabled) stats.puts++;
+                entryAdded(entry, null);
+                if (statsEnabled) stats.countPut();
                 return true;
             } else {
                 return false;
@@ -339,11 +584,75 @@ public class ZCache<K, V> implements Cache<K, V> {
         }
     }
 
+    /**
+     * 缓存命中时返回缓存值，否则调用loader加载并放入缓存（loader返回null时不放入）。
+     * 同一个键的并发未命中合并为一次加载（single-flight），其他线程等待第一个线程的加载结果，避免缓存击穿时大量重复查询。
+     * loader抛出的异常只抛给调用它的线程，不会缓存；异常可能与调用者的事务或权限有关（如事务只能回滚），
+     * 所以等待的线程不使用其他线程的异常，而是重新获取加载权，使用自己的loader加载。
+     */
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> loader) {
+        return computeIfAbsent(key, loader, null);
+    }
+
+    /**
+     * 与computeIfAbsent(key, loader)相同，但加载的值只在cacheCheck返回true时放入缓存，放入之后再检查一次，返回false时删除；
+     * 用于加载期间可能被其他地方失效的值（如ZNearCache从L2读取）。加载的值仍然返回给调用方。
+     */
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> loader, BooleanSupplier cacheCheck) {
+        ZEntry<K, V> entry = getEntryInternal(key, null, null, 0);
+        if (entry != null) {
+            V value = entry.getValue();
+            if (value != null) return value;
+        }
+
+        CompletableFuture<V> loadFuture = new CompletableFuture<>();
+        CompletableFuture<V> existingFuture;
+        while ((existingFuture = loadingStore.putIfAbsent(key, loadFuture)) != null) {
+            if (waitLoad(key, existingFuture)) return existingFuture.join();
+        }
+
+        try {
+            // 获取加载权之前其他线程可能刚加载完成
+            entry = getCheckExpired(key);
+            V value = entry != null ? entry.getValue() : null;
+            if (value == null) {
+                final long startNanos = stats.latencyEnabled ? System.nanoTime() : 0;
+                value = loader.apply(key);
+                if (startNanos != 0) stats.recordLoadNanos(System.nanoTime() - startNanos);
+                if (value != null && (cacheCheck == null || cacheCheck.getAsBoolean())) {
+                    put(key, value);
+                    // 检查之后、放入之前可能有失效，放入之后再检查一次
+                    if (cacheCheck != null && !cacheCheck.getAsBoolean()) remove(key);
+                }
+            }
+            loadFuture.complete(value);
+            return value;
+        } catch (Throwable t) {
+            loadFuture.completeExceptionally(t);
+            throw t;
+        } finally {
+            loadingStore.remove(key, loadFuture);
+        }
+    }
+
+    /** 等待其他线程的加载，正常完成时返回true；加载失败时返回false，由调用者重新加载 */
+    private boolean waitLoad(K key, CompletableFuture<V> loadFuture) {
+        try {
+            loadFuture.get();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CacheException("ZCache缓存错误: 等待缓存 [" + name + "] 加载键 [" + key + "] 时被中断", e);
+        } catch (ExecutionException e) {
+            return false;
+        }
+    }
+
     @Override
     public boolean remove(K key) {
         ZEntry<K, V> entry = getCheckExpired(key);
         if (entry != null) {
-            entryStore.remove(key);
+            removeEntry(key);
             if (statsEnabled) stats.countRemoval();
             return true;
         } else {
@@ -356,10 +665,18 @@ public class ZCache<K, V> implements Cache<K, V> {
         ZEntry<K, V> entry = getCheckExpired(key);
 
         if (entry != null) {
+            // 在ConcurrentHashMap的compute之外比较值（堆外的值需要反序列化），删除时只检查仍是同一个条目且没有更新过
+            final long updatedTime = entry.lastUpdatedTime;
             boolean remove = entry.valueEquals(oldValue);
             if (remove) {
-                // remove with dummy ZEntry instance for comparison to ensure still equals
-                remove = entryStore.remove(key, new ZEntry<>(key, oldValue));
+                boolean[] removed = new boolean[1];
+                entryStore.computeIfPresent(key, (k, cur) -> {
+                    if (cur != entry || cur.lastUpdatedTime != updatedTime) return cur;
+                    removed[0] = true;
+                    return null;
+                });
+                remove = removed[0];
+                if (remove) entryRemoved(entry);
                 if (remove && statsEnabled) stats.countRemoval();
             }
             return remove;
@@ -373,8 +690,8 @@ public class ZCache<K, V> implements Cache<K, V> {
         // get entry, count hit/miss
         ZEntry<K, V> entry = getEntryInternal(key, null, null, 0);
         if (entry != null) {
-            V oldValue = entry.value;
-            entryStore.remove(key);
+            V oldValue = entry.getValue();
+            removeEntry(key);
             if (statsEnabled) stats.countRemoval();
             return oldValue;
         }
@@ -388,7 +705,8 @@ public class ZCache<K, V> implements Cache<K, V> {
 
         if (entry != null) {
             boolean replaced = entry.setValueIfEquals(oldValue, newValue, currentTime);
-            if (replaced) if (statsEnabled) stats.puts++;
+            if (replaced) valueUpdated(entry, newValue);
+            if (replaced) if (statsEnabled) stats.countPut();
             return replaced;
         } else {
             return false;
@@ -402,7 +720,8 @@ public class ZCache<K, V> implements Cache<K, V> {
 
         if (entry != null) {
             entry.setValue(value, currentTime);
-            if (statsEnabled) stats.puts++;
+            valueUpdated(entry, value);
+            if (statsEnabled) stats.countPut();
             return true;
         } else {
             return false;
@@ -415,9 +734,10 @@ public class ZCache<K, V> implements Cache<K, V> {
         // get entry, count hit/miss
         ZEntry<K, V> entry = getEntryInternal(key, null, null, currentTime);
         if (entry != null) {
-            V oldValue = entry.value;
+            V oldValue = entry.getValue();
             entry.setValue(value, currentTime);
-            if (statsEnabled) stats.puts++;
+            valueUpdated(entry, value);
+            if (statsEnabled) stats.countPut();
             return oldValue;
         } else {
             return null;
@@ -435,6 +755,9 @@ public class ZCache<K, V> implements Cache<K, V> {
         if (isClosed) throw new IllegalStateException("ZCache缓存错误: [" + name + "] 已经关闭!");
         int size = entryStore.size();
         entryStore.clear();
+        if (tinyLfu != null) tinyLfu.clear();
+        if (offHeap != null) offHeap.clear();
+        if (timerWheel != null) timerWheel.clear();
         if (statsEnabled) stats.countBulkRemoval(size);
     }
 
@@ -443,6 +766,9 @@ public class ZCache<K, V> implements Cache<K, V> {
         if (isClosed) throw new IllegalStateException("ZCache缓存错误: [" + name + "] 已经关闭!");
         // don't track removals or do anything else, removeAll does that
         entryStore.clear();
+        if (tinyLfu != null) tinyLfu.clear();
+        if (offHeap != null) offHeap.clear();
+        if (timerWheel != null) timerWheel.clear();
     }
 
     @Override
@@ -487,6 +813,12 @@ public class ZCache<K, V> implements Cache<K, V> {
         if (isClosed) throw new IllegalStateException("ZCache缓存错误: [" + name + "] 已经成功关闭!");
         isClosed = true;
         entryStore.clear();
+        if (tinyLfu != null) tinyLfu.clear();
+        if (offHeap != null) offHeap.close();
+        if (timerWheel != null) {
+            timerWheel.clear();
+            deregisterExpiring(this);
+        }
     }
 
     @Override
@@ -535,14 +867,11 @@ public class ZCache<K, V> implements Cache<K, V> {
                 if (curEntry.isExpired) {
                     curEntry = null;
                 } else if (zCache.hasExpiry && curEntry.isExpired(initialTime, zCache.accessDuration, zCache.creationDuration, zCache.updateDuration)) {
-                    zCache.entryStore.remove(curEntry.getKey());
+                    zCache.removeEntry(curEntry.getKey());
                     if (zCache.statsEnabled) zCache.stats.countExpire();
                     curEntry = null;
                 } else {
-                    if (zCache.statsEnabled) {
-                        zCache.stats.gets++;
-                        zCache.stats.hits++;
-                    }
+                    if (zCache.statsEnabled) zCache.stats.countHit();
                     break;
                 }
             }
@@ -552,7 +881,7 @@ public class ZCache<K, V> implements Cache<K, V> {
         @Override
         public void remove() {
             if (curEntry != null) {
-                zCache.entryStore.remove(curEntry.getKey());
+                zCache.removeEntry(curEntry.getKey());
                 if (zCache.statsEnabled) zCache.stats.countRemoval();
                 curEntry = null;
             }
@@ -565,45 +894,57 @@ public class ZCache<K, V> implements Cache<K, V> {
     public ArrayList<Entry<K, V>> getEntryList() {
         if (isClosed) throw new IllegalStateException("ZCache缓存错误: 缓存 [" + name + "] 已经关闭!");
         long currentTime = System.currentTimeMillis();
-        ArrayList<K> keyList = new ArrayList<>(entryStore.keySet());
-        int keyListSize = keyList.size();
-        ArrayList<Entry<K, V>> entryList = new ArrayList<>(keyListSize);
-        for (int i = 0; i < keyListSize; i++) {
-            K key = keyList.get(i);
-            ZEntry<K, V> entry = getCheckExpired(key, currentTime);
-            if (entry != null) {
-                entryList.add(entry);
-                if (statsEnabled) {
-                    stats.gets++;
-                    stats.hits++;
-                }
-                entry.accessCount++;
-                if (currentTime > entry.lastAccessTime) entry.lastAccessTime = currentTime;
-            }
+        // 到期条目由时间轮清除，这里只跳过还没有处理的到期条目，不再复制键列表再逐个查找
+        ArrayList<Entry<K, V>> entryList = new ArrayList<>(entryStore.size());
+        for (ZEntry<K, V> entry : entryStore.values()) {
+            if (hasExpiry && entry.isExpired(currentTime, accessDuration, creationDuration, updateDuration)) continue;
+            entryList.add(entry);
+            entry.accessCount++;
+            if (currentTime > entry.lastAccessTime) entry.lastAccessTime = currentTime;
         }
+        if (statsEnabled) stats.countHits(entryList.size());
         return entryList;
     }
 
+    /** 立即执行一次按条目数的定期淘汰（没有使用W-TinyLFU时），用于基准测试 */
+    void evictNow() {
+        EvictRunnable curEvictRunnable = evictRunnable;
+        if (curEvictRunnable != null) curEvictRunnable.run();
+    }
+
+    /** 写快照使用：未到期的条目，不计入命中也不更新访问时间 */
+    List<ZEntry<K, V>> getSnapshotEntries() {
+        long currentTime = System.currentTimeMillis();
+        List<ZEntry<K, V>> entryList = new ArrayList<>(entryStore.size());
+        for (ZEntry<K, V> entry : entryStore.values()) {
+            if (hasExpiry && entry.isExpired(currentTime, accessDuration, creationDuration, updateDuration)) continue;
+            entryList.add(entry);
+        }
+        return entryList;
+    }
+
+    /**
+     * 从快照恢复条目，保留原来的创建和更新时间，访问时间为当前时间；已经存在的键（启动后已经重新加载）和已经到期的条目不放入。
+     */
+    boolean putRestored(K key, V value, long createdTime, long lastUpdatedTime) {
+        if (isClosed) throw new IllegalStateException("ZCache缓存错误: 缓存 [" + name + "] 已经关闭!");
+        long currentTime = System.currentTimeMillis();
+        ZEntry<K, V> entry = new ZEntry<>(key, value, createdTime);
+        entry.lastUpdatedTime = lastUpdatedTime;
+        entry.lastAccessTime = currentTime;
+        if (hasExpiry && entry.isExpired(currentTime, accessDuration, creationDuration, updateDuration)) return false;
+        if (entryStore.putIfAbsent(key, entry) != null) return false;
+        entryAdded(entry, null);
+        return true;
+    }
+
     /**
      * 清空到期缓存
      */
     public int clearExpired() {
         if (isClosed) throw new IllegalStateException("ZCache缓存错误: 缓存 [" + name + "] 已经关闭!");
         if (!hasExpiry) return 0;
-        long currentTime = System.currentTimeMillis();
-        ArrayList<K> keyList = new ArrayList<>(entryStore.keySet());
-        int keyListSize = keyList.size();
-        int expireCount = 0;
-        for (int i = 0; i < keyListSize; i++) {
-            K key = keyList.get(i);
-            ZEntry<K, V> entry = entryStore.get(key);
-            if (entry != null && entry.isExpired(currentTime, accessDuration, creationDuration, updateDuration)) {
-                entryStore.remove(key);
-                if (statsEnabled) stats.countExpire();
-                expireCount++;
-            }
-        }
-        return expireCount;
+        return timerWheel.advance(System.currentTimeMillis());
     }
 
     public CacheStatisticsMXBean getStats() {
@@ -618,6 +959,26 @@ public class ZCache<K, V> implements Cache<K, V> {
         return entryStore.size();
     }
 
+    /** 堆外存储已使用的字节数（包括已删除但所在分段尚未回收的值），未启用堆外存储时为0 */
+    public long getOffHeapUsedBytes() {
+        return offHeap != null ? offHeap.getUsedBytes() : 0;
+    }
+
+    /** 时间轮中等待到期的条目数，没有到期设置时为0 */
+    int getTimerWheelSize() {
+        return timerWheel != null ? timerWheel.size() : 0;
+    }
+
+    /** 堆外存储的字节上限，未启用堆外存储时为0 */
+    public long getOffHeapMaxBytes() {
+        return offHeap != null ? offHeap.getMaxBytes() : 0;
+    }
+
+    /** 值在堆上的条目数，未启用堆外存储时为全部条目数 */
+    public int getOnHeapSize() {
+        return offHeap != null ? offHeap.getHotSize() : entryStore.size();
+    }
+
     public Duration getAccessDuration() {
         return accessDuration;
     }
@@ -658,8 +1019,8 @@ public class ZCache<K, V> implements Cache<K, V> {
                 ZEntry curEntry = priorityQueue.poll();
                 // if an entry was expired after pulling the initial value set
                 if (curEntry.isExpired) continue;
-                cache.entryStore.remove(curEntry.getKey());
-                cache.stats.evictions++;
+                // 与其他删除路径一样从淘汰策略和堆外存储中移除，排序之后被替换的条目不删除
+                if (!cache.evictEntry(curEntry)) continue;
                 entriesEvicted++;
                 entriesToEvict--;
             }
@@ -668,6 +1029,20 @@ public class ZCache<K, V> implements Cache<K, V> {
         }
     }
 
+    private static class ExpireRunnable implements Runnable {
+        @Override
+        public void run() {
+            long now = System.currentTimeMillis();
+            for (ZCache cache : expiringCaches) {
+                try {
+                    if (!cache.isClosed) cache.timerWheel.advance(now);
+                } catch (Throwable t) {
+                    logger.error("ZCache缓存错误: 清除缓存 [" + cache.name + "] 的到期条目时出错", t);
+                }
+            }
+        }
+    }
+
     private static class AccessComparator implements Comparator<ZEntry> {
         @Override
         public int compare(ZEntry e1, ZEntry e2) {
@@ -2,6 +2,8 @@ package com.zmtech.zkit.cache.impl;
 
 import javax.cache.configuration.CompleteConfiguration;
 import javax.cache.configuration.MutableConfiguration;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 @SuppressWarnings("unused")
 public class ZCacheConfiguration<K, V> extends MutableConfiguration<K, V> {
@@ -13,8 +15,28 @@ public class ZCacheConfiguration<K, V> extends MutableConfiguration<K, V> {
         super(conf);
     }
 
+    /** 超过最大条目数时的淘汰方式 */
+    public enum EvictionMode {
+        /** 由ZCacheEvict线程每隔maxCheckSeconds按访问次数和访问时间批量淘汰（默认） */
+        PERIODIC,
+        /** 每次put时按W-TinyLFU淘汰，缓存大小始终不超过maxEntries */
+        TINY_LFU
+    }
+
     int maxEntries = 0;
     long maxCheckSeconds = 30;
+    EvictionMode evictionMode = EvictionMode.PERIODIC;
+    boolean latencyStats = false;
+    long offHeapMaxBytes = 0;
+    int onHeapEntries = 1000;
+    String offHeapDirectory = null;
+    ZValueSerializer<V> valueSerializer = null;
+    long refreshAfterWriteMillis = 0;
+    ZCacheLoader<K, V> cacheLoader = null;
+    Executor refreshExecutor = null;
+    long maxBytes = 0;
+    ZWeigher<K, V> weigher = null;
+    ZWeightBudget weightBudget = null;
 
     /**
      * 设置缓存中的最大条目数，0表示无限制（默认）。 限制在计划的工作程序中执行，而不是在执行操作中执行。
@@ -39,4 +61,152 @@ public class ZCacheConfiguration<K, V> extends MutableConfiguration<K, V> {
     public long getMaxCheckSeconds() {
         return maxCheckSeconds;
     }
+
+    /**
+     * 设置淘汰方式，默认为PERIODIC。TINY_LFU模式下maxCheckSeconds不再使用。
+     */
+    public ZCacheConfiguration<K, V> setEvictionMode(EvictionMode mode) {
+        evictionMode = mode != null ? mode : EvictionMode.PERIODIC;
+        return this;
+    }
+
+    public EvictionMode getEvictionMode() {
+        return evictionMode;
+    }
+
+    /**
+     * 是否记录get/put/load延迟直方图，默认不记录（每次操作需要额外两次System.nanoTime()调用）。
+     */
+    public ZCacheConfiguration<K, V> setLatencyStats(boolean enabled) {
+        latencyStats = enabled;
+        return this;
+    }
+
+    public boolean isLatencyStats() {
+        return latencyStats;
+    }
+
+    /**
+     * 设置堆外存储的字节上限，0表示不使用堆外存储（默认）。
+     * 启用后只有最近使用的onHeapEntries个条目的值保留在堆上，其余值序列化后保存在堆外，get时惰性反序列化；
+     * 堆外空间写满时按写入顺序淘汰最早的条目。
+     */
+    public ZCacheConfiguration<K, V> setOffHeapMaxBytes(long bytes) {
+        offHeapMaxBytes = bytes;
+        return this;
+    }
+
+    public long getOffHeapMaxBytes() {
+        return offHeapMaxBytes;
+    }
+
+    /**
+     * 设置启用堆外存储时堆上热窗口的条目数，默认1000。
+     */
+    public ZCacheConfiguration<K, V> setOnHeapEntries(int entries) {
+        onHeapEntries = entries;
+        return this;
+    }
+
+    public int getOnHeapEntries() {
+        return onHeapEntries;
+    }
+
+    /**
+     * 设置堆外存储使用内存映射文件的目录，为null时使用直接内存（默认）。
+     */
+    public ZCacheConfiguration<K, V> setOffHeapDirectory(String directory) {
+        offHeapDirectory = directory;
+        return this;
+    }
+
+    public String getOffHeapDirectory() {
+        return offHeapDirectory;
+    }
+
+    /**
+     * 设置堆外存储的值序列化器，为null时使用Java序列化。
+     */
+    public ZCacheConfiguration<K, V> setValueSerializer(ZValueSerializer<V> serializer) {
+        valueSerializer = serializer;
+        return this;
+    }
+
+    public ZValueSerializer<V> getValueSerializer() {
+        return valueSerializer;
+    }
+
+    /**
+     * 设置写入后刷新的时间，0表示不刷新（默认）。条目写入超过该时间后，下一次读取仍返回当前值，
+     * 同时用cacheLoader在refreshExecutor中异步重新加载。应小于到期时间，否则条目会先到期。
+     */
+    public ZCacheConfiguration<K, V> setRefreshAfterWrite(long duration, TimeUnit unit) {
+        refreshAfterWriteMillis = unit.toMillis(duration);
+        return this;
+    }
+
+    public long getRefreshAfterWriteMillis() {
+        return refreshAfterWriteMillis;
+    }
+
+    /**
+     * 设置refreshAfterWrite使用的加载器，为null时不刷新；也可以在缓存创建后用ZCache.setCacheLoader()设置。
+     */
+    public ZCacheConfiguration<K, V> setCacheLoader(ZCacheLoader<K, V> loader) {
+        cacheLoader = loader;
+        return this;
+    }
+
+    public ZCacheLoader<K, V> getCacheLoader() {
+        return cacheLoader;
+    }
+
+    /**
+     * 设置执行后台刷新的线程池，为null时使用ForkJoinPool.commonPool()。
+     */
+    public ZCacheConfiguration<K, V> setRefreshExecutor(Executor executor) {
+        refreshExecutor = executor;
+        return this;
+    }
+
+    public Executor getRefreshExecutor() {
+        return refreshExecutor;
+    }
+
+    /**
+     * 设置缓存的字节上限，0表示不按字节限制（默认）。按字节限制时使用W-TinyLFU在put时淘汰，
+     * 每个条目的字节数由weigher估算，maxEntries和evictionMode不再使用。
+     */
+    public ZCacheConfiguration<K, V> setMaxBytes(long bytes) {
+        maxBytes = bytes;
+        return this;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * 设置按字节限制时估算条目字节数的ZWeigher，为null时使用ZWeigher.ObjectWeigher。
+     */
+    public ZCacheConfiguration<K, V> setWeigher(ZWeigher<K, V> weigher) {
+        this.weigher = weigher;
+        return this;
+    }
+
+    public ZWeigher<K, V> getWeigher() {
+        return weigher;
+    }
+
+    /**
+     * 设置多个缓存共享的字节预算，可以与maxBytes同时使用；设置后即使maxBytes为0也按字节限制。
+     */
+    public ZCacheConfiguration<K, V> setWeightBudget(ZWeightBudget budget) {
+        weightBudget = budget;
+        return this;
+    }
+
+    public ZWeightBudget getWeightBudget() {
+        return weightBudget;
+    }
 }
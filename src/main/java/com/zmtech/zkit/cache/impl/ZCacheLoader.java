@@ -0,0 +1,12 @@
+package com.zmtech.zkit.cache.impl;
+
+/**
+ * ZCache的值加载器，用于refreshAfterWrite时在后台重新加载条目值。
+ */
+@FunctionalInterface
+public interface ZCacheLoader<K, V> {
+    /**
+     * 加载键对应的值，返回null表示值已经不存在，条目将从缓存删除。
+     */
+    V load(K key) throws Exception;
+}
@@ -0,0 +1,103 @@
+package com.zmtech.zkit.cache.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.Timestamp;
+import java.util.function.Function;
+
+/**
+ * ZCache快照文件的读写，用于重启后预热缓存。
+ * <p>
+ * 文件格式：一个ObjectOutputStream，头部为魔数、版本、缓存名称、写入时间和ZSnapshotHandler的校验标记，
+ * 之后每个条目为键、值（使用各自的Externalizable实现，类描述在文件内共享）、创建时间和更新时间，以false结束。
+ * 恢复时保留条目原来的创建和更新时间，所以到期时间和按更新时间的失效检查（如资源的lastModified）与重启前一致。
+ */
+public class ZCacheSnapshot {
+    protected final static Logger logger = LoggerFactory.getLogger(ZCacheSnapshot.class);
+
+    private static final int MAGIC = 0x5A43534E;
+    private static final int VERSION = 1;
+    public static final String FILE_SUFFIX = ".snapshot";
+
+    private ZCacheSnapshot() { }
+
+    /** 快照文件名，缓存名称中文件名不支持的字符替换为_，真实名称在文件头中 */
+    public static File getSnapshotFile(File directory, String cacheName) {
+        return new File(directory, cacheName.replaceAll("[^\\w.\\-]", "_") + FILE_SUFFIX);
+    }
+
+    /**
+     * 写入缓存中所有未到期的条目，先写临时文件再替换，写入失败时不影响上一次的快照。
+     * @return 写入的条目数
+     */
+    public static <K, V> int write(ZCache<K, V> cache, File file, Object stamp) throws IOException {
+        File tempFile = new File(file.getPath() + ".tmp");
+        int count = 0;
+        try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile), 65536))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(cache.getName());
+            out.writeLong(System.currentTimeMillis());
+            out.writeObject(stamp);
+            for (ZEntry<K, V> entry : cache.getSnapshotEntries()) {
+                V value = entry.getValue();
+                if (value == null) continue;
+                out.writeBoolean(true);
+                out.writeObject(entry.getKey());
+                out.writeObject(value);
+                out.writeLong(entry.getCreatedTime());
+                out.writeLong(entry.getLastUpdatedTime());
+                count++;
+            }
+            out.writeBoolean(false);
+        } catch (IOException | RuntimeException e) {
+            tempFile.delete();
+            throw e;
+        }
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return count;
+    }
+
+    /**
+     * 读取快照并放入缓存，已经存在的键和已经到期的条目跳过。
+     * @param cacheLookup 按文件头中的缓存名称获取缓存，返回null时不恢复
+     * @param handlerLookup 按缓存名称获取校验处理，返回null时不校验
+     * @return 放入缓存的条目数，快照无效时为-1
+     */
+    @SuppressWarnings("unchecked")
+    public static int read(File file, Function<String, ZCache> cacheLookup, Function<String, ZSnapshotHandler> handlerLookup)
+            throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file), 65536))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                logger.warn("ZCache缓存警告: 快照文件 [" + file.getName() + "] 格式或版本不支持, 跳过");
+                return -1;
+            }
+            String cacheName = in.readUTF();
+            long snapshotTime = in.readLong();
+            Object stamp = in.readObject();
+
+            ZCache cache = cacheLookup.apply(cacheName);
+            if (cache == null) return -1;
+            ZSnapshotHandler handler = handlerLookup.apply(cacheName);
+            if (handler != null && !handler.isValid(cacheName, stamp)) {
+                logger.info("ZCache缓存信息: 缓存 [" + cacheName + "] 的快照 (写入于 " + new Timestamp(snapshotTime) + ") 之后数据已经修改, 跳过");
+                return -1;
+            }
+
+            int count = 0;
+            while (in.readBoolean()) {
+                Object key = in.readObject();
+                Object value = in.readObject();
+                long createdTime = in.readLong();
+                long lastUpdatedTime = in.readLong();
+                if (handler != null) value = handler.onRestore(cacheName, key, value);
+                if (value != null && cache.putRestored(key, value, createdTime, lastUpdatedTime)) count++;
+            }
+            return count;
+        }
+    }
+}
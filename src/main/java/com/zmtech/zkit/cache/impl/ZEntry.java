@@ -4,8 +4,10 @@ import javax.cache.Cache;
 import javax.cache.expiry.Duration;
 import javax.cache.expiry.ExpiryPolicy;
 
+/**
+ * ZCache的条目。equals和hashCode使用对象标识（不比较值，避免反序列化堆外的值），ZCache中比较值使用valueEquals。
+ */
 public class ZEntry<K, V> implements Cache.Entry<K, V> {
-    private static final Class<ZEntry> thisClass = ZEntry.class;
     private final K key;
     V value;
     private long createdTime = 0;
@@ -13,6 +15,24 @@ public class ZEntry<K, V> implements Cache.Entry<K, V> {
     long lastAccessTime = 0;
     long accessCount = 0;
     boolean isExpired = false;
+    // ZTinyLfuEviction 使用的侵入式链表字段，只在淘汰策略的锁内读写
+    ZEntry<K, V> policyPrev = null;
+    ZEntry<K, V> policyNext = null;
+    byte policyQueue = ZTinyLfuEviction.QUEUE_NONE;
+    // 按字节限制时由ZWeigher估算的字节数，否则为1；加入淘汰策略后只在其锁内修改
+    int weight = 1;
+    // ZOffHeapStore 使用：值写到堆外后value为null，由offHeapSlot惰性加载
+    volatile ZOffHeapStore.Slot offHeapSlot = null;
+    // 在ZOffHeapStore热窗口中时为其队列节点，删除条目时通过它清除队列对条目的引用
+    volatile ZOffHeapStore.HotRef hotRef = null;
+    // 值曾经写到ZOffHeapStore的分段中，删除条目时需要从分段的条目集合中移除
+    volatile boolean spilled = false;
+    boolean hotReferenced = false;
+    // ZTimerWheel 使用的到期桶链表字段，只在时间轮的锁内读写
+    ZEntry<K, V> timerPrev = null;
+    ZEntry<K, V> timerNext = null;
+    // refreshAfterWrite 使用：最近一次开始后台刷新的时间
+    volatile long refreshTime = 0;
 
     public ZEntry(K key, V value) {
         this.key = key;
@@ -32,9 +52,18 @@ public class ZEntry<K, V> implements Cache.Entry<K, V> {
         return key;
     }
 
+    /** 值在堆外时从ZOffHeapStore加载；缓存中的条目的Slot总是有效的，只有已经从缓存删除的条目才可能返回null */
     @Override
+    @SuppressWarnings("unchecked")
     public V getValue() {
-        return value;
+        V curValue = value;
+        if (curValue != null) {
+            hotReferenced = true;
+            return curValue;
+        }
+        ZOffHeapStore.Slot slot = offHeapSlot;
+        if (slot == null) return null;
+        return (V) slot.store.load(this, slot);
     }
 
     @Override
@@ -45,9 +74,9 @@ public class ZEntry<K, V> implements Cache.Entry<K, V> {
 
     boolean valueEquals(V otherValue) {
         if (otherValue == null) {
-            return value == null;
+            return getValue() == null;
         } else {
-            return otherValue.equals(value);
+            return otherValue.equals(getValue());
         }
     }
 
@@ -55,6 +84,7 @@ public class ZEntry<K, V> implements Cache.Entry<K, V> {
         synchronized (key) {
             if (updateTime > lastUpdatedTime) {
                 value = val;
+                offHeapSlot = null;
                 lastUpdatedTime = updateTime;
             }
         }
@@ -64,6 +94,7 @@ public class ZEntry<K, V> implements Cache.Entry<K, V> {
         synchronized (key) {
             if (updateTime > lastUpdatedTime && valueEquals(oldVal)) {
                 value = val;
+                offHeapSlot = null;
                 lastUpdatedTime = updateTime;
                 return true;
             } else {
@@ -72,6 +103,20 @@ public class ZEntry<K, V> implements Cache.Entry<K, V> {
         }
     }
 
+    /**
+     * 后台刷新完成时调用，刷新期间条目没有被更新时才设置新值；刷新按重新创建处理，创建时间也一起更新。
+     */
+    boolean setRefreshedValue(long expectedUpdatedTime, V val, long updateTime) {
+        synchronized (key) {
+            if (lastUpdatedTime != expectedUpdatedTime || updateTime < lastUpdatedTime) return false;
+            value = val;
+            offHeapSlot = null;
+            createdTime = updateTime;
+            lastUpdatedTime = updateTime;
+            return true;
+        }
+    }
+
     public long getCreatedTime() {
         return createdTime;
     }
@@ -130,20 +175,4 @@ public class ZEntry<K, V> implements Cache.Entry<K, V> {
         }
         return false;
     }
-
-    @Override
-    public int hashCode() {
-        return value.hashCode();
-    }
-
-    @Override
-    public boolean equals(Object obj) {
-        if (obj == null || thisClass != obj.getClass()) return false;
-        ZEntry that = (ZEntry) obj;
-        if (value == null) {
-            return that.value == null;
-        } else {
-            return value.equals(that.value);
-        }
-    }
 }
@@ -0,0 +1,91 @@
+package com.zmtech.zkit.cache.impl;
+
+/**
+ * TinyLFU使用的4位Count-Min频率估算器，每个键只占用半个字节的计数空间。
+ * 当累计样本数达到阈值时所有计数减半（老化），使频率能够反映最近的访问分布。
+ * 非线程安全，由调用者（ZTinyLfuEviction）持锁访问。
+ */
+class ZFrequencySketch {
+    private static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final long ONE_MASK = 0x1111111111111111L;
+
+    private long[] table;
+    private int tableMask;
+    private int sampleSize;
+    private int size;
+
+    ZFrequencySketch(int maximumSize) {
+        ensureCapacity(maximumSize);
+    }
+
+    /** 按缓存最大条目数调整计数表大小，调整后之前的计数全部丢弃 */
+    void ensureCapacity(int maximumSize) {
+        int maximum = Math.max(1, Math.min(maximumSize, Integer.MAX_VALUE >>> 1));
+        if (table != null && table.length >= maximum) return;
+        table = new long[ceilingPowerOfTwo(maximum)];
+        tableMask = Math.max(0, table.length - 1);
+        sampleSize = maximum <= Integer.MAX_VALUE / 10 ? maximum * 10 : Integer.MAX_VALUE;
+        size = 0;
+    }
+
+    /** 返回键的估算访问频率（0-15） */
+    int frequency(Object key) {
+        int hash = spread(key.hashCode());
+        int start = (hash & 3) << 2;
+        int frequency = Integer.MAX_VALUE;
+        for (int i = 0; i < 4; i++) {
+            int index = indexOf(hash, i);
+            int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    /** 增加键的访问频率，达到样本阈值时执行老化 */
+    void increment(Object key) {
+        int hash = spread(key.hashCode());
+        int start = (hash & 3) << 2;
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            int index = indexOf(hash, i);
+            added |= incrementAt(index, start + i);
+        }
+        if (added && ++size == sampleSize) reset();
+    }
+
+    private boolean incrementAt(int i, int j) {
+        int offset = j << 2;
+        long mask = (0xfL << offset);
+        if ((table[i] & mask) != mask) {
+            table[i] += (1L << offset);
+            return true;
+        }
+        return false;
+    }
+
+    private void reset() {
+        int count = 0;
+        for (int i = 0; i < table.length; i++) {
+            count += Long.bitCount(table[i] & ONE_MASK);
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        size = (size >>> 1) - (count >>> 2);
+    }
+
+    private int indexOf(int item, int i) {
+        long hash = (item + SEEDS[i]) * SEEDS[i];
+        hash += (hash >>> 32);
+        return ((int) hash) & tableMask;
+    }
+
+    private static int spread(int x) {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+
+    private static int ceilingPowerOfTwo(int x) {
+        return 1 << -Integer.numberOfLeadingZeros(x - 1);
+    }
+}
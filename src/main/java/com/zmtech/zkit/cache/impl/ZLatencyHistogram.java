@@ -0,0 +1,66 @@
+package com.zmtech.zkit.cache.impl;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按2的幂分桶的延迟直方图（纳秒），每个桶是一个LongAdder，多线程记录时没有锁也没有共享缓存行的竞争。
+ * 百分位数取所在桶的上界，误差在2倍以内，用于监控足够。
+ */
+public class ZLatencyHistogram {
+    private static final int BUCKET_COUNT = 64;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKET_COUNT];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+
+    public ZLatencyHistogram() {
+        for (int i = 0; i < BUCKET_COUNT; i++) buckets[i] = new LongAdder();
+    }
+
+    public void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        // 桶i包含 [2^(i-1), 2^i) 纳秒，0纳秒放在桶0
+        buckets[BUCKET_COUNT - Long.numberOfLeadingZeros(nanos)].increment();
+        count.increment();
+        totalNanos.add(nanos);
+    }
+
+    public void clear() {
+        for (LongAdder bucket : buckets) bucket.reset();
+        count.reset();
+        totalNanos.reset();
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    /** 平均延迟，单位微秒 */
+    public float getAverageMicros() {
+        long curCount = count.sum();
+        if (curCount == 0) return 0;
+        return (totalNanos.sum() / (float) curCount) / 1000;
+    }
+
+    /**
+     * 百分位延迟，单位微秒
+     * @param percentile 0-100之间，如99表示P99
+     */
+    public float getPercentileMicros(double percentile) {
+        long[] counts = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = buckets[i].sum();
+            total += counts[i];
+        }
+        if (total == 0) return 0;
+        long threshold = (long) Math.ceil(total * (percentile / 100.0));
+        if (threshold < 1) threshold = 1;
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts[i];
+            if (seen >= threshold) return i == 0 ? 0 : (float) (Math.pow(2, i) / 1000.0);
+        }
+        return (float) (Math.pow(2, BUCKET_COUNT - 1) / 1000.0);
+    }
+}
@@ -0,0 +1,334 @@
+package com.zmtech.zkit.cache.impl;
+
+import com.zmtech.zkit.util.SimpleTopic;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.configuration.CacheEntryListenerConfiguration;
+import javax.cache.configuration.Configuration;
+import javax.cache.integration.CompletionListener;
+import javax.cache.processor.EntryProcessor;
+import javax.cache.processor.EntryProcessorException;
+import javax.cache.processor.EntryProcessorResult;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 近端缓存：每个节点一个本地ZCache(L1)，在分布式缓存(L2)前面。读取先查L1，未命中时从L2读取并放入L1，
+ * 同一个键的并发未命中只读取一次L2；写入和删除先写L2，再更新本节点的L1，并通过SimpleTopic通知其他节点删除L1中的键。
+ * <p>
+ * 通知是异步的，其他节点在收到通知之前可能读到旧值，所以L1应配置较短的到期时间来限制不一致的时长。
+ * 每个键（按hash分段）有一个失效版本，本节点写入、删除或收到通知时在修改L1之前增加；
+ * L2读取期间版本变化时读到的值不放入L1，避免读取完成得比失效晚时把旧值写回L1。
+ */
+public class ZNearCache<K, V> implements Cache<K, V> {
+    private static final Logger logger = LoggerFactory.getLogger(ZNearCache.class);
+
+    private final String name;
+    private final ZCache<K, V> nearCache;
+    private final Cache<K, V> remoteCache;
+    private final SimpleTopic<NearCacheInvalidate> topic;
+    private final String nodeId;
+
+    private static final int VERSION_STRIPES = 1024;
+    // 按键hash分段的失效版本和清空的版本，只增加，两者之和变化表示键可能已经失效
+    private final AtomicLongArray invalidateVersions = new AtomicLongArray(VERSION_STRIPES);
+    private final AtomicLong clearVersion = new AtomicLong();
+
+    /** 近端缓存失效消息，key为null表示清空 */
+    public static class NearCacheInvalidate implements Externalizable {
+        String cacheName;
+        String sourceNodeId;
+        Object key;
+
+        public NearCacheInvalidate() { }
+
+        NearCacheInvalidate(String cacheName, String sourceNodeId, Object key) {
+            this.cacheName = cacheName;
+            this.sourceNodeId = sourceNodeId;
+            this.key = key;
+        }
+
+        public String getCacheName() { return cacheName; }
+
+        @Override
+        public void writeExternal(ObjectOutput out) throws IOException {
+            out.writeUTF(cacheName);
+            out.writeUTF(sourceNodeId);
+            out.writeObject(key);
+        }
+
+        @Override
+        public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+            cacheName = in.readUTF();
+            sourceNodeId = in.readUTF();
+            key = in.readObject();
+        }
+    }
+
+    /**
+     * @param topic 为null时只有本节点（或只在测试中使用），不发送失效通知
+     * @param nodeId 本节点的标识，忽略本节点发出的通知
+     */
+    public ZNearCache(String name, ZCache<K, V> nearCache, Cache<K, V> remoteCache, SimpleTopic<NearCacheInvalidate> topic, String nodeId) {
+        this.name = name;
+        this.nearCache = nearCache;
+        this.remoteCache = remoteCache;
+        this.topic = topic;
+        this.nodeId = nodeId;
+    }
+
+    /** 本节点的L1缓存，用于统计信息 */
+    public ZCache<K, V> getNearCache() {
+        return nearCache;
+    }
+
+    public Cache<K, V> getRemoteCache() {
+        return remoteCache;
+    }
+
+    /** 收到其他节点的失效通知时调用 */
+    @SuppressWarnings("unchecked")
+    public void onInvalidate(NearCacheInvalidate message) {
+        if (nodeId.equals(message.sourceNodeId)) return;
+        if (message.key == null) {
+            clearL1();
+        } else {
+            incrementVersion(message.key);
+            nearCache.remove((K) message.key);
+        }
+    }
+
+    private int versionIndex(Object key) {
+        int h = key.hashCode();
+        return (h ^ (h >>> 16)) & (VERSION_STRIPES - 1);
+    }
+    private long getVersion(Object key) {
+        return clearVersion.get() + invalidateVersions.get(versionIndex(key));
+    }
+    /** 在修改L1中的键之前调用 */
+    private void incrementVersion(Object key) {
+        invalidateVersions.incrementAndGet(versionIndex(key));
+    }
+    private void clearL1() {
+        clearVersion.incrementAndGet();
+        nearCache.clear();
+    }
+    private void putL1(K key, V value) {
+        incrementVersion(key);
+        nearCache.put(key, value);
+    }
+
+    private void publish(Object key) {
+        if (topic == null) return;
+        try {
+            topic.publish(new NearCacheInvalidate(name, nodeId, key));
+        } catch (Exception e) {
+            logger.error("ZCache缓存错误: 近端缓存 [" + name + "] 发送失效通知失败, 其他节点的L1将在到期后更新", e);
+        }
+    }
+
+    /** L2已经修改，删除本节点L1中的键并通知其他节点 */
+    private void invalidate(K key) {
+        incrementVersion(key);
+        nearCache.remove(key);
+        publish(key);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public V get(K key) {
+        // 读取L2之前的版本，读取期间键被失效时不放入L1
+        final long version = getVersion(key);
+        return nearCache.computeIfAbsent(key, remoteCache::get, () -> getVersion(key) == version);
+    }
+
+    @Override
+    public Map<K, V> getAll(Set<? extends K> keys) {
+        Map<K, V> results = new HashMap<>();
+        for (K key : keys) results.put(key, get(key));
+        return results;
+    }
+
+    @Override
+    public boolean containsKey(K key) {
+        return nearCache.containsKey(key) || remoteCache.containsKey(key);
+    }
+
+    @Override
+    public void put(K key, V value) {
+        remoteCache.put(key, value);
+        putL1(key, value);
+        publish(key);
+    }
+
+    @Override
+    public V getAndPut(K key, V value) {
+        V oldValue = remoteCache.getAndPut(key, value);
+        putL1(key, value);
+        publish(key);
+        return oldValue;
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> map) {
+        if (map == null) return;
+        remoteCache.putAll(map);
+        for (Map.Entry<? extends K, ? extends V> entry : map.entrySet()) {
+            putL1(entry.getKey(), entry.getValue());
+            publish(entry.getKey());
+        }
+    }
+
+    @Override
+    public boolean putIfAbsent(K key, V value) {
+        boolean added = remoteCache.putIfAbsent(key, value);
+        if (added) {
+            putL1(key, value);
+            publish(key);
+        } else {
+            // L2中已有的值可能与L1不同
+            incrementVersion(key);
+            nearCache.remove(key);
+        }
+        return added;
+    }
+
+    @Override
+    public boolean remove(K key) {
+        boolean removed = remoteCache.remove(key);
+        invalidate(key);
+        return removed;
+    }
+
+    @Override
+    public boolean remove(K key, V oldValue) {
+        boolean removed = remoteCache.remove(key, oldValue);
+        if (removed) invalidate(key);
+        return removed;
+    }
+
+    @Override
+    public V getAndRemove(K key) {
+        V oldValue = remoteCache.getAndRemove(key);
+        invalidate(key);
+        return oldValue;
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        boolean replaced = remoteCache.replace(key, oldValue, newValue);
+        if (replaced) invalidate(key);
+        return replaced;
+    }
+
+    @Override
+    public boolean replace(K key, V value) {
+        boolean replaced = remoteCache.replace(key, value);
+        if (replaced) invalidate(key);
+        return replaced;
+    }
+
+    @Override
+    public V getAndReplace(K key, V value) {
+        V oldValue = remoteCache.getAndReplace(key, value);
+        if (oldValue != null) invalidate(key);
+        return oldValue;
+    }
+
+    @Override
+    public void removeAll(Set<? extends K> keys) {
+        remoteCache.removeAll(keys);
+        for (K key : keys) invalidate(key);
+    }
+
+    @Override
+    public void removeAll() {
+        remoteCache.removeAll();
+        clearL1();
+        publish(null);
+    }
+
+    @Override
+    public void clear() {
+        remoteCache.clear();
+        clearL1();
+        publish(null);
+    }
+
+    @Override
+    public <C extends Configuration<K, V>> C getConfiguration(Class<C> clazz) {
+        return remoteCache.getConfiguration(clazz);
+    }
+
+    @Override
+    public void loadAll(Set<? extends K> keys, boolean replaceExistingValues, CompletionListener completionListener) {
+        remoteCache.loadAll(keys, replaceExistingValues, completionListener);
+        if (replaceExistingValues) for (K key : keys) invalidate(key);
+    }
+
+    @Override
+    public <T> T invoke(K key, EntryProcessor<K, V, T> entryProcessor, Object... arguments) throws EntryProcessorException {
+        T result = remoteCache.invoke(key, entryProcessor, arguments);
+        invalidate(key);
+        return result;
+    }
+
+    @Override
+    public <T> Map<K, EntryProcessorResult<T>> invokeAll(Set<? extends K> keys, EntryProcessor<K, V, T> entryProcessor, Object... arguments) {
+        Map<K, EntryProcessorResult<T>> results = remoteCache.invokeAll(keys, entryProcessor, arguments);
+        for (K key : keys) invalidate(key);
+        return results;
+    }
+
+    @Override
+    public void registerCacheEntryListener(CacheEntryListenerConfiguration<K, V> cacheEntryListenerConfiguration) {
+        remoteCache.registerCacheEntryListener(cacheEntryListenerConfiguration);
+    }
+
+    @Override
+    public void deregisterCacheEntryListener(CacheEntryListenerConfiguration<K, V> cacheEntryListenerConfiguration) {
+        remoteCache.deregisterCacheEntryListener(cacheEntryListenerConfiguration);
+    }
+
+    @Override
+    public CacheManager getCacheManager() {
+        return remoteCache.getCacheManager();
+    }
+
+    /** 只关闭本节点的L1，L2由分布式缓存管理器管理 */
+    @Override
+    public void close() {
+        nearCache.close();
+    }
+
+    @Override
+    public boolean isClosed() {
+        return nearCache.isClosed();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> clazz) {
+        if (clazz.isAssignableFrom(this.getClass())) return clazz.cast(this);
+        return remoteCache.unwrap(clazz);
+    }
+
+    @Override
+    public Iterator<Entry<K, V>> iterator() {
+        return remoteCache.iterator();
+    }
+}
@@ -0,0 +1,405 @@
+package com.zmtech.zkit.cache.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * ZCache的堆外值存储：最近使用的条目值保留在堆上的热窗口中，被挤出热窗口的值序列化后追加写入堆外分段
+ * （直接内存或内存映射文件），ZEntry只保留键和一个Slot引用，get时再惰性反序列化。
+ * <p>
+ * 分段组成一个环，总大小不超过maxBytes；环写满时回收最旧的分段，其中只在堆外保存值的条目先从缓存中淘汰（按字节的FIFO），
+ * 值在堆上的条目清除Slot，分段中没有条目之后才使Slot失效并重用，所以缓存中的条目的Slot总是有效的。
+ * 删除或更新条目不会立即释放堆外空间，分段被回收时一起释放，因此不会产生碎片，追加和回收都是摊销O(1)。
+ * <p>
+ * 热窗口使用CLOCK近似LRU：读取只设置条目的访问标记，不加锁。
+ * 条目从缓存删除时（onRemove）立即清除热窗口和分段对条目的引用，堆上的值不会保留到位置被重用。
+ */
+class ZOffHeapStore<K, V> {
+    private static final Logger logger = LoggerFactory.getLogger(ZOffHeapStore.class);
+    private static final int MIN_SEGMENT_BYTES = 64 * 1024;
+    private static final int MAX_SEGMENT_BYTES = 64 * 1024 * 1024;
+
+    /** 堆外位置，不可变；分段被回收后generation不再匹配，Slot随之失效 */
+    static final class Slot {
+        final ZOffHeapStore store;
+        final Segment segment;
+        final int generation;
+        final int offset;
+        final int length;
+
+        Slot(ZOffHeapStore store, Segment segment, int offset, int length) {
+            this.store = store;
+            this.segment = segment;
+            this.generation = segment.generation;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        boolean isValid() {
+            return generation == segment.generation;
+        }
+    }
+
+    /** 热窗口队列的节点，删除条目时清除其中的引用，不需要在队列中查找；取出引用的一方负责减少hotSize */
+    static final class HotRef extends AtomicReference<ZEntry> {
+        HotRef(ZEntry entry) {
+            super(entry);
+        }
+
+        ZEntry take() {
+            return getAndSet(null);
+        }
+    }
+
+    static final class Segment {
+        final ByteBuffer buffer;
+        final File file;
+        volatile int generation = 0;
+        int position = 0;
+        // 写入到此分段的条目，回收时用于淘汰只有堆外值的条目；条目删除时移除
+        final Set<ZEntry> entries = Collections.newSetFromMap(new IdentityHashMap<>());
+        // 已经写入但还没有设置到条目上的值的个数，大于0时分段不能回收
+        final AtomicInteger pendingSpills = new AtomicInteger(0);
+
+        Segment(ByteBuffer buffer, File file) {
+            this.buffer = buffer;
+            this.file = file;
+        }
+    }
+
+    private final ZCache<K, V> cache;
+    private final ZValueSerializer<V> serializer;
+    private final long maxBytes;
+    private final int segmentBytes;
+    private final Segment[] segments;
+    private final File directory;
+    private final ReentrantLock lock = new ReentrantLock();
+    private int currentIndex = 0;
+    private long usedBytes = 0;
+
+    private final int maxHotEntries;
+    private final ConcurrentLinkedQueue<HotRef> hotQueue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger hotSize = new AtomicInteger(0);
+
+    ZOffHeapStore(ZCache<K, V> cache, ZCacheConfiguration<K, V> conf) {
+        this.cache = cache;
+        this.serializer = conf.valueSerializer != null ? conf.valueSerializer : new ZValueSerializer.JavaSerializer<>();
+        this.maxHotEntries = Math.max(0, conf.onHeapEntries);
+        this.directory = conf.offHeapDirectory != null ? new File(conf.offHeapDirectory) : null;
+
+        long segBytes = Math.max(MIN_SEGMENT_BYTES, Math.min(MAX_SEGMENT_BYTES, conf.offHeapMaxBytes / 16));
+        segmentBytes = (int) segBytes;
+        int segmentCount = (int) Math.max(2, (conf.offHeapMaxBytes + segBytes - 1) / segBytes);
+        maxBytes = (long) segmentCount * segmentBytes;
+        segments = new Segment[segmentCount];
+        if (directory != null && !directory.exists() && !directory.mkdirs())
+            throw new IllegalArgumentException("ZCache缓存错误: 缓存 [" + cache.getName() + "] 无法创建堆外存储目录 [" + directory + "]");
+    }
+
+    long getMaxBytes() {
+        return maxBytes;
+    }
+
+    long getUsedBytes() {
+        lock.lock();
+        try {
+            return usedBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int getHotSize() {
+        return hotSize.get();
+    }
+
+    /** 条目值在堆上（新放入、更新或从堆外加载）时调用，超出热窗口的条目值写到堆外 */
+    @SuppressWarnings("unchecked")
+    void onHeapValue(ZEntry<K, V> entry) {
+        entry.hotReferenced = true;
+        if (entry.hotRef == null) {
+            HotRef ref = new HotRef(entry);
+            entry.hotRef = ref;
+            hotQueue.offer(ref);
+            hotSize.incrementAndGet();
+        }
+        // 每次最多处理有限个条目，避免单次put的开销不受控制
+        int attempts = 8;
+        while (hotSize.get() > maxHotEntries && attempts-- > 0) {
+            HotRef headRef = hotQueue.poll();
+            if (headRef == null) break;
+            ZEntry<K, V> head = (ZEntry<K, V>) headRef.take();
+            // 已删除的条目，onRemove时已经减少了hotSize
+            if (head == null) continue;
+            if (head.hotReferenced && cache.entryStore.get(head.getKey()) == head) {
+                // CLOCK 第二次机会
+                head.hotReferenced = false;
+                headRef.set(head);
+                hotQueue.offer(headRef);
+                continue;
+            }
+            if (head.hotRef == headRef) head.hotRef = null;
+            hotSize.decrementAndGet();
+            if (cache.entryStore.get(head.getKey()) == head) spill(head);
+        }
+    }
+
+    /** 条目从缓存删除后调用，清除热窗口和分段对条目及其堆上值的引用；堆外空间仍在分段回收时释放 */
+    void onRemove(ZEntry<K, V> entry) {
+        HotRef ref = entry.hotRef;
+        if (ref != null && ref.compareAndSet(entry, null)) {
+            entry.hotRef = null;
+            hotSize.decrementAndGet();
+        }
+        if (!entry.spilled) return;
+        lock.lock();
+        try {
+            for (Segment segment : segments) if (segment != null) segment.entries.remove(entry);
+            entry.spilled = false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** 把条目值写到堆外并释放堆上的值 */
+    private void spill(ZEntry<K, V> entry) {
+        V value = entry.value;
+        if (value == null) return;
+        Slot existingSlot = entry.offHeapSlot;
+        byte[] bytes = null;
+        if (existingSlot == null || !existingSlot.isValid()) {
+            try {
+                bytes = serializer.serialize(value);
+            } catch (IOException | RuntimeException e) {
+                logger.warn("ZCache缓存警告: 缓存 [" + cache.getName() + "] 中的值无法序列化到堆外, 已淘汰: " + e.toString());
+                cache.evictEntry(entry);
+                return;
+            }
+            if (bytes.length > segmentBytes) {
+                // 过大的值不写到堆外，直接淘汰以保证内存上限
+                cache.evictEntry(entry);
+                return;
+            }
+        }
+
+        boolean reuseFailed = false;
+        Slot slot = existingSlot;
+        while (true) {
+            Segment releaseSegment;
+            ArrayList<ZEntry> releaseList = null;
+            lock.lock();
+            try {
+                if (bytes == null) {
+                    // 在锁外检查之后分段可能已经被回收
+                    reuseFailed = !existingSlot.isValid();
+                    break;
+                }
+                Segment segment = segmentFor(bytes.length);
+                if (segment != null) {
+                    ByteBuffer dup = segment.buffer.duplicate();
+                    dup.position(segment.position);
+                    dup.put(bytes);
+                    slot = new Slot(this, segment, segment.position, bytes.length);
+                    segment.position += bytes.length;
+                    segment.entries.add(entry);
+                    segment.pendingSpills.incrementAndGet();
+                    entry.spilled = true;
+                    usedBytes += bytes.length;
+                    break;
+                }
+                // 下一个分段中还有条目，在锁外释放之后再回收；锁内不获取条目键的监视器，避免与ZEntry.setValue死锁
+                releaseSegment = segments[(currentIndex + 1) % segments.length];
+                if (!releaseSegment.entries.isEmpty()) releaseList = new ArrayList<>(releaseSegment.entries);
+            } finally {
+                lock.unlock();
+            }
+            // 等待其他线程完成写入该分段
+            if (releaseList == null || !releaseEntries(releaseSegment, releaseList)) Thread.yield();
+        }
+        if (reuseFailed) {
+            onHeapValue(entry);
+            return;
+        }
+
+        boolean released = false;
+        synchronized (entry.getKey()) {
+            // 序列化期间值被更新则放弃本次写出，更新时已经重新放入热窗口
+            if (entry.value == value && entry.offHeapSlot == existingSlot) {
+                entry.offHeapSlot = slot;
+                entry.value = null;
+            } else if (entry.value == value && entry.offHeapSlot == null && existingSlot != null) {
+                // 原来的Slot所在分段在此期间被释放，值仍在堆上，重新放入热窗口
+                released = true;
+            }
+        }
+        if (slot != existingSlot) slot.segment.pendingSpills.decrementAndGet();
+        // 写出期间条目被删除时onRemove可能在加入分段之前执行，再清除一次
+        if (cache.entryStore.get(entry.getKey()) != entry) onRemove(entry);
+        else if (released) onHeapValue(entry);
+    }
+
+    /**
+     * 回收分段之前在锁外调用：值只在该分段中的条目从缓存淘汰，值在堆上的条目清除Slot（再次挤出热窗口时重新写出），
+     * 然后从分段中移除这些条目；开始时还有正在写入该分段的条目则不移除（其Slot可能还没有设置），返回false
+     */
+    @SuppressWarnings("unchecked")
+    private boolean releaseEntries(Segment segment, ArrayList<ZEntry> entryList) {
+        boolean spillsDone = segment.pendingSpills.get() == 0;
+        for (ZEntry entry : entryList) {
+            boolean evict = false;
+            synchronized (entry.getKey()) {
+                Slot slot = entry.offHeapSlot;
+                if (slot != null && slot.segment == segment) {
+                    if (entry.value == null) evict = true;
+                    else entry.offHeapSlot = null;
+                }
+            }
+            if (evict) cache.evictEntry(entry);
+        }
+        if (!spillsDone) return false;
+        lock.lock();
+        try {
+            for (ZEntry entry : entryList) segment.entries.remove(entry);
+        } finally {
+            lock.unlock();
+        }
+        return true;
+    }
+
+    /**
+     * 在锁内调用，返回可以写入length字节的分段，必要时回收下一个分段；
+     * 下一个分段中还有条目或正在写入时返回null，由调用者在锁外释放其中的条目后再次调用
+     */
+    private Segment segmentFor(int length) {
+        Segment segment = segments[currentIndex];
+        if (segment != null && segment.position + length <= segmentBytes) return segment;
+        int nextIndex = segment != null ? (currentIndex + 1) % segments.length : currentIndex;
+
+        Segment next = segments[nextIndex];
+        if (next == null) {
+            next = new Segment(allocate(nextIndex), directory != null ? segmentFile(nextIndex) : null);
+            segments[nextIndex] = next;
+        } else {
+            if (!next.entries.isEmpty() || next.pendingSpills.get() > 0) return null;
+            recycle(next);
+        }
+        currentIndex = nextIndex;
+        return next;
+    }
+
+    /** 在锁内调用，回收没有条目的分段：之前的Slot全部失效 */
+    private void recycle(Segment segment) {
+        segment.generation++;
+        usedBytes -= segment.position;
+        segment.position = 0;
+    }
+
+    private ByteBuffer allocate(int index) {
+        if (directory == null) return ByteBuffer.allocateDirect(segmentBytes);
+        File file = segmentFile(index);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(segmentBytes);
+            file.deleteOnExit();
+            return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        } catch (IOException e) {
+            throw new IllegalStateException("ZCache缓存错误: 缓存 [" + cache.getName() + "] 无法映射堆外存储文件 [" + file + "]", e);
+        }
+    }
+
+    private File segmentFile(int index) {
+        return new File(directory, cache.getName().replaceAll("[^A-Za-z0-9._-]", "_") + "." + index + ".zseg");
+    }
+
+    /**
+     * 从堆外读取并反序列化；缓存中条目的Slot总是有效的，Slot已失效时条目已经从缓存删除，返回null；
+     * 反序列化失败时淘汰条目并返回null
+     */
+    V load(ZEntry<K, V> entry, Slot slot) {
+        byte[] bytes;
+        lock.lock();
+        try {
+            if (!slot.isValid()) return null;
+            bytes = new byte[slot.length];
+            ByteBuffer dup = slot.segment.buffer.duplicate();
+            dup.position(slot.offset);
+            dup.get(bytes);
+        } finally {
+            lock.unlock();
+        }
+
+        final long startNanos = cache.getMStats().latencyEnabled ? System.nanoTime() : 0;
+        V value;
+        try {
+            value = serializer.deserialize(bytes);
+        } catch (IOException | ClassNotFoundException | RuntimeException e) {
+            logger.warn("ZCache缓存警告: 缓存 [" + cache.getName() + "] 的堆外值反序列化失败, 已淘汰: " + e.toString());
+            cache.evictEntry(entry);
+            return null;
+        }
+        if (startNanos != 0) cache.getMStats().recordLoadNanos(System.nanoTime() - startNanos);
+
+        // 保留堆外副本，再次挤出热窗口时不需要重新序列化
+        boolean promoted = false;
+        synchronized (entry.getKey()) {
+            if (entry.offHeapSlot == slot && entry.value == null) {
+                entry.value = value;
+                promoted = true;
+            }
+        }
+        if (promoted) onHeapValue(entry);
+        return value;
+    }
+
+    /** 缓存清空时调用，之前的所有Slot失效 */
+    void clear() {
+        lock.lock();
+        try {
+            for (Segment segment : segments) {
+                if (segment == null) continue;
+                segment.generation++;
+                segment.position = 0;
+                segment.entries.clear();
+            }
+            currentIndex = 0;
+            usedBytes = 0;
+        } finally {
+            lock.unlock();
+        }
+        HotRef ref;
+        while ((ref = hotQueue.poll()) != null) {
+            ZEntry entry = ref.take();
+            if (entry != null) entry.hotRef = null;
+        }
+        hotSize.set(0);
+    }
+
+    /** 缓存关闭时调用，释放引用并删除内存映射文件 */
+    void close() {
+        clear();
+        lock.lock();
+        try {
+            for (int i = 0; i < segments.length; i++) {
+                Segment segment = segments[i];
+                segments[i] = null;
+                if (segment != null && segment.file != null && !segment.file.delete())
+                    logger.warn("ZCache缓存警告: 无法删除堆外存储文件 [" + segment.file + "]");
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+}
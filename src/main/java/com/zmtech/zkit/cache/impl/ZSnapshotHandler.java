@@ -0,0 +1,18 @@
+package com.zmtech.zkit.cache.impl;
+
+/**
+ * ZCache快照的校验和恢复处理，按缓存名称前缀在CacheFacadeImpl中注册。写快照时记录数据源的标记，
+ * 恢复时标记与当前数据源不一致则丢弃整个快照，避免重启后使用停机期间已经修改的数据。
+ */
+public interface ZSnapshotHandler<K, V> {
+    /** 写快照时调用，返回的标记必须可以序列化；返回null时不写这个缓存的快照 */
+    Object makeStamp(String cacheName);
+
+    /** 恢复前调用，stamp为写快照时的标记 */
+    boolean isValid(String cacheName, Object stamp);
+
+    /** 每个条目读取后、放入缓存前调用，可以重新关联运行时对象或注册反向索引；返回null时跳过该条目 */
+    default V onRestore(String cacheName, K key, V value) {
+        return value;
+    }
+}
@@ -14,112 +14,182 @@
 package com.zmtech.zkit.cache.impl;
 
 import javax.cache.management.CacheStatisticsMXBean;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * ZCache统计，计数器使用LongAdder分段计数，高并发下不丢失计数，也不会因为共享缓存行产生伪共享。
+ * 延迟直方图是可选的（ZCacheConfiguration.setLatencyStats），关闭时不调用System.nanoTime()。
+ */
 public class ZStats implements CacheStatisticsMXBean {
-    long hits = 0;
-    long misses = 0;
-    long gets = 0;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder puts = new LongAdder();
+    private final LongAdder removals = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expires = new LongAdder();
+
+    final boolean latencyEnabled;
+    private final ZLatencyHistogram getLatency;
+    private final ZLatencyHistogram putLatency;
+    private final ZLatencyHistogram loadLatency;
 
-    long puts = 0;
-    private long removals = 0;
-    long evictions = 0;
-    private long expires = 0;
+    public ZStats() {
+        this(false);
+    }
 
-    // long 获取总数 = 0, 存放总数 = 0, 删除总数 = 0;
+    public ZStats(boolean latencyEnabled) {
+        this.latencyEnabled = latencyEnabled;
+        getLatency = latencyEnabled ? new ZLatencyHistogram() : null;
+        putLatency = latencyEnabled ? new ZLatencyHistogram() : null;
+        loadLatency = latencyEnabled ? new ZLatencyHistogram() : null;
+    }
 
     @Override
     public void clear() {
-        hits = 0;
-        misses = 0;
-        gets = 0;
-        puts = 0;
-        removals = 0;
-        evictions = 0;
-        expires = 0;
+        hits.reset();
+        misses.reset();
+        puts.reset();
+        removals.reset();
+        evictions.reset();
+        expires.reset();
+        if (latencyEnabled) {
+            getLatency.clear();
+            putLatency.clear();
+            loadLatency.clear();
+        }
     }
 
     @Override
     public long getCacheHits() {
-        return hits;
+        return hits.sum();
     }
 
     @Override
     public float getCacheHitPercentage() {
-        return (hits / gets) * 100;
+        long curHits = hits.sum();
+        long curGets = curHits + misses.sum();
+        if (curGets == 0) return 0;
+        return (curHits / (float) curGets) * 100;
     }
 
     @Override
     public long getCacheMisses() {
-        return misses;
+        return misses.sum();
     }
 
     @Override
     public float getCacheMissPercentage() {
-        return (misses / gets) * 100;
+        long curMisses = misses.sum();
+        long curGets = hits.sum() + curMisses;
+        if (curGets == 0) return 0;
+        return (curMisses / (float) curGets) * 100;
     }
 
     @Override
     public long getCacheGets() {
-        return gets;
+        // 每次获取不是命中就是未命中，不再单独计数
+        return hits.sum() + misses.sum();
     }
 
     @Override
     public long getCachePuts() {
-        return puts;
+        return puts.sum();
     }
 
     @Override
     public long getCacheRemovals() {
-        return removals;
+        return removals.sum();
     }
 
     @Override
     public long getCacheEvictions() {
-        return evictions;
+        return evictions.sum();
     }
 
+    /** 平均获取时间，单位微秒，未启用延迟统计时为0 */
     @Override
     public float getAverageGetTime() {
-        return 0;
-    } // 平均获取时间
+        return latencyEnabled ? getLatency.getAverageMicros() : 0;
+    }
 
+    /** 平均存放时间，单位微秒，未启用延迟统计时为0 */
     @Override
     public float getAveragePutTime() {
-        return 0;
-    } // 平均存放时间
+        return latencyEnabled ? putLatency.getAverageMicros() : 0;
+    }
 
     @Override
     public float getAverageRemoveTime() {
         return 0;
     } // 平均删除时间
 
+    /** 平均加载时间（缓存未命中后由加载器取值），单位微秒，未启用延迟统计时为0 */
+    public float getAverageLoadTime() {
+        return latencyEnabled ? loadLatency.getAverageMicros() : 0;
+    }
+
     public long getCacheExpires() {
-        return expires;
+        return expires.sum();
+    }
+
+    public boolean isLatencyEnabled() {
+        return latencyEnabled;
+    }
+
+    /** 获取延迟直方图，未启用延迟统计时为null */
+    public ZLatencyHistogram getGetLatency() {
+        return getLatency;
+    }
+
+    public ZLatencyHistogram getPutLatency() {
+        return putLatency;
+    }
+
+    public ZLatencyHistogram getLoadLatency() {
+        return loadLatency;
     }
 
-    /* 由于性能原因，让调用者直接访问字段：
     void countHit() {
-        gets++; hits++;
-        // totalGetMicros += micros;
+        hits.increment();
+    }
+
+    void countHits(long entries) {
+        hits.add(entries);
     }
+
     void countMiss() {
-        gets++; misses++;
-        // totalGetMicros += micros;
+        misses.increment();
     }
+
     void countPut() {
-        puts++;
-        // totalPutMicros += micros;
+        puts.increment();
+    }
+
+    void countEviction() {
+        evictions.increment();
     }
-    */
+
     void countRemoval() {
-        removals++;
+        removals.increment();
     }
 
     void countBulkRemoval(long entries) {
-        removals += entries;
+        removals.add(entries);
     }
 
     void countExpire() {
-        expires++;
+        expires.increment();
+    }
+
+    void recordGetNanos(long nanos) {
+        if (latencyEnabled) getLatency.record(nanos);
+    }
+
+    void recordPutNanos(long nanos) {
+        if (latencyEnabled) putLatency.record(nanos);
+    }
+
+    void recordLoadNanos(long nanos) {
+        if (latencyEnabled) loadLatency.record(nanos);
     }
 }
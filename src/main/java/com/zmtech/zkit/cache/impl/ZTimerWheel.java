@@ -0,0 +1,172 @@
+package com.zmtech.zkit.cache.impl;
+
+import java.util.ArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * ZCache到期索引：分层时间轮，条目按到期时间挂在对应的桶上，推进时间轮时只处理到期的桶，
+ * 清除到期条目的开销是O(到期条目数)而不是扫描整个缓存。
+ * <p>
+ * 四层时间轮，每层64个桶，桶宽约为1秒、65秒、70分钟、3天，超过最高层范围的条目放在最高层并在到达时重新计算。
+ * 访问和更新只会推迟到期时间，所以不需要重新挂载；桶到期时重新检查条目，没有到期的按新的到期时间重新挂载。
+ * 桶是ZEntry上的侵入式双向链表，所有修改都在锁内完成。
+ */
+class ZTimerWheel<K, V> {
+    private static final int BUCKETS = 64;
+    private static final int[] SHIFTS = {10, 16, 22, 28};
+
+    private final ZCache<K, V> cache;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ZEntry<K, V>[][] wheel;
+    private long currentTime;
+    private int size = 0;
+
+    @SuppressWarnings("unchecked")
+    ZTimerWheel(ZCache<K, V> cache, long currentTime) {
+        this.cache = cache;
+        this.currentTime = currentTime;
+        wheel = new ZEntry[SHIFTS.length][BUCKETS];
+        for (int i = 0; i < SHIFTS.length; i++) {
+            for (int j = 0; j < BUCKETS; j++) {
+                ZEntry<K, V> sentinel = new ZEntry<>(null, null);
+                sentinel.timerPrev = sentinel;
+                sentinel.timerNext = sentinel;
+                wheel[i][j] = sentinel;
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /** 新条目放入entryStore后调用 */
+    void schedule(ZEntry<K, V> entry) {
+        long deadline = cache.expireDeadline(entry);
+        if (deadline == Long.MAX_VALUE) return;
+        lock.lock();
+        try {
+            if (entry.timerNext != null || cache.entryStore.get(entry.getKey()) != entry) return;
+            link(entry, deadline);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** 条目从entryStore删除后调用 */
+    void unschedule(ZEntry<K, V> entry) {
+        if (entry.timerNext == null) return;
+        lock.lock();
+        try {
+            if (entry.timerNext != null) unlink(entry);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void clear() {
+        lock.lock();
+        try {
+            for (ZEntry<K, V>[] buckets : wheel) {
+                for (ZEntry<K, V> sentinel : buckets) {
+                    ZEntry<K, V> cur = sentinel.timerNext;
+                    while (cur != sentinel) {
+                        ZEntry<K, V> next = cur.timerNext;
+                        cur.timerPrev = null;
+                        cur.timerNext = null;
+                        cur = next;
+                    }
+                    sentinel.timerPrev = sentinel;
+                    sentinel.timerNext = sentinel;
+                }
+            }
+            size = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 推进时间轮到now，处理经过的桶；到期的条目在锁外从缓存删除。
+     * @return 删除的到期条目数
+     */
+    int advance(long now) {
+        ArrayList<ZEntry<K, V>> expired = new ArrayList<>();
+        lock.lock();
+        try {
+            long previousTime = currentTime;
+            if (now <= previousTime) return 0;
+            currentTime = now;
+            for (int i = 0; i < SHIFTS.length; i++) {
+                long previousTicks = previousTime >>> SHIFTS[i];
+                long currentTicks = now >>> SHIFTS[i];
+                long delta = currentTicks - previousTicks;
+                if (delta <= 0) break;
+                expireLevel(i, previousTicks, delta, now, expired);
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        int expireCount = 0;
+        for (ZEntry<K, V> entry : expired) if (cache.expireEntry(entry)) expireCount++;
+        return expireCount;
+    }
+
+    /** 在锁内调用，处理一层中经过的桶，包括上次时间所在的桶 */
+    private void expireLevel(int level, long previousTicks, long delta, long now, ArrayList<ZEntry<K, V>> expired) {
+        ZEntry<K, V>[] buckets = wheel[level];
+        int start = (int) (previousTicks & (BUCKETS - 1));
+        int count = (int) Math.min(delta + 1, BUCKETS);
+        for (int i = 0; i < count; i++) {
+            ZEntry<K, V> sentinel = buckets[(start + i) & (BUCKETS - 1)];
+            ZEntry<K, V> cur = sentinel.timerNext;
+            sentinel.timerPrev = sentinel;
+            sentinel.timerNext = sentinel;
+            while (cur != sentinel) {
+                ZEntry<K, V> next = cur.timerNext;
+                cur.timerPrev = null;
+                cur.timerNext = null;
+                size--;
+                long deadline = cache.expireDeadline(cur);
+                if (deadline <= now) expired.add(cur);
+                else if (deadline != Long.MAX_VALUE) link(cur, deadline);
+                cur = next;
+            }
+        }
+    }
+
+    private void link(ZEntry<K, V> entry, long deadline) {
+        // 已经过期但还未处理的挂在当前时间所在的桶上，下次推进时处理
+        if (deadline < currentTime) deadline = currentTime;
+        long delta = deadline - currentTime;
+        int level = SHIFTS.length - 1;
+        for (int i = 0; i < SHIFTS.length - 1; i++) {
+            if (delta < (1L << SHIFTS[i + 1])) {
+                level = i;
+                break;
+            }
+        }
+        long ticks = deadline >>> SHIFTS[level];
+        // 高层的条目挂在到期前一格，进入到期所在的格时向下层重新挂载，避免延迟一整格才到期
+        if (level > 0) ticks--;
+        // 超过最高层范围的条目放在最高层最远的桶上，到达时重新计算
+        if (level == SHIFTS.length - 1 && (ticks - (currentTime >>> SHIFTS[level])) >= BUCKETS)
+            ticks = (currentTime >>> SHIFTS[level]) + BUCKETS - 1;
+        ZEntry<K, V> sentinel = wheel[level][(int) (ticks & (BUCKETS - 1))];
+        ZEntry<K, V> last = sentinel.timerPrev;
+        entry.timerPrev = last;
+        entry.timerNext = sentinel;
+        last.timerNext = entry;
+        sentinel.timerPrev = entry;
+        size++;
+    }
+
+    private void unlink(ZEntry<K, V> entry) {
+        entry.timerPrev.timerNext = entry.timerNext;
+        entry.timerNext.timerPrev = entry.timerPrev;
+        entry.timerPrev = null;
+        entry.timerNext = null;
+        size--;
+    }
+}
@@ -0,0 +1,288 @@
+package com.zmtech.zkit.cache.impl;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * W-TinyLFU淘汰策略：新条目先进入窗口LRU，被挤出窗口的候选条目与主空间（分段LRU）中的淘汰对象比较
+ * TinyLFU频率，频率高者留下。每次put最多淘汰一个条目，摊销O(1)，缓存大小始终不超过上限。
+ * <p>
+ * 按字节限制时（weighted）每个条目按ZEntry.weight计入大小，上限和各段的容量都以字节为单位，
+ * 超出上限或共享的ZWeightBudget时连续淘汰直到回到限制内；否则每个条目计为1。
+ * <p>
+ * 队列是ZEntry上的侵入式双向链表，所有修改都在锁内完成；读访问使用tryLock，锁竞争时丢弃本次记录（有损但不阻塞读）。
+ */
+class ZTinyLfuEviction<K, V> {
+    static final byte QUEUE_NONE = 0;
+    static final byte QUEUE_WINDOW = 1;
+    static final byte QUEUE_PROBATION = 2;
+    static final byte QUEUE_PROTECTED = 3;
+
+    private final ZCache<K, V> cache;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ZFrequencySketch sketch;
+    private final boolean weighted;
+    private final ZWeightBudget budget;
+
+    // 每个队列的头是最久未访问的条目(LRU)，尾是最近访问的条目(MRU)
+    private final ZEntry<K, V> windowHead = new ZEntry<>(null, null);
+    private final ZEntry<K, V> probationHead = new ZEntry<>(null, null);
+    private final ZEntry<K, V> protectedHead = new ZEntry<>(null, null);
+
+    private long maximum;
+    private long windowMaximum;
+    private long protectedMaximum;
+    private long windowSize = 0;
+    private long probationSize = 0;
+    private long protectedSize = 0;
+    private int entryCount = 0;
+    private int sketchCapacity;
+
+    ZTinyLfuEviction(ZCache<K, V> cache, int maximum) {
+        this(cache, maximum, false, null);
+    }
+
+    /**
+     * @param maximum 上限，weighted时为字节数（只使用共享预算时为Long.MAX_VALUE），否则为条目数
+     * @param budget 多个缓存共享的字节预算，可以为null
+     */
+    ZTinyLfuEviction(ZCache<K, V> cache, long maximum, boolean weighted, ZWeightBudget budget) {
+        this.cache = cache;
+        this.weighted = weighted;
+        this.budget = budget;
+        initHead(windowHead);
+        initHead(probationHead);
+        initHead(protectedHead);
+        // 按字节限制时条目数未知，计数表随条目数增长
+        sketchCapacity = weighted ? 1024 : (int) Math.min(Integer.MAX_VALUE, maximum);
+        sketch = new ZFrequencySketch(sketchCapacity);
+        setMaximumInternal(maximum);
+    }
+
+    private static void initHead(ZEntry head) {
+        head.policyPrev = head;
+        head.policyNext = head;
+    }
+
+    private void setMaximumInternal(long max) {
+        maximum = max;
+        // 只使用共享预算（max为Long.MAX_VALUE）或预算小于max时，按预算划分各段，这个缓存最多能用到整个预算
+        long regionMax = budget != null ? Math.min(max, budget.getMaxBytes()) : max;
+        // 窗口占1%，主空间中保护段占80%，与Caffeine的默认比例相同
+        windowMaximum = Math.max(1, regionMax / 100);
+        protectedMaximum = (long) ((regionMax - windowMaximum) * 0.8);
+    }
+
+    boolean isWeighted() {
+        return weighted;
+    }
+
+    long getMaximum() {
+        return maximum;
+    }
+
+    /** 当前大小，weighted时为字节数 */
+    long size() {
+        return windowSize + probationSize + protectedSize;
+    }
+
+    int getEntryCount() {
+        return entryCount;
+    }
+
+    void setMaximum(long max) {
+        lock.lock();
+        try {
+            setMaximumInternal(max);
+            if (!weighted) {
+                sketchCapacity = (int) Math.min(Integer.MAX_VALUE, max);
+                sketch.ensureCapacity(sketchCapacity);
+            }
+            while (protectedSize > protectedMaximum) demoteProtected();
+            while (windowSize > windowMaximum && windowHead.policyNext != windowHead)
+                moveLast(windowHead.policyNext, probationHead, QUEUE_PROBATION);
+            evictWhileOver();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** 新条目已经放入entryStore后调用，weighted时ZEntry.weight已经设置 */
+    void onAdd(ZEntry<K, V> entry) {
+        lock.lock();
+        try {
+            sketch.increment(entry.getKey());
+            // 在调用前条目可能已经被其他线程删除或替换
+            if (entry.policyQueue != QUEUE_NONE || cache.entryStore.get(entry.getKey()) != entry) return;
+            linkLast(entry, windowHead, QUEUE_WINDOW);
+            entryCount++;
+            if (budget != null) budget.add(entry.weight);
+            if (weighted && entryCount > sketchCapacity) {
+                sketchCapacity = entryCount > Integer.MAX_VALUE / 2 ? Integer.MAX_VALUE : entryCount * 2;
+                sketch.ensureCapacity(sketchCapacity);
+            }
+            while (windowSize > windowMaximum && windowHead.policyNext != windowHead)
+                moveLast(windowHead.policyNext, probationHead, QUEUE_PROBATION);
+            evictWhileOver();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** weighted时条目值更新后调用，按新的字节数调整大小，必要时淘汰 */
+    void onWeightChange(ZEntry<K, V> entry, int weight) {
+        lock.lock();
+        try {
+            int delta = weight - entry.weight;
+            if (delta == 0) return;
+            entry.weight = weight;
+            // 还没有加入队列的条目在onAdd时按新的字节数计入
+            if (entry.policyQueue == QUEUE_NONE) return;
+            if (entry.policyQueue == QUEUE_WINDOW) windowSize += delta;
+            else if (entry.policyQueue == QUEUE_PROBATION) probationSize += delta;
+            else protectedSize += delta;
+            if (budget != null) budget.add(delta);
+            evictWhileOver();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** 缓存命中时调用，锁被占用时跳过 */
+    void onAccess(ZEntry<K, V> entry) {
+        if (!lock.tryLock()) return;
+        try {
+            sketch.increment(entry.getKey());
+            switch (entry.policyQueue) {
+                case QUEUE_WINDOW:
+                    unlink(entry);
+                    linkLast(entry, windowHead, QUEUE_WINDOW);
+                    break;
+                case QUEUE_PROBATION:
+                    unlink(entry);
+                    linkLast(entry, protectedHead, QUEUE_PROTECTED);
+                    while (protectedSize > protectedMaximum) demoteProtected();
+                    break;
+                case QUEUE_PROTECTED:
+                    unlink(entry);
+                    linkLast(entry, protectedHead, QUEUE_PROTECTED);
+                    break;
+                default:
+                    break;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** 条目已经从entryStore删除后调用 */
+    void onRemove(ZEntry<K, V> entry) {
+        if (entry.policyQueue == QUEUE_NONE) return;
+        lock.lock();
+        try {
+            if (entry.policyQueue != QUEUE_NONE) removeInternal(entry);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** entryStore已经清空后调用 */
+    void clear() {
+        lock.lock();
+        try {
+            if (budget != null) budget.add(-size());
+            clearQueue(windowHead);
+            clearQueue(probationHead);
+            clearQueue(protectedHead);
+            windowSize = 0;
+            probationSize = 0;
+            protectedSize = 0;
+            entryCount = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void clearQueue(ZEntry<K, V> head) {
+        ZEntry<K, V> cur = head.policyNext;
+        while (cur != head) {
+            ZEntry<K, V> next = cur.policyNext;
+            cur.policyPrev = null;
+            cur.policyNext = null;
+            cur.policyQueue = QUEUE_NONE;
+            cur = next;
+        }
+        initHead(head);
+    }
+
+    private void removeInternal(ZEntry<K, V> entry) {
+        unlink(entry);
+        entryCount--;
+        if (budget != null) budget.add(-entry.weight);
+    }
+
+    /** 超过上限或共享预算时连续淘汰，缓存为空时停止 */
+    private void evictWhileOver() {
+        while ((size() > maximum || (budget != null && budget.isExceeded())) && evictOne()) { }
+    }
+
+    /**
+     * 淘汰一个条目：刚进入试用段的候选条目(试用段尾部)与试用段头部的淘汰对象比较频率，低者被淘汰；
+     * 试用段为空时从保护段或窗口头部淘汰。
+     */
+    private boolean evictOne() {
+        ZEntry<K, V> victim = probationHead.policyNext;
+        ZEntry<K, V> candidate = probationHead.policyPrev;
+        ZEntry<K, V> toEvict;
+        if (victim == probationHead) {
+            if (protectedHead.policyNext != protectedHead) toEvict = protectedHead.policyNext;
+            else if (windowHead.policyNext != windowHead) toEvict = windowHead.policyNext;
+            else return false;
+        } else if (victim == candidate) {
+            toEvict = victim;
+        } else {
+            toEvict = sketch.frequency(candidate.getKey()) > sketch.frequency(victim.getKey()) ? victim : candidate;
+        }
+        removeInternal(toEvict);
+        cache.evictEntry(toEvict);
+        return true;
+    }
+
+    private void demoteProtected() {
+        ZEntry<K, V> first = protectedHead.policyNext;
+        if (first == protectedHead) return;
+        moveLast(first, probationHead, QUEUE_PROBATION);
+    }
+
+    private void moveLast(ZEntry<K, V> entry, ZEntry<K, V> head, byte queue) {
+        unlink(entry);
+        linkLast(entry, head, queue);
+    }
+
+    private void linkLast(ZEntry<K, V> entry, ZEntry<K, V> head, byte queue) {
+        ZEntry<K, V> last = head.policyPrev;
+        entry.policyPrev = last;
+        entry.policyNext = head;
+        last.policyNext = entry;
+        head.policyPrev = entry;
+        entry.policyQueue = queue;
+        int weight = entry.weight;
+        if (queue == QUEUE_WINDOW) windowSize += weight;
+        else if (queue == QUEUE_PROBATION) probationSize += weight;
+        else protectedSize += weight;
+    }
+
+    private void unlink(ZEntry<K, V> entry) {
+        ZEntry<K, V> prev = entry.policyPrev;
+        ZEntry<K, V> next = entry.policyNext;
+        prev.policyNext = next;
+        next.policyPrev = prev;
+        entry.policyPrev = null;
+        entry.policyNext = null;
+        byte queue = entry.policyQueue;
+        int weight = entry.weight;
+        if (queue == QUEUE_WINDOW) windowSize -= weight;
+        else if (queue == QUEUE_PROBATION) probationSize -= weight;
+        else if (queue == QUEUE_PROTECTED) protectedSize -= weight;
+        entry.policyQueue = QUEUE_NONE;
+    }
+}
@@ -0,0 +1,32 @@
+package com.zmtech.zkit.cache.impl;
+
+import java.io.*;
+
+/**
+ * ZCache堆外存储使用的值序列化接口，默认使用Java序列化（会调用值的Externalizable实现）。
+ */
+public interface ZValueSerializer<V> {
+    byte[] serialize(V value) throws IOException;
+
+    V deserialize(byte[] bytes) throws IOException, ClassNotFoundException;
+
+    /** 使用ObjectOutputStream/ObjectInputStream，值必须实现Serializable或Externalizable */
+    class JavaSerializer<V> implements ZValueSerializer<V> {
+        @Override
+        public byte[] serialize(V value) throws IOException {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream(256);
+            try (ObjectOutputStream oos = new ObjectOutputStream(baos)) {
+                oos.writeObject(value);
+            }
+            return baos.toByteArray();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public V deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+            try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+                return (V) ois.readObject();
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.zmtech.zkit.cache.impl;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * ZCache按字节限制大小时估算条目占用的堆内存字节数。结果不需要精确，只需要大致反映条目之间的相对大小，
+ * 用于按内存预算淘汰；估算在put时执行，不应比构造值本身更慢。
+ */
+@FunctionalInterface
+public interface ZWeigher<K, V> {
+    /** 返回条目的估算字节数，不能为负数 */
+    int weigh(K key, V value);
+
+    /**
+     * 默认估算器：按常见类型（字符串、数字、日期、数组、集合、Map）递归估算，其他对象按固定大小计算。
+     * 按64位JVM、压缩指针粗略估算，字符串按每个字符2字节计算。
+     */
+    class ObjectWeigher<K, V> implements ZWeigher<K, V> {
+        static final int OBJECT_BYTES = 64;
+        private static final int MAX_DEPTH = 4;
+
+        @Override
+        public int weigh(K key, V value) {
+            return (int) Math.min(Integer.MAX_VALUE, estimate(key) + estimate(value));
+        }
+
+        public static long estimate(Object obj) {
+            return estimate(obj, 0);
+        }
+
+        private static long estimate(Object obj, int depth) {
+            if (obj == null) return 0;
+            if (obj instanceof String) return 40 + 2L * ((String) obj).length();
+            if (obj instanceof Long || obj instanceof Double) return 24;
+            if (obj instanceof Number || obj instanceof Boolean || obj instanceof Character)
+                return obj instanceof BigDecimal || obj instanceof BigInteger ? 40 : 16;
+            if (obj instanceof Date) return 32;
+            if (obj instanceof byte[]) return 16 + ((byte[]) obj).length;
+            if (obj instanceof char[]) return 16 + 2L * ((char[]) obj).length;
+            if (depth >= MAX_DEPTH) return OBJECT_BYTES;
+            if (obj instanceof Object[]) {
+                Object[] array = (Object[]) obj;
+                long size = 16 + 4L * array.length;
+                for (Object element : array) size += estimate(element, depth + 1);
+                return size;
+            }
+            if (obj instanceof Collection) {
+                Collection<?> collection = (Collection<?>) obj;
+                long size = 40 + 8L * collection.size();
+                for (Object element : collection) size += estimate(element, depth + 1);
+                return size;
+            }
+            if (obj instanceof Map) {
+                Map<?, ?> map = (Map<?, ?>) obj;
+                long size = 48 + 40L * map.size();
+                for (Map.Entry<?, ?> entry : map.entrySet())
+                    size += estimate(entry.getKey(), depth + 1) + estimate(entry.getValue(), depth + 1);
+                return size;
+            }
+            return OBJECT_BYTES;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.zmtech.zkit.cache.impl;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 多个按字节限制的ZCache共享的内存预算。每个缓存放入或更新条目后，如果总字节数超过预算，
+ * 由该缓存淘汰自己的条目直到回到预算内（或自己已经为空），因此增长最快的缓存承担淘汰。
+ */
+public class ZWeightBudget {
+    private final long maxBytes;
+    private final AtomicLong usedBytes = new AtomicLong(0);
+
+    public ZWeightBudget(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public long getUsedBytes() {
+        return usedBytes.get();
+    }
+
+    boolean isExceeded() {
+        return usedBytes.get() > maxBytes;
+    }
+
+    void add(long bytes) {
+        if (bytes != 0) usedBytes.addAndGet(bytes);
+    }
+}
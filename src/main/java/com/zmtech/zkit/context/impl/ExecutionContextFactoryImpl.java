@@ -9,6 +9,7 @@ import com.zmtech.zkit.context.ExecutionContextFactory;
 import com.zmtech.zkit.entity.*;
 import com.zmtech.zkit.entity.impl.EntityFacadeImpl;
 import com.zmtech.zkit.l10n.L10nFacade;
+import com.zmtech.zkit.l10n.impl.L10nFacadeImpl;
 import com.zmtech.zkit.logger.LoggerFacade;
 import com.zmtech.zkit.logger.impl.LoggerFacadeImpl;
 import com.zmtech.zkit.resource.ResourceFacade;
@@ -491,6 +492,10 @@ public class ExecutionContextFactoryImpl implements ExecutionContextFactory {
 
     private void postFacadeInit() {
         entityFacade.postFacadeInit();
+        // l10n.message配置了refresh-after-write时，在workerPool中重新查询LocalizedMessage
+        cacheFacade.registerCacheLoader("l10n.message", L10nFacadeImpl.makeMessageLoader(this));
+        // l10n.message配置了snapshot时按LocalizedMessage的数据校验
+        cacheFacade.registerSnapshotHandler("l10n.message", entityFacade.getEntityCache().makeSnapshotHandler("moqui.basic.LocalizedMessage"));
 //        serviceFacade.postFacadeInit();
 
         // Run init() in ToolFactory implementations from tools.tool-factory elements
@@ -520,6 +525,9 @@ public class ExecutionContextFactoryImpl implements ExecutionContextFactory {
         // Warm cache on start if configured to do so
 //        if (confXmlRoot.first("cache-list").attribute("warm-on-start") != "false") warmCache()
 
+        // 从快照恢复配置了snapshot的缓存，在接受请求之前完成
+        cacheFacade.restoreSnapshots();
+
         // all config loaded, save memory by clearing the parsed MNode cache, especially for production mode
         MNode.clearParsedNodeCache();
         // bunch of junk in memory, trigger gc (to happen soon, when JVM decides, not immediate)
@@ -687,6 +695,13 @@ public class ExecutionContextFactoryImpl implements ExecutionContextFactory {
 //        } finally { if (enableAuthz) aefi.enableAuthz() }
 //        logger.info("ArtifactHitBins stored")
 
+        // 写入缓存快照，需要在数据源关闭之前
+        if (this.cacheFacade != null) {
+            try {
+                this.cacheFacade.shutdownSnapshots();
+            } catch (Throwable t) { logger.error("Error saving cache snapshots", t); }
+        }
+
         // shutdown scheduled executor and worker pools
 //        try {
 //            scheduledExecutor.shutdown()
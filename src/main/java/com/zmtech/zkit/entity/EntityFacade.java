@@ -131,6 +131,29 @@ public interface EntityFacade {
      */
     Connection getConnection(String groupName) throws EntityException;
 
+    /**
+     * 批量创建记录，与对每条记录调用EntityValue.create()相同，但连续的同一实体和有值字段相同的记录为一组（保持原来的顺序，
+     * 如先创建父记录），每组使用JDBC批处理插入，每批最多entity-facade.bulk-batch-size条记录；
+     * 实体缓存每个实体清除一次，EECA after规则在所有记录写入后执行。
+     * @param valueList 要创建的记录，可以是不同实体的
+     * @throws EntityException 实体操作异常
+     */
+    void createBulk(List<? extends EntityValue> valueList) throws EntityException;
+
+    /**
+     * 批量更新记录，与对每条记录调用EntityValue.update()相同，连续的同一实体和修改过的字段相同的记录为一组使用JDBC批处理，见createBulk。
+     * @param valueList 要更新的记录，可以是不同实体的
+     * @throws EntityException 实体操作异常
+     */
+    void updateBulk(List<? extends EntityValue> valueList) throws EntityException;
+
+    /**
+     * 批量删除记录，与对每条记录调用EntityValue.delete()相同，连续的同一实体的记录为一组使用JDBC批处理，见createBulk。
+     * @param valueList 要删除的记录，可以是不同实体的
+     * @throws EntityException 实体操作异常
+     */
+    void deleteBulk(List<? extends EntityValue> valueList) throws EntityException;
+
     // ======= 导入/导出（XML，CSV等）相关方法 ========
 
     /**
@@ -370,6 +370,17 @@ public interface EntityFind extends java.io.Serializable, SimpleEtl.Extractor {
      */
     Map<String, Object> oneMaster(String name) throws EntityException;
 
+    /**
+     * 按多个主键查找实体，与对每个主键调用condition(pkMap).one()的结果相同（使用这个find的useCache、forUpdate和disableAuthz设置），
+     * 但先从事务缓存和实体one缓存中查找，未命中的主键合并为WHERE pk IN (...)查询，每次最多entity-facade.find-many-chunk-size个主键，
+     * 查询结果按字段类型转换后的主键值匹配，放入one缓存；没有找到的主键只有在所在的查询没有返回记录时才作为空记录缓存。
+     * 这个find上的其他条件不使用。
+     * @param pkMaps 每个实体的主键字段值，其他字段忽略
+     * @return 找到的实体，按pkMaps的顺序，重复的主键（包括类型不同但转换后相同的值）只返回一次，没有找到的主键不在列表中
+     * @throws EntityException 实体操作错误
+     */
+    EntityList oneMany(Collection<? extends Map<String, ?>> pkMaps) throws EntityException;
+
     /**
      * 查找实体列表
      * @return 实体列表
@@ -159,6 +159,13 @@ public interface EntityList extends List<EntityValue>, Iterable<EntityValue>, Cl
 
     EntityList cloneList();
 
+    /** Create all values in this list with JDBC batch inserts, see EntityFacade.createBulk() */
+    void createBulk();
+    /** Update all values in this list with JDBC batch updates, see EntityFacade.updateBulk() */
+    void updateBulk();
+    /** Delete all values in this list with JDBC batch deletes, see EntityFacade.deleteBulk() */
+    void deleteBulk();
+
     void setFromCache();
     boolean isFromCache();
 }
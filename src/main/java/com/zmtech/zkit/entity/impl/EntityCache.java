@@ -2,9 +2,19 @@ package com.zmtech.zkit.entity.impl;
 
 
 import com.zmtech.zkit.cache.impl.CacheFacadeImpl;
+import com.zmtech.zkit.cache.impl.ZCache;
+import com.zmtech.zkit.cache.impl.ZSnapshotHandler;
+import com.zmtech.zkit.cache.impl.ZValueSerializer;
+import com.zmtech.zkit.cache.impl.ZWeigher;
+import com.zmtech.zkit.context.impl.ExecutionContextImpl;
 import com.zmtech.zkit.entity.EntityCondition;
 import com.zmtech.zkit.entity.EntityList;
 import com.zmtech.zkit.entity.EntityValue;
+import com.zmtech.zkit.entity.impl.condition.EntityConditionImplBase;
+import com.zmtech.zkit.entity.impl.condition.impl.FieldValueCondition;
+import com.zmtech.zkit.entity.impl.condition.impl.ListCondition;
+import com.zmtech.zkit.entity.impl.condition.impl.TrueCondition;
+import com.zmtech.zkit.transaction.TransactionFacade;
 import com.zmtech.zkit.util.MNode;
 import com.zmtech.zkit.util.SimpleTopic;
 import org.slf4j.Logger;
@@ -12,10 +22,17 @@ import org.slf4j.LoggerFactory;
 
 
 import javax.cache.Cache;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
 import java.io.*;
+import java.sql.Timestamp;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 public class EntityCache {
 
@@ -32,71 +49,418 @@ public class EntityCache {
     static final String listViewRaKeyBase = "entity.record.list_view_ra.";
     static final String countKeyBase = "entity.record.count.";
 
-    private Cache<String, Set<EntityCondition>> oneBfCache;
-    private final Map<String, List<String>> cachedListViewEntitiesByMember = new HashMap<>();
+    /**
+     * 实体名称 -> 没有结果（EmptyRecord）的one缓存条件的索引，这些条件不知道主键，不能使用RA缓存，修改记录时按字段值找到可能匹配的条件。
+     * 每个实体最多oneBfMaxSize个条件，超过时清除最早的条件和对应的缓存条目。
+     */
+    private final ConcurrentHashMap<String, EntityListCacheIndex> oneBfIndexByEntity = new ConcurrentHashMap<>();
+    private final int oneBfMaxSize;
+    /** 实体名称 -> cache-full-table实体的整表快照，记录修改时删除，下次查询时重新加载 */
+    private final ConcurrentHashMap<String, EntityTableSnapshot> tableSnapshotByEntity = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Object> tableSnapshotLoadLocks = new ConcurrentHashMap<>();
+    /** 记录数超过fullTableMaxRows的实体，不再尝试加载整表快照 */
+    private final Set<String> tableSnapshotTooLarge = ConcurrentHashMap.newKeySet();
+    private final int fullTableMaxRows;
+    /** 成员实体名称 -> 有list缓存的视图实体名称 */
+    private final ConcurrentHashMap<String, Set<String>> cachedListViewEntitiesByMember = new ConcurrentHashMap<>();
+    /** 实体名称 -> list缓存条件的倒排索引，只用于本地ZCache的list缓存 */
+    private final ConcurrentHashMap<String, EntityListCacheIndex> listCacheIndexByEntity = new ConcurrentHashMap<>();
+    /** 视图实体名称 -> 视图实体list缓存条件按字段别名的索引，只用于本地ZCache的list缓存 */
+    private final ConcurrentHashMap<String, EntityViewListCacheIndex> viewListCacheIndexByEntity = new ConcurrentHashMap<>();
+    /** 实体名称 -> 缓存代数，每次清除这个实体的缓存时增加；加载期间代数变化的结果不放入缓存 */
+    private final ConcurrentHashMap<String, AtomicLong> cacheGenerationByEntity = new ConcurrentHashMap<>();
+    /** 视图实体名称 -> 成员实体名称，视图实体的缓存代数为成员实体的代数之和 */
+    private final ConcurrentHashMap<String, String[]> viewMemberEntityNames = new ConcurrentHashMap<>();
+    /** 实体名称 -> 放入计数缓存的次数，用于判断提交前后是否有计数被加载（加载的可能已经是提交后的计数，不能再加减） */
+    private final ConcurrentHashMap<String, AtomicLong> countPutsByEntity = new ConcurrentHashMap<>();
+    /** 实体名称 -> 自适应缓存的统计和决定，只在cache-adaptive=true时使用 */
+    private final ConcurrentHashMap<String, EntityCacheStats> adaptiveStatsByEntity = new ConcurrentHashMap<>();
+    private final boolean adaptiveCache;
+    private final int adaptiveWindowReads;
+    private final double adaptiveMinHitRatio;
+    private final double adaptiveEnableRatio;
 
     private final boolean distributedCacheInvalidate;
     /** 实体缓存无效 Topic */
-    private SimpleTopic<EntityCacheInvalidate> entityCacheInvalidateTopic = null;
+    private SimpleTopic<EntityCacheInvalidateBatch> entityCacheInvalidateTopic = null;
+    /** 一个事务中一个实体修改的记录超过这个数量时（如批量导入），提交后清除这个实体的所有缓存，不逐条清除和发送 */
+    private final int dciMaxRecords;
+    private static final String INVALIDATE_SYNC_NAME = "EntityCacheInvalidateSynchronization";
+    private final ConcurrentLinkedQueue<EntityCacheInvalidateBatch> receivedBatchQueue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean receivedBatchDraining = new AtomicBoolean(false);
 
     public EntityCache(EntityFacadeImpl efi) {
         this.efi = efi;
         this.cfi = (CacheFacadeImpl)efi.ecfi.getCache();
 
-        oneBfCache = cfi.getCache("entity.record.one_bf");
+        // 配置了堆外存储的实体缓存，反序列化后需要重新关联EntityFacadeImpl
+        EntityValueSerializer valueSerializer = new EntityValueSerializer(efi);
+        cfi.registerValueSerializer(oneKeyBase, valueSerializer);
+        cfi.registerValueSerializer(listKeyBase, valueSerializer);
+        // 按字节限制的实体缓存按字段类型估算大小
+        EntityValueWeigher valueWeigher = new EntityValueWeigher();
+        cfi.registerWeigher(oneKeyBase, valueWeigher);
+        cfi.registerWeigher(listKeyBase, valueWeigher);
+        // 配置了snapshot的实体缓存，恢复时按记录数和最大lastUpdatedStamp校验
+        cfi.registerSnapshotHandler(oneKeyBase, new EntitySnapshotHandler(oneKeyBase, null));
+        cfi.registerSnapshotHandler(listKeyBase, new EntitySnapshotHandler(listKeyBase, null));
 
         MNode entityFacadeNode = efi.getEntityFacadeNode();
         distributedCacheInvalidate = entityFacadeNode.attribute("distributed-cache-invalidate").equals("true") && entityFacadeNode.attribute("dci-topic-factory") != null;
+        String dciMaxRecordsStr = entityFacadeNode.attribute("dci-max-records");
+        dciMaxRecords = dciMaxRecordsStr != null && !dciMaxRecordsStr.isEmpty() ? Integer.parseInt(dciMaxRecordsStr) : 1000;
+        String oneBfMaxSizeStr = entityFacadeNode.attribute("one-bf-max-size");
+        oneBfMaxSize = oneBfMaxSizeStr != null && !oneBfMaxSizeStr.isEmpty() ? Integer.parseInt(oneBfMaxSizeStr) : 10000;
+        String fullTableMaxRowsStr = entityFacadeNode.attribute("cache-full-table-max-rows");
+        fullTableMaxRows = fullTableMaxRowsStr != null && !fullTableMaxRowsStr.isEmpty() ? Integer.parseInt(fullTableMaxRowsStr) : 5000;
+        adaptiveCache = "true".equals(entityFacadeNode.attribute("cache-adaptive"));
+        String adaptiveWindowStr = entityFacadeNode.attribute("cache-adaptive-window");
+        adaptiveWindowReads = adaptiveWindowStr != null && !adaptiveWindowStr.isEmpty() ? Integer.parseInt(adaptiveWindowStr) : 1000;
+        String adaptiveMinHitRatioStr = entityFacadeNode.attribute("cache-adaptive-min-hit-ratio");
+        adaptiveMinHitRatio = adaptiveMinHitRatioStr != null && !adaptiveMinHitRatioStr.isEmpty() ? Double.parseDouble(adaptiveMinHitRatioStr) : 0.2;
+        String adaptiveEnableRatioStr = entityFacadeNode.attribute("cache-adaptive-enable-ratio");
+        adaptiveEnableRatio = adaptiveEnableRatioStr != null && !adaptiveEnableRatioStr.isEmpty() ? Double.parseDouble(adaptiveEnableRatioStr) : 20;
         logger.info("实体缓存信息: 实体缓存已经初始化完成, 分布式缓存未启用: "+distributedCacheInvalidate);
 
         if (distributedCacheInvalidate) {
             try {
                 String dciTopicFactory = entityFacadeNode.attribute("dci-topic-factory");
-                entityCacheInvalidateTopic = (SimpleTopic<EntityCacheInvalidate>) efi.ecfi.getTool(dciTopicFactory, SimpleTopic.class);
+                entityCacheInvalidateTopic = (SimpleTopic<EntityCacheInvalidateBatch>) efi.ecfi.getTool(dciTopicFactory, SimpleTopic.class);
             } catch (Exception e) {
                 logger.error("实体缓存错误: 实体分布式缓存已启用但初始化失败!", e);
             }
         }
     }
 
-    public static class EntityCacheInvalidate implements Externalizable {
-        boolean isCreate;
-        EntityValueBase evb;
+    /**
+     * 事务中的缓存清除：同一条记录的多次修改按主键合并为一条，提交后在本节点清除一次，分布式清除时作为一条消息发送，
+     * 回滚时丢弃。合并后的记录保留事务开始前的值（缓存中的是这些值）和最后的值。
+     * 事务中修改过的实体在这个事务中不使用缓存（见isPendingInvalidate），避免读到自己修改前的缓存或把未提交的值放入缓存。
+     */
+    class InvalidateSynchronization implements Synchronization {
+        private final LinkedHashMap<String, LinkedHashMap<Map<String, Object>, PendingRecord>> recordsByEntity = new LinkedHashMap<>();
+        private final LinkedHashSet<String> clearAllEntities = new LinkedHashSet<>();
+        /** 第一次修改实体时放入计数缓存的次数，提交后没有变化时计数缓存可以直接加减 */
+        private final HashMap<String, Long> countPutsAtFirstWrite = new HashMap<>();
 
-        public EntityCacheInvalidate() { }
+        synchronized void add(EntityValueBase evb, boolean isCreate, boolean isDelete, HashMap<String, Object> previousValueMap) {
+            String entityName = evb.getEntityDefinition().getFullEntityName();
+            if (clearAllEntities.contains(entityName)) return;
+            if (!countPutsAtFirstWrite.containsKey(entityName)) countPutsAtFirstWrite.put(entityName, getCountPuts(entityName).get());
+            LinkedHashMap<Map<String, Object>, PendingRecord> recordByPk = recordsByEntity.computeIfAbsent(entityName, k -> new LinkedHashMap<>());
+            Map<String, Object> pkMap = new HashMap<>(evb.getPrimaryKeys());
+            // delete时的值为删除前的记录值
+            HashMap<String, Object> values = isDelete && previousValueMap != null ? previousValueMap : new HashMap<>(evb.getValueMap());
+            PendingRecord record = recordByPk.get(pkMap);
+            if (record != null) {
+                record.deleted = isDelete;
+                record.values = values;
+            } else if (recordByPk.size() >= dciMaxRecords) {
+                recordsByEntity.remove(entityName);
+                clearAllEntities.add(entityName);
+            } else {
+                recordByPk.put(pkMap, new PendingRecord(isCreate, isDelete, values, previousValueMap));
+            }
+        }
 
-        EntityCacheInvalidate(EntityValueBase evb, boolean isCreate) {
-            this.isCreate = isCreate;
-            this.evb = evb;
+        synchronized boolean isPending(String fullEntityName) {
+            return recordsByEntity.containsKey(fullEntityName) || clearAllEntities.contains(fullEntityName);
         }
 
+        /** 提交后在本节点清除，事务中创建又删除的记录不影响缓存 */
+        synchronized void clearLocal() {
+            for (String entityName : clearAllEntities) {
+                try {
+                    clearAllCacheForEntity(efi.getEntityDefinition(entityName));
+                } catch (Throwable t) {
+                    logger.error("实体缓存错误: 实体" + entityName + "清除所有缓存时出错", t);
+                }
+            }
+            for (Map.Entry<String, LinkedHashMap<Map<String, Object>, PendingRecord>> entityEntry : recordsByEntity.entrySet()) {
+                EntityDefinition ed = efi.getEntityDefinition(entityEntry.getKey());
+                for (PendingRecord record : entityEntry.getValue().values()) {
+                    if (record.created && record.deleted) continue;
+                    EntityValueBase evb = (EntityValueBase) ed.makeEntityValue();
+                    evb.valueMapInternal.putAll(record.deleted && record.previousValueMap != null ? record.previousValueMap : record.values);
+                    clearCacheForValueActual(evb, record.created, record.deleted, record.previousValueMap,
+                            distributedCacheInvalidate ? -1 : countPutsAtFirstWrite.get(entityEntry.getKey()));
+                }
+            }
+        }
+
+        synchronized EntityCacheInvalidateBatch makeBatch() {
+            EntityCacheInvalidateBatch batch = new EntityCacheInvalidateBatch(cfi.getNodeId());
+            for (String entityName : clearAllEntities) {
+                EntityDefinition ed = efi.getEntityDefinition(entityName);
+                batch.entries.add(new EntityCacheInvalidateBatch.EntityEntry(entityName,
+                        EntityCacheInvalidateBatch.makeFieldHash(ed.entityInfo.allFieldInfoArray), true));
+            }
+            for (Map.Entry<String, LinkedHashMap<Map<String, Object>, PendingRecord>> entityEntry : recordsByEntity.entrySet()) {
+                String entityName = entityEntry.getKey();
+                FieldInfo[] fieldInfos = efi.getEntityDefinition(entityName).entityInfo.allFieldInfoArray;
+                EntityCacheInvalidateBatch.EntityEntry entry = new EntityCacheInvalidateBatch.EntityEntry(entityName,
+                        EntityCacheInvalidateBatch.makeFieldHash(fieldInfos), false);
+                for (PendingRecord record : entityEntry.getValue().values()) {
+                    // 事务中创建又删除的记录，其他节点的缓存不受影响
+                    if (record.created && record.deleted) continue;
+                    if (record.created) {
+                        entry.records.add(EntityCacheInvalidateBatch.makeRecord(fieldInfos, EntityCacheInvalidateBatch.CREATE, record.values, null));
+                    } else if (record.deleted) {
+                        entry.records.add(EntityCacheInvalidateBatch.makeRecord(fieldInfos, EntityCacheInvalidateBatch.DELETE,
+                                record.previousValueMap != null ? record.previousValueMap : record.values, record.previousValueMap));
+                    } else {
+                        entry.records.add(EntityCacheInvalidateBatch.makeRecord(fieldInfos, EntityCacheInvalidateBatch.UPDATE,
+                                record.values, record.previousValueMap));
+                    }
+                }
+                if (!entry.records.isEmpty()) batch.entries.add(entry);
+            }
+            return batch;
+        }
+
+        @Override
+        public void beforeCompletion() { }
+
+        @Override
+        public void afterCompletion(int status) {
+            if (status != Status.STATUS_COMMITTED) return;
+            clearLocal();
+            if (distributedCacheInvalidate && entityCacheInvalidateTopic != null) publishInvalidate(makeBatch());
+        }
+    }
+    static class PendingRecord {
+        /** 第一次修改是create，事务开始前没有这条记录 */
+        final boolean created;
+        boolean deleted;
+        HashMap<String, Object> values;
+        /** 事务开始前的记录值，created或不知道时为null */
+        final HashMap<String, Object> previousValueMap;
+
+        PendingRecord(boolean created, boolean deleted, HashMap<String, Object> values, HashMap<String, Object> previousValueMap) {
+            this.created = created;
+            this.deleted = deleted;
+            this.values = values;
+            this.previousValueMap = previousValueMap;
+        }
+    }
+
+    /** 实体one/list缓存的堆外存储序列化器，使用EntityValueBase/EntityListImpl的Externalizable实现 */
+    static class EntityValueSerializer extends ZValueSerializer.JavaSerializer<Object> {
+        private final EntityFacadeImpl efi;
+
+        EntityValueSerializer(EntityFacadeImpl efi) { this.efi = efi; }
+
         @Override
-        public void writeExternal(ObjectOutput out) throws IOException {
-            out.writeBoolean(isCreate);
-            // 本来可以更快,但不知道使用了哪个抽象类的impl：evb.writeExternal（out）,所以不行
-            out.writeObject(evb);
+        public Object deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+            Object value = super.deserialize(bytes);
+            if (value instanceof EntityValueBase) {
+                EntityValueBase evb = (EntityValueBase) value;
+                evb.setEntityFacade(efi);
+                evb.setFromCache();
+            } else if (value instanceof EntityListImpl) {
+                EntityListImpl eli = (EntityListImpl) value;
+                eli.setEntityFacade(efi);
+                eli.setFromCache();
+            }
+            return value;
         }
+    }
+
+    /**
+     * 实体one/list缓存的字节估算器：按FieldInfo的类型估算每个字段值的大小，列表为所有记录之和。
+     * 字段名是EntityDefinition共享的字符串，不计入；条件键按固定大小计算。
+     */
+    static class EntityValueWeigher implements ZWeigher<EntityCondition, Object> {
+        private static final int CONDITION_BYTES = 96;
+        private static final int VALUE_BYTES = 64;
+        private static final int MAP_ENTRY_BYTES = 40;
+        private static final int LIST_BYTES = 64;
 
         @Override
-        public void readExternal(ObjectInput objectInput) throws IOException, ClassNotFoundException {
-            isCreate = objectInput.readBoolean();
-            evb = (EntityValueBase) objectInput.readObject();
+        public int weigh(EntityCondition key, Object value) {
+            long size = CONDITION_BYTES;
+            if (value instanceof EntityValueBase) {
+                size += estimateValue((EntityValueBase) value);
+            } else if (value instanceof EntityListImpl) {
+                EntityListImpl eli = (EntityListImpl) value;
+                int listSize = eli.size();
+                size += LIST_BYTES + 4L * listSize;
+                for (int i = 0; i < listSize; i++) {
+                    EntityValue ev = eli.get(i);
+                    if (ev instanceof EntityValueBase) size += estimateValue((EntityValueBase) ev);
+                }
+            } else {
+                size += ZWeigher.ObjectWeigher.estimate(value);
+            }
+            return (int) Math.min(Integer.MAX_VALUE, size);
+        }
+
+        static long estimateValue(EntityValueBase evb) {
+            HashMap<String, Object> valueMap = evb.valueMapInternal;
+            long size = VALUE_BYTES + MAP_ENTRY_BYTES * (long) valueMap.size();
+            for (FieldInfo fi : evb.getEntityDefinition().entityInfo.allFieldInfoArray) {
+                Object fieldValue = valueMap.get(fi.name);
+                if (fieldValue != null) size += estimateField(fi.typeValue, fieldValue);
+            }
+            return size;
+        }
+
+        /** 按EntityFacadeImpl.getJavaTypeInt()的类型估算 */
+        private static long estimateField(int typeValue, Object fieldValue) {
+            switch (typeValue) {
+                case 2: case 3: case 4: case 14: return 32;
+                case 5: case 7: return 16;
+                case 6: case 8: return 24;
+                case 9: return 40;
+                case 10: return 0;
+                default: return ZWeigher.ObjectWeigher.estimate(fieldValue);
+            }
         }
     }
 
+    /**
+     * 实体缓存快照的校验：标记为实体的记录数和最大lastUpdatedStamp，停机期间新增、修改或删除记录都会使标记变化，整个快照丢弃。
+     * 视图实体和没有lastUpdatedStamp字段的实体不写快照。one/list缓存恢复的条目重新关联EntityFacadeImpl并注册RA。
+     */
+    class EntitySnapshotHandler implements ZSnapshotHandler<Object, Object> {
+        private final String cacheNamePrefix;
+        private final String entityName;
+
+        /** @param entityName 缓存不是按实体命名时（如l10n.message）校验的实体，为null时为缓存名称去掉cacheNamePrefix */
+        EntitySnapshotHandler(String cacheNamePrefix, String entityName) {
+            this.cacheNamePrefix = cacheNamePrefix;
+            this.entityName = entityName;
+        }
+
+        private String getEntityName(String cacheName) {
+            return entityName != null ? entityName : cacheName.substring(cacheNamePrefix.length());
+        }
+
+        @Override
+        public Object makeStamp(String cacheName) {
+            return makeEntityStamp(getEntityName(cacheName));
+        }
+
+        @Override
+        public boolean isValid(String cacheName, Object stamp) {
+            return stamp instanceof long[] && Arrays.equals((long[]) stamp, makeEntityStamp(getEntityName(cacheName)));
+        }
+
+        @Override
+        public Object onRestore(String cacheName, Object key, Object value) {
+            if (entityName != null || !(key instanceof EntityCondition)) return value;
+            EntityCondition ec = (EntityCondition) key;
+            if (value instanceof EntityValueBase) {
+                EntityValueBase evb = (EntityValueBase) value;
+                evb.setEntityFacade(efi);
+                evb.setFromCache();
+                // 空记录使用暴力缓存
+                registerCacheOneRa(getEntityName(cacheName), ec, evb instanceof EmptyRecord ? null : evb);
+            } else if (value instanceof EntityListImpl) {
+                EntityListImpl eli = (EntityListImpl) value;
+                eli.setEntityFacade(efi);
+                eli.setFromCache();
+                registerCacheListRa(getEntityName(cacheName), ec, eli);
+            }
+            return value;
+        }
+    }
+
+    /** 实体的记录数和最大lastUpdatedStamp，视图实体或没有lastUpdatedStamp字段时返回null */
+    long[] makeEntityStamp(String entityName) {
+        EntityDefinition ed;
+        try {
+            ed = efi.getEntityDefinition(entityName);
+        } catch (Exception e) {
+            return null;
+        }
+        if (ed == null || ed.isViewEntity || !ed.isField("lastUpdatedStamp")) return null;
+
+        boolean hadContext = efi.ecfi.getActiveContextMap().containsKey(Thread.currentThread().getId());
+        ExecutionContextImpl threadEci = efi.ecfi.getEci();
+        try {
+            long count = efi.find(entityName).useCache(false).disableAuthz().count();
+            EntityList lastList = efi.find(entityName).selectField("lastUpdatedStamp")
+                    .condition("lastUpdatedStamp", EntityCondition.IS_NOT_NULL, null).orderBy("-lastUpdatedStamp")
+                    .limit(1).useCache(false).disableAuthz().list();
+            Timestamp lastUpdatedStamp = lastList.isEmpty() ? null : (Timestamp) lastList.get(0).get("lastUpdatedStamp");
+            return new long[] { count, lastUpdatedStamp != null ? lastUpdatedStamp.getTime() : 0 };
+        } finally {
+            if (!hadContext) threadEci.destroy();
+        }
+    }
+
+    /** 按单个实体的数据校验的其他缓存（如l10n.message）使用的快照处理 */
+    public ZSnapshotHandler makeSnapshotHandler(String entityName) {
+        return new EntitySnapshotHandler(null, entityName);
+    }
+
     public static class EmptyRecord extends EntityValueImpl {
         public EmptyRecord() { }
         EmptyRecord(EntityDefinition ed, EntityFacadeImpl efip) { super(ed, efip); }
     }
 
+    /**
+     * 实体的缓存代数，在查询数据库之前调用，结果与查询结果一起传给putInOneCache/putInListCache/putInCountCache。
+     * 视图实体为所有成员实体的代数之和，代数只增加，任何一个成员实体清除缓存时和都会变化。
+     */
+    long getCacheGeneration(EntityDefinition ed) {
+        if (!ed.isViewEntity) return getGenerationCounter(ed.getFullEntityName()).get();
+        String[] memberNames = viewMemberEntityNames.get(ed.getFullEntityName());
+        if (memberNames == null) {
+            LinkedHashSet<String> memberNameSet = new LinkedHashSet<>();
+            for (MNode memberEntity : ed.getMemberEntityAliasMap().values()) {
+                EntityDefinition memberEd = efi.getEntityDefinition(memberEntity.attribute("entity-name"));
+                // 成员实体也可能是视图实体
+                if (memberEd.isViewEntity) memberNameSet.addAll(Arrays.asList(getViewMemberNames(memberEd)));
+                else memberNameSet.add(memberEd.getFullEntityName());
+            }
+            memberNames = memberNameSet.toArray(new String[0]);
+            viewMemberEntityNames.put(ed.getFullEntityName(), memberNames);
+        }
+        long generation = 0;
+        for (String memberName : memberNames) generation += getGenerationCounter(memberName).get();
+        return generation;
+    }
+    private String[] getViewMemberNames(EntityDefinition viewEd) {
+        getCacheGeneration(viewEd);
+        return viewMemberEntityNames.get(viewEd.getFullEntityName());
+    }
+    private AtomicLong getGenerationCounter(String fullEntityName) {
+        AtomicLong counter = cacheGenerationByEntity.get(fullEntityName);
+        if (counter == null) counter = cacheGenerationByEntity.computeIfAbsent(fullEntityName, k -> new AtomicLong());
+        return counter;
+    }
+    /** 在清除缓存之前调用；放入缓存的一方先放入再检查代数，两者配合保证加载期间的修改不会留下旧的缓存条目 */
+    private void incrementCacheGeneration(EntityDefinition ed) {
+        getGenerationCounter(ed.getFullEntityName()).incrementAndGet();
+    }
+    private AtomicLong getCountPuts(String fullEntityName) {
+        AtomicLong counter = countPutsByEntity.get(fullEntityName);
+        if (counter == null) counter = countPutsByEntity.computeIfAbsent(fullEntityName, k -> new AtomicLong());
+        return counter;
+    }
+    private boolean isGenerationCurrent(EntityDefinition ed, long generation) {
+        return getCacheGeneration(ed) == generation;
+    }
+
     void putInOneCache(EntityDefinition ed, EntityCondition whereCondition, EntityValueBase newEntityValue,
                        Cache<EntityCondition, EntityValueBase> entityOneCache) {
         if (entityOneCache == null) entityOneCache = ed.getCacheOne(this);
 
         if (newEntityValue != null) newEntityValue.setFromCache();
-        entityOneCache.put(whereCondition, newEntityValue != null ? newEntityValue : new EmptyRecord(ed, efi));
-        // 需要注册RA，以防条件不是主键
+        // 需要注册RA，以防条件不是主键；先注册再放入缓存，放入之后的修改都能找到这个条件
         registerCacheOneRa(ed.getFullEntityName(), whereCondition, newEntityValue);
+        entityOneCache.put(whereCondition, newEntityValue != null ? newEntityValue : new EmptyRecord(ed, efi));
+    }
+    /** 查询数据库之前用getCacheGeneration取得generation，查询期间实体的缓存被清除过时不放入缓存 */
+    void putInOneCache(EntityDefinition ed, EntityCondition whereCondition, EntityValueBase newEntityValue,
+                       Cache<EntityCondition, EntityValueBase> entityOneCache, long generation) {
+        if (!isGenerationCurrent(ed, generation)) return;
+        if (entityOneCache == null) entityOneCache = ed.getCacheOne(this);
+        putInOneCache(ed, whereCondition, newEntityValue, entityOneCache);
+        // 检查之后、放入之前可能有清除，放入之后再检查一次
+        if (!isGenerationCurrent(ed, generation)) entityOneCache.remove(whereCondition);
     }
 
     EntityListImpl getFromListCache(EntityDefinition ed, EntityCondition whereCondition, List<String> orderByList,
@@ -105,19 +469,133 @@ public class EntityCache {
         if (entityListCache == null) entityListCache = ed.getCacheList(this);
 
         EntityListImpl cacheHit = entityListCache.get(whereCondition);
-        if (cacheHit != null && orderByList != null && orderByList.size() > 0) cacheHit.orderByFields(orderByList);
+        // 缓存中的列表是共用的，不在原列表上排序，每种orderBy的排序结果保存在列表中
+        if (cacheHit != null) cacheHit = cacheHit.getOrderedFromCache(orderByList);
         return cacheHit;
     }
     void putInListCache(EntityDefinition ed, EntityListImpl el, EntityCondition whereCondition,
                         Cache<EntityCondition, EntityListImpl> entityListCache) {
+        putInListCache(ed, el, whereCondition, null, entityListCache);
+    }
+    /** @param orderByList el查询时的排序字段，同样排序的缓存命中不需要再排序 */
+    void putInListCache(EntityDefinition ed, EntityListImpl el, EntityCondition whereCondition, List<String> orderByList,
+                        Cache<EntityCondition, EntityListImpl> entityListCache) {
         if (whereCondition == null) return;
         if (entityListCache == null) entityListCache = ed.getCacheList(this);
 
         // EntityList elToCache = el != null ? el : EntityListImpl.EMPTY
         EntityListImpl elToCache = el != null ? el : efi.getEmptyList();
+        if (el != null) el.setCacheOrderBy(orderByList);
         elToCache.setFromCache();
-        entityListCache.put(whereCondition, elToCache);
+        // 先注册RA和索引再放入缓存，放入之后的修改都能找到这个条件
         registerCacheListRa(ed.getFullEntityName(), whereCondition, elToCache);
+        entityListCache.put(whereCondition, elToCache);
+    }
+    /** 与putInOneCache(..., generation)相同，查询期间实体的缓存被清除过时不放入缓存 */
+    void putInListCache(EntityDefinition ed, EntityListImpl el, EntityCondition whereCondition, List<String> orderByList,
+                        Cache<EntityCondition, EntityListImpl> entityListCache, long generation) {
+        if (whereCondition == null || !isGenerationCurrent(ed, generation)) return;
+        if (entityListCache == null) entityListCache = ed.getCacheList(this);
+        putInListCache(ed, el, whereCondition, orderByList, entityListCache);
+        if (!isGenerationCurrent(ed, generation)) entityListCache.remove(whereCondition);
+    }
+    void putInCountCache(EntityDefinition ed, EntityCondition whereCondition, Long count,
+                         Cache<EntityCondition, Long> entityCountCache, long generation) {
+        if (!isGenerationCurrent(ed, generation)) return;
+        if (entityCountCache == null) entityCountCache = ed.getCacheCount(this);
+        getCountPuts(ed.getFullEntityName()).incrementAndGet();
+        entityCountCache.put(whereCondition, count);
+        if (!isGenerationCurrent(ed, generation)) entityCountCache.remove(whereCondition);
+    }
+
+    /**
+     * cache-full-table实体的整表快照，没有时加载（同一个实体只有一个线程加载）。
+     * 记录数超过cache-full-table-max-rows时返回null并记录警告，调用方按普通的one/list/count缓存处理。
+     */
+    EntityTableSnapshot getTableSnapshot(EntityDefinition ed) {
+        String entityName = ed.getFullEntityName();
+        EntityTableSnapshot snapshot = tableSnapshotByEntity.get(entityName);
+        if (snapshot != null || tableSnapshotTooLarge.contains(entityName)) return snapshot;
+        synchronized (tableSnapshotLoadLocks.computeIfAbsent(entityName, k -> new Object())) {
+            snapshot = tableSnapshotByEntity.get(entityName);
+            if (snapshot != null) return snapshot;
+
+            long generation = getCacheGeneration(ed);
+            EntityList el = efi.find(entityName).useCache(false).disableAuthz().limit(fullTableMaxRows + 1).list();
+            if (el.size() > fullTableMaxRows) {
+                logger.warn("实体缓存警告: 实体 [" + entityName + "] 的记录数超过 " + fullTableMaxRows + ", 不使用整表缓存(cache-full-table)");
+                tableSnapshotTooLarge.add(entityName);
+                return null;
+            }
+            snapshot = new EntityTableSnapshot(ed, el);
+            // 与one/list缓存相同，加载期间有修改时不保存，这次查询仍然使用加载的快照
+            if (isGenerationCurrent(ed, generation)) {
+                tableSnapshotByEntity.put(entityName, snapshot);
+                if (!isGenerationCurrent(ed, generation)) tableSnapshotByEntity.remove(entityName, snapshot);
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * one缓存未命中时加载并放入缓存；本地ZCache中同一个条件的并发未命中合并为一次数据库查询，
+     * 其他线程等待并使用同一个结果。分布式缓存等其他实现直接查询后放入缓存。
+     */
+    EntityValueBase loadOneCache(EntityDefinition ed, EntityCondition whereCondition,
+                                 Cache<EntityCondition, EntityValueBase> entityOneCache, Supplier<EntityValueBase> loader) {
+        if (entityOneCache == null) entityOneCache = ed.getCacheOne(this);
+        if (!(entityOneCache instanceof ZCache)) {
+            long generation = getCacheGeneration(ed);
+            EntityValueBase newEntityValue = loader.get();
+            putInOneCache(ed, whereCondition, newEntityValue, entityOneCache, generation);
+            return newEntityValue;
+        }
+
+        long[] loadedGeneration = new long[1];
+        boolean[] loadedHere = new boolean[1];
+        EntityValueBase loaded = ((ZCache<EntityCondition, EntityValueBase>) entityOneCache).computeIfAbsent(whereCondition, cond -> {
+            loadedHere[0] = true;
+            loadedGeneration[0] = getCacheGeneration(ed);
+            EntityValueBase newEntityValue = loader.get();
+            if (newEntityValue != null) newEntityValue.setFromCache();
+            registerCacheOneRa(ed.getFullEntityName(), cond, newEntityValue);
+            return newEntityValue != null ? newEntityValue : new EmptyRecord(ed, efi);
+        });
+        // computeIfAbsent总是放入缓存，加载期间实体的缓存被清除过时再删除，结果仍然返回给等待的线程
+        if (loadedHere[0] && !isGenerationCurrent(ed, loadedGeneration[0])) entityOneCache.remove(whereCondition);
+        return loaded instanceof EmptyRecord ? null : loaded;
+    }
+
+    /**
+     * list缓存未命中时加载并放入缓存，并发未命中的处理与loadOneCache相同；
+     * 等待其他线程加载结果时，返回按本次查询的orderByList排序的只读列表（见EntityListImpl.getOrderedFromCache）。
+     */
+    EntityListImpl loadListCache(EntityDefinition ed, EntityCondition whereCondition, List<String> orderByList,
+                                 Cache<EntityCondition, EntityListImpl> entityListCache, Supplier<EntityListImpl> loader) {
+        if (entityListCache == null) entityListCache = ed.getCacheList(this);
+        if (!(entityListCache instanceof ZCache)) {
+            long generation = getCacheGeneration(ed);
+            EntityListImpl el = loader.get();
+            putInListCache(ed, el, whereCondition, orderByList, entityListCache, generation);
+            return el;
+        }
+
+        long[] loadedGeneration = new long[1];
+        boolean[] loadedHere = new boolean[1];
+        EntityListImpl loaded = ((ZCache<EntityCondition, EntityListImpl>) entityListCache).computeIfAbsent(whereCondition, cond -> {
+            loadedHere[0] = true;
+            loadedGeneration[0] = getCacheGeneration(ed);
+            EntityListImpl el = loader.get();
+            EntityListImpl elToCache = el != null ? el : efi.getEmptyList();
+            if (el != null) el.setCacheOrderBy(orderByList);
+            elToCache.setFromCache();
+            registerCacheListRa(ed.getFullEntityName(), cond, elToCache);
+            return elToCache;
+        });
+        if (loadedHere[0] && !isGenerationCurrent(ed, loadedGeneration[0])) entityListCache.remove(whereCondition);
+        // 其他线程加载的列表可能是按其他orderBy查询的
+        if (!loadedHere[0]) loaded = loaded.getOrderedFromCache(orderByList);
+        return loaded;
     }
     /*
     Long getFromCountCache(EntityDefinition ed, EntityCondition whereCondition, Cache<EntityCondition, Long> entityCountCache) {
@@ -126,29 +604,241 @@ public class EntityCache {
     }
     */
 
-    /** 从EntityValueBase调用 */
-    void clearCacheForValue(EntityValueBase evb, boolean isCreate) {
+    /**
+     * 从EntityValueBase调用，isCreate和isDelete都为false时是update。
+     * 事务中的修改在提交后清除（见InvalidateSynchronization），没有事务（或事务已经标记回滚）时立即清除。
+     */
+    void clearCacheForValue(EntityValueBase evb, boolean isCreate, boolean isDelete) {
         if (evb == null) return;
         EntityDefinition ed = evb.getEntityDefinition();
         if (ed.entityInfo.neverCache) return;
 
         // String entityName = evb.getEntityName()
         // if (!entityName.startsWith("moqui.")) logger.info("========== ========== ========== clearCacheForValue ${entityName}")
+        HashMap<String, Object> previousValueMap = isCreate ? null : evb.getPreviousValueMap(!isDelete);
+        TransactionFacade transactionFacade = efi.ecfi.getTransaction();
+        if (transactionFacade.getStatus() == Status.STATUS_ACTIVE) {
+            InvalidateSynchronization sync = (InvalidateSynchronization) transactionFacade.getActiveSynchronization(INVALIDATE_SYNC_NAME);
+            if (sync == null) {
+                sync = new InvalidateSynchronization();
+                transactionFacade.putAndEnlistActiveSynchronization(INVALIDATE_SYNC_NAME, sync);
+            }
+            sync.add(evb, isCreate, isDelete, previousValueMap);
+            return;
+        }
+
+        // 本节点直接清除，其他节点通过topic清除并忽略本节点发出的消息
+        // 修改已经写入数据库，之后加载的计数可能已经包括这个修改，只清除不调整计数
+        clearCacheForValueActual(evb, isCreate, isDelete, previousValueMap, -1);
         if (distributedCacheInvalidate && entityCacheInvalidateTopic != null) {
-            // 注意:对几乎所有实体的CrUD操作，这需要完成很多并且需要一些时间来运行
-            // 注意: 将许多实体设置为永不缓存
             // 注意：当缓存不存在且未在view-entity时，无法避免消息，因为它可能位于另一台服务器上
-            EntityCacheInvalidate eci = new EntityCacheInvalidate(evb, isCreate);
-            entityCacheInvalidateTopic.publish(eci);
-        } else {
-            clearCacheForValueActual(evb, isCreate);
+            InvalidateSynchronization single = new InvalidateSynchronization();
+            single.add(evb, isCreate, isDelete, previousValueMap);
+            publishInvalidate(single.makeBatch());
+        }
+    }
+
+    /**
+     * 批量写入（EntityFacade.createBulk等）的一组同一实体的记录，与逐条调用clearCacheForValue相同，
+     * 但事务同步只查找一次；没有事务时记录数达到dci-max-records清除这个实体的所有缓存，其他节点只发送一条清除消息。
+     */
+    void clearCacheForValues(EntityDefinition ed, List<EntityValueBase> evbList, boolean isCreate, boolean isDelete) {
+        if (evbList == null || evbList.isEmpty() || ed.entityInfo.neverCache) return;
+
+        TransactionFacade transactionFacade = efi.ecfi.getTransaction();
+        if (transactionFacade.getStatus() == Status.STATUS_ACTIVE) {
+            InvalidateSynchronization sync = (InvalidateSynchronization) transactionFacade.getActiveSynchronization(INVALIDATE_SYNC_NAME);
+            if (sync == null) {
+                sync = new InvalidateSynchronization();
+                transactionFacade.putAndEnlistActiveSynchronization(INVALIDATE_SYNC_NAME, sync);
+            }
+            for (EntityValueBase evb : evbList) sync.add(evb, isCreate, isDelete, isCreate ? null : evb.getPreviousValueMap(!isDelete));
+            return;
+        }
+
+        boolean clearAll = evbList.size() >= dciMaxRecords;
+        InvalidateSynchronization batchSync = distributedCacheInvalidate && entityCacheInvalidateTopic != null ? new InvalidateSynchronization() : null;
+        if (clearAll) clearAllCacheForEntity(ed);
+        for (EntityValueBase evb : evbList) {
+            HashMap<String, Object> previousValueMap = isCreate ? null : evb.getPreviousValueMap(!isDelete);
+            if (!clearAll) clearCacheForValueActual(evb, isCreate, isDelete, previousValueMap, -1);
+            if (batchSync != null) batchSync.add(evb, isCreate, isDelete, previousValueMap);
+        }
+        if (batchSync != null) publishInvalidate(batchSync.makeBatch());
+    }
+
+    /**
+     * 自适应缓存中实体的统计，没有启用cache-adaptive或实体不使用自适应缓存（EntityInfo.cacheAdaptive）时返回null。
+     * 实体定义cache=true时开始使用缓存，否则开始不使用，之后按统计决定。
+     */
+    EntityCacheStats getAdaptiveStats(EntityDefinition ed) {
+        if (!adaptiveCache || !ed.entityInfo.cacheAdaptive) return null;
+        EntityCacheStats stats = adaptiveStatsByEntity.get(ed.getFullEntityName());
+        if (stats != null) return stats;
+        return adaptiveStatsByEntity.computeIfAbsent(ed.getFullEntityName(), name -> new EntityCacheStats(this, name,
+                "true".equals(ed.entityInfo.useCache), adaptiveWindowReads, adaptiveMinHitRatio, adaptiveEnableRatio));
+    }
+    /** 所有使用自适应缓存的实体的统计，名称与filterRegexp匹配的，见CacheFacadeImpl.getAllCachesInfo */
+    public List<Map<String, Object>> getAdaptiveCacheInfo(String filterRegexp) {
+        boolean hasFilterRegexp = filterRegexp != null && filterRegexp.length() > 0;
+        List<Map<String, Object>> infoList = new ArrayList<>();
+        for (EntityCacheStats stats : adaptiveStatsByEntity.values()) {
+            for (Map<String, Object> info : stats.getInfoList()) {
+                if (hasFilterRegexp && !((String) info.get("name")).matches("(?i).*" + filterRegexp + ".*")) continue;
+                infoList.add(info);
+            }
+        }
+        return infoList;
+    }
+    /** 自适应缓存停止使用实体的one、list或count缓存时清除已有的条目（EntityCacheStats.ONE/LIST/COUNT） */
+    void clearCacheKindForEntity(String entityName, int cacheKind) {
+        EntityDefinition ed = efi.getEntityDefinition(entityName);
+        if (ed == null) return;
+        incrementCacheGeneration(ed);
+        ConcurrentMap<String, Cache> localCacheMap = cfi.localCacheMap;
+        if (cacheKind == EntityCacheStats.ONE && localCacheMap.containsKey(oneKeyBase.concat(entityName))) {
+            ed.getCacheOne(this).clear();
+            ed.getCacheOneRa(this).clear();
+            oneBfIndexByEntity.remove(entityName);
+        } else if (cacheKind == EntityCacheStats.LIST && localCacheMap.containsKey(listKeyBase.concat(entityName))) {
+            ed.getCacheList(this).clear();
+            ed.getCacheListRa(this).clear();
+        } else if (cacheKind == EntityCacheStats.COUNT && localCacheMap.containsKey(countKeyBase.concat(entityName))) {
+            ed.getCacheCount(this).clear();
+        }
+    }
+
+    /**
+     * 当前事务中是否修改过这个实体（视图实体为任何一个成员实体）且还没有提交，是时查询不使用缓存：
+     * 缓存要到提交后才清除，其中可能是修改前的值，这个事务查询到的未提交的值也不能放入缓存。
+     */
+    boolean isPendingInvalidate(EntityDefinition ed) {
+        TransactionFacade transactionFacade = efi.ecfi.getTransaction();
+        InvalidateSynchronization sync = (InvalidateSynchronization) transactionFacade.getActiveSynchronization(INVALIDATE_SYNC_NAME);
+        if (sync == null) return false;
+        if (!ed.isViewEntity) return sync.isPending(ed.getFullEntityName());
+        for (String memberName : getViewMemberNames(ed)) if (sync.isPending(memberName)) return true;
+        return false;
+    }
+
+    private void publishInvalidate(EntityCacheInvalidateBatch batch) {
+        if (batch.entries.isEmpty()) return;
+        try {
+            entityCacheInvalidateTopic.publish(batch);
+        } catch (Throwable t) {
+            logger.error("实体缓存错误: 发送分布式缓存清除消息失败, 记录数: " + batch.getRecordCount(), t);
         }
     }
-    /** 实际缓存是否清除，或通过 topic 直接调用或者分布调用*/
-    private void clearCacheForValueActual(EntityValueBase evb, boolean isCreate) {
+
+    /**
+     * 主题的订阅者收到其他节点的实体缓存清除消息时调用，本节点发出的消息忽略（修改时已经清除）。
+     * 同时收到的多条消息由一个线程一起处理，相同的记录只清除一次，清除整个实体的消息覆盖这个实体的其他记录。
+     */
+    public void receiveCacheInvalidate(EntityCacheInvalidateBatch batch) {
+        if (batch == null || cfi.getNodeId().equals(batch.getSourceNodeId())) return;
+        receivedBatchQueue.add(batch);
+        while (!receivedBatchQueue.isEmpty() && receivedBatchDraining.compareAndSet(false, true)) {
+            try {
+                processReceivedBatches();
+            } finally {
+                receivedBatchDraining.set(false);
+            }
+        }
+    }
+    private void processReceivedBatches() {
+        LinkedHashSet<String> clearAllEntities = new LinkedHashSet<>();
+        LinkedHashMap<String, LinkedHashSet<EntityCacheInvalidateBatch.RecordEntry>> recordsByEntity = new LinkedHashMap<>();
+        EntityCacheInvalidateBatch batch;
+        while ((batch = receivedBatchQueue.poll()) != null) {
+            for (EntityCacheInvalidateBatch.EntityEntry entry : batch.entries) {
+                String entityName = entry.entityName;
+                if (clearAllEntities.contains(entityName)) continue;
+                EntityDefinition ed = efi.getEntityDefinition(entityName);
+                if (ed == null) continue;
+                boolean fieldsMatch = entry.fieldHash == EntityCacheInvalidateBatch.makeFieldHash(ed.entityInfo.allFieldInfoArray);
+                if (!fieldsMatch) logger.warn("实体缓存警告: 实体 [" + entityName + "] 的字段与发送节点不同, 清除这个实体的所有缓存");
+                if (entry.clearAll || !fieldsMatch) {
+                    clearAllEntities.add(entityName);
+                    recordsByEntity.remove(entityName);
+                    continue;
+                }
+                recordsByEntity.computeIfAbsent(entityName, k -> new LinkedHashSet<>()).addAll(entry.records);
+            }
+        }
+
+        for (String entityName : clearAllEntities) {
+            try {
+                clearAllCacheForEntity(efi.getEntityDefinition(entityName));
+            } catch (Throwable t) {
+                logger.error("实体缓存错误: 实体" + entityName + "清除所有缓存时出错", t);
+            }
+        }
+        for (Map.Entry<String, LinkedHashSet<EntityCacheInvalidateBatch.RecordEntry>> entityEntry : recordsByEntity.entrySet()) {
+            EntityDefinition ed = efi.getEntityDefinition(entityEntry.getKey());
+            FieldInfo[] fieldInfos = ed.entityInfo.allFieldInfoArray;
+            for (EntityCacheInvalidateBatch.RecordEntry record : entityEntry.getValue()) {
+                EntityValueBase evb = (EntityValueBase) ed.makeEntityValue();
+                evb.valueMapInternal.putAll(record.getValueMap(fieldInfos));
+                boolean isCreate = record.type == EntityCacheInvalidateBatch.CREATE;
+                boolean isDelete = record.type == EntityCacheInvalidateBatch.DELETE;
+                clearCacheForValueActual(evb, isCreate, isDelete, isCreate ? null : record.getPreviousValueMap(fieldInfos), -1);
+            }
+        }
+    }
+
+    /** 清除实体的one/list/count缓存和包含这个实体的视图实体的缓存，用于不能逐条清除的情况 */
+    void clearAllCacheForEntity(EntityDefinition ed) {
+        long startNanos = System.nanoTime();
+        incrementCacheGeneration(ed);
+        String fullEntityName = ed.getFullEntityName();
+        tableSnapshotByEntity.remove(fullEntityName);
+        ConcurrentMap<String, Cache> localCacheMap = cfi.localCacheMap;
+        if (localCacheMap.containsKey(oneKeyBase.concat(fullEntityName))) {
+            ed.getCacheOne(this).clear();
+            ed.getCacheOneRa(this).clear();
+            oneBfIndexByEntity.remove(fullEntityName);
+        }
+        if (localCacheMap.containsKey(oneViewRaKeyBase.concat(fullEntityName))) {
+            Cache<EntityCondition, Set<ViewRaKey>> oneViewRaCache = ed.getCacheOneViewRa(this);
+            for (Cache.Entry<EntityCondition, Set<ViewRaKey>> entry : oneViewRaCache) {
+                if (entry == null) continue;
+                for (ViewRaKey raKey : entry.getValue()) efi.getEntityDefinition(raKey.entityName).getCacheOne(this).remove(raKey.ec);
+            }
+            oneViewRaCache.clear();
+        }
+        if (localCacheMap.containsKey(listKeyBase.concat(fullEntityName))) {
+            ed.getCacheList(this).clear();
+            ed.getCacheListRa(this).clear();
+            Cache<EntityCondition, Set<ViewRaKey>> listViewRaCache = ed.getCacheListViewRa(this);
+            for (Cache.Entry<EntityCondition, Set<ViewRaKey>> entry : listViewRaCache) {
+                if (entry == null) continue;
+                for (ViewRaKey raKey : entry.getValue()) efi.getEntityDefinition(raKey.entityName).getCacheList(this).remove(raKey.ec);
+            }
+            listViewRaCache.clear();
+        }
+        Set<String> cachedViewEntityNames = cachedListViewEntitiesByMember.get(fullEntityName);
+        if (cachedViewEntityNames != null) {
+            for (String viewEntityName : cachedViewEntityNames) efi.getEntityDefinition(viewEntityName).getCacheList(this).clear();
+        }
+        if (localCacheMap.containsKey(countKeyBase.concat(fullEntityName))) ed.getCacheCount(this).clear();
+        EntityCacheStats adaptiveStats = getAdaptiveStats(ed);
+        if (adaptiveStats != null) adaptiveStats.recordWrite(System.nanoTime() - startNanos);
+    }
+    /**
+     * 实际缓存是否清除，或通过 topic 直接调用或者分布调用；
+     * countPutsBefore为修改写入数据库之前放入计数缓存的次数，之后没有放入过时计数缓存直接加减，为-1时只清除
+     */
+    private void clearCacheForValueActual(EntityValueBase evb, boolean isCreate, boolean isDelete, Map<String, Object> previousValueMap,
+                                          long countPutsBefore) {
         // logger.info("====== clearCacheForValueActual isCreate=${isCreate}, evb: ${evb}")
+        long startNanos = System.nanoTime();
+        EntityCacheStats adaptiveStats = null;
         try {
             EntityDefinition ed = evb.getEntityDefinition();
+            adaptiveStats = getAdaptiveStats(ed);
+            // 先增加代数再清除，正在加载的结果不会放入缓存（或放入后被删除）
+            incrementCacheGeneration(ed);
+            if (ed.entityInfo.cacheFullTable) tableSnapshotByEntity.remove(ed.getFullEntityName());
             // 使用getValueMap而不用getMap，更快，我们不想缓存本地化的值/等
             Map<String,Object> evbMap = evb.getValueMap();
             // 在clearCacheForValue（）中检查：if（'never'.equals（ed.getUseCache（）））返回
@@ -179,17 +869,13 @@ public class EntityCache {
                     // 我们已经清除了所指的所有条目，所以也要清理它
                     oneRaCache.remove(pkCondition);
                 }
-                // 使用bf（强力）匹配查看是否存在任何没有结果的缓存条目
-                Set<EntityCondition> bfKeySet = oneBfCache.get(fullEntityName);
-                if (bfKeySet != null && bfKeySet.size() > 0) {
-                    ArrayList<EntityCondition> keysToRemove = new ArrayList<>();
-                    for (EntityCondition bfKey : bfKeySet) {
-                        if (bfKey.mapMatches(evbMap)) keysToRemove.add(bfKey);
-                    }
-                    for (EntityCondition key : keysToRemove) {
-                        entityOneCache.remove(key);
-                        bfKeySet.remove(key);
+                // 查看是否有与这条记录匹配的没有结果的缓存条目，只检查索引中字段值相同的条件和不能索引的条件
+                EntityListCacheIndex bfIndex = oneBfIndexByEntity.get(fullEntityName);
+                if (bfIndex != null && bfIndex.size() > 0) {
+                    for (EntityCondition bfKey : bfIndex.getCandidates(evbMap)) {
+                        if (bfKey.mapMatches(evbMap)) removeFromListCache(entityOneCache, bfIndex, bfKey);
                     }
+                    if (entityOneCache instanceof ZCache) bfIndex.pruneIfNeeded(entityOneCache, ((ZCache) entityOneCache).size());
                 }
             }
 
@@ -219,33 +905,11 @@ public class EntityCache {
                 if (pkCondition == null) pkCondition = efi.getConditionFactory().makeCondition(evb.getPrimaryKeys());
 
                 Cache<EntityCondition, EntityListImpl> entityListCache = ed.getCacheList(this);
+                EntityListCacheIndex listCacheIndex = entityListCache instanceof ZCache ? listCacheIndexByEntity.get(fullEntityName) : null;
+                clearListCache(entityListCache, listCacheIndex, isCreate ? null : ed.getCacheListRa(this), evbMap, pkCondition);
 
-                // 如果是创建RA缓存是不行的，所以请通过EACH条目查看它是否与创建的值匹配RA缓存不适用于更新字段不匹配的存在记录.
-                // 在最初完成缓存列表查找时查找条件，但随后更新以使字段匹配
-                for (Cache.Entry<EntityCondition, EntityListImpl> entry : entityListCache) {
-                    EntityCondition ec = entry.getKey();
-                    // 有效清除这些RA缓存的方法有哪些？ 现在只是放着，最后最终处理
-                    if (ec.mapMatches(evbMap)) entityListCache.remove(ec);
-                }
-
-                // 如果更新，还要检查反向关联（RA），因为上面的条件检查可能与新值或部分更新的记录不匹配
+                // 如果更新，列表视图RA缓存同样按反向关联清除
                 if (!isCreate) {
-                    // 首先只列出RA缓存
-                    Cache<EntityCondition, Set<EntityCondition>> listRaCache = ed.getCacheListRa(this);
-                    // logger.warn("============= clearing list for entity ${fullEntityName}, for pkCondition [${pkCondition}] listRaCache=${listRaCache}")
-                    Set<EntityCondition> raKeyList = listRaCache.get(pkCondition);
-                    if (raKeyList != null) {
-                        // logger.warn("============= for entity ${fullEntityName}, for pkCondition [${pkCondition}], raKeyList for clear=${raKeyList}")
-                        for (EntityCondition raKey : raKeyList) {
-                            // logger.warn("============= for entity ${fullEntityName}, removing raKey=${raKey} from ${entityListCache.getName()}")
-                            // 这可能已经被清除，需要用些时间检查确定已经被清除
-                            entityListCache.remove(raKey);
-                        }
-                        // 我们已经清除了所指的所有条目，所以也要清理它
-                        listRaCache.remove(pkCondition);
-                    }
-
-                    // 现在列表视图RA缓存同样处理
                     Cache<EntityCondition, Set<ViewRaKey>> listViewRaCache = ed.getCacheListViewRa(this);
                     // logger.warn("============= clearing view list for entity ${fullEntityName}, for pkCondition [${pkCondition}] listViewRaCache=${listViewRaCache}")
                     Set<ViewRaKey> listViewRaKeyList = listViewRaCache.get(pkCondition);
@@ -265,46 +929,14 @@ public class EntityCache {
             }
 
             // 查看此实体是否是缓存视图实体的成员
-            List<String> cachedViewEntityNames = cachedListViewEntitiesByMember.get(fullEntityName);
+            Set<String> cachedViewEntityNames = cachedListViewEntitiesByMember.get(fullEntityName);
             if (cachedViewEntityNames != null) {
-                synchronized (cachedViewEntityNames) {
-                    for (String viewEntityName : cachedViewEntityNames) {
-                        // logger.warn("Found ${cachedViewEntityName} as a cached view-entity for member ${fullEntityName}")
-
-                        EntityDefinition viewEd = efi.getEntityDefinition(viewEntityName);
-
-                        // 通常匹配成员实体句柄情况下的字段的视图实体别名，其中当前记录（evbMap）具有来自view-entity的一些键但不是全部（如UserPermissionCheck）
-                        Map<String, Object> viewMatchMap = new HashMap<>();
-                        Map<String, ArrayList<MNode>> memberFieldAliases = viewEd.getMemberFieldAliases(fullEntityName);
-                        for (Map.Entry<String, ArrayList<MNode>> mfAliasEntry : memberFieldAliases.entrySet()) {
-                            String fieldName = mfAliasEntry.getKey();
-                            if (!evbMap.containsKey(fieldName)) continue;
-                            Object fieldValue = evbMap.get(fieldName);
-                            ArrayList<MNode> aliasNodeList = mfAliasEntry.getValue();
-                            for (MNode aliasNode : aliasNodeList) {
-                                viewMatchMap.put(aliasNode.attribute("name"), fieldValue);
-                            }
-                        }
-                        // logger.warn("========= viewMatchMap: ${viewMatchMap}")
-
-                        Cache<EntityCondition, EntityListImpl> entityListCache = viewEd.getCacheList(this);
-
-                        Iterator<Cache.Entry<EntityCondition, EntityListImpl>> elcIterator = entityListCache.iterator();
-                        while (elcIterator.hasNext()) {
-                            Cache.Entry<EntityCondition, EntityListImpl> entry = elcIterator.next();
-                            // 在javax.cache.Cache中，next（）可能会为过期的etc条目并且返回null
-                            if (entry == null) continue;
-                            EntityCondition econd = entry.getKey();
-                            // logger.warn("======= entity ${fullEntityName} view-entity ${cachedViewEntityName} matches any? ${econd.mapMatchesAny(viewMatchMap)} keys not contained? ${econd.mapKeysNotContained(viewMatchMap)} econd: ${econd}")
-                            // 将来可能：有效清除这些RA缓存的方法是什么？
-                            // 现在只是离开并且他们被处理最终不需要完全匹配，
-                            // 如果匹配条件,清除时注意：mapKeysNotContained（）调用将处理没有负匹配的情况，
-                            // 但是过度包容并将清除缓存 可能不需要清除的条目;
-                            // 可能有更好的方法; 特别需要主要成员实体上的字段查询列表但更新另一个成员实体的情况
-                            if (econd.mapMatchesAny(viewMatchMap) || econd.mapKeysNotContained(viewMatchMap))
-                                elcIterator.remove();
-                        }
-                    }
+                for (String viewEntityName : cachedViewEntityNames) {
+                    // logger.warn("Found ${cachedViewEntityName} as a cached view-entity for member ${fullEntityName}")
+                    EntityDefinition viewEd = efi.getEntityDefinition(viewEntityName);
+                    Cache<EntityCondition, EntityListImpl> entityListCache = viewEd.getCacheList(this);
+                    EntityViewListCacheIndex viewListCacheIndex = entityListCache instanceof ZCache ? viewListCacheIndexByEntity.get(viewEntityName) : null;
+                    clearViewListCache(viewEd, entityListCache, viewListCacheIndex, fullEntityName, evbMap);
                 }
             }
 
@@ -312,34 +944,196 @@ public class EntityCache {
             String countKey = countKeyBase.concat(fullEntityName);
             if (localCacheMap.containsKey(countKey)) {
                 Cache<EntityCondition, Long> entityCountCache = ed.getCacheCount(this);
-                // 由于关于计数缓存结果的信息很少，
-                // 我们不能做RA并且检查条件无法在值不再匹配的情况下清除，
-                // 将处理新匹配的清除计数增加但不再不匹配计数减少的情况除了选择清除整个缓存
-                entityCountCache.clear();
-                /*
-                Iterator<Cache.Entry<EntityCondition, Long>> eccIterator = entityCountCache.iterator()
-                while (eccIterator.hasNext()) {
-                    Cache.Entry<EntityCondition, Long> entry = (Cache.Entry<EntityCondition, Long>) eccIterator.next()
-                    EntityCondition ec = (EntityCondition) entry.getKey()
-                    logger.warn("checking count condition: ${ec.toString()} matches? ${ec.mapMatchesAny(evbMap) || ec.mapKeysNotContained(evbMap)}")
-                    if (ec.mapMatchesAny(evbMap) || ec.mapKeysNotContained(evbMap)) eccIterator.remove()
-                }
-                */
+                // 不知道修改前的值时只能确定主键
+                Map<String, Object> oldMap = isCreate ? null : (previousValueMap != null ? previousValueMap : evb.getPrimaryKeys());
+                Map<String, Object> newMap = isDelete ? null : evbMap;
+                // 在增加代数之后检查，之后放入的计数在放入后检查代数时会被删除
+                boolean adjustInPlace = countPutsBefore >= 0 && getCountPuts(fullEntityName).get() == countPutsBefore;
+                clearCountCache(entityCountCache, oldMap, newMap, adjustInPlace);
             }
         } catch (Throwable t) {
             logger.error("实体缓存错误: 实体"+evb.getEntityName()+"缓存清除中的抑制错误: "+(isCreate ? "create" : "non-create"), t);
         }
+        if (adaptiveStats != null) adaptiveStats.recordWrite(System.nanoTime() - startNanos);
     }
+    /**
+     * 清除实体list缓存中与记录匹配的条目；listRaCache不为null（更新、删除）时还按反向关联清除，
+     * 因为条件检查可能与新值或部分更新的记录不匹配。
+     * listCacheIndex不为null时只检查索引中字段值相同的条件和不能索引的条件，否则遍历整个list缓存。
+     */
+    static void clearListCache(Cache<EntityCondition, EntityListImpl> entityListCache, EntityListCacheIndex listCacheIndex,
+                               Cache<EntityCondition, Set<EntityCondition>> listRaCache,
+                               Map<String, Object> evbMap, EntityCondition pkCondition) {
+        // 如果是创建RA缓存是不行的，所以请通过EACH条目查看它是否与创建的值匹配RA缓存不适用于更新字段不匹配的存在记录.
+        // 在最初完成缓存列表查找时查找条件，但随后更新以使字段匹配
+        if (listCacheIndex != null) {
+            for (EntityCondition ec : listCacheIndex.getCandidates(evbMap)) {
+                if (ec.mapMatches(evbMap)) removeFromListCache(entityListCache, listCacheIndex, ec);
+            }
+        } else {
+            for (Cache.Entry<EntityCondition, EntityListImpl> entry : entityListCache) {
+                EntityCondition ec = entry.getKey();
+                // 有效清除这些RA缓存的方法有哪些？ 现在只是放着，最后最终处理
+                if (ec.mapMatches(evbMap)) entityListCache.remove(ec);
+            }
+        }
+
+        if (listRaCache != null) {
+            Set<EntityCondition> raKeyList = listRaCache.get(pkCondition);
+            if (raKeyList != null) {
+                for (EntityCondition raKey : raKeyList) {
+                    // 这可能已经被清除，需要用些时间检查确定已经被清除
+                    removeFromListCache(entityListCache, listCacheIndex, raKey);
+                }
+                // 我们已经清除了所指的所有条目，所以也要清理它
+                listRaCache.remove(pkCondition);
+            }
+        }
+
+        if (listCacheIndex != null && entityListCache instanceof ZCache)
+            listCacheIndex.pruneIfNeeded(entityListCache, ((ZCache) entityListCache).size());
+    }
+    /**
+     * 成员实体记录修改时清除视图实体的list缓存。当前记录（evbMap）按成员实体字段的视图别名构造viewMatchMap，
+     * 视图实体的条件中任何一个子条件匹配，或条件没有使用viewMatchMap中的任何别名时清除。
+     * 条件只有主要成员实体的字段但修改的是另一个成员实体时（如UserPermissionCheck）会过度清除，但不会漏掉。
+     * 有索引时只检查索引找到的候选条件，没有索引时遍历整个缓存。
+     */
+    private void clearViewListCache(EntityDefinition viewEd, Cache<EntityCondition, EntityListImpl> entityListCache,
+                                    EntityViewListCacheIndex viewListCacheIndex, String memberEntityName, Map<String, Object> evbMap) {
+        if (viewListCacheIndex != null) {
+            Map<String, Object> viewMatchMap = viewListCacheIndex.makeViewMatchMap(memberEntityName, evbMap);
+            for (EntityCondition econd : viewListCacheIndex.getCandidates(memberEntityName, viewMatchMap)) {
+                if (econd.mapMatchesAny(viewMatchMap) || econd.mapKeysNotContained(viewMatchMap))
+                    removeFromListCache(entityListCache, viewListCacheIndex, econd);
+            }
+            viewListCacheIndex.pruneIfNeeded(entityListCache, ((ZCache) entityListCache).size());
+            return;
+        }
+
+        Map<String, Object> viewMatchMap = new HashMap<>();
+        Map<String, ArrayList<MNode>> memberFieldAliases = viewEd.getMemberFieldAliases(memberEntityName);
+        if (memberFieldAliases != null) {
+            for (Map.Entry<String, ArrayList<MNode>> mfAliasEntry : memberFieldAliases.entrySet()) {
+                String fieldName = mfAliasEntry.getKey();
+                if (!evbMap.containsKey(fieldName)) continue;
+                Object fieldValue = evbMap.get(fieldName);
+                for (MNode aliasNode : mfAliasEntry.getValue()) viewMatchMap.put(aliasNode.attribute("name"), fieldValue);
+            }
+        }
+        Iterator<Cache.Entry<EntityCondition, EntityListImpl>> elcIterator = entityListCache.iterator();
+        while (elcIterator.hasNext()) {
+            Cache.Entry<EntityCondition, EntityListImpl> entry = elcIterator.next();
+            // 在javax.cache.Cache中，next（）可能会为过期的etc条目并且返回null
+            if (entry == null) continue;
+            EntityCondition econd = entry.getKey();
+            if (econd.mapMatchesAny(viewMatchMap) || econd.mapKeysNotContained(viewMatchMap)) elcIterator.remove();
+        }
+    }
+    private static void removeFromListCache(Cache<EntityCondition, ?> entityListCache, EntityListCacheIndex listCacheIndex,
+                                            EntityCondition ec) {
+        if (listCacheIndex == null) {
+            entityListCache.remove(ec);
+            return;
+        }
+        // 先取注册时间再删除缓存条目，删除之后重新加载注册的条件不会从索引中删除
+        Long addedTime = listCacheIndex.getAddedTime(ec);
+        if (entityListCache.remove(ec) && addedTime != null) listCacheIndex.remove(ec, addedTime);
+    }
+
+    /**
+     * 按修改前后的记录值选择性清除计数缓存：oldMap为修改前的值（create时为null），newMap为修改后的值（delete时为null）。
+     * 能确定记录是否从匹配变为不匹配（或相反）时，计数不变的条目保留，计数变化的条目在adjustInPlace为true时直接加减1，否则清除。
+     * 只有条件全部由EQUALS、NOT_EQUAL、IN、NOT_IN、IS_NULL、IS_NOT_NULL组成，且记录值与条件值类型相同时才能确定（见countConditionMatches），
+     * 其他条件（范围、BETWEEN、LIKE等在内存中的比较与数据库不一定相同）和检查出错时都清除该条目，继续检查其他条目。
+     */
+    static void clearCountCache(Cache<EntityCondition, Long> entityCountCache, Map<String, Object> oldMap,
+                                Map<String, Object> newMap, boolean adjustInPlace) {
+        for (Cache.Entry<EntityCondition, Long> entry : entityCountCache) {
+            // 在javax.cache.Cache中，next（）可能会为过期的etc条目并且返回null
+            if (entry == null) continue;
+            EntityCondition ec = entry.getKey();
+            try {
+                Boolean newMatches = newMap != null ? countConditionMatches(ec, newMap) : Boolean.FALSE;
+                Boolean oldMatches = oldMap != null ? countConditionMatches(ec, oldMap) : Boolean.FALSE;
+                if (newMatches == null || oldMatches == null) {
+                    entityCountCache.remove(ec);
+                    continue;
+                }
+                int delta = (newMatches ? 1 : 0) - (oldMatches ? 1 : 0);
+                if (delta == 0) continue;
+                Long count = entry.getValue();
+                if (!adjustInPlace || count == null || !entityCountCache.replace(ec, count, count + delta))
+                    entityCountCache.remove(ec);
+            } catch (RuntimeException e) {
+                entityCountCache.remove(ec);
+            }
+        }
+    }
+    /**
+     * 记录值是否满足计数条件，与数据库中的结果相同（包括null值的处理）；
+     * 不能准确判断时（其他运算符、ignoreCase、记录中没有条件字段、值类型不同）返回null
+     */
+    static Boolean countConditionMatches(EntityCondition ec, Map<String, Object> valueMap) {
+        if (ec instanceof TrueCondition) return Boolean.TRUE;
+        if (ec instanceof ListCondition) {
+            ListCondition listCond = (ListCondition) ec;
+            boolean isAnd = listCond.getOperator() == EntityCondition.JoinOperator.AND;
+            boolean matches = isAnd;
+            for (EntityConditionImplBase cond : listCond.getConditionList()) {
+                Boolean condMatches = countConditionMatches(cond, valueMap);
+                if (condMatches == null) return null;
+                matches = isAnd ? matches && condMatches : matches || condMatches;
+            }
+            return matches;
+        }
+        if (!(ec instanceof FieldValueCondition)) return null;
+        FieldValueCondition fvc = (FieldValueCondition) ec;
+        if (fvc.getIgnoreCase() || !valueMap.containsKey(fvc.getFieldName())) return null;
+        Object value = valueMap.get(fvc.getFieldName());
+        Object condValue = fvc.getValue();
+        EntityCondition.ComparisonOperator operator = fvc.getOperator();
+        switch (operator) {
+            case IS_NULL:
+                return value == null;
+            case IS_NOT_NULL:
+                return value != null;
+            case EQUALS:
+            case NOT_EQUAL:
+                boolean isEquals = operator == EntityCondition.EQUALS;
+                // 条件值为null时查询为IS NULL/IS NOT NULL，记录值为null时SQL比较的结果不是true
+                if (condValue == null) return isEquals == (value == null);
+                if (value == null) return Boolean.FALSE;
+                if (value.getClass() != condValue.getClass()) return null;
+                return isEquals == value.equals(condValue);
+            case IN:
+            case NOT_IN:
+                // 字符串值在查询时按逗号拆分，不在这里处理
+                if (!(condValue instanceof Collection)) return null;
+                boolean isIn = operator == EntityCondition.IN;
+                Collection<?> inValues = (Collection<?>) condValue;
+                // 空集合查询为 1 = 2 / 1 = 1
+                if (inValues.isEmpty()) return !isIn;
+                if (value == null) return Boolean.FALSE;
+                boolean found = false;
+                for (Object inValue : inValues) {
+                    if (inValue == null || inValue.getClass() != value.getClass()) return null;
+                    if (value.equals(inValue)) found = true;
+                }
+                return isIn == found;
+            default:
+                return null;
+        }
+    }
+
     private void registerCacheOneRa(String entityName, EntityCondition ec, EntityValueBase evb) {
         // 不要跳过它的空值，因为我们也缓存它们：if（evb == null）return
         if (evb == null) {
-            // 不能使用RA缓存，因为我们不知道PK，所以使用暴力缓存但保持分开以更好地执行
-            Set<EntityCondition> bfKeySet = oneBfCache.get(entityName);
-            if (bfKeySet == null) {
-                bfKeySet = ConcurrentHashMap.newKeySet();
-                oneBfCache.put(entityName, bfKeySet);
-            }
-            bfKeySet.add(ec);
+            // 不能使用RA缓存，因为我们不知道PK，所以按字段值索引，修改记录时检查
+            EntityListCacheIndex bfIndex = oneBfIndexByEntity.get(entityName);
+            if (bfIndex == null) bfIndex = oneBfIndexByEntity.computeIfAbsent(entityName, k -> new EntityListCacheIndex());
+            bfIndex.add(ec, efi.getEntityDefinition(entityName).getCacheOne(this));
+            if (bfIndex.size() > oneBfMaxSize) evictOneBf(entityName, bfIndex);
         } else {
             EntityDefinition ed = evb.getEntityDefinition();
             Cache<EntityCondition, Set<EntityCondition>> oneRaCache = ed.getCacheOneRa(this);
@@ -393,11 +1187,31 @@ public class EntityCache {
         }
     }
 
+    /** 清除最早注册的十分之一没有结果的条件和对应的one缓存条目，不在索引中的EmptyRecord条目修改记录时不能清除 */
+    private void evictOneBf(String entityName, EntityListCacheIndex bfIndex) {
+        Cache<EntityCondition, EntityValueBase> entityOneCache = efi.getEntityDefinition(entityName).getCacheOne(this);
+        for (EntityCondition ec : bfIndex.getOldest(bfIndex.size() - oneBfMaxSize * 9 / 10)) {
+            Long addedTime = bfIndex.getAddedTime(ec);
+            entityOneCache.remove(ec);
+            if (addedTime != null) bfIndex.remove(ec, addedTime);
+        }
+    }
+
     private void registerCacheListRa(String entityName, EntityCondition ec, EntityList eli) {
         EntityDefinition ed = efi.getEntityDefinition(entityName);
         if (ed.isViewEntity) {
             // 所有成员实体走一遍
             ArrayList<MNode> memberEntityList = ed.getEntityNode().children("member-entity");
+            if (ed.getCacheList(this) instanceof ZCache) {
+                EntityViewListCacheIndex viewListCacheIndex = viewListCacheIndexByEntity.get(entityName);
+                if (viewListCacheIndex == null) {
+                    List<String> memberEntityNames = new ArrayList<>(memberEntityList.size());
+                    for (MNode mNode : memberEntityList)
+                        memberEntityNames.add(efi.getEntityDefinition(mNode.attribute("entity-name")).getFullEntityName());
+                    viewListCacheIndex = viewListCacheIndexByEntity.computeIfAbsent(entityName, k -> new EntityViewListCacheIndex(ed, memberEntityNames));
+                }
+                viewListCacheIndex.add(ec, ed.getCacheList(this));
+            }
             for (MNode mNode : memberEntityList) {
                 Map<String, String> mePkFieldToAliasNameMap = ed.getMePkFieldToAliasNameMap(mNode.attribute("entity-alias"));
 
@@ -414,16 +1228,7 @@ public class EntityCache {
                 String memberEntityName = memberEd.getFullEntityName();
 
                 // 请记住，此成员实体已在缓存的视图实体中使用
-                List<String> cachedViewEntityNames = cachedListViewEntitiesByMember.get(memberEntityName);
-                if (cachedViewEntityNames == null) {
-                    cachedViewEntityNames = Collections.synchronizedList(new ArrayList<>());
-                    cachedListViewEntitiesByMember.put(memberEntityName, cachedViewEntityNames);
-                    cachedViewEntityNames.add(entityName);
-                    // logger.info("Added ${entityName} as a cached view-entity for member ${memberEntityName}")
-                } else if (!cachedViewEntityNames.contains(entityName)) {
-                    cachedViewEntityNames.add(entityName);
-                    // logger.info("Added ${entityName} as a cached view-entity for member ${memberEntityName}")
-                }
+                cachedListViewEntitiesByMember.computeIfAbsent(memberEntityName, k -> ConcurrentHashMap.newKeySet()).add(entityName);
 
                 Cache<EntityCondition, Set<ViewRaKey>> listViewRaCache = memberEd.getCacheListViewRa(this);
                 for (EntityValue ev : eli) {
@@ -443,6 +1248,8 @@ public class EntityCache {
                 }
             }
         } else {
+            if (ed.getCacheList(this) instanceof ZCache)
+                listCacheIndexByEntity.computeIfAbsent(ed.getFullEntityName(), k -> new EntityListCacheIndex()).add(ec, ed.getCacheList(this));
             Cache<EntityCondition, Set<EntityCondition>> listRaCache = ed.getCacheListRa(this);
 
             for (EntityValue entityValue : eli) {
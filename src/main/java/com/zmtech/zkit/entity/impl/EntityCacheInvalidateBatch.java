@@ -0,0 +1,266 @@
+package com.zmtech.zkit.entity.impl;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 分布式实体缓存清除消息，一个事务中修改的记录在提交后作为一条消息发送。
+ * 每条记录只包括修改类型、修改后（delete时为删除前）的字段值和update修改过的字段的原值，
+ * 字段按实体定义中allFieldInfoArray的序号编码，不使用EntityValueBase的Java序列化。
+ * 实体定义不同的节点（fieldHash不一致）收到时清除这个实体的所有缓存。
+ */
+public class EntityCacheInvalidateBatch implements Externalizable {
+    static final byte UPDATE = 0;
+    static final byte CREATE = 1;
+    static final byte DELETE = 2;
+
+    private static final byte NULL_VALUE = 0;
+    private static final byte STRING_VALUE = 1;
+    private static final byte LONG_VALUE = 2;
+    private static final byte INTEGER_VALUE = 3;
+    private static final byte BIG_DECIMAL_VALUE = 4;
+    private static final byte TIMESTAMP_VALUE = 5;
+    private static final byte BOOLEAN_VALUE = 6;
+    private static final byte OBJECT_VALUE = 7;
+
+    String sourceNodeId;
+    final ArrayList<EntityEntry> entries = new ArrayList<>();
+
+    public EntityCacheInvalidateBatch() { }
+    EntityCacheInvalidateBatch(String sourceNodeId) { this.sourceNodeId = sourceNodeId; }
+
+    public String getSourceNodeId() { return sourceNodeId; }
+    public int getRecordCount() {
+        int count = 0;
+        for (EntityEntry entry : entries) count += entry.clearAll ? 1 : entry.records.size();
+        return count;
+    }
+
+    /** 一个实体的清除记录；clearAll为true时没有记录，清除这个实体的所有缓存 */
+    static class EntityEntry {
+        final String entityName;
+        final int fieldHash;
+        final boolean clearAll;
+        final ArrayList<RecordEntry> records = new ArrayList<>();
+
+        EntityEntry(String entityName, int fieldHash, boolean clearAll) {
+            this.entityName = entityName;
+            this.fieldHash = fieldHash;
+            this.clearAll = clearAll;
+        }
+    }
+
+    /** 一条记录的修改，字段为allFieldInfoArray中的序号 */
+    static class RecordEntry {
+        final byte type;
+        /** update时修改前的值是否已知，不知道时接收方只能按主键判断修改前的记录 */
+        final boolean previousKnown;
+        final int[] fields;
+        final Object[] values;
+        /** update修改过的字段的原值 */
+        final int[] previousFields;
+        final Object[] previousValues;
+        private int hashCode = 0;
+
+        RecordEntry(byte type, boolean previousKnown, int[] fields, Object[] values, int[] previousFields, Object[] previousValues) {
+            this.type = type;
+            this.previousKnown = previousKnown;
+            this.fields = fields;
+            this.values = values;
+            this.previousFields = previousFields;
+            this.previousValues = previousValues;
+        }
+
+        HashMap<String, Object> getValueMap(FieldInfo[] fieldInfos) {
+            HashMap<String, Object> valueMap = new HashMap<>();
+            for (int i = 0; i < fields.length; i++) valueMap.put(fieldInfos[fields[i]].name, values[i]);
+            return valueMap;
+        }
+        /** 修改前的记录值，不知道时返回null */
+        HashMap<String, Object> getPreviousValueMap(FieldInfo[] fieldInfos) {
+            if (!previousKnown) return null;
+            HashMap<String, Object> previousMap = getValueMap(fieldInfos);
+            for (int i = 0; i < previousFields.length; i++) previousMap.put(fieldInfos[previousFields[i]].name, previousValues[i]);
+            return previousMap;
+        }
+
+        @Override
+        public int hashCode() {
+            if (hashCode == 0) {
+                int h = type;
+                for (int i = 0; i < fields.length; i++) h = 31 * h + fields[i] * 17 + Objects.hashCode(values[i]);
+                for (int i = 0; i < previousFields.length; i++) h = 31 * h + previousFields[i] * 17 + Objects.hashCode(previousValues[i]);
+                hashCode = h;
+            }
+            return hashCode;
+        }
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof RecordEntry)) return false;
+            RecordEntry that = (RecordEntry) obj;
+            return type == that.type && previousKnown == that.previousKnown &&
+                    Arrays.equals(fields, that.fields) && Arrays.equals(values, that.values) &&
+                    Arrays.equals(previousFields, that.previousFields) && Arrays.equals(previousValues, that.previousValues);
+        }
+    }
+
+    /** 字段名称和顺序的hash，发送方和接收方的实体定义不同时序号没有意义 */
+    static int makeFieldHash(FieldInfo[] fieldInfos) {
+        int h = fieldInfos.length;
+        for (FieldInfo fi : fieldInfos) h = 31 * h + fi.name.hashCode();
+        return h;
+    }
+
+    /**
+     * 按字段序号编码一条记录，valueMap中不是实体字段的键忽略；previousMap为update修改前的记录值，
+     * previousMap中没有valueMap中的某个字段时修改前的值按不知道处理。
+     */
+    static RecordEntry makeRecord(FieldInfo[] fieldInfos, byte type, Map<String, Object> valueMap, Map<String, Object> previousMap) {
+        int size = 0;
+        for (FieldInfo fi : fieldInfos) {
+            if (!valueMap.containsKey(fi.name)) continue;
+            size++;
+            if (previousMap != null && !previousMap.containsKey(fi.name)) previousMap = null;
+        }
+        int[] fields = new int[size];
+        Object[] values = new Object[size];
+        int changedSize = 0;
+        int index = 0;
+        for (int i = 0; i < fieldInfos.length; i++) {
+            String name = fieldInfos[i].name;
+            if (!valueMap.containsKey(name)) continue;
+            fields[index] = i;
+            values[index] = valueMap.get(name);
+            if (previousMap != null && isChanged(previousMap, name, values[index])) changedSize++;
+            index++;
+        }
+
+        int[] previousFields = new int[changedSize];
+        Object[] previousValues = new Object[changedSize];
+        if (changedSize > 0) {
+            int changedIndex = 0;
+            for (int i = 0; i < fields.length; i++) {
+                String name = fieldInfos[fields[i]].name;
+                if (!isChanged(previousMap, name, values[i])) continue;
+                previousFields[changedIndex] = fields[i];
+                previousValues[changedIndex] = previousMap.get(name);
+                changedIndex++;
+            }
+        }
+        return new RecordEntry(type, previousMap != null, fields, values, previousFields, previousValues);
+    }
+    private static boolean isChanged(Map<String, Object> previousMap, String name, Object value) {
+        return previousMap.containsKey(name) && !Objects.equals(previousMap.get(name), value);
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        out.writeUTF(sourceNodeId != null ? sourceNodeId : "");
+        out.writeInt(entries.size());
+        for (EntityEntry entry : entries) {
+            out.writeUTF(entry.entityName);
+            out.writeInt(entry.fieldHash);
+            out.writeBoolean(entry.clearAll);
+            out.writeInt(entry.records.size());
+            for (RecordEntry record : entry.records) {
+                out.writeByte(record.type);
+                out.writeBoolean(record.previousKnown);
+                writeFields(out, record.fields, record.values);
+                writeFields(out, record.previousFields, record.previousValues);
+            }
+        }
+    }
+    private static void writeFields(ObjectOutput out, int[] fields, Object[] values) throws IOException {
+        out.writeShort(fields.length);
+        for (int i = 0; i < fields.length; i++) {
+            out.writeShort(fields[i]);
+            writeValue(out, values[i]);
+        }
+    }
+    private static void writeValue(ObjectOutput out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL_VALUE);
+        } else if (value instanceof String && ((String) value).length() < 16384) {
+            // writeUTF最多65535字节，长文本使用writeObject
+            out.writeByte(STRING_VALUE);
+            out.writeUTF((String) value);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG_VALUE);
+            out.writeLong((Long) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(INTEGER_VALUE);
+            out.writeInt((Integer) value);
+        } else if (value instanceof BigDecimal) {
+            out.writeByte(BIG_DECIMAL_VALUE);
+            out.writeUTF(value.toString());
+        } else if (value instanceof Timestamp) {
+            out.writeByte(TIMESTAMP_VALUE);
+            out.writeLong(((Timestamp) value).getTime());
+            out.writeInt(((Timestamp) value).getNanos());
+        } else if (value instanceof Boolean) {
+            out.writeByte(BOOLEAN_VALUE);
+            out.writeBoolean((Boolean) value);
+        } else {
+            out.writeByte(OBJECT_VALUE);
+            out.writeObject(value);
+        }
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+        sourceNodeId = in.readUTF();
+        int entrySize = in.readInt();
+        for (int i = 0; i < entrySize; i++) {
+            EntityEntry entry = new EntityEntry(in.readUTF(), in.readInt(), in.readBoolean());
+            int recordSize = in.readInt();
+            entry.records.ensureCapacity(recordSize);
+            for (int j = 0; j < recordSize; j++) {
+                byte type = in.readByte();
+                boolean previousKnown = in.readBoolean();
+                int size = in.readUnsignedShort();
+                int[] fields = new int[size];
+                Object[] values = new Object[size];
+                readFields(in, fields, values);
+                int previousSize = in.readUnsignedShort();
+                int[] previousFields = new int[previousSize];
+                Object[] previousValues = new Object[previousSize];
+                readFields(in, previousFields, previousValues);
+                entry.records.add(new RecordEntry(type, previousKnown, fields, values, previousFields, previousValues));
+            }
+            entries.add(entry);
+        }
+    }
+    private static void readFields(ObjectInput in, int[] fields, Object[] values) throws IOException, ClassNotFoundException {
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = in.readUnsignedShort();
+            values[i] = readValue(in);
+        }
+    }
+    private static Object readValue(ObjectInput in) throws IOException, ClassNotFoundException {
+        byte valueType = in.readByte();
+        switch (valueType) {
+            case NULL_VALUE: return null;
+            case STRING_VALUE: return in.readUTF();
+            case LONG_VALUE: return in.readLong();
+            case INTEGER_VALUE: return in.readInt();
+            case BIG_DECIMAL_VALUE: return new BigDecimal(in.readUTF());
+            case TIMESTAMP_VALUE: {
+                Timestamp ts = new Timestamp(in.readLong());
+                ts.setNanos(in.readInt());
+                return ts;
+            }
+            case BOOLEAN_VALUE: return in.readBoolean();
+            case OBJECT_VALUE: return in.readObject();
+            default: throw new IOException("实体缓存错误: 清除消息中未知的值类型 " + valueType);
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.zmtech.zkit.entity.impl;
+
+import org.apache.groovy.util.Maps;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 自适应实体缓存（entity-facade的cache-adaptive=true）中一个实体的统计和是否使用one、list、count缓存的决定。
+ *
+ * 每种缓存分别统计查询次数、命中次数和查询数据库的耗时，修改次数和清除缓存的耗时整个实体共用。
+ * 一种缓存的查询次数达到一个统计窗口时按窗口内的统计重新决定：
+ * 使用缓存时命中率低于minHitRatio，或清除缓存的耗时超过命中节省的查询时间时停止使用；
+ * 不使用缓存时查询次数达到修改次数的enableReadWriteRatio倍时开始使用。
+ * 每次停止使用后下一个窗口的大小加倍（最多64倍），避免在两种状态之间反复切换。
+ * 只统计没有调用find.useCache()的查询，useCache(true)/useCache(false)仍按调用方指定的使用。
+ */
+class EntityCacheStats {
+    protected final static Logger logger = LoggerFactory.getLogger(EntityCacheStats.class);
+
+    static final int ONE = 0;
+    static final int LIST = 1;
+    static final int COUNT = 2;
+    private static final String[] KIND_NAMES = {"one", "list", "count"};
+    private static final int MAX_WINDOW_MULTIPLIER = 64;
+
+    final String entityName;
+    /** 实体定义的cache属性是否为true，即没有统计结果之前的决定 */
+    final boolean configured;
+    private final EntityCache entityCache;
+    private final int windowReads;
+    private final double minHitRatio;
+    private final double enableReadWriteRatio;
+    private final KindStats[] kinds = new KindStats[3];
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder invalidateNanos = new LongAdder();
+
+    private static class KindStats {
+        volatile boolean enabled;
+        /** 当前窗口的统计 */
+        final AtomicLong reads = new AtomicLong();
+        final LongAdder hits = new LongAdder();
+        final LongAdder queries = new LongAdder();
+        final LongAdder queryNanos = new LongAdder();
+        final AtomicBoolean evaluating = new AtomicBoolean(false);
+        /** 以下只在evaluating时修改 */
+        volatile int windowMultiplier = 1;
+        long writesAtWindowStart = 0;
+        long invalidateNanosAtWindowStart = 0;
+        long avgQueryNanos = 0;
+        /** 之前所有窗口的合计和最后一次决定 */
+        volatile long totalReads = 0, totalHits = 0, decisionChanges = 0;
+        volatile double lastHitRatio = 0;
+        volatile long lastWrites = 0, lastInvalidateNanos = 0;
+        volatile String lastReason = null;
+
+        KindStats(boolean enabled) { this.enabled = enabled; }
+    }
+
+    EntityCacheStats(EntityCache entityCache, String entityName, boolean configured, int windowReads, double minHitRatio,
+                     double enableReadWriteRatio) {
+        this.entityCache = entityCache;
+        this.entityName = entityName;
+        this.configured = configured;
+        this.windowReads = windowReads;
+        this.minHitRatio = minHitRatio;
+        this.enableReadWriteRatio = enableReadWriteRatio;
+        for (int i = 0; i < kinds.length; i++) kinds[i] = new KindStats(configured);
+    }
+
+    boolean isEnabled(int cacheKind) { return kinds[cacheKind].enabled; }
+
+    /**
+     * 记录一次查询，hit为缓存命中，否则queryNanos为查询数据库的耗时（包括等待其他线程加载的时间）；
+     * 查询次数达到窗口大小的线程重新决定是否使用这种缓存。
+     */
+    void recordRead(int cacheKind, boolean hit, long queryNanos) {
+        KindStats ks = kinds[cacheKind];
+        if (hit) {
+            ks.hits.increment();
+        } else {
+            ks.queries.increment();
+            ks.queryNanos.add(queryNanos);
+        }
+        if (ks.reads.incrementAndGet() >= (long) windowReads * ks.windowMultiplier && ks.evaluating.compareAndSet(false, true)) {
+            try {
+                evaluate(cacheKind, ks);
+            } finally {
+                ks.evaluating.set(false);
+            }
+        }
+    }
+    /** 记录一次修改（本节点或其他节点）和清除缓存的耗时 */
+    void recordWrite(long nanos) {
+        writes.increment();
+        invalidateNanos.add(nanos);
+    }
+
+    private void evaluate(int cacheKind, KindStats ks) {
+        long reads = ks.reads.getAndSet(0);
+        long hits = ks.hits.sumThenReset();
+        long queries = ks.queries.sumThenReset();
+        long queryNanos = ks.queryNanos.sumThenReset();
+        long totalWrites = writes.sum();
+        long totalInvalidateNanos = invalidateNanos.sum();
+        long windowWrites = totalWrites - ks.writesAtWindowStart;
+        long windowInvalidateNanos = totalInvalidateNanos - ks.invalidateNanosAtWindowStart;
+        ks.writesAtWindowStart = totalWrites;
+        ks.invalidateNanosAtWindowStart = totalInvalidateNanos;
+        // 全部命中时没有查询耗时，使用之前窗口的平均值
+        if (queries > 0) ks.avgQueryNanos = queryNanos / queries;
+
+        double hitRatio = reads > 0 ? (double) hits / reads : 0;
+        boolean enabled = ks.enabled;
+        String reason = null;
+        if (enabled) {
+            if (hitRatio < minHitRatio) {
+                enabled = false;
+                reason = "命中率 " + Math.round(hitRatio * 100) + "% 低于 " + Math.round(minHitRatio * 100) + "%";
+            } else if (windowInvalidateNanos > hits * ks.avgQueryNanos) {
+                enabled = false;
+                reason = "清除缓存耗时 " + (windowInvalidateNanos / 1000) + "us 超过命中节省的查询时间 " + (hits * ks.avgQueryNanos / 1000) + "us";
+            }
+        } else if (reads >= enableReadWriteRatio * windowWrites) {
+            enabled = true;
+            reason = "查询 " + reads + " 次, 修改 " + windowWrites + " 次";
+        }
+
+        ks.totalReads += reads;
+        ks.totalHits += hits;
+        ks.lastHitRatio = hitRatio;
+        ks.lastWrites = windowWrites;
+        ks.lastInvalidateNanos = windowInvalidateNanos;
+        if (enabled == ks.enabled) return;
+
+        if (!enabled) ks.windowMultiplier = Math.min(ks.windowMultiplier * 2, MAX_WINDOW_MULTIPLIER);
+        ks.enabled = enabled;
+        ks.decisionChanges++;
+        ks.lastReason = reason;
+        logger.info("实体缓存信息: 自适应缓存 " + (enabled ? "开始" : "停止") + "使用实体 " + entityName + " 的 " +
+                KIND_NAMES[cacheKind] + " 缓存, " + reason);
+        // 停止使用后清除已有的条目，之后修改记录不再需要清除
+        if (!enabled) entityCache.clearCacheKindForEntity(entityName, cacheKind);
+    }
+
+    /** CacheFacadeImpl.getAllCachesInfo中每种缓存一行，名称为entity.adaptive.{one,list,count}.实体名称 */
+    List<Map<String, Object>> getInfoList() {
+        long totalWrites = writes.sum();
+        long totalInvalidateNanos = invalidateNanos.sum();
+        List<Map<String, Object>> infoList = new ArrayList<>(kinds.length);
+        for (int i = 0; i < kinds.length; i++) {
+            KindStats ks = kinds[i];
+            long reads = ks.totalReads + ks.reads.get();
+            long hits = ks.totalHits + ks.hits.sum();
+            infoList.add(Maps.of(
+                    "name", "entity.adaptive." + KIND_NAMES[i] + "." + entityName,
+                    "adaptiveEnabled", ks.enabled,
+                    "adaptiveConfigured", configured,
+                    "getCount", reads,
+                    "hitCount", hits,
+                    "hitPercentage", reads > 0 ? (float) hits * 100 / reads : 0f,
+                    "writeCount", totalWrites,
+                    "invalidateMicros", totalInvalidateNanos / 1000,
+                    "avgLoadMicros", ks.avgQueryNanos / 1000f,
+                    "windowReads", (long) windowReads * ks.windowMultiplier,
+                    "lastHitPercentage", (float) (ks.lastHitRatio * 100),
+                    "lastWriteCount", ks.lastWrites,
+                    "lastInvalidateMicros", ks.lastInvalidateNanos / 1000,
+                    "decisionChanges", ks.decisionChanges,
+                    "lastDecisionReason", ks.lastReason
+            ));
+        }
+        return infoList;
+    }
+}
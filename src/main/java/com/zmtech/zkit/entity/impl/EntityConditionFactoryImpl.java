@@ -487,9 +487,9 @@ public class EntityConditionFactoryImpl implements EntityConditionFactory {
     public static boolean compareByOperator(Object value1, ComparisonOperator op, Object value2) {
         switch (op) {
             case EQUALS:
-                return value1 == value2;
+                return ObjectUtil.valuesEqual(value1, value2);
             case NOT_EQUAL:
-                return value1 != value2;
+                return !ObjectUtil.valuesEqual(value1, value2);
             case LESS_THAN:{
                 Comparable comp1 = ObjectUtil.makeComparable(value1);
                 Comparable comp2 = ObjectUtil.makeComparable(value2);
@@ -516,7 +516,7 @@ public class EntityConditionFactoryImpl implements EntityConditionFactory {
                     return ((Collection) value2).contains(value1);
                 } else {
                     // not a Collection, try equals
-                    return value1 == value2;
+                    return ObjectUtil.valuesEqual(value1, value2);
                 }
             }
             case NOT_IN:{
@@ -524,7 +524,7 @@ public class EntityConditionFactoryImpl implements EntityConditionFactory {
                     return !((Collection) value2).contains(value1);
                 } else {
                     // not a Collection, try not-equals
-                    return value1 != value2;
+                    return !ObjectUtil.valuesEqual(value1, value2);
                 }
             }
 
@@ -64,6 +64,8 @@ public class EntityDefinition {
     private ArrayList<RelationshipInfo> relationshipInfoList = null;
     private boolean hasReverseRelationships = false;
     private Map<String, MasterDefinition> masterDefinitionMap = null;
+    /** 按查询结构缓存的find SQL，见EntityFindBuilder.useCachedSql() */
+    final ConcurrentHashMap<ArrayList<Object>, EntityFindBuilder.SqlShape> sqlShapeCache = new ConcurrentHashMap<>();
 
     public EntityDefinition(EntityFacadeImpl efi, MNode entityNode) {
         this.efi = efi;
@@ -67,6 +67,18 @@ public class EntityFacadeImpl implements EntityFacade {
     protected final String sequencedIdPrefix;
 
     private boolean queryStats = false;
+    /**
+     * The entity-facade statement-cache-size attribute: max idle PreparedStatements kept per transaction connection,
+     * see ContextJavaUtil.ConnectionWrapper; default 32, 0 to disable.
+     * Statements are only cached on connections stashed for a transaction begun through the TransactionFacade
+     * (tfi.stashTxConnection() returns a ConnectionWrapper), so finds run outside a transaction do not use this cache
+     * and rely only on the pool's statement cache (inline-jdbc pool-statement-cache-size).
+     */
+    protected final int statementCacheSize;
+    /** max records in one JDBC batch for createBulk/updateBulk/deleteBulk */
+    protected final int bulkBatchSize;
+    /** max primary keys in one IN query for EntityFind.oneMany() */
+    protected final int findManyChunkSize;
 
     protected EntityDbMeta dbMeta = null;
     protected final EntityCache entityCache;
@@ -84,6 +96,12 @@ public class EntityFacadeImpl implements EntityFacade {
         defaultGroupName = entityFacadeNode.attribute("default-group-name");
         sequencedIdPrefix = entityFacadeNode.attribute("sequenced-id-prefix");
         queryStats = entityFacadeNode.attribute("query-stats").equals("true");
+        String statementCacheSizeStr = entityFacadeNode.attribute("statement-cache-size");
+        statementCacheSize = statementCacheSizeStr != null && !statementCacheSizeStr.isEmpty() ? Integer.parseInt(statementCacheSizeStr) : 32;
+        String bulkBatchSizeStr = entityFacadeNode.attribute("bulk-batch-size");
+        bulkBatchSize = bulkBatchSizeStr != null && !bulkBatchSizeStr.isEmpty() ? Integer.parseInt(bulkBatchSizeStr) : 500;
+        String findManyChunkSizeStr = entityFacadeNode.attribute("find-many-chunk-size");
+        findManyChunkSize = findManyChunkSizeStr != null && !findManyChunkSizeStr.isEmpty() ? Integer.parseInt(findManyChunkSizeStr) : 500;
 
         TimeZone theTimeZone = null;
         if (entityFacadeNode.attribute("database-time-zone") != null) {
@@ -1541,10 +1559,11 @@ public class EntityFacadeImpl implements EntityFacade {
                 if (cacheHit != null) {
                     if (cacheHit instanceof EntityCache.EmptyRecord) newEntityValue = (EntityValueBase) null;
                     else newEntityValue = cacheHit;
+                } else if (doCache) {
+                    // concurrent misses for the same PK share one query, see EntityCache.loadOneCache()
+                    newEntityValue = entityCache.loadOneCache(ed, whereCondition, entityOneCache, () -> fastFindOneExtended(ed, values));
                 } else {
                     newEntityValue = fastFindOneExtended(ed, values);
-                    // put it in whether null or not (already know cacheHit is null)
-                    if (doCache) entityCache.putInOneCache(ed, whereCondition, newEntityValue, entityOneCache);
                 }
 
                 return newEntityValue;
@@ -1590,6 +1609,7 @@ public class EntityFacadeImpl implements EntityFacade {
         try {
             connection = getConnection(ed.getEntityGroupName());
             ps = connection.prepareStatement(finalSql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            if (this.queryStats) saveStatementStats(ed, finalSql, ps);
             for (int i = 0; i < pkSize; i++) {
                 FieldInfo fi = pkFieldInfoArray[i];
                 Object fieldValue = values[i];
@@ -2041,9 +2061,21 @@ public class EntityFacadeImpl implements EntityFacade {
             newCon = ds.getConnection()
         }
         if (newCon != null) newCon = tfi.stashTxConnection(groupName, newCon)
+        // only connections stashed for the transaction are closed by closeInternal() so can keep statements open
+        if (newCon instanceof ContextJavaUtil.ConnectionWrapper && statementCacheSize > 0)
+            ((ContextJavaUtil.ConnectionWrapper) newCon).setStatementCache(statementCacheSize, queryStats ? this : null);
         return newCon
     }
 
+    public int getBulkBatchSize() { return bulkBatchSize; }
+    public int getFindManyChunkSize() { return findManyChunkSize; }
+    @Override
+    public void createBulk(List<? extends EntityValue> valueList) { EntityValueBase.createBulk(valueList, bulkBatchSize); }
+    @Override
+    public void updateBulk(List<? extends EntityValue> valueList) { EntityValueBase.updateBulk(valueList, bulkBatchSize); }
+    @Override
+    public void deleteBulk(List<? extends EntityValue> valueList) { EntityValueBase.deleteBulk(valueList, bulkBatchSize); }
+
     @Override
     public EntityDataLoader makeDataLoader() { return new EntityDataLoaderImpl(this) }
     @Override
@@ -2274,6 +2306,20 @@ public class EntityFacadeImpl implements EntityFacade {
         }
         qsi.countHit(this, queryTime, isError);
     }
+    /** Count a PreparedStatement as reused from the ConnectionWrapper statement cache or prepared */
+    public void saveStatementStats(EntityDefinition ed, String sql, PreparedStatement ps) {
+        EntityJavaUtil.QueryStatsInfo qsi = queryStatsInfoMap.get(sql);
+        if (qsi == null) {
+            qsi = new EntityJavaUtil.QueryStatsInfo(ed.getFullEntityName(), sql);
+            queryStatsInfoMap.put(sql, qsi);
+        }
+        qsi.countStatement(ps instanceof ContextJavaUtil.CachedStatement && ((ContextJavaUtil.CachedStatement) ps).isReused());
+    }
+    /** Called by ConnectionWrapper when an idle statement is closed to make room in its statement cache */
+    public void countStatementEvicted(String sql) {
+        EntityJavaUtil.QueryStatsInfo qsi = queryStatsInfoMap.get(sql);
+        if (qsi != null) qsi.countStatementEvicted();
+    }
     public boolean isQueryStats() {
         return queryStats;
     }
@@ -18,10 +18,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.cache.Cache;
+import java.math.BigDecimal;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.util.*;
+import java.util.function.Function;
 
 public abstract class EntityFindBase implements EntityFind {
     protected final static Logger logger = LoggerFactory.getLogger(EntityFindBase.class);
@@ -676,6 +678,15 @@ public abstract class EntityFindBase implements EntityFind {
         }
     }
 
+    /**
+     * Stats for adaptive caching (see EntityCacheStats) when useCache was not set on this find and it could otherwise be
+     * cached; the entity cache setting is then replaced by the runtime decision for each cache kind
+     */
+    private EntityCacheStats getAdaptiveStats(EntityDefinition ed) {
+        if (useCache != null || dynamicView != null || havingEntityCondition != null || limit != null || offset != null || forUpdate) return null;
+        return efi.getEntityCache().getAdaptiveStats(ed);
+    }
+
     @Override
     public String toString() {
         return "Find: "+entityName+" WHERE ["+singleCondField+
@@ -802,13 +813,16 @@ public abstract class EntityFindBase implements EntityFind {
         // if any PK fields are null, for whatever reason in calling code, the result is null so no need to send to DB or cache or anything
         if (hasEmptyPk) return (EntityValue) null;
 
-        boolean doCache = shouldCache();
+        EntityCacheStats adaptiveStats = getAdaptiveStats(ed);
+        boolean doCache = adaptiveStats != null ? adaptiveStats.isEnabled(EntityCacheStats.ONE) : shouldCache();
         // NOTE: artifactExecutionFacade.filterFindForUser() no longer called here, called in EntityFindBuilder after trimming if needed for view-entity
         if (doCache) {
             // don't cache if there are any applicable filter conditions
             ArrayList findFilterList = ec.artifactExecutionFacade.getFindFiltersForUser(ed, null);
             if (findFilterList != null && findFilterList.size() > 0) doCache = false;
         }
+        // entity modified in this transaction, cache not cleared until commit (see EntityCache.isPendingInvalidate())
+        if (doCache && efi.getEntityCache().isPendingInvalidate(ed)) doCache = false;
 
         EntityConditionImplBase whereCondition = getWhereEntityConditionInternal(ed);
 
@@ -829,6 +843,11 @@ public abstract class EntityFindBase implements EntityFind {
 
         // if (txcValue != null && ed.getEntityName() == "foo") logger.warn("========= TX cache one value: ${txcValue}")
 
+        if (txcValue == null && !forUpdate) {
+            EntityTableSnapshot tableSnapshot = getTableSnapshot(ed, whereCondition, doCache);
+            if (tableSnapshot != null) return tableSnapshot.one(whereCondition);
+        }
+
         Cache<EntityCondition, EntityValueBase> entityOneCache = doCache ?
                 ed.getCacheOne(efi.getEntityCache()) : (Cache<EntityCondition, EntityValueBase>) null;
         EntityValueBase cacheHit = (EntityValueBase) null;
@@ -919,21 +938,32 @@ public abstract class EntityFindBase implements EntityFind {
         } else if (cacheHit != null) {
             if (cacheHit instanceof EntityCache.EmptyRecord) newEntityValue = (EntityValueBase) null;
             else newEntityValue = cacheHit;
+            if (adaptiveStats != null) adaptiveStats.recordRead(EntityCacheStats.ONE, true, 0);
         } else {
+            long queryStartNanos = adaptiveStats != null ? System.nanoTime() : 0;
             // for find one we'll always use the basic result set type and concurrency:
             this.resultSetType = ResultSet.TYPE_FORWARD_ONLY;
             this.resultSetConcurrency = ResultSet.CONCUR_READ_ONLY;
 
             EntityConditionImplBase cond = isViewEntity ? getConditionForQuery(ed, whereCondition) : whereCondition;
-            try { newEntityValue = oneExtended(cond, fieldInfoArray, fieldOptionsArray); }
-            catch (SQLException e) { throw new EntitySqlException(makeErrorMsg("Error finding one", ONE_ERROR, cond, ed, ec), e); }
-            catch (Exception e) { throw new EntityException(makeErrorMsg("Error finding one", ONE_ERROR, cond, ed, ec), e); }
+            if (doCache && !forUpdate) {
+                // concurrent misses for the same condition share one query, see EntityCache.loadOneCache()
+                final FieldInfo[] loadFieldInfoArray = fieldInfoArray;
+                final FieldOrderOptions[] loadFieldOptionsArray = fieldOptionsArray;
+                newEntityValue = efi.getEntityCache().loadOneCache(ed, whereCondition, entityOneCache, () ->
+                        oneQuery(ec, ed, cond, loadFieldInfoArray, loadFieldOptionsArray));
+            } else {
+                // get the cache generation before the query, if cleared during the query the result is not cached
+                long cacheGeneration = doCache ? efi.getEntityCache().getCacheGeneration(ed) : 0;
+                newEntityValue = oneQuery(ec, ed, cond, fieldInfoArray, fieldOptionsArray);
+                // put it in whether null or not (already know cacheHit is null)
+                if (doCache) efi.getEntityCache().putInOneCache(ed, whereCondition, newEntityValue, entityOneCache, cacheGeneration);
+            }
+
+            if (adaptiveStats != null) adaptiveStats.recordRead(EntityCacheStats.ONE, false, System.nanoTime() - queryStartNanos);
 
             // it didn't come from the txCache so put it there
             if (txCache != null) txCache.onePut(newEntityValue, forUpdate);
-
-            // put it in whether null or not (already know cacheHit is null)
-            if (doCache) efi.getEntityCache().putInOneCache(ed, whereCondition, newEntityValue, entityOneCache);
         }
 
         // if (logger.traceEnabled) logger.trace("Find one on entity [${ed.fullEntityName}] with condition [${whereCondition}] found value [${newEntityValue}]")
@@ -944,6 +974,233 @@ public abstract class EntityFindBase implements EntityFind {
         return newEntityValue;
     }
 
+    @Override
+    public EntityList oneMany(Collection<? extends Map<String, ?>> pkMaps) throws EntityException {
+        if (this.dynamicView != null) throw new EntityException("Dynamic View not supported for 'oneMany' find.");
+        EntityDefinition ed = getEntityDef();
+        EntityListImpl resultList = new EntityListImpl(efi, pkMaps.size());
+        if (pkMaps.isEmpty()) return resultList;
+
+        // for update needs the lock handling per record in oneInternal, and view-entity queries are by the view condition
+        //     and not the member PKs, so for both just do one find per key
+        if (forUpdate || ed.isViewEntity) {
+            Set<Map<String, Object>> seenPks = new HashSet<>();
+            for (Map<String, ?> pkMap : pkMaps) {
+                Map<String, Object> pkValues = makePkValues(ed, pkMap);
+                if (pkValues == null || !seenPks.add(pkValues)) continue;
+                EntityValue ev = makeKeyFind(ed, pkValues).one();
+                if (ev != null) resultList.add(ev);
+            }
+            return resultList;
+        }
+
+        ExecutionContextImpl ec = efi.ecfi.getEci();
+        EntityCacheStats adaptiveStats = getAdaptiveStats(ed);
+        boolean doCache = adaptiveStats != null ? adaptiveStats.isEnabled(EntityCacheStats.ONE) : shouldCache();
+        if (doCache) {
+            // don't cache if there are any applicable filter conditions, same as oneInternal()
+            ArrayList findFilterList = ec.artifactExecutionFacade.getFindFiltersForUser(ed, null);
+            if (findFilterList != null && findFilterList.size() > 0) doCache = false;
+        }
+        if (doCache && efi.getEntityCache().isPendingInvalidate(ed)) doCache = false;
+        Cache<EntityCondition, EntityValueBase> entityOneCache = doCache ?
+                ed.getCacheOne(efi.getEntityCache()) : (Cache<EntityCondition, EntityValueBase>) null;
+
+        // the key condition is the same as the where condition of condition(pkMap).one() so the same cache entries are used
+        LinkedHashMap<EntityConditionImplBase, EntityValueBase> valueByCondition = new LinkedHashMap<>();
+        LinkedHashMap<EntityConditionImplBase, Map<String, Object>> missPkByCondition = new LinkedHashMap<>();
+        // the same PK may be passed in with different types (like a String and a Long), compare converted values
+        String[] pkNames = ed.getPkFieldNames().toArray(new String[0]);
+        String[] pkJavaTypes = getPkJavaTypes(ed);
+        Set<List<Object>> seenPkKeys = new HashSet<>();
+        for (Map<String, ?> pkMap : pkMaps) {
+            Map<String, Object> pkValues = makePkValues(ed, pkMap);
+            // like one(), if any PK field is empty there is no result
+            if (pkValues == null || !seenPkKeys.add(makePkKey(pkNames, pkJavaTypes, pkValues))) continue;
+            EntityFindBase keyFind = makeKeyFind(ed, pkValues);
+            EntityConditionImplBase keyCondition = keyFind.getWhereEntityConditionInternal(ed);
+
+            // try the TX cache before the entity cache, should be more up-to-date
+            EntityValueBase txcValue = txCache != null ? txCache.oneGet(keyFind) : (EntityValueBase) null;
+            if (txcValue != null) {
+                EntityValueBase newEntityValue = txcValue instanceof EntityValueBase.DeletedEntityValue ? null : txcValue;
+                valueByCondition.put(keyCondition, newEntityValue);
+                if (doCache) efi.getEntityCache().putInOneCache(ed, keyCondition, newEntityValue, entityOneCache);
+                continue;
+            }
+            EntityTableSnapshot tableSnapshot = getTableSnapshot(ed, keyCondition, doCache);
+            if (tableSnapshot != null) {
+                valueByCondition.put(keyCondition, tableSnapshot.one(keyCondition));
+                continue;
+            }
+            if (doCache) {
+                EntityValueBase cacheHit = entityOneCache.get(keyCondition);
+                if (cacheHit != null) {
+                    valueByCondition.put(keyCondition, cacheHit instanceof EntityCache.EmptyRecord ? null : cacheHit);
+                    if (adaptiveStats != null) adaptiveStats.recordRead(EntityCacheStats.ONE, true, 0);
+                    continue;
+                }
+            }
+            // placeholder to keep the result order, set after the query below
+            valueByCondition.put(keyCondition, null);
+            missPkByCondition.put(keyCondition, pkValues);
+        }
+
+        if (missPkByCondition.size() > 0) {
+            long queryStartNanos = adaptiveStats != null ? System.nanoTime() : 0;
+            // get the cache generation before the query, if cleared during the query the results are not cached
+            long cacheGeneration = doCache ? efi.getEntityCache().getCacheGeneration(ed) : 0;
+            Set<List<Object>> uncachedMisses = new HashSet<>();
+            Map<List<Object>, EntityValueBase> foundByPk = findByPkChunks(ed, new ArrayList<>(missPkByCondition.values()),
+                    pkNames, pkJavaTypes, uncachedMisses);
+            long queryNanosPerKey = adaptiveStats != null ? (System.nanoTime() - queryStartNanos) / missPkByCondition.size() : 0;
+
+            for (Map.Entry<EntityConditionImplBase, Map<String, Object>> entry : missPkByCondition.entrySet()) {
+                EntityConditionImplBase keyCondition = entry.getKey();
+                List<Object> pkKey = makePkKey(pkNames, pkJavaTypes, entry.getValue());
+                EntityValueBase newEntityValue = foundByPk.get(pkKey);
+                valueByCondition.put(keyCondition, newEntityValue);
+                // put it in whether null or not, same as oneInternal(), except a key not matched in a chunk that
+                //     did return records which may be a value the DB matched differently than the converted value
+                if (doCache && (newEntityValue != null || !uncachedMisses.contains(pkKey)))
+                    efi.getEntityCache().putInOneCache(ed, keyCondition, newEntityValue, entityOneCache, cacheGeneration);
+                if (adaptiveStats != null) adaptiveStats.recordRead(EntityCacheStats.ONE, false, queryNanosPerKey);
+                // it didn't come from the txCache so put it there
+                if (txCache != null && newEntityValue != null) txCache.onePut(newEntityValue, false);
+            }
+        }
+
+        for (EntityValueBase ev : valueByCondition.values()) if (ev != null) resultList.add(ev);
+        return resultList;
+    }
+
+    /** Only the PK fields from pkMap, in PK field order; null if any PK field is empty */
+    private static Map<String, Object> makePkValues(EntityDefinition ed, Map<String, ?> pkMap) {
+        ArrayList<String> pkNameList = ed.getPkFieldNames();
+        int pkSize = pkNameList.size();
+        Map<String, Object> pkValues = new LinkedHashMap<>();
+        for (int i = 0; i < pkSize; i++) {
+            String fieldName = pkNameList.get(i);
+            Object fieldValue = pkMap.get(fieldName);
+            if (ObjectUtil.isEmpty(fieldValue)) return null;
+            pkValues.put(fieldName, fieldValue);
+        }
+        return pkValues;
+    }
+
+    /** A find by the PK values with the cache, for update and authz settings of this find, same as condition(pkMap) */
+    private EntityFindBase makeKeyFind(EntityDefinition ed, Map<String, Object> pkValues) {
+        EntityFindBase keyFind = (EntityFindBase) efi.find(ed.getFullEntityName());
+        for (Map.Entry<String, Object> entry : pkValues.entrySet()) keyFind.condition(entry.getKey(), entry.getValue());
+        keyFind.useCache = useCache;
+        keyFind.disableAuthz = disableAuthz;
+        if (forUpdate) keyFind.forUpdate(true);
+        return keyFind;
+    }
+
+    /**
+     * Query records for the PK values with WHERE pk IN (...) (or OR of the PK fields for a multi-field PK),
+     * at most EntityFacadeImpl.getFindManyChunkSize() keys per query; see matchByPkChunks()
+     */
+    private Map<List<Object>, EntityValueBase> findByPkChunks(EntityDefinition ed, ArrayList<Map<String, Object>> pkValuesList,
+            String[] pkNames, String[] pkJavaTypes, Set<List<Object>> uncachedMisses) {
+        ArrayList<String> pkNameList = ed.getPkFieldNames();
+        boolean singlePk = pkNameList.size() == 1;
+        EntityConditionFactory ecf = efi.getConditionFactory();
+
+        return matchByPkChunks(pkValuesList, efi.getFindManyChunkSize(), pkNames, pkJavaTypes, chunkPkValues -> {
+            int chunkSize = chunkPkValues.size();
+            EntityCondition chunkCondition;
+            if (singlePk) {
+                String pkName = pkNameList.get(0);
+                ArrayList<Object> pkValues = new ArrayList<>(chunkSize);
+                for (int i = 0; i < chunkSize; i++) pkValues.add(chunkPkValues.get(i).get(pkName));
+                chunkCondition = ecf.makeCondition(pkName, EntityCondition.IN, pkValues);
+            } else {
+                ArrayList<EntityCondition> pkConditions = new ArrayList<>(chunkSize);
+                for (int i = 0; i < chunkSize; i++) pkConditions.add(ecf.makeCondition(chunkPkValues.get(i)));
+                chunkCondition = ecf.makeCondition(pkConditions, EntityCondition.JoinOperator.OR);
+            }
+
+            EntityFind chunkFind = efi.find(ed.getFullEntityName()).condition(chunkCondition).useCache(false);
+            if (disableAuthz) chunkFind.disableAuthz();
+            EntityList chunkList = chunkFind.list();
+            int chunkListSize = chunkList.size();
+            ArrayList<EntityValueBase> chunkValues = new ArrayList<>(chunkListSize);
+            for (int i = 0; i < chunkListSize; i++) chunkValues.add((EntityValueBase) chunkList.get(i));
+            return chunkValues;
+        }, EntityValueBase::getValueMap, uncachedMisses);
+    }
+
+    /**
+     * Query the distinct PK values in chunks of chunkSize with queryChunk and match the records returned to the keys
+     * by makePkKey(), so PKs passed in with a different type than the field (like a String for a number) still match.
+     * Keys not matched in a chunk that returned records are added to uncachedMisses: the DB may have matched them
+     * differently than the converted values do, so their absence should not be cached.
+     */
+    static <V> Map<List<Object>, V> matchByPkChunks(List<Map<String, Object>> pkValuesList, int chunkSize, String[] pkNames,
+            String[] pkJavaTypes, Function<List<Map<String, Object>>, List<V>> queryChunk, Function<V, Map<String, Object>> valueMapOf,
+            Set<List<Object>> uncachedMisses) {
+        // the same key may be passed in more than once with different types, only query it once
+        LinkedHashMap<List<Object>, Map<String, Object>> pkValuesByKey = new LinkedHashMap<>();
+        for (Map<String, Object> pkValues : pkValuesList) pkValuesByKey.putIfAbsent(makePkKey(pkNames, pkJavaTypes, pkValues), pkValues);
+        ArrayList<List<Object>> pkKeyList = new ArrayList<>(pkValuesByKey.keySet());
+        Map<List<Object>, V> foundByPk = new HashMap<>();
+
+        int pkKeyListSize = pkKeyList.size();
+        for (int chunkStart = 0; chunkStart < pkKeyListSize; chunkStart += chunkSize) {
+            int chunkEnd = Math.min(chunkStart + chunkSize, pkKeyListSize);
+            ArrayList<Map<String, Object>> chunkPkValues = new ArrayList<>(chunkEnd - chunkStart);
+            for (int i = chunkStart; i < chunkEnd; i++) chunkPkValues.add(pkValuesByKey.get(pkKeyList.get(i)));
+
+            List<V> chunkValues = queryChunk.apply(chunkPkValues);
+            int chunkValuesSize = chunkValues.size();
+            for (int i = 0; i < chunkValuesSize; i++) {
+                V value = chunkValues.get(i);
+                foundByPk.put(makePkKey(pkNames, pkJavaTypes, valueMapOf.apply(value)), value);
+            }
+            if (chunkValuesSize > 0) for (int i = chunkStart; i < chunkEnd; i++) {
+                List<Object> pkKey = pkKeyList.get(i);
+                if (!foundByPk.containsKey(pkKey)) uncachedMisses.add(pkKey);
+            }
+        }
+        return foundByPk;
+    }
+
+    private static String[] getPkJavaTypes(EntityDefinition ed) {
+        FieldInfo[] pkFieldInfos = ed.entityInfo.pkFieldInfoArray;
+        String[] pkJavaTypes = new String[pkFieldInfos.length];
+        for (int i = 0; i < pkFieldInfos.length; i++) pkJavaTypes[i] = pkFieldInfos[i].javaType;
+        return pkJavaTypes;
+    }
+    /** PK values converted to the PK field Java types (BigDecimal without trailing zeros), in PK field order */
+    static List<Object> makePkKey(String[] pkNames, String[] pkJavaTypes, Map<String, Object> valueMap) {
+        ArrayList<Object> pkKey = new ArrayList<>(pkNames.length);
+        for (int i = 0; i < pkNames.length; i++) {
+            Object value = ObjectUtil.basicConvert(valueMap.get(pkNames[i]), pkJavaTypes[i]);
+            if (value instanceof BigDecimal) value = FieldInfo.safeStripZeroes((BigDecimal) value);
+            pkKey.add(value);
+        }
+        return pkKey;
+    }
+
+    /**
+     * The whole-table snapshot for a cache-full-table entity if this find can be done in memory: cacheable, no TX cache
+     * (may have writes not yet sent to the DB), not distinct, and a condition EntityTableSnapshot can evaluate.
+     */
+    private EntityTableSnapshot getTableSnapshot(EntityDefinition ed, EntityConditionImplBase whereCondition, boolean doCache) {
+        if (!doCache || !ed.entityInfo.cacheFullTable || txCache != null || getDistinct()) return null;
+        EntityTableSnapshot tableSnapshot = efi.getEntityCache().getTableSnapshot(ed);
+        return tableSnapshot != null && tableSnapshot.isSupported(whereCondition) ? tableSnapshot : null;
+    }
+
+    private EntityValueBase oneQuery(ExecutionContextImpl ec, EntityDefinition ed, EntityConditionImplBase cond,
+                                     FieldInfo[] fieldInfoArray, FieldOrderOptions[] fieldOptionsArray) {
+        try { return oneExtended(cond, fieldInfoArray, fieldOptionsArray); }
+        catch (SQLException e) { throw new EntitySqlException(makeErrorMsg("Error finding one", ONE_ERROR, cond, ed, ec), e); }
+        catch (Exception e) { throw new EntityException(makeErrorMsg("Error finding one", ONE_ERROR, cond, ed, ec), e); }
+    }
+
     public EntityConditionImplBase getConditionForQuery(EntityDefinition ed, EntityConditionImplBase whereCondition) {
         // NOTE: do actual query condition as a separate condition because this will always be added on and isn't a
         //     part of the original where to use for the cache
@@ -1036,7 +1293,8 @@ public abstract class EntityFindBase implements EntityFind {
             }
         }
 
-        boolean doEntityCache = shouldCache();
+        EntityCacheStats adaptiveStats = getAdaptiveStats(ed);
+        boolean doEntityCache = adaptiveStats != null ? adaptiveStats.isEnabled(EntityCacheStats.LIST) : shouldCache();
 
         // NOTE: artifactExecutionFacade.filterFindForUser() no longer called here, called in EntityFindBuilder after trimming if needed for view-entity
         if (doEntityCache) {
@@ -1044,14 +1302,23 @@ public abstract class EntityFindBase implements EntityFind {
             ArrayList findFilterList = ec.artifactExecutionFacade.getFindFiltersForUser(ed, null);
             if (findFilterList != null && findFilterList.size() > 0) doEntityCache = false;
         }
+        // entity modified in this transaction, cache not cleared until commit (see EntityCache.isPendingInvalidate())
+        if (doEntityCache && efi.getEntityCache().isPendingInvalidate(ed)) doEntityCache = false;
 
         EntityConditionImplBase whereCondition = getWhereEntityConditionInternal(ed);
+        // a whole-table snapshot can answer finds without a where condition too
+        boolean useTableSnapshot = doEntityCache;
         // don't cache if no whereCondition
-        if (whereCondition == null) doEntityCache = false;
+        if (whereCondition == null) { doEntityCache = false; adaptiveStats = null; }
 
         // try the txCache first, more recent than general cache (and for update general cache entries will be cleared anyway)
         EntityListImpl txcEli = txCache != null ? txCache.listGet(ed, whereCondition, orderByExpanded) : (EntityListImpl) null;
 
+        if (txcEli == null && !forUpdate) {
+            EntityTableSnapshot tableSnapshot = getTableSnapshot(ed, whereCondition, useTableSnapshot);
+            if (tableSnapshot != null) return tableSnapshot.list(whereCondition, orderByExpanded, efi);
+        }
+
         // NOTE: don't cache if there is a having condition, for now just support where
         // NOTE: could avoid caching lists if it is a filtered find, but mostly by org so reusable: && !filteredFind
         Cache<EntityCondition, EntityListImpl> entityListCache = doEntityCache ?
@@ -1066,7 +1333,9 @@ public abstract class EntityFindBase implements EntityFind {
             // if (ed.getFullEntityName().contains("OrderItem")) logger.warn("======== Got OrderItem from txCache ${el.size()} results where: ${whereCondition}")
         } else if (cacheList != null) {
             el = cacheList;
+            if (adaptiveStats != null) adaptiveStats.recordRead(EntityCacheStats.LIST, true, 0);
         } else {
+            long queryStartNanos = adaptiveStats != null ? System.nanoTime() : 0;
             // order by fields need to be selected (at least on some databases, Derby is one of them)
             int orderByExpandedSize = orderByExpanded.size();
             if (getDistinct() && fieldsToSelect != null && fieldsToSelect.size() > 0 && orderByExpandedSize > 0) {
@@ -1121,22 +1390,23 @@ public abstract class EntityFindBase implements EntityFind {
                 havingCondition = EntityConditionFactoryImpl.makeConditionImpl(havingCondition, EntityCondition.AND, viewHaving);
             }
 
-            // call the abstract method
-            EntityListIterator eli;
-            try { eli = iteratorExtended(queryWhereCondition, havingCondition, orderByExpanded, fieldInfoArray, fieldOptionsArray); }
-            catch (SQLException e) { throw new EntitySqlException(makeErrorMsg("Error finding list of", LIST_ERROR, queryWhereCondition, ed, ec), e); }
-            catch (Exception e) { throw new EntityException(makeErrorMsg("Error finding list of", LIST_ERROR, queryWhereCondition, ed, ec), e); }
-
-            MNode databaseNode = this.efi.getDatabaseNode(ed.getEntityGroupName());
-            if (limit != null && databaseNode != null && "cursor".equals(databaseNode.attribute("offset-style"))) {
-                el = (EntityListImpl) eli.getPartialList(offset != null ? offset : 0, limit, true);
+            if (doEntityCache && !forUpdate) {
+                // concurrent misses for the same condition share one query, see EntityCache.loadListCache()
+                final EntityConditionImplBase loadWhereCondition = queryWhereCondition;
+                final EntityConditionImplBase loadHavingCondition = havingCondition;
+                final FieldInfo[] loadFieldInfoArray = fieldInfoArray;
+                final FieldOrderOptions[] loadFieldOptionsArray = fieldOptionsArray;
+                el = efi.getEntityCache().loadListCache(ed, whereCondition, orderByExpanded, entityListCache, () ->
+                        listQuery(ec, ed, loadWhereCondition, loadHavingCondition, orderByExpanded, loadFieldInfoArray, loadFieldOptionsArray));
             } else {
-                el = (EntityListImpl) eli.getCompleteList(true);
-            }
+                long cacheGeneration = doEntityCache ? efi.getEntityCache().getCacheGeneration(ed) : 0;
+                el = listQuery(ec, ed, queryWhereCondition, havingCondition, orderByExpanded, fieldInfoArray, fieldOptionsArray);
 
-            // don't put in tx cache if it is going in list cache
-            if (txCache != null && !doEntityCache && ftsSize == 0) txCache.listPut(ed, whereCondition, el);
-            if (doEntityCache) efi.getEntityCache().putInListCache(ed, el, whereCondition, entityListCache);
+                // don't put in tx cache if it is going in list cache
+                if (txCache != null && !doEntityCache && ftsSize == 0) txCache.listPut(ed, whereCondition, el);
+                if (doEntityCache) efi.getEntityCache().putInListCache(ed, el, whereCondition, orderByExpanded, entityListCache, cacheGeneration);
+            }
+            if (adaptiveStats != null) adaptiveStats.recordRead(EntityCacheStats.LIST, false, System.nanoTime() - queryStartNanos);
 
             // if (ed.getFullEntityName().contains("OrderItem")) logger.warn("======== Got OrderItem from DATABASE ${el.size()} results where: ${whereCondition}")
             // logger.warn("======== Got ${ed.getFullEntityName()} from DATABASE ${el.size()} results where: ${whereCondition}")
@@ -1148,6 +1418,23 @@ public abstract class EntityFindBase implements EntityFind {
         return el;
     }
 
+    private EntityListImpl listQuery(ExecutionContextImpl ec, EntityDefinition ed, EntityConditionImplBase queryWhereCondition,
+                                     EntityConditionImplBase havingCondition, ArrayList<String> orderByExpanded,
+                                     FieldInfo[] fieldInfoArray, FieldOrderOptions[] fieldOptionsArray) {
+        // call the abstract method
+        EntityListIterator eli;
+        try { eli = iteratorExtended(queryWhereCondition, havingCondition, orderByExpanded, fieldInfoArray, fieldOptionsArray); }
+        catch (SQLException e) { throw new EntitySqlException(makeErrorMsg("Error finding list of", LIST_ERROR, queryWhereCondition, ed, ec), e); }
+        catch (Exception e) { throw new EntityException(makeErrorMsg("Error finding list of", LIST_ERROR, queryWhereCondition, ed, ec), e); }
+
+        MNode databaseNode = this.efi.getDatabaseNode(ed.getEntityGroupName());
+        if (limit != null && databaseNode != null && "cursor".equals(databaseNode.attribute("offset-style"))) {
+            return (EntityListImpl) eli.getPartialList(offset != null ? offset : 0, limit, true);
+        } else {
+            return (EntityListImpl) eli.getCompleteList(true);
+        }
+    }
+
     @Override
     public EntityListIterator iterator() throws EntityException {
         ExecutionContextImpl ec = efi.ecfi.getEci();
@@ -1302,7 +1589,8 @@ public abstract class EntityFindBase implements EntityFind {
         // there may not be a simpleAndMap, but that's all we have that can be treated directly by the EECA
         // find EECA rules deprecated, not worth performance hit: efi.runEecaRules(ed.getFullEntityName(), simpleAndMap, "find-count", true)
 
-        boolean doCache = shouldCache();
+        EntityCacheStats adaptiveStats = getAdaptiveStats(ed);
+        boolean doCache = adaptiveStats != null ? adaptiveStats.isEnabled(EntityCacheStats.COUNT) : shouldCache();
 
         // NOTE: artifactExecutionFacade.filterFindForUser() no longer called here, called in EntityFindBuilder after trimming if needed for view-entity
         if (doCache) {
@@ -1310,12 +1598,19 @@ public abstract class EntityFindBase implements EntityFind {
             ArrayList findFilterList = ec.artifactExecutionFacade.getFindFiltersForUser(ed, null);
             if (findFilterList != null && findFilterList.size() > 0) doCache = false;
         }
+        // entity modified in this transaction, cache not cleared until commit (see EntityCache.isPendingInvalidate())
+        if (doCache && efi.getEntityCache().isPendingInvalidate(ed)) doCache = false;
 
         EntityConditionImplBase whereCondition = getWhereEntityConditionInternal(ed);
+        // a whole-table snapshot can answer finds without a where condition too
+        boolean useTableSnapshot = doCache;
         // don't cache if no whereCondition
-        if (whereCondition == null) doCache = false;
+        if (whereCondition == null) { doCache = false; adaptiveStats = null; }
         // NOTE: don't cache if there is a having condition, for now just support where
 
+        EntityTableSnapshot tableSnapshot = getTableSnapshot(ed, whereCondition, useTableSnapshot);
+        if (tableSnapshot != null) return tableSnapshot.count(whereCondition);
+
         Cache<EntityCondition, Long> entityCountCache = doCache ? ed.getCacheCount(efi.getEntityCache()) : null;
         Long cacheCount = null;
         if (doCache) cacheCount = entityCountCache.get(whereCondition);
@@ -1323,7 +1618,9 @@ public abstract class EntityFindBase implements EntityFind {
         long count;
         if (cacheCount != null) {
             count = cacheCount;
+            if (adaptiveStats != null) adaptiveStats.recordRead(EntityCacheStats.COUNT, true, 0);
         } else {
+            long queryStartNanos = adaptiveStats != null ? System.nanoTime() : 0;
             // select all pk and nonpk fields to match what list() or iterator() would do
             int ftsSize = fieldsToSelect != null ? fieldsToSelect.size() : 0;
             FieldInfo[] fieldInfoArray;
@@ -1374,12 +1671,15 @@ public abstract class EntityFindBase implements EntityFind {
                 havingCondition = EntityConditionFactoryImpl.makeConditionImpl(havingCondition, EntityCondition.AND, viewHaving);
             }
 
+            // get the cache generation before the query, if cleared during the query the count is not cached
+            long cacheGeneration = doCache ? efi.getEntityCache().getCacheGeneration(ed) : 0;
             // call the abstract method
             try { count = countExtended(queryWhereCondition, havingCondition, fieldInfoArray, fieldOptionsArray); }
             catch (SQLException e) { throw new EntitySqlException(makeErrorMsg("Error finding count of", COUNT_ERROR, queryWhereCondition, ed, ec), e); }
             catch (Exception e) { throw new EntityException(makeErrorMsg("Error finding count of", COUNT_ERROR, queryWhereCondition, ed, ec), e); }
 
-            if (doCache) entityCountCache.put(whereCondition, count);
+            if (doCache) efi.getEntityCache().putInCountCache(ed, whereCondition, count, entityCountCache, cacheGeneration);
+            if (adaptiveStats != null) adaptiveStats.recordRead(EntityCacheStats.COUNT, false, System.nanoTime() - queryStartNanos);
         }
 
         // find EECA rules deprecated, not worth performance hit: efi.runEecaRules(ed.getFullEntityName(), simpleAndMap, "find-count", false)
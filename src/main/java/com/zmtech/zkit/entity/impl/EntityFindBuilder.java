@@ -25,16 +25,39 @@ import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.Objects;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class EntityFindBuilder extends EntityQueryBuilder {
     protected static final Logger logger = LoggerFactory.getLogger(EntityFindBuilder.class);
 
+    static final int SHAPE_ONE = 1;
+    static final int SHAPE_LIST = 2;
+    static final int SHAPE_COUNT = 3;
+    /** max SQL shapes cached per entity; when reached the cache is cleared (IN conditions with varying value counts are different shapes) */
+    private static final int MAX_SQL_SHAPES = 256;
+    private static final String ALL_FIELDS_SHAPE = "*";
+    private static final String WHERE_SHAPE = "WHERE";
+    private static final String HAVING_SHAPE = "HAVING";
+    private static final SqlShape NOT_CACHEABLE = new SqlShape(null, null);
+
     private EntityFindBase entityFindBase;
     private EntityConditionImplBase whereCondition;
     private FieldInfo[] fieldInfoArray;
 
+    private ArrayList<Object> sqlShapeKey = null;
+    private ArrayList<Object> sqlShapeValues = null;
+    private String cachedSql = null;
+
+    /** Finished SQL for a query shape plus the field for each parameter; sql is null for shapes that can't be cached */
+    static class SqlShape {
+        final String sql;
+        final FieldInfo[] parameterFields;
+        SqlShape(String sql, FieldInfo[] parameterFields) { this.sql = sql; this.parameterFields = parameterFields; }
+    }
+
     public EntityFindBuilder(EntityDefinition entityDefinition, EntityFindBase entityFindBase,
                              EntityConditionImplBase whereCondition, FieldInfo[] fieldInfoArray) {
         super(entityDefinition, entityFindBase.efi);
@@ -48,6 +71,78 @@ public class EntityFindBuilder extends EntityQueryBuilder {
 
     public void makeDistinct() { sqlTopLevel.append("DISTINCT "); }
 
+    /**
+     * Look for SQL already built for the same query shape: the query type, selected fields, condition structure without
+     * values (see EntityConditionImplBase.addSqlShape()), order by, limit/offset, distinct and for update. The parameter
+     * values are collected from the conditions in the order the SQL uses them. If found the parameters are set and true is
+     * returned, the make* methods should not be called; otherwise build the SQL as usual and it is cached in
+     * makePreparedStatement().
+     *
+     * Shapes are not cached for dynamic view-entities, view-entities with sub-select members or a find having condition.
+     * The first time a shape is seen the parameters from the built SQL are compared with the collected values, if they don't
+     * match (like a view-entity with parameters in join conditions) the shape is marked as not cacheable.
+     */
+    public boolean useCachedSql(int queryType, FieldOrderOptions[] fieldOptionsArray, EntityConditionImplBase havingCondition,
+                                ArrayList<String> orderByExpanded, boolean isDistinct) {
+        EntityDefinition ed = mainEntityDefinition;
+        if (ed.isDynamicView || ed.isHasSubSelectMembers() || entityFindBase.getHavingEntityCondition() != null) return false;
+
+        ArrayList<Object> key = new ArrayList<>(32);
+        ArrayList<Object> values = new ArrayList<>();
+        key.add(queryType);
+        if (fieldOptionsArray == null && fieldInfoArray == ed.entityInfo.allFieldInfoArray) {
+            key.add(ALL_FIELDS_SHAPE);
+        } else {
+            key.add(fieldInfoArray.length);
+            for (int i = 0; i < fieldInfoArray.length; i++) {
+                key.add(fieldInfoArray[i]);
+                FieldOrderOptions foo = fieldOptionsArray != null ? fieldOptionsArray[i] : null;
+                key.add(foo != null ? foo.getCaseUpperLower() : null);
+            }
+        }
+        key.add(isDistinct);
+        key.add(entityFindBase.getForUpdate());
+        // for view-entities order by fields are used to decide which member-entities to join
+        if (ed.isViewEntity) key.add(entityFindBase.orderByFields != null ? new ArrayList<>(entityFindBase.orderByFields) : null);
+        if (queryType == SHAPE_LIST) {
+            key.add(new ArrayList<>(orderByExpanded));
+            key.add(entityFindBase.limit);
+            key.add(entityFindBase.offset);
+        }
+        key.add(WHERE_SHAPE);
+        if (whereCondition != null && !whereCondition.addSqlShape(key, values)) return false;
+        key.add(HAVING_SHAPE);
+        if (havingCondition != null && !havingCondition.addSqlShape(key, values)) return false;
+
+        SqlShape shape = ed.sqlShapeCache.get(key);
+        if (shape == null) {
+            sqlShapeKey = key;
+            sqlShapeValues = values;
+            return false;
+        }
+        if (shape.sql == null) return false;
+
+        cachedSql = shape.sql;
+        int valuesSize = values.size();
+        for (int i = 0; i < valuesSize; i++) parameters.add(new EntityConditionParameter(shape.parameterFields[i], values.get(i), this));
+        return true;
+    }
+    private void cacheSqlShape() {
+        int parametersSize = parameters.size();
+        boolean matches = parametersSize == sqlShapeValues.size();
+        FieldInfo[] parameterFields = new FieldInfo[parametersSize];
+        for (int i = 0; matches && i < parametersSize; i++) {
+            EntityConditionParameter parameter = parameters.get(i);
+            if (!Objects.equals(parameter.getValue(), sqlShapeValues.get(i))) matches = false;
+            parameterFields[i] = parameter.getFieldInfo();
+        }
+        ConcurrentHashMap<ArrayList<Object>, SqlShape> sqlShapeCache = mainEntityDefinition.sqlShapeCache;
+        if (sqlShapeCache.size() >= MAX_SQL_SHAPES) sqlShapeCache.clear();
+        sqlShapeCache.put(sqlShapeKey, matches ? new SqlShape(finalSql, parameterFields) : NOT_CACHEABLE);
+        sqlShapeKey = null;
+        sqlShapeValues = null;
+    }
+
     public void makeCountFunction(FieldOrderOptions[] fieldOptionsArray, boolean isDistinct, boolean isGroupBy) {
         int fiaLength = fieldInfoArray.length;
         if (isGroupBy || (isDistinct && fiaLength > 0)) {
@@ -677,15 +772,17 @@ public class EntityFindBuilder extends EntityQueryBuilder {
     @Override
     public PreparedStatement makePreparedStatement() {
         if (connection == null) throw new IllegalStateException("Cannot make PreparedStatement, no Connection in place");
-        finalSql = sqlTopLevel.toString();
+        finalSql = cachedSql != null ? cachedSql : sqlTopLevel.toString();
         // if (this.mainEntityDefinition.entityName.equals("Foo")) logger.warn("========= making find PreparedStatement for SQL: ${sql}; parameters: ${getParameters()}")
         if (isDebugEnabled) logger.debug("making find PreparedStatement for SQL: " + finalSql);
         try {
             ps = connection.prepareStatement(finalSql, entityFindBase.getResultSetType(), entityFindBase.getResultSetConcurrency());
+            if (efi.isQueryStats()) efi.saveStatementStats(mainEntityDefinition, finalSql, ps);
             Integer maxRows = entityFindBase.getMaxRows();
             Integer fetchSize = entityFindBase.getFetchSize();
             if (maxRows != null && maxRows > 0) ps.setMaxRows(maxRows);
             if (fetchSize != null && fetchSize > 0) ps.setFetchSize(fetchSize);
+            if (sqlShapeKey != null) cacheSqlShape();
         } catch (SQLException e) {
             EntityQueryBuilder.handleSqlException(e, finalSql);
         }
@@ -40,16 +40,19 @@ public class EntityFindImpl extends EntityFindBase {
 
         EntityFindBuilder efb = new EntityFindBuilder(ed, this, whereCondition, fieldInfoArray);
 
-        // SELECT fields
-        efb.makeSqlSelectFields(fieldInfoArray, fieldOptionsArray, false);
-        // FROM Clause
-        efb.makeSqlFromClause();
-        // WHERE clause only for one/pk query
-        efb.makeWhereClause();
-        // GROUP BY clause
-        efb.makeGroupByClause();
-        // FOR UPDATE
-        if (getForUpdate()) efb.makeForUpdate();
+        // SQL for the same query shape is only built once, see EntityFindBuilder.useCachedSql()
+        if (!efb.useCachedSql(EntityFindBuilder.SHAPE_ONE, fieldOptionsArray, null, null, false)) {
+            // SELECT fields
+            efb.makeSqlSelectFields(fieldInfoArray, fieldOptionsArray, false);
+            // FROM Clause
+            efb.makeSqlFromClause();
+            // WHERE clause only for one/pk query
+            efb.makeWhereClause();
+            // GROUP BY clause
+            efb.makeGroupByClause();
+            // FOR UPDATE
+            if (getForUpdate()) efb.makeForUpdate();
+        }
 
         // run the SQL now that it is built
         EntityValueBase newEntityValue = null;
@@ -98,26 +101,30 @@ public class EntityFindImpl extends EntityFindBase {
         if (!ed.tableExistsDbMetaOnly()) return new EntityListIteratorWrapper(new ArrayList<>(), ed, efi, null, null);
 
         EntityFindBuilder efb = new EntityFindBuilder(ed, this, whereCondition, fieldInfoArray);
-        if (getDistinct()) efb.makeDistinct();
-
-        // select fields
-        efb.makeSqlSelectFields(fieldInfoArray, fieldOptionsArray, false);
-        // FROM Clause
-        efb.makeSqlFromClause();
-        // WHERE clause
-        efb.makeWhereClause();
-        // GROUP BY clause
-        efb.makeGroupByClause();
-        // HAVING clause
-        efb.makeHavingClause(havingCondition);
-
-        boolean hasLimitOffset = limit != null || offset != null;
-        // ORDER BY clause
-        efb.makeOrderByClause(orderByExpanded, hasLimitOffset);
-        // LIMIT/OFFSET clause
-        if (hasLimitOffset) efb.addLimitOffset(limit, offset);
-        // FOR UPDATE
-        if (getForUpdate()) efb.makeForUpdate();
+
+        // SQL for the same query shape is only built once, see EntityFindBuilder.useCachedSql()
+        if (!efb.useCachedSql(EntityFindBuilder.SHAPE_LIST, fieldOptionsArray, havingCondition, orderByExpanded, getDistinct())) {
+            if (getDistinct()) efb.makeDistinct();
+
+            // select fields
+            efb.makeSqlSelectFields(fieldInfoArray, fieldOptionsArray, false);
+            // FROM Clause
+            efb.makeSqlFromClause();
+            // WHERE clause
+            efb.makeWhereClause();
+            // GROUP BY clause
+            efb.makeGroupByClause();
+            // HAVING clause
+            efb.makeHavingClause(havingCondition);
+
+            boolean hasLimitOffset = limit != null || offset != null;
+            // ORDER BY clause
+            efb.makeOrderByClause(orderByExpanded, hasLimitOffset);
+            // LIMIT/OFFSET clause
+            if (hasLimitOffset) efb.addLimitOffset(limit, offset);
+            // FOR UPDATE
+            if (getForUpdate()) efb.makeForUpdate();
+        }
 
         // run the SQL now that it is built
         EntityListIteratorImpl elii;
@@ -162,18 +169,21 @@ public class EntityFindImpl extends EntityFindBase {
         boolean isDistinct = getDistinct() || (ed.isViewEntity && condNode != null && "true".equals(condNode.attribute("distinct")));
         boolean isGroupBy = ed.entityInfo.hasFunctionAlias;
 
-        // count function instead of select fields
-        efb.makeCountFunction(fieldOptionsArray, isDistinct, isGroupBy);
-        // FROM Clause
-        efb.makeSqlFromClause();
-        // WHERE clause
-        efb.makeWhereClause();
-        // GROUP BY clause
-        efb.makeGroupByClause();
-        // HAVING clause
-        efb.makeHavingClause(havingCondition);
-
-        efb.closeCountSubSelect(fieldInfoArray.length, isDistinct, isGroupBy);
+        // SQL for the same query shape is only built once, see EntityFindBuilder.useCachedSql()
+        if (!efb.useCachedSql(EntityFindBuilder.SHAPE_COUNT, fieldOptionsArray, havingCondition, null, isDistinct)) {
+            // count function instead of select fields
+            efb.makeCountFunction(fieldOptionsArray, isDistinct, isGroupBy);
+            // FROM Clause
+            efb.makeSqlFromClause();
+            // WHERE clause
+            efb.makeWhereClause();
+            // GROUP BY clause
+            efb.makeGroupByClause();
+            // HAVING clause
+            efb.makeHavingClause(havingCondition);
+
+            efb.closeCountSubSelect(fieldInfoArray.length, isDistinct, isGroupBy);
+        }
 
         // run the SQL now that it is built
         long count = 0;
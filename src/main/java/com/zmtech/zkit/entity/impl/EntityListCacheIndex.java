@@ -0,0 +1,205 @@
+package com.zmtech.zkit.entity.impl;
+
+import com.zmtech.zkit.cache.impl.ZCache;
+import com.zmtech.zkit.entity.EntityCondition;
+import com.zmtech.zkit.entity.impl.condition.EntityConditionImplBase;
+import com.zmtech.zkit.entity.impl.condition.impl.FieldValueCondition;
+import com.zmtech.zkit.entity.impl.condition.impl.ListCondition;
+
+import javax.cache.Cache;
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 实体list缓存条件的倒排索引：字段 -> 值 -> 条件，记录修改时只需要用mapMatches检查字段值相同的条件
+ * 和不能索引的条件，不用遍历整个list缓存。
+ *
+ * 条件可以索引的前提是：mapMatches为true时记录中至少有一个(字段, 值)在条件的索引项中。
+ * EQUALS、IN（非null值）可以索引；AND取第一个可以索引的子条件；OR要求所有子条件都可以索引；其他条件放在unindexed中。
+ * 索引只在缓存条件注册时添加，缓存自己的淘汰、到期和clear不会通知索引，多余的条件在索引明显大于缓存时清理，
+ * 在修改记录和注册条件时检查。
+ * 也用于one缓存中没有结果（EmptyRecord）的条件，匹配规则相同。
+ */
+class EntityListCacheIndex {
+    /** 不在缓存中的条件至少注册了这么久才清理，避免清理掉正在加载（已注册但还没有放入缓存）的条件 */
+    private static final long PRUNE_MIN_AGE_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final int PRUNE_SLACK = 1000;
+    /** 每注册这么多个条件检查一次是否需要清理 */
+    private static final int PRUNE_CHECK_ADDS = 1000;
+
+    /** 条件 -> 注册时间，也用作所有已索引条件的集合 */
+    private final ConcurrentHashMap<EntityCondition, Long> addedTimeByCondition = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, ConcurrentHashMap<Object, Set<EntityCondition>>> conditionsByFieldValue = new ConcurrentHashMap<>();
+    private final Set<EntityCondition> unindexed = ConcurrentHashMap.newKeySet();
+    private volatile long lastPruneNanos = System.nanoTime();
+    private final AtomicInteger addsSinceCheck = new AtomicInteger();
+
+    /** 在条件放入缓存之前调用，保证放入后的修改都能找到这个条件 */
+    synchronized void add(EntityCondition ec) {
+        if (addedTimeByCondition.put(ec, System.nanoTime()) != null) return;
+        List<Object[]> fieldValues = getIndexValues(ec);
+        if (fieldValues == null) {
+            unindexed.add(ec);
+            return;
+        }
+        for (Object[] fieldValue : fieldValues) {
+            conditionsByFieldValue.computeIfAbsent((String) fieldValue[0], k -> new ConcurrentHashMap<>())
+                    .computeIfAbsent(fieldValue[1], k -> ConcurrentHashMap.newKeySet()).add(ec);
+        }
+        onIndexed(ec, fieldValues);
+    }
+
+    /**
+     * 注册条件，每PRUNE_CHECK_ADDS次检查一次是否需要清理。很少修改记录的实体只在这里清理，
+     * 否则缓存淘汰或到期的条件会一直留在索引中。
+     */
+    void add(EntityCondition ec, Cache<EntityCondition, ?> cache) {
+        add(ec);
+        if (addsSinceCheck.incrementAndGet() < PRUNE_CHECK_ADDS || !(cache instanceof ZCache)) return;
+        addsSinceCheck.set(0);
+        pruneIfNeeded(cache, ((ZCache) cache).size());
+    }
+
+    /** addedTime与当前注册时间相同时才删除，期间重新注册（重新加载）的条件保留 */
+    synchronized void remove(EntityCondition ec, Long addedTime) {
+        if (!addedTimeByCondition.remove(ec, addedTime)) return;
+        List<Object[]> fieldValues = getIndexValues(ec);
+        if (fieldValues == null) {
+            unindexed.remove(ec);
+            return;
+        }
+        onUnindexed(ec, fieldValues);
+        for (Object[] fieldValue : fieldValues) {
+            Map<Object, Set<EntityCondition>> byValue = conditionsByFieldValue.get((String) fieldValue[0]);
+            if (byValue == null) continue;
+            Set<EntityCondition> conditions = byValue.get(fieldValue[1]);
+            if (conditions == null) continue;
+            conditions.remove(ec);
+            if (conditions.isEmpty()) byValue.remove(fieldValue[1]);
+        }
+    }
+
+    /** 条件的索引项，默认为getFieldValues，子类可以使用不同的匹配规则 */
+    List<Object[]> getIndexValues(EntityCondition ec) {
+        return getFieldValues(ec);
+    }
+    /** 条件加入索引后调用（在add的同步块中），不能索引的条件不调用 */
+    void onIndexed(EntityCondition ec, List<Object[]> fieldValues) { }
+    /** 条件从索引删除时调用（在remove的同步块中） */
+    void onUnindexed(EntityCondition ec, List<Object[]> fieldValues) { }
+
+    Long getAddedTime(EntityCondition ec) {
+        return addedTimeByCondition.get(ec);
+    }
+
+    int size() {
+        return addedTimeByCondition.size();
+    }
+
+    /** 注册时间最早的count个条件，用于限制索引大小 */
+    List<EntityCondition> getOldest(int count) {
+        if (count <= 0) return Collections.emptyList();
+        List<Map.Entry<EntityCondition, Long>> entries = new ArrayList<>(addedTimeByCondition.entrySet());
+        entries.sort(Map.Entry.comparingByValue());
+        List<EntityCondition> oldest = new ArrayList<>(Math.min(count, entries.size()));
+        for (int i = 0; i < count && i < entries.size(); i++) oldest.add(entries.get(i).getKey());
+        return oldest;
+    }
+
+    /** 可能与记录匹配的条件：记录字段值对应的条件和所有不能索引的条件，调用方仍需要用mapMatches检查 */
+    Set<EntityCondition> getCandidates(Map<String, Object> valueMap) {
+        Set<EntityCondition> candidates = new HashSet<>(unindexed);
+        if (conditionsByFieldValue.isEmpty()) return candidates;
+        for (Map.Entry<String, Object> entry : valueMap.entrySet()) {
+            Object value = entry.getValue();
+            if (value == null) continue;
+            Map<Object, Set<EntityCondition>> byValue = conditionsByFieldValue.get(entry.getKey());
+            if (byValue == null) continue;
+            Set<EntityCondition> conditions = byValue.get(normalizeValue(value));
+            if (conditions != null) candidates.addAll(conditions);
+        }
+        return candidates;
+    }
+
+    /** 索引中的条件明显多于缓存条目时，清理已经不在缓存中的条件；最多每PRUNE_MIN_AGE_NANOS执行一次 */
+    void pruneIfNeeded(Cache<EntityCondition, ?> cache, int cacheSize) {
+        if (addedTimeByCondition.size() <= 2 * cacheSize + PRUNE_SLACK) return;
+        long now = System.nanoTime();
+        if (now - lastPruneNanos < PRUNE_MIN_AGE_NANOS) return;
+        lastPruneNanos = now;
+        for (Map.Entry<EntityCondition, Long> entry : addedTimeByCondition.entrySet()) {
+            Long addedTime = entry.getValue();
+            if (now - addedTime < PRUNE_MIN_AGE_NANOS) continue;
+            EntityCondition ec = entry.getKey();
+            if (!cache.containsKey(ec)) remove(ec, addedTime);
+        }
+    }
+
+    /** 条件的索引项，每项为{字段名, 规范化的值}；条件不能索引时返回null */
+    static List<Object[]> getFieldValues(EntityCondition ec) {
+        if (ec instanceof FieldValueCondition) {
+            FieldValueCondition fvc = (FieldValueCondition) ec;
+            EntityCondition.ComparisonOperator operator = fvc.getOperator();
+            Object value = fvc.getValue();
+            if (value == null) return null;
+            if (operator == EntityCondition.EQUALS || (operator == EntityCondition.IN && !(value instanceof Collection))) {
+                List<Object[]> fieldValues = new ArrayList<>(1);
+                fieldValues.add(new Object[] { fvc.getFieldName(), normalizeValue(value) });
+                return fieldValues;
+            }
+            if (operator == EntityCondition.IN) {
+                Collection<?> values = (Collection<?>) value;
+                if (values.isEmpty()) return null;
+                List<Object[]> fieldValues = new ArrayList<>(values.size());
+                for (Object curValue : values) {
+                    // IN中的null不会与记录匹配，但是保守起见不索引
+                    if (curValue == null) return null;
+                    fieldValues.add(new Object[] { fvc.getFieldName(), normalizeValue(curValue) });
+                }
+                return fieldValues;
+            }
+            return null;
+        }
+        if (ec instanceof ListCondition) {
+            ListCondition lc = (ListCondition) ec;
+            ArrayList<EntityConditionImplBase> conditionList = lc.getConditionList();
+            if (conditionList.isEmpty()) return null;
+            if (lc.getOperator() == EntityCondition.AND) {
+                // 所有子条件都匹配时才匹配，使用值最少的一个子条件
+                List<Object[]> best = null;
+                for (EntityConditionImplBase cond : conditionList) {
+                    List<Object[]> fieldValues = getFieldValues(cond);
+                    if (fieldValues != null && (best == null || fieldValues.size() < best.size())) best = fieldValues;
+                }
+                return best;
+            } else {
+                // 任意一个子条件匹配就匹配，需要所有子条件的索引项
+                List<Object[]> all = new ArrayList<>();
+                for (EntityConditionImplBase cond : conditionList) {
+                    List<Object[]> fieldValues = getFieldValues(cond);
+                    if (fieldValues == null) return null;
+                    all.addAll(fieldValues);
+                }
+                return all;
+            }
+        }
+        return null;
+    }
+
+    /** 与ObjectUtil.valuesEqual一致：数字按数值比较，日期按毫秒比较 */
+    static Object normalizeValue(Object value) {
+        if (value instanceof Date) value = ((Date) value).getTime();
+        if (value instanceof Number) {
+            try {
+                BigDecimal bd = value instanceof BigDecimal ? (BigDecimal) value : new BigDecimal(value.toString());
+                return bd.signum() == 0 ? BigDecimal.ZERO : bd.stripTrailingZeros();
+            } catch (NumberFormatException e) {
+                return value;
+            }
+        }
+        return value;
+    }
+}
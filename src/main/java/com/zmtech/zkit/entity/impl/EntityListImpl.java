@@ -17,6 +17,7 @@ import java.io.Writer;
 import java.sql.Date;
 import java.sql.Timestamp;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class EntityListImpl implements EntityList {
     protected static final Logger logger = LoggerFactory.getLogger(EntityListImpl.class);
@@ -25,6 +26,11 @@ public class EntityListImpl implements EntityList {
     private boolean fromCache = false;
     protected Integer offset = null;
     protected Integer limit = null;
+    /** 放入缓存时列表已经按这些字段排序（查询时的orderBy），同样排序的缓存命中直接返回这个列表 */
+    private transient List<String> cacheOrderBy = null;
+    /** 缓存中的列表按其他orderBy排序后的只读副本，键为排序字段列表，列表从缓存清除时一起释放 */
+    private transient volatile ConcurrentHashMap<List<String>, EntityListImpl> orderedVariants = null;
+    private static final int MAX_ORDERED_VARIANTS = 8;
 
     /** Default constructor for deserialization ONLY. */
     public EntityListImpl() { }
@@ -278,6 +284,38 @@ public class EntityListImpl implements EntityList {
     }
     @Override public void sort(Comparator<? super EntityValue> comparator) { valueList.sort(comparator); }
 
+    /** 放入缓存之前记录列表当前的排序字段，null或空表示没有排序 */
+    void setCacheOrderBy(List<String> fieldNames) {
+        cacheOrderBy = fieldNames != null && fieldNames.size() > 0 ? new ArrayList<>(fieldNames) : null;
+    }
+    /**
+     * 缓存中的列表按fieldNames排序的只读列表：与放入缓存时的排序相同时返回这个列表，否则返回排序后的副本，
+     * 每种排序只排一次，之后的命中直接返回；不修改这个列表，多个线程可以同时调用。
+     * 副本中的记录与这个列表共用（都是fromCache的只读记录）。
+     */
+    EntityListImpl getOrderedFromCache(List<String> fieldNames) {
+        if (fieldNames == null || fieldNames.size() == 0 || valueList.size() < 2 || fieldNames.equals(cacheOrderBy)) return this;
+        ConcurrentHashMap<List<String>, EntityListImpl> variants = orderedVariants;
+        if (variants == null) {
+            synchronized (this) {
+                variants = orderedVariants;
+                if (variants == null) orderedVariants = variants = new ConcurrentHashMap<>();
+            }
+        }
+        EntityListImpl ordered = variants.get(fieldNames);
+        if (ordered != null) return ordered;
+
+        ordered = new EntityListImpl(this.getEfi(), valueList.size());
+        ordered.valueList.addAll(valueList);
+        ordered.valueList.sort(new CollectionUtil.MapOrderByComparator(fieldNames));
+        ordered.cacheOrderBy = new ArrayList<>(fieldNames);
+        ordered.fromCache = true;
+        // 排序种类很少，超过上限时（如按用户输入排序）不再保存，每次返回新排序的副本
+        if (variants.size() >= MAX_ORDERED_VARIANTS) return ordered;
+        EntityListImpl existing = variants.putIfAbsent(ordered.cacheOrderBy, ordered);
+        return existing != null ? existing : ordered;
+    }
+
     @Override public int indexMatching(Map<String, Object> valueMap) {
         ListIterator<EntityValue> li = valueList.listIterator();
         int index = 0;
@@ -365,6 +403,10 @@ public class EntityListImpl implements EntityList {
         // NOTE: when cloning don't clone the fromCache value (normally when from cache will be cloned before filtering)
         return newObj;
     }
+    @Override public void createBulk() { getEfi().createBulk(valueList); }
+    @Override public void updateBulk() { getEfi().updateBulk(valueList); }
+    @Override public void deleteBulk() { getEfi().deleteBulk(valueList); }
+
     public EntityListImpl deepCloneList() {
         EntityListImpl newObj = new EntityListImpl(this.getEfi(), valueList.size());
         int valueListSize = valueList.size();
@@ -381,6 +423,13 @@ public class EntityListImpl implements EntityList {
     }
 
     @Override public boolean isFromCache() { return fromCache; }
+
+    /** 反序列化后（如从ZCache堆外存储加载）设置EntityFacadeImpl */
+    void setEntityFacade(EntityFacadeImpl efi) {
+        efiTransient = efi;
+        if (valueList == null) return;
+        for (EntityValue ev : valueList) if (ev instanceof EntityValueBase) ((EntityValueBase) ev).setEntityFacade(efi);
+    }
     @Override public int size() { return valueList.size(); }
     @Override public boolean isEmpty() { return valueList.isEmpty(); }
     @Override public boolean contains(Object o) { return valueList.contains(o); }
@@ -483,6 +532,9 @@ public class EntityListImpl implements EntityList {
         @Override public List<Map<String, Object>> getMasterValueList(String name) { return new ArrayList<>(); }
         @Override public ArrayList<Map<String, Object>> getValueMapList() { return new ArrayList<>(); }
         @Override public EntityList cloneList() { return this; }
+        @Override public void createBulk() { }
+        @Override public void updateBulk() { }
+        @Override public void deleteBulk() { }
         @Override public void setFromCache() { }
         @Override public boolean isFromCache() { return false; }
         @Override public int size() { return 0; }
@@ -61,6 +61,7 @@ public class EntityQueryBuilder {
         if (isDebugEnabled) logger.debug("making crud PreparedStatement for SQL: " + finalSql);
         try {
             ps = connection.prepareStatement(finalSql);
+            if (efi.isQueryStats()) efi.saveStatementStats(mainEntityDefinition, finalSql, ps);
         } catch (SQLException sqle) {
             handleSqlException(sqle, finalSql);
         }
@@ -111,6 +112,54 @@ public class EntityQueryBuilder {
         }
     }
 
+    public void addBatch() throws SQLException {
+        if (ps == null) throw new IllegalStateException("Cannot Add Batch, no PreparedStatement in place");
+        ps.addBatch();
+    }
+
+    /** Execute the batch of parameter sets added with addBatch(), returns update counts in the same order */
+    public int[] executeBatch() throws SQLException {
+        if (ps == null) throw new IllegalStateException("Cannot Execute Batch, no PreparedStatement in place");
+        boolean isError = false;
+        boolean queryStats = efi.isQueryStats();
+        long beforeQuery = queryStats ? System.nanoTime() : 0;
+        try {
+            final long timeBefore = isDebugEnabled ? System.currentTimeMillis() : 0L;
+            final int[] counts = ps.executeBatch();
+            if (isDebugEnabled) logger.debug("Executed batch with SQL [" + finalSql + "] for [" + counts.length +
+                    "] parameter sets in [" + ((System.currentTimeMillis() - timeBefore) / 1000) + "] seconds");
+            return counts;
+        } catch (SQLException sqle) {
+            isError = true;
+            logger.warn("Error in JDBC batch for SQL " + finalSql);
+            throw sqle;
+        } finally {
+            if (queryStats) efi.saveQueryStats(mainEntityDefinition, finalSql, System.nanoTime() - beforeQuery, isError);
+        }
+    }
+
+    /** Sets the PreparedStatement parameters for the value at valueIndex, see executeInBatches() */
+    public interface BatchValueSetter { void setValues(int valueIndex) throws SQLException; }
+    /** Checks the update count of the value at valueIndex once its batch is executed, see executeInBatches() */
+    public interface BatchCountChecker { void checkCount(int valueIndex, int count) throws SQLException; }
+
+    /**
+     * Add a parameter set to the batch for each of valueCount values, executing the batch each time it has batchSize
+     * parameter sets and after the last value; if checker is not null it gets the update count of each value
+     */
+    public void executeInBatches(int valueCount, int batchSize, BatchValueSetter setter, BatchCountChecker checker) throws SQLException {
+        int batchStart = 0;
+        for (int j = 0; j < valueCount; j++) {
+            setter.setValues(j);
+            addBatch();
+            if (j - batchStart + 1 == batchSize || j == valueCount - 1) {
+                int[] counts = executeBatch();
+                if (checker != null) for (int k = 0; k < counts.length; k++) checker.checkCount(batchStart + k, counts[k]);
+                batchStart = j + 1;
+            }
+        }
+    }
+
     /** NOTE: this should be called in a finally clause to make sure things are closed */
     public void closeAll() throws SQLException {
         if (ps != null) {
@@ -0,0 +1,289 @@
+package com.zmtech.zkit.entity.impl;
+
+import com.zmtech.zkit.entity.EntityCondition;
+import com.zmtech.zkit.entity.EntityList;
+import com.zmtech.zkit.entity.impl.condition.EntityConditionImplBase;
+import com.zmtech.zkit.entity.impl.condition.impl.DateCondition;
+import com.zmtech.zkit.entity.impl.condition.impl.FieldToFieldCondition;
+import com.zmtech.zkit.entity.impl.condition.impl.FieldValueCondition;
+import com.zmtech.zkit.entity.impl.condition.impl.ListCondition;
+import com.zmtech.zkit.entity.impl.condition.impl.TrueCondition;
+import com.zmtech.zkit.util.CollectionUtil;
+import com.zmtech.zkit.util.ObjectUtil;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * cache-full-table实体的整表快照，创建后不再修改，记录修改时整个快照丢弃并重新加载。
+ * 条件在内存中按SQL的语义执行（字段为null时比较不成立，null值的EQUALS/NOT_EQUAL为IS NULL/IS NOT NULL），
+ * 字符串比较区分大小写（与Java相同，不按数据库的排序规则）。不支持的条件（如WhereCondition、字段类型与值类型不同）
+ * 由isSupported判断，调用方改为查询数据库。
+ * 字段索引（值 -> 记录序号）在第一次按这个字段查询时创建。
+ */
+class EntityTableSnapshot {
+    private final EntityDefinition ed;
+    private final EntityValueBase[] values;
+    private final ConcurrentHashMap<String, Map<Object, int[]>> rowsByFieldValue = new ConcurrentHashMap<>();
+
+    EntityTableSnapshot(EntityDefinition ed, EntityList el) {
+        this.ed = ed;
+        values = new EntityValueBase[el.size()];
+        for (int i = 0; i < values.length; i++) {
+            EntityValueBase evb = (EntityValueBase) el.get(i);
+            evb.setFromCache();
+            values[i] = evb;
+        }
+    }
+
+    int size() { return values.length; }
+
+    /** 条件中的所有子条件都可以在内存中执行 */
+    boolean isSupported(EntityCondition ec) {
+        if (ec == null || ec instanceof TrueCondition) return true;
+        if (ec instanceof ListCondition) {
+            for (EntityConditionImplBase cond : ((ListCondition) ec).getConditionList()) if (!isSupported(cond)) return false;
+            return true;
+        }
+        if (ec instanceof DateCondition) return isSupported(((DateCondition) ec).getConditionInternal());
+        if (ec instanceof FieldValueCondition) {
+            FieldValueCondition fvc = (FieldValueCondition) ec;
+            FieldInfo fi = ed.getFieldInfo(fvc.getFieldName());
+            if (fi == null) return false;
+            Object value = fvc.getValue();
+            if (value instanceof Collection) {
+                for (Object curValue : (Collection) value) if (curValue != null && !isValueType(fi, curValue)) return false;
+                return true;
+            }
+            if (value instanceof CharSequence && (fvc.getOperator() == EntityCondition.IN || fvc.getOperator() == EntityCondition.NOT_IN))
+                return fi.typeValue == 1;
+            return value == null || isValueType(fi, value);
+        }
+        if (ec instanceof FieldToFieldCondition) {
+            FieldToFieldCondition ftfc = (FieldToFieldCondition) ec;
+            FieldInfo fi = ed.getFieldInfo(ftfc.getFieldName());
+            FieldInfo toFi = ed.getFieldInfo(ftfc.getToFieldName());
+            if (fi == null || toFi == null || getTypeGroup(fi.typeValue) == 0 || getTypeGroup(fi.typeValue) != getTypeGroup(toFi.typeValue))
+                return false;
+            EntityCondition.ComparisonOperator operator = ftfc.getOperator();
+            return operator == EntityCondition.EQUALS || operator == EntityCondition.NOT_EQUAL || operator == EntityCondition.LESS_THAN ||
+                    operator == EntityCondition.GREATER_THAN || operator == EntityCondition.LESS_THAN_EQUAL_TO ||
+                    operator == EntityCondition.GREATER_THAN_EQUAL_TO;
+        }
+        return false;
+    }
+    /** 值的类型与字段类型相同（数字之间、日期时间之间可以比较），不同时数据库会转换类型，内存中无法得到相同的结果 */
+    private static boolean isValueType(FieldInfo fi, Object value) {
+        switch (getTypeGroup(fi.typeValue)) {
+            case 1: return value instanceof CharSequence;
+            case 2: return value instanceof Date;
+            case 3: return value instanceof Number;
+            case 4: return value instanceof Boolean;
+            default: return false;
+        }
+    }
+    /** 按EntityFacadeImpl.getJavaTypeInt()的类型分组：1字符串，2日期时间，3数字，4布尔，0不支持 */
+    private static int getTypeGroup(int typeValue) {
+        switch (typeValue) {
+            case 1: return 1;
+            case 2: case 3: case 4: case 14: return 2;
+            case 5: case 6: case 7: case 8: case 9: return 3;
+            case 10: return 4;
+            default: return 0;
+        }
+    }
+
+    /** 与条件匹配的记录，按快照中的顺序；调用前需要用isSupported检查 */
+    ArrayList<EntityValueBase> find(EntityConditionImplBase cond, boolean firstOnly) {
+        ArrayList<EntityValueBase> found = new ArrayList<>();
+        List<Object[]> fieldValues = cond != null && canUseIndex(cond) ? EntityListCacheIndex.getFieldValues(cond) : null;
+        if (fieldValues != null) {
+            // 至少有一个(字段, 值)与记录相同时条件才可能匹配，只检查这些记录
+            BitSet rows = new BitSet(values.length);
+            for (Object[] fieldValue : fieldValues) {
+                int[] fieldRows = getFieldIndex((String) fieldValue[0]).get(fieldValue[1]);
+                if (fieldRows != null) for (int row : fieldRows) rows.set(row);
+            }
+            for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+                if (matches(cond, values[row].valueMapInternal)) {
+                    found.add(values[row]);
+                    if (firstOnly) break;
+                }
+            }
+        } else {
+            for (EntityValueBase evb : values) {
+                if (cond == null || matches(cond, evb.valueMapInternal)) {
+                    found.add(evb);
+                    if (firstOnly) break;
+                }
+            }
+        }
+        return found;
+    }
+
+    /** 字段索引按原值查找，ignoreCase和逗号分隔的IN字符串不能使用 */
+    private static boolean canUseIndex(EntityCondition ec) {
+        if (ec instanceof ListCondition) {
+            for (EntityConditionImplBase cond : ((ListCondition) ec).getConditionList()) if (!canUseIndex(cond)) return false;
+            return true;
+        }
+        if (ec instanceof FieldValueCondition) {
+            FieldValueCondition fvc = (FieldValueCondition) ec;
+            if (fvc.getIgnoreCase()) return false;
+            return !(fvc.getValue() instanceof CharSequence && fvc.getValue().toString().contains(","));
+        }
+        return true;
+    }
+
+    EntityValueBase one(EntityConditionImplBase cond) {
+        ArrayList<EntityValueBase> found = find(cond, true);
+        return found.isEmpty() ? null : found.get(0);
+    }
+    EntityListImpl list(EntityConditionImplBase cond, List<String> orderByList, EntityFacadeImpl efi) {
+        ArrayList<EntityValueBase> found = find(cond, false);
+        EntityListImpl el = new EntityListImpl(efi, found.size());
+        for (EntityValueBase evb : found) el.add(evb);
+        if (orderByList != null && orderByList.size() > 0) el.sort(new CollectionUtil.MapOrderByComparator(orderByList));
+        el.setFromCache();
+        return el;
+    }
+    long count(EntityConditionImplBase cond) {
+        return find(cond, false).size();
+    }
+
+    private Map<Object, int[]> getFieldIndex(String fieldName) {
+        Map<Object, int[]> fieldIndex = rowsByFieldValue.get(fieldName);
+        if (fieldIndex != null) return fieldIndex;
+        return rowsByFieldValue.computeIfAbsent(fieldName, k -> {
+            HashMap<Object, ArrayList<Integer>> rowListByValue = new HashMap<>();
+            for (int row = 0; row < values.length; row++) {
+                Object value = values[row].valueMapInternal.get(fieldName);
+                if (value == null) continue;
+                rowListByValue.computeIfAbsent(EntityListCacheIndex.normalizeValue(value), v -> new ArrayList<>()).add(row);
+            }
+            HashMap<Object, int[]> newIndex = new HashMap<>(rowListByValue.size() * 4 / 3 + 1);
+            for (Map.Entry<Object, ArrayList<Integer>> entry : rowListByValue.entrySet()) {
+                ArrayList<Integer> rowList = entry.getValue();
+                int[] rows = new int[rowList.size()];
+                for (int i = 0; i < rows.length; i++) rows[i] = rowList.get(i);
+                newIndex.put(entry.getKey(), rows);
+            }
+            return newIndex;
+        });
+    }
+
+    private static boolean matches(EntityCondition ec, Map<String, Object> valueMap) {
+        if (ec instanceof TrueCondition) return true;
+        if (ec instanceof ListCondition) {
+            ListCondition lc = (ListCondition) ec;
+            boolean isAnd = lc.getOperator() == EntityCondition.AND;
+            for (EntityConditionImplBase cond : lc.getConditionList()) {
+                if (matches(cond, valueMap) != isAnd) return !isAnd;
+            }
+            return isAnd;
+        }
+        if (ec instanceof DateCondition) return matches(((DateCondition) ec).getConditionInternal(), valueMap);
+        if (ec instanceof FieldValueCondition) {
+            FieldValueCondition fvc = (FieldValueCondition) ec;
+            return fieldMatches(valueMap.get(fvc.getFieldName()), fvc.getOperator(), fvc.getValue(), fvc.getIgnoreCase());
+        }
+        FieldToFieldCondition ftfc = (FieldToFieldCondition) ec;
+        Object value1 = valueMap.get(ftfc.getFieldName());
+        Object value2 = valueMap.get(ftfc.getToFieldName());
+        if (value1 == null || value2 == null) return false;
+        if (ftfc.getIgnoreCase()) { value1 = upper(value1); value2 = upper(value2); }
+        return compareValues(value1, ftfc.getOperator(), value2);
+    }
+
+    private static boolean fieldMatches(Object fieldValue, EntityCondition.ComparisonOperator operator, Object value, boolean ignoreCase) {
+        if (operator == EntityCondition.IS_NULL) return fieldValue == null;
+        if (operator == EntityCondition.IS_NOT_NULL) return fieldValue != null;
+        if (value instanceof Collection && ((Collection) value).isEmpty()) {
+            if (operator == EntityCondition.IN) return false;
+            if (operator == EntityCondition.NOT_IN) return true;
+        }
+        if (value == null) {
+            if (operator == EntityCondition.EQUALS || operator == EntityCondition.LIKE || operator == EntityCondition.IN ||
+                    operator == EntityCondition.BETWEEN) return fieldValue == null;
+            if (operator == EntityCondition.NOT_EQUAL || operator == EntityCondition.NOT_LIKE || operator == EntityCondition.NOT_IN ||
+                    operator == EntityCondition.NOT_BETWEEN) return fieldValue != null;
+            return false;
+        }
+        // SQL中与NULL比较的结果是UNKNOWN，WHERE中按不成立处理
+        if (fieldValue == null) return false;
+        if (ignoreCase) fieldValue = upper(fieldValue);
+
+        if (operator == EntityCondition.IN || operator == EntityCondition.NOT_IN) {
+            if (value instanceof CharSequence && value.toString().contains(",")) value = Arrays.asList(value.toString().split(","));
+            boolean found = false;
+            if (value instanceof Collection) {
+                for (Object curValue : (Collection) value) {
+                    if (curValue != null && ObjectUtil.valuesEqual(fieldValue, ignoreCase ? upper(curValue) : curValue)) { found = true; break; }
+                }
+            } else {
+                found = ObjectUtil.valuesEqual(fieldValue, ignoreCase ? upper(value) : value);
+            }
+            return operator == EntityCondition.IN ? found : !found;
+        }
+        if (operator == EntityCondition.BETWEEN || operator == EntityCondition.NOT_BETWEEN) {
+            if (!(value instanceof Collection) || ((Collection) value).size() != 2) return false;
+            Iterator iterator = ((Collection) value).iterator();
+            Object low = iterator.next();
+            Object high = iterator.next();
+            if (low == null || high == null) return false;
+            if (ignoreCase) { low = upper(low); high = upper(high); }
+            boolean between = compareValues(fieldValue, EntityCondition.GREATER_THAN_EQUAL_TO, low) &&
+                    compareValues(fieldValue, EntityCondition.LESS_THAN_EQUAL_TO, high);
+            return operator == EntityCondition.BETWEEN ? between : !between;
+        }
+        if (operator == EntityCondition.LIKE || operator == EntityCondition.NOT_LIKE) {
+            // ObjectUtil.compareLike不区分大小写，这里区分，与其他比较一致
+            boolean like = likeMatches(fieldValue.toString(), ignoreCase ? upper(value).toString() : value.toString());
+            return operator == EntityCondition.LIKE ? like : !like;
+        }
+        return compareValues(fieldValue, operator, ignoreCase ? upper(value) : value);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static boolean compareValues(Object value1, EntityCondition.ComparisonOperator operator, Object value2) {
+        if (operator == EntityCondition.EQUALS) return ObjectUtil.valuesEqual(value1, value2);
+        if (operator == EntityCondition.NOT_EQUAL) return !ObjectUtil.valuesEqual(value1, value2);
+        int result;
+        if (value1 instanceof Number && value2 instanceof Number) {
+            result = toBigDecimal((Number) value1).compareTo(toBigDecimal((Number) value2));
+        } else if (value1 instanceof Date && value2 instanceof Date) {
+            result = Long.compare(((Date) value1).getTime(), ((Date) value2).getTime());
+        } else if (value1 instanceof CharSequence && value2 instanceof CharSequence) {
+            result = value1.toString().compareTo(value2.toString());
+        } else if (value1 instanceof Comparable && value1.getClass() == value2.getClass()) {
+            result = ((Comparable) value1).compareTo(value2);
+        } else {
+            return false;
+        }
+        if (operator == EntityCondition.LESS_THAN) return result < 0;
+        if (operator == EntityCondition.GREATER_THAN) return result > 0;
+        if (operator == EntityCondition.LESS_THAN_EQUAL_TO) return result <= 0;
+        if (operator == EntityCondition.GREATER_THAN_EQUAL_TO) return result >= 0;
+        return false;
+    }
+    private static BigDecimal toBigDecimal(Number number) {
+        return number instanceof BigDecimal ? (BigDecimal) number : new BigDecimal(number.toString());
+    }
+    private static Object upper(Object value) {
+        return value instanceof CharSequence ? value.toString().toUpperCase() : value;
+    }
+
+    /** SQL LIKE：%为任意个字符，_为一个字符 */
+    private static boolean likeMatches(String str, String pattern) {
+        StringBuilder regex = new StringBuilder(pattern.length() * 2);
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '%') regex.append(".*");
+            else if (c == '_') regex.append('.');
+            else if ("[](){}.*+?$^|#\\-".indexOf(c) != -1) regex.append('\\').append(c);
+            else regex.append(c);
+        }
+        return str.matches("(?s)" + regex);
+    }
+}
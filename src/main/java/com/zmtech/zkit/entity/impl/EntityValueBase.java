@@ -52,6 +52,9 @@ public abstract class EntityValueBase implements EntityValue {
 
     private transient HashMap<String, Object> dbValueMap = null;
     private transient HashMap<String, Object> oldDbValueMap = null;
+    /** 修改了读取时没有的字段（只查询了部分字段），dbValueMap中没有这个字段的原值 */
+    private transient boolean dbValueMapIncomplete = false;
+    private transient boolean oldDbValueMapIncomplete = false;
     private transient Map<String, Object> internalPkMap = null;
 //    private transient Map<String, Map<String, String>> localizedByLocaleByField = null;
 
@@ -125,12 +128,15 @@ public abstract class EntityValueBase implements EntityValue {
             dbValueMap.put(fi.name, curValue);
             if (!valueMapInternal.containsKey(fi.name)) valueMapInternal.put(fi.name, curValue);
         }
+        dbValueMapIncomplete = false;
         isFromDb = true;
     }
 
     public void setSyncedWithDb() {
         oldDbValueMap = dbValueMap;
+        oldDbValueMapIncomplete = dbValueMapIncomplete;
         dbValueMap = null;
+        dbValueMapIncomplete = false;
         modified = false;
         isFromDb = true;
     }
@@ -191,6 +197,11 @@ public abstract class EntityValueBase implements EntityValue {
         mutable = false;
     }
 
+    /** 反序列化后（如从ZCache堆外存储加载）设置EntityFacadeImpl，否则无法获取EntityDefinition */
+    void setEntityFacade(EntityFacadeImpl efip) {
+        efiTransient = efip;
+    }
+
     @Override
     public Map<String, Object> getMap() {
         // call get() for each field for localization, etc
@@ -387,6 +398,31 @@ public abstract class EntityValueBase implements EntityValue {
         return getOriginalDbValue(name);
     }
 
+    /**
+     * 修改前数据库中的记录值，用于计数缓存的选择性清除：没有修改的字段为当前值，修改过的字段为修改前的值。
+     * saved为true时修改已经保存（update之后），为false时修改还没有保存（delete之前）。
+     * 值不是从数据库读取的，或者修改了读取时没有的字段时不知道原值，返回null。
+     */
+    HashMap<String, Object> getPreviousValueMap(boolean saved) {
+        if (!isFromDb) return null;
+        HashMap<String, Object> changedMap;
+        boolean incomplete;
+        if (dbValueMap != null || !saved) {
+            changedMap = dbValueMap;
+            incomplete = dbValueMapIncomplete;
+        } else {
+            // update()保存后setSyncedWithDb()把修改前的值移到了oldDbValueMap
+            changedMap = oldDbValueMap;
+            incomplete = oldDbValueMapIncomplete;
+            // 第一次保存前的值不是从数据库读取的
+            if (changedMap == null) return null;
+        }
+        if (incomplete) return null;
+        HashMap<String, Object> previousMap = new HashMap<>(valueMapInternal);
+        if (changedMap != null) previousMap.putAll(changedMap);
+        return previousMap;
+    }
+
     @Override
     public boolean containsPrimaryKey() {
         return this.getEntityDefinition().containsPrimaryKey(valueMapInternal);
@@ -1287,12 +1323,22 @@ public abstract class EntityValueBase implements EntityValue {
         if (isFromDb) {
             curValue = valueMapInternal.get(name);
             if (curValue == null) {
-                if (value != null) modified = true;
+                if (value != null) {
+                    modified = true;
+                    // 原值为null也要记录，读取时没有这个字段则不知道原值
+                    if (valueMapInternal.containsKey(name)) {
+                        if (dbValueMap == null) dbValueMap = new HashMap<>();
+                        if (!dbValueMap.containsKey(name)) dbValueMap.put(name, null);
+                    } else {
+                        dbValueMapIncomplete = true;
+                    }
+                }
             } else {
                 if (!curValue.equals(value)) {
                     modified = true;
                     if (dbValueMap == null) dbValueMap = new HashMap<>();
-                    dbValueMap.put(name, curValue);
+                    // 多次修改时保留最初从数据库读取的值
+                    if (!dbValueMap.containsKey(name)) dbValueMap.put(name, curValue);
                 }
             }
         } else {
@@ -1443,20 +1489,12 @@ public abstract class EntityValueBase implements EntityValue {
     @Override
     public EntityValue create() {
         final EntityDefinition ed = getEntityDefinition();
-        final EntityJavaUtil.EntityInfo entityInfo = ed.entityInfo;
         final EntityFacadeImpl efi = getEntityFacadeImpl();
         final ExecutionContextFactoryImpl ecfi = efi.ecfi;
         final ExecutionContextImpl ec = ecfi.getEci();
 //        final ArtifactExecutionFacadeImpl aefi = ec.artifactExecutionFacade;
 
-        // check/set defaults
-        if (entityInfo.hasFieldDefaults) checkSetFieldDefaults(ed, ec, null);
-
-        // set lastUpdatedStamp
-        final Long time = ecfi.getTransaction().getCurrentTransactionStartTime();
-        Long lastUpdatedLong = time != null && time > 0 ? time : System.currentTimeMillis();
-        if (ed.isField("lastUpdatedStamp") && valueMapInternal.get("lastUpdatedStamp") == null)
-            valueMapInternal.put("lastUpdatedStamp", new Timestamp(lastUpdatedLong));
+        setCreateDefaults(ed, ecfi, ec);
 
         // do the artifact push/authz
 //        ArtifactExecutionInfoImpl aei = new ArtifactExecutionInfoImpl(entityName, ArtifactExecutionInfo.AT_ENTITY, ArtifactExecutionInfo.AUTHZA_CREATE, "create").setParameters(valueMapInternal);
@@ -1475,7 +1513,7 @@ public abstract class EntityValueBase implements EntityValue {
 
             // NOTE: cache clear is the same for create, update, delete; even on create need to clear one cache because it
             // might have a null value for a previous query attempt
-            efi.getEntityCache().clearCacheForValue(this, true);
+            efi.getEntityCache().clearCacheForValue(this, true, false);
             // save audit log(s) if applicable
 //            handleAuditLog(false, null, ed, ec);
             // run EECA after rules
@@ -1492,7 +1530,24 @@ public abstract class EntityValueBase implements EntityValue {
         return this;
     }
 
+    /** Check/set field defaults and set lastUpdatedStamp, done before EECA rules in create */
+    private void setCreateDefaults(EntityDefinition ed, ExecutionContextFactoryImpl ecfi, ExecutionContextImpl ec) {
+        // check/set defaults
+        if (ed.entityInfo.hasFieldDefaults) checkSetFieldDefaults(ed, ec, null);
+
+        // set lastUpdatedStamp
+        final Long time = ecfi.getTransaction().getCurrentTransactionStartTime();
+        Long lastUpdatedLong = time != null && time > 0 ? time : System.currentTimeMillis();
+        if (ed.isField("lastUpdatedStamp") && valueMapInternal.get("lastUpdatedStamp") == null)
+            valueMapInternal.put("lastUpdatedStamp", new Timestamp(lastUpdatedLong));
+    }
+
     public void basicCreate(Connection con) throws SQLException {
+        createExtended(getCreateFieldArray(), con);
+    }
+
+    /** Fields with a value (even if null) to insert on create; may have null values after valid ones */
+    public FieldInfo[] getCreateFieldArray() {
         EntityDefinition ed = getEntityDefinition();
         FieldInfo[] allFieldArray = ed.entityInfo.allFieldInfoArray;
         FieldInfo[] fieldArray = new FieldInfo[allFieldArray.length];
@@ -1505,7 +1560,7 @@ public abstract class EntityValueBase implements EntityValue {
                 fieldArrayIndex++;
             }
         }
-        createExtended(fieldArray, con);
+        return fieldArray;
     }
 
     /**
@@ -1517,12 +1572,53 @@ public abstract class EntityValueBase implements EntityValue {
     @Override
     public EntityValue update() {
         final EntityDefinition ed = getEntityDefinition();
-        final EntityJavaUtil.EntityInfo entityInfo = ed.entityInfo;
         final EntityFacadeImpl efi = getEntityFacadeImpl();
         final ExecutionContextFactoryImpl ecfi = efi.ecfi;
         final ExecutionContextImpl ec = ecfi.getEci();
 //        final ArtifactExecutionFacadeImpl aefi = ec.artifactExecutionFacade;
         final TransactionCache curTxCache = getTxCache(ecfi);
+
+        // do the artifact push/authz
+//        ArtifactExecutionInfoImpl aei = new ArtifactExecutionInfoImpl(entityName, ArtifactExecutionInfo.AT_ENTITY, ArtifactExecutionInfo.AUTHZA_UPDATE, "update").setParameters(valueMapInternal);
+//        aefi.pushInternal(aei, !entityInfo.authorizeSkipTrue, false);
+
+        try {
+            FieldInfo[] nonPkFieldArray = prepareUpdate(ed, efi, ec);
+            if (nonPkFieldArray == null) return this;
+
+            // if there is not a txCache or the txCache doesn't handle the update, call the abstract method to update the main record
+            if (curTxCache == null || !curTxCache.update(this)) {
+                // no TX cache update, etc: ready to do actual update
+                updateExtended(ed.entityInfo.pkFieldInfoArray, nonPkFieldArray, null);
+                // if ("OrderHeader".equals(ed.getEntityName()) && "55500".equals(valueMapInternal.get("orderId"))) logger.warn("Called updateExtended order " + this.valueMapInternal.toString());
+            }
+
+            // clear the entity cache
+            efi.getEntityCache().clearCacheForValue(this, false, false);
+            // save audit log(s) if applicable
+//            if (needsAuditLog) handleAuditLog(true, originalValues, ed, ec);
+            // run EECA after rules
+            efi.runEecaRules(entityName, this, "update", false);
+        } catch (SQLException e) {
+            throw new EntitySqlException(makeErrorMsg("实体更新错误", UPDATE_ERROR, ed, ec), e);
+        } catch (Exception e) {
+            throw new EntityException(makeErrorMsg("实体更新错误", UPDATE_ERROR, ed, ec), e);
+        } finally {
+            // pop the ArtifactExecutionInfo to clean it up, also counts artifact hit
+//            aefi.pop(aei);
+        }
+
+        return this;
+    }
+
+    /**
+     * Everything in update before the actual write: defaults, DB values if needed, EECA before rules, modified field
+     * checks, lastUpdatedStamp, and DataFeed. Returns the non-PK fields to update (may have null values after valid
+     * ones), or null if nothing changed and there is nothing to update.
+     */
+    private FieldInfo[] prepareUpdate(EntityDefinition ed, EntityFacadeImpl efi, ExecutionContextImpl ec) {
+        final EntityJavaUtil.EntityInfo entityInfo = ed.entityInfo;
+        final ExecutionContextFactoryImpl ecfi = efi.ecfi;
         final boolean optimisticLock = entityInfo.optimisticLock;
         final boolean hasFieldDefaults = entityInfo.hasFieldDefaults;
         final boolean needsAuditLog = entityInfo.needsAuditLog;
@@ -1551,94 +1647,66 @@ public abstract class EntityValueBase implements EntityValue {
         // Save original values before anything is changed for DataFeed and audit log
         Map<String, Object> originalValues = dbValueMap != null && !dbValueMap.isEmpty() ? new HashMap<>(dbValueMap) : null;
 
-        // do the artifact push/authz
-//        ArtifactExecutionInfoImpl aei = new ArtifactExecutionInfoImpl(entityName, ArtifactExecutionInfo.AT_ENTITY, ArtifactExecutionInfo.AUTHZA_UPDATE, "update").setParameters(valueMapInternal);
-//        aefi.pushInternal(aei, !entityInfo.authorizeSkipTrue, false);
+        // run EECA before rules
+        efi.runEecaRules(entityName, this, "update", true);
 
-        try {
-            // run EECA before rules
-            efi.runEecaRules(entityName, this, "update", true);
-
-            FieldInfo[] pkFieldArray = entityInfo.pkFieldInfoArray;
-            FieldInfo[] allNonPkFieldArray = entityInfo.nonPkFieldInfoArray;
-            FieldInfo[] nonPkFieldArray = new FieldInfo[allNonPkFieldArray.length];
-            ArrayList<String> changedCreateOnlyFields = null;
-            boolean modifiedLastUpdatedStamp = false;
-            int size = allNonPkFieldArray.length;
-            int nonPkFieldArrayIndex = 0;
-            for (int i = 0; i < size; i++) {
-                FieldInfo fieldInfo = allNonPkFieldArray[i];
-                String fieldName = fieldInfo.name;
-                if (isFieldModified(fieldName)) {
-                    if (fieldInfo.isLastUpdatedStamp) {
-                        // more stringent is modified check for lastUpdatedStamp
-                        if (dbValueMap == null || dbValueMap.get(fieldName) == null) continue;
-                        modifiedLastUpdatedStamp = true;
-                    }
-                    nonPkFieldArray[nonPkFieldArrayIndex] = fieldInfo;
-                    nonPkFieldArrayIndex++;
-                    if (createOnlyAny && fieldInfo.createOnly) {
-                        if (changedCreateOnlyFields == null) changedCreateOnlyFields = new ArrayList<>();
-                        changedCreateOnlyFields.add(fieldName);
-                    }
+        FieldInfo[] allNonPkFieldArray = entityInfo.nonPkFieldInfoArray;
+        FieldInfo[] nonPkFieldArray = new FieldInfo[allNonPkFieldArray.length];
+        ArrayList<String> changedCreateOnlyFields = null;
+        boolean modifiedLastUpdatedStamp = false;
+        int size = allNonPkFieldArray.length;
+        int nonPkFieldArrayIndex = 0;
+        for (int i = 0; i < size; i++) {
+            FieldInfo fieldInfo = allNonPkFieldArray[i];
+            String fieldName = fieldInfo.name;
+            if (isFieldModified(fieldName)) {
+                if (fieldInfo.isLastUpdatedStamp) {
+                    // more stringent is modified check for lastUpdatedStamp
+                    if (dbValueMap == null || dbValueMap.get(fieldName) == null) continue;
+                    modifiedLastUpdatedStamp = true;
+                }
+                nonPkFieldArray[nonPkFieldArrayIndex] = fieldInfo;
+                nonPkFieldArrayIndex++;
+                if (createOnlyAny && fieldInfo.createOnly) {
+                    if (changedCreateOnlyFields == null) changedCreateOnlyFields = new ArrayList<>();
+                    changedCreateOnlyFields.add(fieldName);
                 }
             }
+        }
 
-            // if (ed.getEntityName() == "foo") logger.warn("================ evb.update() ${getEntityName()} nonPkFieldList=${nonPkFieldList};\nvalueMap=${valueMap};\noldValues=${oldValues}")
-            if (nonPkFieldArrayIndex == 0 || (nonPkFieldArrayIndex == 1 && modifiedLastUpdatedStamp)) {
-                if (logger.isTraceEnabled()) logger.trace("没有设置主键的实体不会被修改; value=" + this.toString());
-                return this;
-            }
-
-            // do this after the empty nonPkFieldList check so that if nothing has changed then ignore the attempt to update
-            if (changedCreateOnlyFields != null && changedCreateOnlyFields.size() > 0)
-                throw new EntityException("无法更新不可变字段错误: 字段 [" + changedCreateOnlyFields + "] 实体: [" + getEntityName() + "]");
-
-            // check optimistic lock with lastUpdatedStamp; if optimisticLock() dbValueMap will have latest from DB
-            if (optimisticLock) {
-                Object valueLus = valueMapInternal.get("lastUpdatedStamp");
-                Object dbLus = dbValueMap.get("lastUpdatedStamp");
-                if (valueLus != null && dbLus != null && !dbLus.equals(valueLus))
-                    throw new EntityException("记录已被修改错误: 数据库记录 [" + dbLus + "] 版本高于已加载版本: " + valueLus + ". 避免更新会覆盖数据.");
-            }
-
-            // set lastUpdatedStamp
-            FieldInfo lastUpdatedStampInfo = ed.entityInfo.lastUpdatedStampInfo;
-            if (!modifiedLastUpdatedStamp && lastUpdatedStampInfo != null) {
-                final Long time = ecfi.getTransaction().getCurrentTransactionStartTime();
-                long lastUpdatedLong = time != null && time > 0 ? time : System.currentTimeMillis();
-                valueMapInternal.put("lastUpdatedStamp", new Timestamp(lastUpdatedLong));
-                nonPkFieldArray[nonPkFieldArrayIndex] = lastUpdatedStampInfo;
-                // never gets used after this point, but if ever does will need to: nonPkFieldArrayIndex++
-            }
+        // if (ed.getEntityName() == "foo") logger.warn("================ evb.update() ${getEntityName()} nonPkFieldList=${nonPkFieldList};\nvalueMap=${valueMap};\noldValues=${oldValues}")
+        if (nonPkFieldArrayIndex == 0 || (nonPkFieldArrayIndex == 1 && modifiedLastUpdatedStamp)) {
+            if (logger.isTraceEnabled()) logger.trace("没有设置主键的实体不会被修改; value=" + this.toString());
+            return null;
+        }
 
-            // do this before the db change so modified flag isn't cleared
-            if (curDataFeed)
-                efi.getEntityDataFeed().dataFeedCheckAndRegister(this, true, valueMapInternal, originalValues);
+        // do this after the empty nonPkFieldList check so that if nothing has changed then ignore the attempt to update
+        if (changedCreateOnlyFields != null && changedCreateOnlyFields.size() > 0)
+            throw new EntityException("无法更新不可变字段错误: 字段 [" + changedCreateOnlyFields + "] 实体: [" + getEntityName() + "]");
 
-            // if there is not a txCache or the txCache doesn't handle the update, call the abstract method to update the main record
-            if (curTxCache == null || !curTxCache.update(this)) {
-                // no TX cache update, etc: ready to do actual update
-                updateExtended(pkFieldArray, nonPkFieldArray, null);
-                // if ("OrderHeader".equals(ed.getEntityName()) && "55500".equals(valueMapInternal.get("orderId"))) logger.warn("Called updateExtended order " + this.valueMapInternal.toString());
-            }
+        // check optimistic lock with lastUpdatedStamp; if optimisticLock() dbValueMap will have latest from DB
+        if (optimisticLock) {
+            Object valueLus = valueMapInternal.get("lastUpdatedStamp");
+            Object dbLus = dbValueMap.get("lastUpdatedStamp");
+            if (valueLus != null && dbLus != null && !dbLus.equals(valueLus))
+                throw new EntityException("记录已被修改错误: 数据库记录 [" + dbLus + "] 版本高于已加载版本: " + valueLus + ". 避免更新会覆盖数据.");
+        }
 
-            // clear the entity cache
-            efi.getEntityCache().clearCacheForValue(this, false);
-            // save audit log(s) if applicable
-//            if (needsAuditLog) handleAuditLog(true, originalValues, ed, ec);
-            // run EECA after rules
-            efi.runEecaRules(entityName, this, "update", false);
-        } catch (SQLException e) {
-            throw new EntitySqlException(makeErrorMsg("实体更新错误", UPDATE_ERROR, ed, ec), e);
-        } catch (Exception e) {
-            throw new EntityException(makeErrorMsg("实体更新错误", UPDATE_ERROR, ed, ec), e);
-        } finally {
-            // pop the ArtifactExecutionInfo to clean it up, also counts artifact hit
-//            aefi.pop(aei);
+        // set lastUpdatedStamp
+        FieldInfo lastUpdatedStampInfo = ed.entityInfo.lastUpdatedStampInfo;
+        if (!modifiedLastUpdatedStamp && lastUpdatedStampInfo != null) {
+            final Long time = ecfi.getTransaction().getCurrentTransactionStartTime();
+            long lastUpdatedLong = time != null && time > 0 ? time : System.currentTimeMillis();
+            valueMapInternal.put("lastUpdatedStamp", new Timestamp(lastUpdatedLong));
+            nonPkFieldArray[nonPkFieldArrayIndex] = lastUpdatedStampInfo;
+            // never gets used after this point, but if ever does will need to: nonPkFieldArrayIndex++
         }
 
-        return this;
+        // do this before the db change so modified flag isn't cleared
+        if (curDataFeed)
+            efi.getEntityDataFeed().dataFeedCheckAndRegister(this, true, valueMapInternal, originalValues);
+
+        return nonPkFieldArray;
     }
 
     public void basicUpdate(Connection con) throws SQLException {
@@ -1650,8 +1718,12 @@ public abstract class EntityValueBase implements EntityValue {
         if (dbValueMap) for (Object val in dbValueMap.values()) if (val != null) { dbValueMapFromDb = true; break }
         */
 
-        FieldInfo[] pkFieldArray = ed.entityInfo.pkFieldInfoArray;
-        FieldInfo[] allNonPkFieldArray = ed.entityInfo.nonPkFieldInfoArray;
+        updateExtended(ed.entityInfo.pkFieldInfoArray, getModifiedNonPkFieldArray(), con);
+    }
+
+    /** Modified non-PK fields to set on update; may have null values after valid ones */
+    public FieldInfo[] getModifiedNonPkFieldArray() {
+        FieldInfo[] allNonPkFieldArray = getEntityDefinition().entityInfo.nonPkFieldInfoArray;
         FieldInfo[] nonPkFieldArray = new FieldInfo[allNonPkFieldArray.length];
         int size = allNonPkFieldArray.length;
         int nonPkFieldArrayIndex = 0;
@@ -1663,8 +1735,7 @@ public abstract class EntityValueBase implements EntityValue {
                 nonPkFieldArrayIndex++;
             }
         }
-
-        updateExtended(pkFieldArray, nonPkFieldArray, con);
+        return nonPkFieldArray;
     }
 
     /**
@@ -1703,7 +1774,7 @@ public abstract class EntityValueBase implements EntityValue {
             if (curTxCache == null || !curTxCache.delete(this)) this.deleteExtended(null);
 
             // clear the entity cache
-            efi.getEntityCache().clearCacheForValue(this, false);
+            efi.getEntityCache().clearCacheForValue(this, false, true);
             // run EECA after rules
             efi.runEecaRules(entityName, this, "delete", false);
         } catch (SQLException e) {
@@ -1720,6 +1791,202 @@ public abstract class EntityValueBase implements EntityValue {
 
     public abstract void deleteExtended(Connection con) throws SQLException;
 
+    /**
+     * Create the values in valueList (all the same entity and with the same fields in fieldInfoArray) in batches of up
+     * to batchSize. This default creates one at a time, see EntityValueImpl for JDBC batches.
+     */
+    public void createBulkExtended(FieldInfo[] fieldInfoArray, List<EntityValueBase> valueList, int batchSize, Connection con) throws SQLException {
+        for (EntityValueBase evb : valueList) evb.createExtended(fieldInfoArray, con);
+    }
+    /** Update the values in valueList (all the same entity and with the same modified fields), see createBulkExtended */
+    public void updateBulkExtended(FieldInfo[] pkFieldArray, FieldInfo[] nonPkFieldArray, List<EntityValueBase> valueList,
+                                   int batchSize, Connection con) throws SQLException {
+        for (EntityValueBase evb : valueList) evb.updateExtended(pkFieldArray, nonPkFieldArray, con);
+    }
+    /** Delete the values in valueList (all the same entity) by primary key, see createBulkExtended */
+    public void deleteBulkExtended(List<EntityValueBase> valueList, int batchSize, Connection con) throws SQLException {
+        for (EntityValueBase evb : valueList) evb.deleteExtended(con);
+    }
+
+    /** Consecutive values for a bulk write with the same entity and fields, written with one *BulkExtended call */
+    static class BulkGroup {
+        final String entityName;
+        final FieldInfo[] fieldArray;
+        final ArrayList<EntityValueBase> valueList = new ArrayList<>();
+        BulkGroup(String entityName, FieldInfo[] fieldArray) { this.entityName = entityName; this.fieldArray = fieldArray; }
+
+        boolean matches(String otherEntityName, FieldInfo[] otherFieldArray) {
+            if (!entityName.equals(otherEntityName)) return false;
+            if (fieldArray.length != otherFieldArray.length) return false;
+            for (int i = 0; i < fieldArray.length; i++) {
+                FieldInfo fi = fieldArray[i];
+                FieldInfo otherFi = otherFieldArray[i];
+                if (fi == null || otherFi == null) return fi == otherFi;
+                if (!fi.name.equals(otherFi.name)) return false;
+            }
+            return true;
+        }
+    }
+    /**
+     * Add to the last group if it has the same entity and fields, otherwise start a new group; only consecutive values
+     * are grouped so groups are written in the original order (parent records before child records, etc)
+     */
+    static void addToBulkGroup(ArrayList<BulkGroup> groupList, String entityName, FieldInfo[] fieldArray, EntityValueBase evb) {
+        BulkGroup group = groupList.isEmpty() ? null : groupList.get(groupList.size() - 1);
+        if (group == null || !group.matches(entityName, fieldArray)) {
+            group = new BulkGroup(entityName, fieldArray);
+            groupList.add(group);
+        }
+        group.valueList.add(evb);
+    }
+    private static void addToCacheClear(Map<EntityDefinition, ArrayList<EntityValueBase>> clearMap, EntityValueBase evb) {
+        clearMap.computeIfAbsent(evb.getEntityDefinition(), k -> new ArrayList<>()).add(evb);
+    }
+
+    /**
+     * Create the values the same as calling create() on each except that consecutive values not handled by the
+     * TransactionCache with the same entity and set of fields are grouped, keeping the original order, and each group is
+     * written with JDBC batches of up to batchSize records,
+     * the entity cache is cleared once for each entity, and EECA after rules run after all records are written.
+     */
+    static void createBulk(List<? extends EntityValue> valueList, int batchSize) {
+        if (valueList == null || valueList.isEmpty()) return;
+        ArrayList<BulkGroup> groupList = new ArrayList<>();
+        LinkedHashMap<EntityDefinition, ArrayList<EntityValueBase>> clearMap = new LinkedHashMap<>();
+        EntityValueBase curEvb = (EntityValueBase) valueList.get(0);
+        try {
+            for (EntityValue ev : valueList) {
+                curEvb = (EntityValueBase) ev;
+                EntityDefinition ed = curEvb.getEntityDefinition();
+                EntityFacadeImpl efi = curEvb.getEntityFacadeImpl();
+                ExecutionContextFactoryImpl ecfi = efi.ecfi;
+                ExecutionContextImpl ec = ecfi.getEci();
+
+                curEvb.setCreateDefaults(ed, ecfi, ec);
+                // run EECA before rules
+                efi.runEecaRules(curEvb.entityName, curEvb, "create", true);
+                // do this before the db change so modified flag isn't cleared
+                if (curEvb.doDataFeed(ec)) efi.getEntityDataFeed().dataFeedCheckAndRegister(curEvb, false, curEvb.valueMapInternal, null);
+
+                TransactionCache curTxCache = curEvb.getTxCache(ecfi);
+                if (curTxCache == null || !curTxCache.create(curEvb)) {
+                    addToBulkGroup(groupList, ed.getFullEntityName(), curEvb.getCreateFieldArray(), curEvb);
+                }
+                addToCacheClear(clearMap, curEvb);
+            }
+
+            for (BulkGroup group : groupList) {
+                curEvb = group.valueList.get(0);
+                curEvb.createBulkExtended(group.fieldArray, group.valueList, batchSize, null);
+            }
+            for (Map.Entry<EntityDefinition, ArrayList<EntityValueBase>> entry : clearMap.entrySet()) {
+                curEvb = entry.getValue().get(0);
+                curEvb.getEntityFacadeImpl().getEntityCache().clearCacheForValues(entry.getKey(), entry.getValue(), true, false);
+            }
+            for (EntityValue ev : valueList) {
+                curEvb = (EntityValueBase) ev;
+                // run EECA after rules
+                curEvb.getEntityFacadeImpl().runEecaRules(curEvb.entityName, curEvb, "create", false);
+            }
+        } catch (SQLException e) {
+            throw new EntitySqlException(curEvb.makeBulkErrorMsg("实体批量创建错误", CREATE_ERROR, valueList.size()), e);
+        } catch (Exception e) {
+            throw new EntityException(curEvb.makeBulkErrorMsg("实体批量创建错误", CREATE_ERROR, valueList.size()), e);
+        }
+    }
+
+    /**
+     * Update the values the same as calling update() on each, with JDBC batches for each run of consecutive values with
+     * the same entity and set of modified fields, see createBulk(). Values with nothing modified are skipped as in update().
+     */
+    static void updateBulk(List<? extends EntityValue> valueList, int batchSize) {
+        if (valueList == null || valueList.isEmpty()) return;
+        ArrayList<BulkGroup> groupList = new ArrayList<>();
+        LinkedHashMap<EntityDefinition, ArrayList<EntityValueBase>> clearMap = new LinkedHashMap<>();
+        ArrayList<EntityValueBase> updatedList = new ArrayList<>(valueList.size());
+        EntityValueBase curEvb = (EntityValueBase) valueList.get(0);
+        try {
+            for (EntityValue ev : valueList) {
+                curEvb = (EntityValueBase) ev;
+                EntityDefinition ed = curEvb.getEntityDefinition();
+                EntityFacadeImpl efi = curEvb.getEntityFacadeImpl();
+                ExecutionContextFactoryImpl ecfi = efi.ecfi;
+
+                FieldInfo[] nonPkFieldArray = curEvb.prepareUpdate(ed, efi, ecfi.getEci());
+                if (nonPkFieldArray == null) continue;
+
+                TransactionCache curTxCache = curEvb.getTxCache(ecfi);
+                if (curTxCache == null || !curTxCache.update(curEvb)) addToBulkGroup(groupList, ed.getFullEntityName(), nonPkFieldArray, curEvb);
+                addToCacheClear(clearMap, curEvb);
+                updatedList.add(curEvb);
+            }
+
+            for (BulkGroup group : groupList) {
+                curEvb = group.valueList.get(0);
+                curEvb.updateBulkExtended(curEvb.getEntityDefinition().entityInfo.pkFieldInfoArray, group.fieldArray, group.valueList, batchSize, null);
+            }
+            for (Map.Entry<EntityDefinition, ArrayList<EntityValueBase>> entry : clearMap.entrySet()) {
+                curEvb = entry.getValue().get(0);
+                curEvb.getEntityFacadeImpl().getEntityCache().clearCacheForValues(entry.getKey(), entry.getValue(), false, false);
+            }
+            for (EntityValueBase evb : updatedList) {
+                curEvb = evb;
+                // run EECA after rules
+                curEvb.getEntityFacadeImpl().runEecaRules(curEvb.entityName, curEvb, "update", false);
+            }
+        } catch (SQLException e) {
+            throw new EntitySqlException(curEvb.makeBulkErrorMsg("实体批量更新错误", UPDATE_ERROR, valueList.size()), e);
+        } catch (Exception e) {
+            throw new EntityException(curEvb.makeBulkErrorMsg("实体批量更新错误", UPDATE_ERROR, valueList.size()), e);
+        }
+    }
+
+    /** Delete the values the same as calling delete() on each, with JDBC batches for each run of the same entity, see createBulk() */
+    static void deleteBulk(List<? extends EntityValue> valueList, int batchSize) {
+        if (valueList == null || valueList.isEmpty()) return;
+        ArrayList<BulkGroup> groupList = new ArrayList<>();
+        LinkedHashMap<EntityDefinition, ArrayList<EntityValueBase>> clearMap = new LinkedHashMap<>();
+        EntityValueBase curEvb = (EntityValueBase) valueList.get(0);
+        try {
+            for (EntityValue ev : valueList) {
+                curEvb = (EntityValueBase) ev;
+                EntityDefinition ed = curEvb.getEntityDefinition();
+                EntityFacadeImpl efi = curEvb.getEntityFacadeImpl();
+
+                // NOTE: this is create-only on the entity, ignores setting on fields (only considered in update)
+                if (ed.entityInfo.createOnly)
+                    throw new EntityException("无法删除实体错误: 实体 [" + curEvb.getEntityName() + "] 是create-only（不可变），不能删除。");
+                // run EECA before rules
+                efi.runEecaRules(curEvb.entityName, curEvb, "delete", true);
+
+                TransactionCache curTxCache = curEvb.getTxCache(efi.ecfi);
+                if (curTxCache == null || !curTxCache.delete(curEvb)) addToBulkGroup(groupList, ed.getFullEntityName(), ed.entityInfo.pkFieldInfoArray, curEvb);
+                addToCacheClear(clearMap, curEvb);
+            }
+
+            for (BulkGroup group : groupList) {
+                curEvb = group.valueList.get(0);
+                curEvb.deleteBulkExtended(group.valueList, batchSize, null);
+            }
+            for (Map.Entry<EntityDefinition, ArrayList<EntityValueBase>> entry : clearMap.entrySet()) {
+                curEvb = entry.getValue().get(0);
+                curEvb.getEntityFacadeImpl().getEntityCache().clearCacheForValues(entry.getKey(), entry.getValue(), false, true);
+            }
+            for (EntityValue ev : valueList) {
+                curEvb = (EntityValueBase) ev;
+                // run EECA after rules
+                curEvb.getEntityFacadeImpl().runEecaRules(curEvb.entityName, curEvb, "delete", false);
+            }
+        } catch (SQLException e) {
+            throw new EntitySqlException(curEvb.makeBulkErrorMsg("实体批量删除错误", DELETE_ERROR, valueList.size()), e);
+        } catch (Exception e) {
+            throw new EntityException(curEvb.makeBulkErrorMsg("实体批量删除错误", DELETE_ERROR, valueList.size()), e);
+        }
+    }
+    private String makeBulkErrorMsg(String baseMsg, String expandMsg, int size) {
+        return makeErrorMsg(baseMsg, expandMsg, getEntityDefinition(), getEntityFacadeImpl().ecfi.getEci()) + " (共 " + size + " 条记录)";
+    }
+
     @Override
     public boolean refresh() {
         final EntityDefinition ed = getEntityDefinition();
@@ -25,6 +25,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 
 public class EntityValueImpl extends EntityValueBase {
     protected static final Logger logger = LoggerFactory.getLogger(EntityValueImpl.class);
@@ -201,6 +202,169 @@ public class EntityValueImpl extends EntityValueBase {
         }
     }
 
+    @SuppressWarnings("MismatchedQueryAndUpdateOfStringBuilder")
+    @Override
+    public void createBulkExtended(FieldInfo[] fieldInfoArray, List<EntityValueBase> valueList, int batchSize, Connection con) throws SQLException {
+        EntityDefinition ed = getEntityDefinition();
+        EntityFacadeImpl efi = getEntityFacadeImpl();
+
+        if (ed.isViewEntity) {
+            throw new EntityException("Create not yet implemented for view-entity");
+        } else {
+            EntityQueryBuilder eqb = new EntityQueryBuilder(ed, efi);
+            StringBuilder sql = eqb.sqlTopLevel;
+            sql.append("INSERT INTO ").append(ed.getFullTableName());
+
+            sql.append(" (");
+            StringBuilder values = new StringBuilder();
+
+            int size = 0;
+            for (int i = 0; i < fieldInfoArray.length; i++) {
+                FieldInfo fieldInfo = fieldInfoArray[i];
+                if (fieldInfo == null) break;
+                if (i > 0) {
+                    sql.append(", ");
+                    values.append(", ");
+                }
+
+                sql.append(fieldInfo.getFullColumnName());
+                values.append("?");
+                size++;
+            }
+
+            sql.append(") VALUES (").append(values.toString()).append(")");
+
+            try {
+                efi.getEntityDbMeta().checkTableRuntime(ed);
+
+                if (con != null) eqb.useConnection(con);
+                else eqb.makeConnection();
+                eqb.makePreparedStatement();
+                final int fieldCount = size;
+                eqb.executeInBatches(valueList.size(), batchSize, j -> {
+                    HashMap<String, Object> valueMap = valueList.get(j).valueMapInternal;
+                    for (int i = 0; i < fieldCount; i++) {
+                        FieldInfo fieldInfo = fieldInfoArray[i];
+                        eqb.setPreparedStatementValue(i + 1, valueMap.get(fieldInfo.name), fieldInfo);
+                    }
+                }, null);
+                for (EntityValueBase evb : valueList) evb.setSyncedWithDb();
+            } catch (SQLException e) {
+                logger.warn("Error creating " + valueList.size() + " " + ed.getFullEntityName() + " values, first " +
+                        this.toString() + " con " + eqb.connection + ": " + e.toString());
+                throw e;
+            } finally {
+                try { eqb.closeAll(); }
+                catch (SQLException sqle) { logger.error("Error in JDBC close in bulk create of " + ed.getFullEntityName(), sqle); }
+            }
+        }
+    }
+
+    @SuppressWarnings("MismatchedQueryAndUpdateOfStringBuilder")
+    @Override
+    public void updateBulkExtended(FieldInfo[] pkFieldArray, FieldInfo[] nonPkFieldArray, List<EntityValueBase> valueList,
+                                   int batchSize, Connection con) throws SQLException {
+        EntityDefinition ed = getEntityDefinition();
+        final EntityFacadeImpl efi = getEntityFacadeImpl();
+
+        if (ed.isViewEntity) {
+            throw new EntityException("Update not yet implemented for view-entity");
+        } else {
+            final EntityQueryBuilder eqb = new EntityQueryBuilder(ed, efi);
+            StringBuilder sql = eqb.sqlTopLevel;
+            sql.append("UPDATE ").append(ed.getFullTableName()).append(" SET ");
+
+            // parameters are set for each value below, use the SQL from addWhereClause but not its parameters
+            ArrayList<FieldInfo> parameterFields = new ArrayList<>(nonPkFieldArray.length + pkFieldArray.length);
+            for (int i = 0; i < nonPkFieldArray.length; i++) {
+                FieldInfo fieldInfo = nonPkFieldArray[i];
+                if (fieldInfo == null) break;
+                if (i > 0) sql.append(", ");
+                sql.append(fieldInfo.getFullColumnName()).append("=?");
+                parameterFields.add(fieldInfo);
+            }
+            eqb.addWhereClause(pkFieldArray, valueMapInternal);
+            eqb.parameters.clear();
+            for (FieldInfo fieldInfo : pkFieldArray) {
+                if (fieldInfo == null) break;
+                parameterFields.add(fieldInfo);
+            }
+            int size = parameterFields.size();
+
+            try {
+                efi.getEntityDbMeta().checkTableRuntime(ed);
+
+                if (con != null) eqb.useConnection(con);
+                else eqb.makeConnection();
+                eqb.makePreparedStatement();
+                eqb.executeInBatches(valueList.size(), batchSize, j -> {
+                    HashMap<String, Object> valueMap = valueList.get(j).valueMapInternal;
+                    for (int i = 0; i < size; i++) {
+                        FieldInfo fieldInfo = parameterFields.get(i);
+                        eqb.setPreparedStatementValue(i + 1, valueMap.get(fieldInfo.name), fieldInfo);
+                    }
+                }, (k, count) -> checkBulkUpdateCount(count, valueList.get(k), eqb.finalSql));
+                for (EntityValueBase evb : valueList) evb.setSyncedWithDb();
+            } catch (SQLException e) {
+                logger.warn("Error updating " + valueList.size() + " " + ed.getFullEntityName() + " values, first " +
+                        this.toString() + " con " + eqb.connection + ": " + e.toString());
+                throw e;
+            } finally {
+                try { eqb.closeAll(); }
+                catch (SQLException sqle) { logger.error("Error in JDBC close in bulk update of " + ed.getFullEntityName(), sqle); }
+            }
+        }
+    }
+
+    /** Throw an EntityException for a bulk update count of 0; SUCCESS_NO_INFO (-2) means the driver doesn't know the count, only 0 is a missing record */
+    static void checkBulkUpdateCount(int count, Object value, String sql) {
+        if (count == 0) throw new EntityException("Tried to update a value that does not exist [" + value + "]. SQL used was " + sql);
+    }
+
+    @SuppressWarnings("MismatchedQueryAndUpdateOfStringBuilder")
+    @Override
+    public void deleteBulkExtended(List<EntityValueBase> valueList, int batchSize, Connection con) throws SQLException {
+        EntityDefinition ed = getEntityDefinition();
+        EntityFacadeImpl efi = getEntityFacadeImpl();
+
+        if (ed.isViewEntity) {
+            throw new EntityException("Delete not implemented for view-entity");
+        } else {
+            EntityQueryBuilder eqb = new EntityQueryBuilder(ed, efi);
+            StringBuilder sql = eqb.sqlTopLevel;
+            sql.append("DELETE FROM ").append(ed.getFullTableName());
+
+            FieldInfo[] pkFieldArray = ed.entityInfo.pkFieldInfoArray;
+            // parameters are set for each value below, use the SQL from addWhereClause but not its parameters
+            eqb.addWhereClause(pkFieldArray, valueMapInternal);
+            eqb.parameters.clear();
+
+            try {
+                efi.getEntityDbMeta().checkTableRuntime(ed);
+
+                if (con != null) eqb.useConnection(con);
+                else eqb.makeConnection();
+                eqb.makePreparedStatement();
+                eqb.executeInBatches(valueList.size(), batchSize, j -> {
+                    HashMap<String, Object> valueMap = valueList.get(j).valueMapInternal;
+                    for (int i = 0; i < pkFieldArray.length; i++) {
+                        FieldInfo fieldInfo = pkFieldArray[i];
+                        eqb.setPreparedStatementValue(i + 1, valueMap.get(fieldInfo.name), fieldInfo);
+                    }
+                }, (k, count) -> {
+                    if (count == 0) logger.info("Tried to delete a value that does not exist " + valueList.get(k).toString());
+                });
+            } catch (SQLException e) {
+                logger.warn("Error deleting " + valueList.size() + " " + ed.getFullEntityName() + " values, first " +
+                        this.toString() + " con " + eqb.connection + ": " + e.toString());
+                throw e;
+            } finally {
+                try { eqb.closeAll(); }
+                catch (SQLException sqle) { logger.error("Error in JDBC close in bulk delete of " + ed.getFullEntityName(), sqle); }
+            }
+        }
+    }
+
     @SuppressWarnings("MismatchedQueryAndUpdateOfStringBuilder")
     @Override
     public boolean refreshExtended() throws SQLException {
@@ -0,0 +1,131 @@
+package com.zmtech.zkit.entity.impl;
+
+import com.zmtech.zkit.entity.EntityCondition;
+import com.zmtech.zkit.entity.impl.condition.EntityConditionImplBase;
+import com.zmtech.zkit.entity.impl.condition.impl.FieldValueCondition;
+import com.zmtech.zkit.entity.impl.condition.impl.ListCondition;
+import com.zmtech.zkit.util.MNode;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 视图实体list缓存条件的索引，成员实体记录修改时按视图字段别名的值找到需要检查的条件，不用遍历整个list缓存。
+ *
+ * 成员实体修改时清除的条件为：条件中任何一个子条件与别名值匹配（mapMatchesAny），或条件中没有这个成员实体的别名
+ * （mapKeysNotContained）。所以所有子条件都是EQUALS、IN（非null值）时按每个子条件索引，另外记录每个成员实体
+ * 没有引用的条件和每个别名被哪些条件引用；其他条件放在unindexed中，每次都检查。
+ * 成员字段到视图字段别名的对应关系在创建时按成员实体计算好。
+ */
+class EntityViewListCacheIndex extends EntityListCacheIndex {
+    /** 成员实体名称 -> 成员字段 -> 视图字段别名 */
+    private final Map<String, Map<String, String[]>> aliasesByMember = new HashMap<>();
+    /** 成员实体名称 -> 这个成员实体的所有别名 */
+    private final Map<String, Set<String>> aliasSetByMember = new HashMap<>();
+    /** 别名 -> 引用这个别名的已索引条件 */
+    private final ConcurrentHashMap<String, Set<EntityCondition>> conditionsByAlias = new ConcurrentHashMap<>();
+    /** 成员实体名称 -> 没有引用这个成员实体任何别名的已索引条件 */
+    private final ConcurrentHashMap<String, Set<EntityCondition>> notReferencingByMember = new ConcurrentHashMap<>();
+
+    /** @param memberEntityNames 视图实体的成员实体的完整名称 */
+    EntityViewListCacheIndex(EntityDefinition viewEd, Collection<String> memberEntityNames) {
+        for (String memberEntityName : memberEntityNames) {
+            Map<String, String[]> aliasesByField = new HashMap<>();
+            Set<String> aliasSet = new HashSet<>();
+            Map<String, ArrayList<MNode>> memberFieldAliases = viewEd.getMemberFieldAliases(memberEntityName);
+            if (memberFieldAliases != null) {
+                for (Map.Entry<String, ArrayList<MNode>> mfAliasEntry : memberFieldAliases.entrySet()) {
+                    ArrayList<MNode> aliasNodeList = mfAliasEntry.getValue();
+                    String[] aliases = new String[aliasNodeList.size()];
+                    for (int i = 0; i < aliases.length; i++) aliases[i] = aliasNodeList.get(i).attribute("name");
+                    aliasesByField.put(mfAliasEntry.getKey(), aliases);
+                    aliasSet.addAll(Arrays.asList(aliases));
+                }
+            }
+            aliasesByMember.put(memberEntityName, aliasesByField);
+            aliasSetByMember.put(memberEntityName, aliasSet);
+        }
+    }
+
+    /** 成员实体记录值对应的视图字段值，与原来按getMemberFieldAliases构造的viewMatchMap相同 */
+    Map<String, Object> makeViewMatchMap(String memberEntityName, Map<String, Object> memberValueMap) {
+        Map<String, Object> viewMatchMap = new HashMap<>();
+        Map<String, String[]> aliasesByField = aliasesByMember.get(memberEntityName);
+        if (aliasesByField == null) return viewMatchMap;
+        for (Map.Entry<String, String[]> entry : aliasesByField.entrySet()) {
+            String fieldName = entry.getKey();
+            if (!memberValueMap.containsKey(fieldName)) continue;
+            Object fieldValue = memberValueMap.get(fieldName);
+            for (String alias : entry.getValue()) viewMatchMap.put(alias, fieldValue);
+        }
+        return viewMatchMap;
+    }
+
+    /**
+     * 成员实体修改时可能需要清除的条件：与别名值相同的条件、没有引用这个成员实体的条件、引用了viewMatchMap中没有的别名的条件
+     * 和所有不能索引的条件，调用方仍需要用mapMatchesAny/mapKeysNotContained检查
+     */
+    Set<EntityCondition> getCandidates(String memberEntityName, Map<String, Object> viewMatchMap) {
+        Set<EntityCondition> candidates = getCandidates(viewMatchMap);
+        Set<EntityCondition> notReferencing = notReferencingByMember.get(memberEntityName);
+        if (notReferencing != null) candidates.addAll(notReferencing);
+        Set<String> aliasSet = aliasSetByMember.get(memberEntityName);
+        if (aliasSet != null && aliasSet.size() > viewMatchMap.size()) {
+            // 记录值中没有的字段（如只查询了部分字段的记录），引用这些别名的条件mapKeysNotContained可能为true
+            for (String alias : aliasSet) {
+                if (viewMatchMap.containsKey(alias)) continue;
+                Set<EntityCondition> conditions = conditionsByAlias.get(alias);
+                if (conditions != null) candidates.addAll(conditions);
+            }
+        }
+        return candidates;
+    }
+
+    /** 所有子条件的索引项，任何一个子条件不能索引时返回null */
+    @Override
+    List<Object[]> getIndexValues(EntityCondition ec) {
+        List<Object[]> fieldValues = new ArrayList<>();
+        return addLeafValues(ec, fieldValues) && !fieldValues.isEmpty() ? fieldValues : null;
+    }
+    private static boolean addLeafValues(EntityCondition ec, List<Object[]> fieldValues) {
+        if (ec instanceof ListCondition) {
+            for (EntityConditionImplBase cond : ((ListCondition) ec).getConditionList()) {
+                if (!addLeafValues(cond, fieldValues)) return false;
+            }
+            return true;
+        }
+        if (!(ec instanceof FieldValueCondition)) return false;
+        FieldValueCondition fvc = (FieldValueCondition) ec;
+        EntityCondition.ComparisonOperator operator = fvc.getOperator();
+        if (operator != EntityCondition.EQUALS && operator != EntityCondition.IN) return false;
+        List<Object[]> leafValues = getFieldValues(fvc);
+        if (leafValues == null) return false;
+        fieldValues.addAll(leafValues);
+        return true;
+    }
+
+    @Override
+    void onIndexed(EntityCondition ec, List<Object[]> fieldValues) {
+        Set<String> referencedAliases = getAliases(fieldValues);
+        for (String alias : referencedAliases) conditionsByAlias.computeIfAbsent(alias, k -> ConcurrentHashMap.newKeySet()).add(ec);
+        for (Map.Entry<String, Set<String>> entry : aliasSetByMember.entrySet()) {
+            if (Collections.disjoint(entry.getValue(), referencedAliases))
+                notReferencingByMember.computeIfAbsent(entry.getKey(), k -> ConcurrentHashMap.newKeySet()).add(ec);
+        }
+    }
+
+    @Override
+    void onUnindexed(EntityCondition ec, List<Object[]> fieldValues) {
+        for (String alias : getAliases(fieldValues)) {
+            Set<EntityCondition> conditions = conditionsByAlias.get(alias);
+            if (conditions != null) conditions.remove(ec);
+        }
+        for (Set<EntityCondition> conditions : notReferencingByMember.values()) conditions.remove(ec);
+    }
+
+    private static Set<String> getAliases(List<Object[]> fieldValues) {
+        Set<String> aliases = new HashSet<>();
+        for (Object[] fieldValue : fieldValues) aliases.add((String) fieldValue[0]);
+        return aliases;
+    }
+}
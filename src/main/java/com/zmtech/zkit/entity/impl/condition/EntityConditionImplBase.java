@@ -4,6 +4,7 @@ import com.zmtech.zkit.entity.EntityCondition;
 import com.zmtech.zkit.entity.impl.EntityDefinition;
 import com.zmtech.zkit.entity.impl.EntityQueryBuilder;
 
+import java.util.List;
 import java.util.Set;
 
 public interface EntityConditionImplBase extends EntityCondition {
@@ -19,4 +20,10 @@ public interface EntityConditionImplBase extends EntityCondition {
      * 仅获取视图实体的成员实体中的字段的条件，如果为null则 sub-select = true的成员实体没有别名
      */
     EntityConditionImplBase filter(String entityAlias, EntityDefinition mainEd);
+
+    /**
+     * 用于按结构缓存SQL（见EntityFindBuilder.useCachedSql()）：把决定makeSqlWhere生成的SQL的条件结构（不包括参数值）加到shape，
+     * 参数值按makeSqlWhere添加参数的顺序加到values。不支持时返回false，这时查询每次都生成SQL。
+     */
+    default boolean addSqlShape(List<Object> shape, List<Object> values) { return false; }
 }
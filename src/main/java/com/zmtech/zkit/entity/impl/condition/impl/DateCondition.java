@@ -12,6 +12,7 @@ import java.io.ObjectInput;
 import java.io.ObjectOutput;
 import java.sql.Timestamp;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -23,6 +24,7 @@ public class DateCondition implements EntityConditionImplBase, Externalizable {
     private EntityConditionImplBase conditionInternal;
     private int hashCodeInternal;
 
+    public DateCondition() { }
     public DateCondition(String fromFieldName, String thruFieldName, Timestamp compareStamp) {
         this.fromFieldName = fromFieldName != null ? fromFieldName : "fromDate";
         this.thruFieldName = thruFieldName != null ? thruFieldName : "thruDate";
@@ -37,6 +39,11 @@ public class DateCondition implements EntityConditionImplBase, Externalizable {
         conditionInternal.makeSqlWhere(eqb, subMemberEd);
     }
 
+    @Override
+    public boolean addSqlShape(List<Object> shape, List<Object> values) {
+        return conditionInternal.addSqlShape(shape, values);
+    }
+
     @Override
     public void getAllAliases(Set<String> entityAliasSet, Set<String> fieldAliasSet) {
         fieldAliasSet.add(fromFieldName);
@@ -78,6 +85,11 @@ public class DateCondition implements EntityConditionImplBase, Externalizable {
         return conditionInternal.toString();
     }
 
+    /** 等价的字段条件：(from为null或from <= compareStamp)且(thru为null或thru > compareStamp) */
+    public EntityConditionImplBase getConditionInternal() {
+        return conditionInternal;
+    }
+
     private EntityConditionImplBase makeConditionInternal() {
         ConditionField fromFieldCf = new ConditionField(fromFieldName);
         ConditionField thruFieldCf = new ConditionField(thruFieldName);
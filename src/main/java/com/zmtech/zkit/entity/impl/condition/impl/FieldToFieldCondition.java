@@ -11,18 +11,20 @@ import com.zmtech.zkit.util.MNode;
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 public class FieldToFieldCondition implements EntityConditionImplBase {
 
-    protected static final Class thisClass = FieldValueCondition.class;
+    protected static final Class thisClass = FieldToFieldCondition.class;
     protected ConditionField field;
     protected EntityCondition.ComparisonOperator operator;
     protected ConditionField toField;
     protected boolean ignoreCase = false;
     protected int curHashCode;
 
+    public FieldToFieldCondition() { }
     public FieldToFieldCondition(ConditionField field, EntityCondition.ComparisonOperator operator, ConditionField toField) {
         this.field = field;
         this.operator = operator == null ? EQUALS : operator;
@@ -30,6 +32,22 @@ public class FieldToFieldCondition implements EntityConditionImplBase {
         curHashCode = createHashCode();
     }
 
+    public String getFieldName() {
+        return field.fieldName;
+    }
+
+    public EntityCondition.ComparisonOperator getOperator() {
+        return operator;
+    }
+
+    public String getToFieldName() {
+        return toField.fieldName;
+    }
+
+    public boolean getIgnoreCase() {
+        return ignoreCase;
+    }
+
     @Override
     public void makeSqlWhere(EntityQueryBuilder eqb, EntityDefinition subMemberEd) {
         StringBuilder sql = eqb.sqlTopLevel;
@@ -67,6 +85,17 @@ public class FieldToFieldCondition implements EntityConditionImplBase {
         return sql;
     }
 
+    @Override
+    public boolean addSqlShape(List<Object> shape, List<Object> values) {
+        // 没有参数，SQL只由字段和运算符决定
+        shape.add(FieldToFieldCondition.class);
+        shape.add(field);
+        shape.add(operator);
+        shape.add(toField);
+        shape.add(ignoreCase);
+        return true;
+    }
+
     @Override
     public boolean mapMatches(Map<String, Object> map) {
         return EntityConditionFactoryImpl.compareByOperator(map.get(field.getFieldName()), operator, map.get(toField.getFieldName()));
@@ -166,5 +195,7 @@ public class FieldToFieldCondition implements EntityConditionImplBase {
         operator = EntityCondition.ComparisonOperator.valueOf(objectInput.readUTF());
         toField = new ConditionField();
         toField.readExternal(objectInput);
+        ignoreCase = objectInput.readBoolean();
+        curHashCode = createHashCode();
     }
 }
@@ -141,6 +141,41 @@ public class FieldValueCondition implements EntityConditionImplBase, Externaliza
         }
     }
 
+    @Override
+    public boolean addSqlShape(List<Object> shape, List<Object> values) {
+        shape.add(thisClass);
+        shape.add(field);
+        shape.add(operator);
+        shape.add(ignoreCase);
+        // 与makeSqlWhere相同的判断：null、空集合、集合的大小和IN的逗号分隔字符串决定生成的SQL
+        Object curValue = value;
+        if ((operator == IN || operator == NOT_IN) && curValue instanceof CharSequence) {
+            String valueStr = curValue.toString();
+            if (valueStr.contains(",")) curValue = Arrays.asList(valueStr.split(","));
+        }
+        if (curValue == null) {
+            shape.add(-1);
+        } else if (curValue instanceof Collection) {
+            shape.add(((Collection) curValue).size());
+        } else {
+            shape.add(-2);
+        }
+
+        if (operator == IS_NULL || operator == IS_NOT_NULL) return true;
+        if (curValue instanceof Collection && ((Collection) curValue).isEmpty() && (operator == IN || operator == NOT_IN)) return true;
+        if (curValue == null && (operator == EQUALS || operator == LIKE || operator == IN || operator == BETWEEN ||
+                operator == NOT_EQUAL || operator == NOT_LIKE || operator == NOT_IN || operator == NOT_BETWEEN)) return true;
+
+        if ((operator == IN || operator == NOT_IN) && curValue instanceof Collection) {
+            for (Object itemValue : (Collection) curValue) values.add(ignoreCase && itemValue instanceof CharSequence ? itemValue.toString().toUpperCase() : itemValue);
+        } else if ((operator == BETWEEN || operator == NOT_BETWEEN) && curValue instanceof Collection && ((Collection) curValue).size() == 2) {
+            for (Object itemValue : (Collection) curValue) values.add(ignoreCase && itemValue instanceof CharSequence ? itemValue.toString().toUpperCase() : itemValue);
+        } else {
+            values.add(ignoreCase && curValue instanceof CharSequence ? curValue.toString().toUpperCase() : curValue);
+        }
+        return true;
+    }
+
     @Override
     public boolean mapMatches(Map<String, Object> map) {
         return EntityConditionFactoryImpl.compareByOperator(map.get(field.fieldName), operator, value);
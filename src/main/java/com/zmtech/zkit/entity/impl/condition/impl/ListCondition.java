@@ -19,6 +19,7 @@ public class ListCondition implements EntityConditionImplBase {
     private int curHashCode;
     private static final Class thisClass = ListCondition.class;
 
+    public ListCondition() { }
     public ListCondition(List<EntityConditionImplBase> conditionList, JoinOperator operator) {
         this.operator = operator != null ? operator : AND;
         if (conditionList != null) {
@@ -82,6 +83,17 @@ public class ListCondition implements EntityConditionImplBase {
         if (conditionListSize > 1) sql.append(')');
     }
 
+    @Override
+    public boolean addSqlShape(List<Object> shape, List<Object> values) {
+        shape.add(thisClass);
+        shape.add(operator);
+        shape.add(conditionListSize);
+        for (int i = 0; i < conditionListSize; i++) {
+            if (!conditionList.get(i).addSqlShape(shape, values)) return false;
+        }
+        return true;
+    }
+
     @Override
     public boolean mapMatches(Map<String, Object> map) {
         for (int i = 0; i < conditionListSize; i++) {
@@ -8,6 +8,7 @@ import com.zmtech.zkit.entity.impl.condition.EntityConditionImplBase;
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -22,6 +23,12 @@ public class TrueCondition implements EntityConditionImplBase {
         eqb.sqlTopLevel.append("1=1");
     }
 
+    @Override
+    public boolean addSqlShape(List<Object> shape, List<Object> values) {
+        shape.add(thisClass);
+        return true;
+    }
+
     @Override
     public boolean mapMatches(Map<String, Object> map) {
         return true;
@@ -19,6 +19,7 @@ public class WhereCondition implements EntityConditionImplBase {
     protected final static Logger logger = LoggerFactory.getLogger(WhereCondition.class);
     protected String sqlWhereClause;
 
+    public WhereCondition() { }
     public WhereCondition(String sqlWhereClause) {
         this.sqlWhereClause = sqlWhereClause != null ? sqlWhereClause : "";
     }
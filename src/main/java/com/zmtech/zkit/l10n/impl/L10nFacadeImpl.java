@@ -9,7 +9,10 @@ import java.sql.Time;
 import java.sql.Timestamp;
 import java.util.*;
 
+import com.zmtech.zkit.cache.impl.ZCacheLoader;
+import com.zmtech.zkit.context.impl.ExecutionContextFactoryImpl;
 import com.zmtech.zkit.context.impl.ExecutionContextImpl;
+import com.zmtech.zkit.entity.EntityFacade;
 import com.zmtech.zkit.entity.EntityFind;
 import com.zmtech.zkit.entity.EntityValue;
 import com.zmtech.zkit.exception.BaseException;
@@ -52,10 +55,17 @@ public class L10nFacadeImpl implements L10nFacade {
         String lmsg = eci.getL10nMessageCache().get(cacheKey);
         if (lmsg != null) return lmsg;
 
+        String result = findLocalizedMessage(eci.getEntity(), original, localeString);
+        eci.getL10nMessageCache().put(cacheKey, result);
+        return result;
+    }
+
+    /** 查询LocalizedMessage，依次尝试完整locale、语言和default，没有找到时返回原文（##之前的部分） */
+    static String findLocalizedMessage(EntityFacade entity, String original, String localeString) {
         String defaultValue = original;
         int localeUnderscoreIndex = localeString.indexOf('_');
 
-        EntityFind find = eci.getEntity().find("moqui.basic.LocalizedMessage")
+        EntityFind find = entity.find("moqui.basic.LocalizedMessage")
                 .condition("original", original).condition("locale", localeString).useCache(true);
         EntityValue localizedMessage = find.one();
         if (localizedMessage == null && localeUnderscoreIndex > 0)
@@ -69,7 +79,7 @@ public class L10nFacadeImpl implements L10nFacade {
             int indexOfHash = original.lastIndexOf("##");
             if (indexOfHash > 0 && indexOfHash > indexOfCloseCurly) {
                 defaultValue = original.substring(0, indexOfHash);
-                EntityFind findHash = eci.getEntity().find("moqui.basic.LocalizedMessage")
+                EntityFind findHash = entity.find("moqui.basic.LocalizedMessage")
                         .condition("original", defaultValue).condition("locale", localeString).useCache(true);
                 localizedMessage = findHash.one();
                 if (localizedMessage == null && localeUnderscoreIndex > 0)
@@ -79,9 +89,24 @@ public class L10nFacadeImpl implements L10nFacade {
             }
         }
 
-        String result = localizedMessage != null ? localizedMessage.getString("localized") : defaultValue;
-        eci.getL10nMessageCache().put(cacheKey, result);
-        return result;
+        return localizedMessage != null ? localizedMessage.getString("localized") : defaultValue;
+    }
+
+    /**
+     * l10n.message缓存的refresh-after-write加载器，键为 original::locale；在工作线程中运行，使用完毕后销毁该线程的ExecutionContext。
+     */
+    public static ZCacheLoader<String, String> makeMessageLoader(ExecutionContextFactoryImpl ecfi) {
+        return cacheKey -> {
+            int separatorIndex = cacheKey.lastIndexOf("::");
+            if (separatorIndex < 0) return null;
+            boolean hadContext = ecfi.getActiveContextMap().containsKey(Thread.currentThread().getId());
+            ExecutionContextImpl threadEci = ecfi.getEci();
+            try {
+                return findLocalizedMessage(threadEci.getEntity(), cacheKey.substring(0, separatorIndex), cacheKey.substring(separatorIndex + 2));
+            } finally {
+                if (!hadContext) threadEci.destroy();
+            }
+        };
     }
 
     @Override
@@ -1,6 +1,8 @@
 package com.zmtech.zkit.resource.impl;
 
+import com.zmtech.zkit.cache.impl.CacheFacadeImpl;
 import com.zmtech.zkit.cache.impl.ZCache;
+import com.zmtech.zkit.cache.impl.ZCacheLoader;
 import com.zmtech.zkit.script.ScriptRunner;
 import com.zmtech.zkit.render.TemplateRenderer;
 import com.zmtech.zkit.context.impl.ExecutionContextFactoryImpl;
@@ -69,6 +71,8 @@ public class ResourceFacadeImpl implements ResourceFacade {
         xmlActionsScriptRunner.init(ecfi);
 
         textLocationCache = ecfi.getCache().getCache("resource.text.location", String.class, String.class);
+        // 配置了refresh-after-write时，在后台重新读取文本
+        ((CacheFacadeImpl) ecfi.getCache()).registerCacheLoader("resource.text.location", (ZCacheLoader<String, String>) this::loadLocationText);
         // 使用HashMap在这里更快：scriptGroovyExpressionCache = ecfi.cacheFacade.getCache（“resource.groovy.expression”）
         resourceReferenceByLocation = ecfi.getCache().getCache("resource.reference.location", String.class, ResourceReference.class);
 
@@ -313,6 +317,15 @@ public class ResourceFacadeImpl implements ResourceFacade {
         return text;
     }
 
+    /** resource.text.location缓存的加载器，不使用缓存读取文本，资源不存在时返回null */
+    private String loadLocationText(String location) {
+        ResourceReference textRr = getLocationReference(location);
+        if (textRr == null) return null;
+        InputStream locStream = textRr.openStream();
+        if (locStream == null) return null;
+        return ObjectUtil.getStreamText(locStream);
+    }
+
     @Override
     public DataSource getLocationDataSource(String location) {
         int hashIdx = location.indexOf("#");
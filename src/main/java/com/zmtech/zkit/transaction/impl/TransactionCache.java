@@ -15,6 +15,8 @@ import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 /**
  * 这是事务高速缓存，基本功能是伪装成数据库的事务范围。
@@ -415,31 +417,49 @@ public class TransactionCache implements Synchronization {
                 EntityFacadeImpl efi = (EntityFacadeImpl) ecfi.getEntity();
 
                 long startTime = System.currentTimeMillis();
+                int batchSize = efi.getBulkBatchSize();
                 int createCount = 0;
                 int updateCount = 0;
                 int deleteCount = 0;
+                int mergedCount = 0;
                 // for (EntityWriteInfo ewi in writeInfoList) logger.warn("===== TX Cache value to ${ewi.writeMode} ${ewi.evb.getEntityName()}: \n${ewi.evb}")
                 if (readOnly) logger.warn("事务缓存警告: 只读书屋缓存中有 ["+writeInfoListSize+"] 条记录需要写入!");
-                for (EntityWriteInfo entityWriteInfo : writeInfoList) {
-                    String groupName = (entityWriteInfo).evb.getEntityDefinition().getEntityGroupName();
-                    Connection con = connectionByGroup.get(groupName);
-                    if (con == null) {
-                        con = efi.getConnection(groupName);
-                        connectionByGroup.put(groupName, con);
-                    }
 
-                    if ((entityWriteInfo).writeMode.equals(WriteMode.CREATE)) {
-                        (entityWriteInfo).evb.basicCreate(con);
-                        createCount++;
-                    } else if ((entityWriteInfo).writeMode.equals(WriteMode.DELETE)) {
-                        (entityWriteInfo).evb.deleteExtended(con);
-                        deleteCount++;
+                // 相邻的同一主键的update合并为一条，不相邻的不合并，所有写入都保持原来的顺序
+                ArrayList<ArrayList<EntityWriteInfo>> writeGroups = groupAdjacentUpdates(writeInfoList,
+                        ewi -> ewi.writeMode == WriteMode.UPDATE, ewi -> makeKey(ewi.evb));
+
+                // 按顺序写入，同一实体、操作和字段的连续记录使用一个JDBC批处理，不同实体之间保持原来的顺序（如先创建父记录）
+                BulkWrite curWrite = null;
+                for (ArrayList<EntityWriteInfo> writeGroup : writeGroups) {
+                    EntityWriteInfo ewi = writeGroup.get(0);
+                    EntityValueBase evb = ewi.evb;
+                    FieldInfo[] fieldArray;
+                    if (ewi.writeMode == WriteMode.UPDATE) {
+                        if (writeGroup.size() > 1) {
+                            evb = mergeUpdates(writeGroup);
+                            mergedCount += writeGroup.size() - 1;
+                        }
+                        fieldArray = writeGroup.size() > 1 ? mergeModifiedFields(writeGroup) : evb.getModifiedNonPkFieldArray();
+                        // 没有修改任何字段，不需要写入
+                        if (fieldArray.length == 0 || fieldArray[0] == null) continue;
+                    } else if (ewi.writeMode == WriteMode.CREATE) {
+                        fieldArray = evb.getCreateFieldArray();
                     } else {
-                        (entityWriteInfo).evb.basicUpdate(con);
-                        updateCount++;
+                        fieldArray = evb.getEntityDefinition().entityInfo.pkFieldInfoArray;
+                    }
+
+                    if (curWrite == null || !curWrite.matches(evb, ewi.writeMode, fieldArray)) {
+                        if (curWrite != null) curWrite.write(efi, connectionByGroup, batchSize);
+                        curWrite = new BulkWrite(evb.getEntityDefinition(), ewi.writeMode, fieldArray);
                     }
+                    curWrite.valueList.add(evb);
+                    if (ewi.writeMode == WriteMode.CREATE) createCount++;
+                    else if (ewi.writeMode == WriteMode.DELETE) deleteCount++;
+                    else updateCount++;
                 }
-                if (logger.isDebugEnabled()) logger.debug("事务缓存调试: 已刷新事务缓存, 用时 ["+(System.currentTimeMillis() - startTime)+"] 毫秒,已创建 ["+createCount+"] ,已更新 ["+updateCount+"],已删除["+deleteCount+"],可读 ["+readOneCache.size()+"] ,实体数量 ["+readListCache.size()+"]");
+                if (curWrite != null) curWrite.write(efi, connectionByGroup, batchSize);
+                if (logger.isDebugEnabled()) logger.debug("事务缓存调试: 已刷新事务缓存, 用时 ["+(System.currentTimeMillis() - startTime)+"] 毫秒,已创建 ["+createCount+"] ,已更新 ["+updateCount+"],已删除["+deleteCount+"],合并更新 ["+mergedCount+"],可读 ["+readOneCache.size()+"] ,实体数量 ["+readListCache.size()+"]");
             }
 
             writeInfoList.clear();
@@ -467,6 +487,103 @@ public class TransactionCache implements Synchronization {
         }
     }
 
+    /**
+     * 把写入分为按原来顺序执行的组：相邻的同一个键的update为一组（合并为一条update），其他每条写入单独一组。
+     * 不相邻的update不合并，否则合并后的写入会移到中间其他实体的写入之后，可能违反外键约束或改变触发器的执行顺序。
+     */
+    static <T> ArrayList<ArrayList<T>> groupAdjacentUpdates(List<T> writeList, Predicate<T> isUpdate, Function<T, Object> keyOf) {
+        ArrayList<ArrayList<T>> writeGroups = new ArrayList<>(writeList.size());
+        ArrayList<T> lastGroup = null;
+        Object lastUpdateKey = null;
+        for (T write : writeList) {
+            if (isUpdate.test(write)) {
+                Object key = keyOf.apply(write);
+                if (lastGroup != null && lastUpdateKey != null && lastUpdateKey.equals(key)) {
+                    lastGroup.add(write);
+                    continue;
+                }
+                lastUpdateKey = key;
+            } else {
+                lastUpdateKey = null;
+            }
+            lastGroup = new ArrayList<>(1);
+            lastGroup.add(write);
+            writeGroups.add(lastGroup);
+        }
+        return writeGroups;
+    }
+
+    /** 一个合并后的update：最后一次update的值，每个字段使用最后修改这个字段的update的值 */
+    private static EntityValueBase mergeUpdates(ArrayList<EntityWriteInfo> chain) {
+        EntityValueBase merged = (EntityValueBase) chain.get(chain.size() - 1).evb.cloneValue();
+        HashMap<String, Object> mergedValueMap = merged.getValueMap();
+        for (EntityWriteInfo ewi : chain) {
+            HashMap<String, Object> valueMap = ewi.evb.getValueMap();
+            for (FieldInfo fi : ewi.evb.getModifiedNonPkFieldArray()) {
+                if (fi == null) break;
+                mergedValueMap.put(fi.name, valueMap.get(fi.name));
+            }
+        }
+        return merged;
+    }
+    /** 合并的update中任何一次修改过的非主键字段，按实体定义中的顺序 */
+    private static FieldInfo[] mergeModifiedFields(ArrayList<EntityWriteInfo> chain) {
+        Set<String> modifiedNames = new HashSet<>();
+        for (EntityWriteInfo ewi : chain) {
+            for (FieldInfo fi : ewi.evb.getModifiedNonPkFieldArray()) {
+                if (fi == null) break;
+                modifiedNames.add(fi.name);
+            }
+        }
+        FieldInfo[] allNonPkFieldArray = chain.get(0).evb.getEntityDefinition().entityInfo.nonPkFieldInfoArray;
+        FieldInfo[] fieldArray = new FieldInfo[allNonPkFieldArray.length];
+        int fieldArrayIndex = 0;
+        for (FieldInfo fi : allNonPkFieldArray) if (modifiedNames.contains(fi.name)) fieldArray[fieldArrayIndex++] = fi;
+        return fieldArray;
+    }
+
+    /** flushCache中同一实体、操作和字段的连续记录，使用EntityValueBase.*BulkExtended批量写入 */
+    private static class BulkWrite {
+        final EntityDefinition ed;
+        final WriteMode writeMode;
+        final FieldInfo[] fieldArray;
+        final ArrayList<EntityValueBase> valueList = new ArrayList<>();
+
+        BulkWrite(EntityDefinition ed, WriteMode writeMode, FieldInfo[] fieldArray) {
+            this.ed = ed;
+            this.writeMode = writeMode;
+            this.fieldArray = fieldArray;
+        }
+
+        boolean matches(EntityValueBase evb, WriteMode otherWriteMode, FieldInfo[] otherFieldArray) {
+            if (writeMode != otherWriteMode || !ed.getFullEntityName().equals(evb.getEntityDefinition().getFullEntityName())) return false;
+            for (int i = 0; i < fieldArray.length; i++) {
+                // 同一实体的FieldInfo是同一个对象
+                if (fieldArray[i] != otherFieldArray[i]) return false;
+                if (fieldArray[i] == null) break;
+            }
+            return true;
+        }
+
+        void write(EntityFacadeImpl efi, Map<String, Connection> connectionByGroup, int batchSize) throws SQLException {
+            String groupName = ed.getEntityGroupName();
+            Connection con = connectionByGroup.get(groupName);
+            if (con == null) {
+                con = efi.getConnection(groupName);
+                connectionByGroup.put(groupName, con);
+            }
+
+            EntityValueBase first = valueList.get(0);
+            if (writeMode == WriteMode.CREATE) {
+                first.createBulkExtended(fieldArray, valueList, batchSize, con);
+            } else if (writeMode == WriteMode.DELETE) {
+                first.deleteBulkExtended(valueList, batchSize, con);
+            } else {
+                first.updateBulkExtended(ed.entityInfo.pkFieldInfoArray, fieldArray, valueList, batchSize, con);
+            }
+        }
+    }
+
     @Override
     public void beforeCompletion() {
         try {
@@ -99,8 +99,9 @@ public class TransactionInternalBitronix implements TransactionInternal {
 
         pds.setEnableJdbc4ConnectionTest(true); // use faster jdbc4 connection test
         // default is 0, disabled PreparedStatement cache (cache size per Connection)
-        // NOTE: make this configurable? value too high or low?
-        pds.setPreparedStatementCacheSize(100);
+        // statements closed by ConnectionWrapper at the end of a transaction go back to this cache
+        String stmtCacheSize = dsi.inlineJdbc.attribute("pool-statement-cache-size");
+        pds.setPreparedStatementCacheSize(stmtCacheSize != null && !stmtCacheSize.isEmpty() ? Integer.parseInt(stmtCacheSize) : 100);
 
         // use-tm-join defaults to true, so does Bitronix so just set to false if false
         if (dsi.database.attribute("use-tm-join").equals("false")) pds.setUseTmJoin(false);
@@ -15,6 +15,7 @@ import com.zmtech.zkit.context.impl.ExecutionContextFactoryImpl;
 import com.zmtech.zkit.context.impl.ExecutionContextImpl;
 import com.zmtech.zkit.entity.EntityList;
 import com.zmtech.zkit.entity.EntityValue;
+import com.zmtech.zkit.entity.impl.EntityFacadeImpl;
 import com.zmtech.zkit.entity.impl.EntityValueBase;
 import com.zmtech.zkit.transaction.impl.TransactionCache;
 import com.zmtech.zkit.transaction.impl.TransactionFacadeImpl;
@@ -26,12 +27,17 @@ import javax.transaction.Synchronization;
 import javax.transaction.Transaction;
 import javax.transaction.xa.XAResource;
 import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.sql.*;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 public class ContextJavaUtil {
     protected final static Logger logger = LoggerFactory.getLogger(ContextJavaUtil.class);
@@ -352,12 +358,26 @@ public class ContextJavaUtil {
      * rollback, or destroy (when transactions are also cleaned up as a last resort).
      * <p>
      * Connections are attached to 2 things: entity group and transaction.
+     * <p>
+     * When enabled with setStatementCache() PreparedStatements from prepareStatement(sql) and
+     * prepareStatement(sql, resultSetType, resultSetConcurrency) are kept open after close() in a bounded LRU cache
+     * keyed by SQL and result set options, and reused for the same SQL until closeInternal(). Only connections stashed
+     * for a transaction are wrapped, so statements prepared outside a transaction are not cached here.
      */
     public static class ConnectionWrapper implements Connection {
         protected Connection con;
         TransactionFacadeImpl tfi;
         String groupName;
 
+        /** idle (logically closed) statements, least recently used first; null if the statement cache is not enabled */
+        private LinkedHashMap<StatementKey, CachedStatementHandler> statementCache = null;
+        private int statementCacheSize = 0;
+        private EntityFacadeImpl statsEfi = null;
+
+        private static final LongAdder statementCacheHits = new LongAdder();
+        private static final LongAdder statementCacheMisses = new LongAdder();
+        private static final LongAdder statementCacheEvictions = new LongAdder();
+
         public ConnectionWrapper(Connection con, TransactionFacadeImpl tfi, String groupName) {
             this.con = con;
             this.tfi = tfi;
@@ -368,10 +388,73 @@ public class ContextJavaUtil {
             return groupName;
         }
 
+        /**
+         * Enable the PreparedStatement cache for this connection, keeping at most cacheSize idle statements.
+         * @param statsEfi if not null evictions are counted in the query stats of this EntityFacade
+         */
+        public void setStatementCache(int cacheSize, EntityFacadeImpl statsEfi) {
+            if (cacheSize <= 0 || statementCache != null) return;
+            this.statementCacheSize = cacheSize;
+            this.statsEfi = statsEfi;
+            statementCache = new LinkedHashMap<StatementKey, CachedStatementHandler>(cacheSize * 2) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<StatementKey, CachedStatementHandler> eldest) {
+                    if (size() <= statementCacheSize) return false;
+                    statementCacheEvictions.increment();
+                    CachedStatementHandler handler = eldest.getValue();
+                    if (ConnectionWrapper.this.statsEfi != null) ConnectionWrapper.this.statsEfi.countStatementEvicted(handler.key.sql);
+                    handler.closePhysical();
+                    return true;
+                }
+            };
+        }
+
+        /** Hit, miss, and eviction counts for the PreparedStatement cache of all connections */
+        public static Map<String, Object> getStatementCacheInfo() {
+            Map<String, Object> info = new HashMap<>();
+            long hits = statementCacheHits.sum();
+            long misses = statementCacheMisses.sum();
+            info.put("hitCount", hits);
+            info.put("missCount", misses);
+            info.put("evictionCount", statementCacheEvictions.sum());
+            info.put("hitPercentage", hits + misses > 0 ? (float) hits * 100 / (hits + misses) : 0f);
+            return info;
+        }
+
         public void closeInternal() throws SQLException {
+            if (statementCache != null) {
+                // close idle statements before the connection, statements still in use are closed with the connection
+                for (CachedStatementHandler handler : statementCache.values()) handler.closePhysical();
+                statementCache = null;
+            }
             con.close();
         }
 
+        private PreparedStatement prepareCached(String sql, int resultSetType, int resultSetConcurrency) throws SQLException {
+            StatementKey key = new StatementKey(sql, resultSetType, resultSetConcurrency);
+            CachedStatementHandler handler = statementCache.remove(key);
+            if (handler != null) {
+                statementCacheHits.increment();
+                handler.reused = true;
+            } else {
+                statementCacheMisses.increment();
+                handler = new CachedStatementHandler(this, key, con.prepareStatement(sql, resultSetType, resultSetConcurrency));
+            }
+            handler.inUse = true;
+            return handler.proxy;
+        }
+
+        /** Called on close() of a statement from the cache, reset and keep it for reuse if possible */
+        void releaseCached(CachedStatementHandler handler) {
+            if (statementCache == null || handler.discard || !handler.reset()) {
+                handler.closePhysical();
+                return;
+            }
+            // another statement for the same SQL may have been prepared while this one was in use, keep the newest
+            CachedStatementHandler existing = statementCache.put(handler.key, handler);
+            if (existing != null && existing != handler) existing.closePhysical();
+        }
+
         @Override
         public Statement createStatement() throws SQLException {
             return con.createStatement();
@@ -379,6 +462,7 @@ public class ContextJavaUtil {
 
         @Override
         public PreparedStatement prepareStatement(String sql) throws SQLException {
+            if (statementCache != null) return prepareCached(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
             return con.prepareStatement(sql);
         }
 
@@ -474,6 +558,7 @@ public class ContextJavaUtil {
 
         @Override
         public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency) throws SQLException {
+            if (statementCache != null) return prepareCached(sql, resultSetType, resultSetConcurrency);
             return con.prepareStatement(sql, resultSetType, resultSetConcurrency);
         }
 
@@ -664,6 +749,114 @@ public class ContextJavaUtil {
         */
     }
 
+    /** Implemented by PreparedStatements from the ConnectionWrapper statement cache */
+    public interface CachedStatement {
+        /** true if this statement was prepared earlier in the transaction and reused from the cache */
+        boolean isReused();
+    }
+
+    static final class StatementKey {
+        final String sql;
+        final int resultSetType, resultSetConcurrency;
+        private final int hashCode;
+        StatementKey(String sql, int resultSetType, int resultSetConcurrency) {
+            this.sql = sql;
+            this.resultSetType = resultSetType;
+            this.resultSetConcurrency = resultSetConcurrency;
+            this.hashCode = (sql.hashCode() * 31 + resultSetType) * 31 + resultSetConcurrency;
+        }
+        @Override public int hashCode() { return hashCode; }
+        @Override public boolean equals(Object obj) {
+            if (!(obj instanceof StatementKey)) return false;
+            StatementKey that = (StatementKey) obj;
+            return resultSetType == that.resultSetType && resultSetConcurrency == that.resultSetConcurrency && sql.equals(that.sql);
+        }
+    }
+
+    /**
+     * Delegates to the driver PreparedStatement except close(), which returns it to the ConnectionWrapper cache.
+     * Statements that had an error or had settings changed (max rows, fetch size, etc) are not reused.
+     */
+    static final class CachedStatementHandler implements InvocationHandler {
+        private static final Set<String> settingMethods = new HashSet<>(Arrays.asList("setMaxRows", "setLargeMaxRows",
+                "setFetchSize", "setFetchDirection", "setQueryTimeout", "setMaxFieldSize", "setEscapeProcessing",
+                "setCursorName", "setPoolable", "closeOnCompletion"));
+
+        final ConnectionWrapper cw;
+        final StatementKey key;
+        final PreparedStatement ps;
+        final PreparedStatement proxy;
+        boolean inUse = false, reused = false, discard = false, hasBatch = false;
+        private ResultSet lastResultSet = null;
+
+        CachedStatementHandler(ConnectionWrapper cw, StatementKey key, PreparedStatement ps) {
+            this.cw = cw;
+            this.key = key;
+            this.ps = ps;
+            this.proxy = (PreparedStatement) Proxy.newProxyInstance(CachedStatementHandler.class.getClassLoader(),
+                    new Class<?>[] { PreparedStatement.class, CachedStatement.class }, this);
+        }
+
+        @Override
+        public Object invoke(Object proxyObj, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            switch (name) {
+                case "close":
+                    if (inUse) {
+                        inUse = false;
+                        cw.releaseCached(this);
+                    }
+                    return null;
+                case "isClosed": return !inUse || ps.isClosed();
+                case "isReused": return reused;
+                case "getConnection": return cw;
+                case "equals": return proxyObj == args[0];
+                case "hashCode": return System.identityHashCode(proxyObj);
+                case "toString": return "Cached: " + ps.toString();
+            }
+            if (!inUse) throw new SQLException("PreparedStatement is closed");
+            if (settingMethods.contains(name)) discard = true;
+            else if ("addBatch".equals(name)) hasBatch = true;
+            try {
+                Object result = method.invoke(ps, args);
+                if (result instanceof ResultSet) lastResultSet = (ResultSet) result;
+                return result;
+            } catch (InvocationTargetException e) {
+                // state of the statement after an error is driver specific, don't reuse it
+                discard = true;
+                throw e.getCause();
+            }
+        }
+
+        /** Clear state left from the last use, returns false if the statement can't be reused */
+        boolean reset() {
+            try {
+                if (lastResultSet != null) {
+                    lastResultSet.close();
+                    lastResultSet = null;
+                }
+                ps.clearParameters();
+                if (hasBatch) {
+                    ps.clearBatch();
+                    hasBatch = false;
+                }
+                ps.clearWarnings();
+                return true;
+            } catch (SQLException e) {
+                logger.warn("Error resetting cached PreparedStatement, closing it: " + e.toString());
+                return false;
+            }
+        }
+
+        void closePhysical() {
+            try {
+                ps.close();
+            } catch (SQLException e) {
+                logger.warn("Error closing cached PreparedStatement: " + e.toString());
+            }
+        }
+    }
+
 
     public final static ObjectMapper jacksonMapper = new ObjectMapper()
             .setSerializationInclusion(JsonInclude.Include.ALWAYS)
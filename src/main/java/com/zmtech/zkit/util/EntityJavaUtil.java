@@ -193,6 +193,10 @@ public class EntityJavaUtil {
         public final boolean optimisticLock, needsAuditLog, needsEncrypt;
         public final String useCache;
         public final boolean neverCache;
+        /** cache=true且cache-full-table=true的实体（非视图实体）整个表加载到内存，查询在内存中执行，见EntityCache.getTableSnapshot */
+        public final boolean cacheFullTable;
+        /** entity-facade的cache-adaptive=true时是否按统计决定是否使用缓存（见EntityCacheStats），cache=never、视图实体、cache-full-table和cache-adaptive=false的实体不使用 */
+        public final boolean cacheAdaptive;
         public final String sequencePrimaryPrefix;
         public final long sequencePrimaryStagger, sequenceBankSize;
         public final boolean sequencePrimaryUseUuid;
@@ -279,6 +283,8 @@ public class EntityJavaUtil {
                 useCache = cacheAttr;
                 neverCache = "never".equals(useCache);
             }
+            cacheFullTable = !isView && "true".equals(useCache) && "true".equals(internalEntityNode.attribute("cache-full-table"));
+            cacheAdaptive = !isView && !neverCache && !cacheFullTable && !"false".equals(internalEntityNode.attribute("cache-adaptive"));
 
             // init the FieldInfo arrays and see if we have create only fields, etc
             int allFieldInfoSize = allFieldInfoList.size();
@@ -613,6 +619,7 @@ public class EntityJavaUtil {
         private String entityName;
         private String sql;
         private long hitCount = 0, errorCount = 0;
+        private long statementReuseCount = 0, statementPrepareCount = 0, statementEvictCount = 0;
         private long minTimeNanos = Long.MAX_VALUE, maxTimeNanos = 0, totalTimeNanos = 0, totalSquaredTime = 0;
         private Map<String, Integer> artifactCounts = new HashMap<>();
         public QueryStatsInfo(String entityName, String sql) {
@@ -635,6 +642,11 @@ public class EntityJavaUtil {
 //                artifactCounts.put(artifactName, artifactCount != null ? artifactCount + 1 : 1);
 //            }
         }
+        public void countStatement(boolean reused) {
+            if (reused) statementReuseCount++;
+            else statementPrepareCount++;
+        }
+        public void countStatementEvicted() { statementEvictCount++; }
         public String getEntityName() { return entityName; }
         public String getSql() { return sql; }
         // public long getHitCount() { return hitCount; }
@@ -656,6 +668,8 @@ public class EntityJavaUtil {
             dm.put("minTime", new BigDecimal(minTimeNanos/nanosDivisor)); dm.put("maxTime", new BigDecimal(maxTimeNanos/nanosDivisor));
             dm.put("totalTime", new BigDecimal(totalTimeNanos/nanosDivisor)); dm.put("totalSquaredTime", new BigDecimal(totalSquaredTime/nanosDivisor));
             dm.put("average", new BigDecimal(getAverage()/nanosDivisor)); dm.put("stdDev", new BigDecimal(getStdDev()/nanosDivisor));
+            dm.put("statementReuseCount", statementReuseCount); dm.put("statementPrepareCount", statementPrepareCount);
+            dm.put("statementEvictCount", statementEvictCount);
             dm.put("artifactCounts", new HashMap<>(artifactCounts));
             return dm;
         }
@@ -172,6 +172,24 @@ public class ObjectUtil {
         return comp1.compareTo(comp2);
     }
 
+    /** 与Groovy的==相同：数字按数值比较（1、1L和1.0相等），其他对象按equals比较 */
+    public static boolean valuesEqual(Object value1, Object value2) {
+        if (value1 == value2) return true;
+        if (value1 == null || value2 == null) return false;
+        if (value1 instanceof Number && value2 instanceof Number && value1.getClass() != value2.getClass()) {
+            try {
+                return toBigDecimal((Number) value1).compareTo(toBigDecimal((Number) value2)) == 0;
+            } catch (NumberFormatException e) {
+                // NaN、Infinity
+                return false;
+            }
+        }
+        return value1.equals(value2);
+    }
+    private static BigDecimal toBigDecimal(Number number) {
+        return number instanceof BigDecimal ? (BigDecimal) number : new BigDecimal(number.toString());
+    }
+
     public static Comparable makeComparable(final Object obj) {
         if (obj == null) return null;
         if (obj instanceof Comparable) return (Comparable) obj;
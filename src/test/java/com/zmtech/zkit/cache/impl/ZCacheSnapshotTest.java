@@ -0,0 +1,80 @@
+package com.zmtech.zkit.cache.impl;
+
+import com.zmtech.zkit.entity.EntityCondition;
+import com.zmtech.zkit.entity.impl.condition.EntityConditionImplBase;
+import com.zmtech.zkit.entity.impl.condition.impl.ConditionField;
+import com.zmtech.zkit.entity.impl.condition.impl.DateCondition;
+import com.zmtech.zkit.entity.impl.condition.impl.FieldToFieldCondition;
+import com.zmtech.zkit.entity.impl.condition.impl.FieldValueCondition;
+import com.zmtech.zkit.entity.impl.condition.impl.ListCondition;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.cache.expiry.CreatedExpiryPolicy;
+import javax.cache.expiry.Duration;
+import java.io.File;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 快照写入后读取：实体条件作为键时，读取的键与原来的键相等且hashCode相同，可以用原来的键查找
+ */
+public class ZCacheSnapshotTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<ZCache<EntityConditionImplBase, String>> cacheList = new ArrayList<>();
+
+    private ZCache<EntityConditionImplBase, String> makeCache(String name) {
+        ZCacheConfiguration<EntityConditionImplBase, String> conf = new ZCacheConfiguration<>();
+        conf.setExpiryPolicyFactory(CreatedExpiryPolicy.factoryOf(new Duration(TimeUnit.HOURS, 1)));
+        ZCache<EntityConditionImplBase, String> cache = new ZCache<>(name, null, conf);
+        cacheList.add(cache);
+        return cache;
+    }
+
+    @After
+    public void closeCaches() {
+        for (ZCache<EntityConditionImplBase, String> cache : cacheList) cache.close();
+    }
+
+    @Test
+    public void conditionKeysRoundTrip() throws Exception {
+        ConditionField statusField = new ConditionField("statusId");
+        EntityConditionImplBase valueCond = new FieldValueCondition(statusField, EntityCondition.ComparisonOperator.EQUALS, "ACTIVE");
+        EntityConditionImplBase listCond = new ListCondition(Arrays.asList(
+                new FieldValueCondition(new ConditionField("partyId"), EntityCondition.ComparisonOperator.EQUALS, "P1"),
+                new FieldValueCondition(statusField, EntityCondition.ComparisonOperator.IN, Arrays.asList("A", "B"))),
+                EntityCondition.JoinOperator.AND);
+        EntityConditionImplBase dateCond = new DateCondition("fromDate", "thruDate", new Timestamp(1500000000000L));
+        EntityConditionImplBase nestedCond = new ListCondition(Arrays.asList(listCond, dateCond), EntityCondition.JoinOperator.OR);
+        EntityConditionImplBase fieldCond = new FieldToFieldCondition(new ConditionField("amount"),
+                EntityCondition.ComparisonOperator.GREATER_THAN, new ConditionField("paidAmount"));
+        List<EntityConditionImplBase> keys = Arrays.asList(valueCond, listCond, dateCond, nestedCond, fieldCond);
+
+        ZCache<EntityConditionImplBase, String> cache = makeCache("test.snapshot");
+        for (int i = 0; i < keys.size(); i++) cache.put(keys.get(i), "v" + i);
+        File file = ZCacheSnapshot.getSnapshotFile(folder.getRoot(), cache.getName());
+        assertEquals(keys.size(), ZCacheSnapshot.write(cache, file, null));
+
+        ZCache<EntityConditionImplBase, String> restored = makeCache("test.snapshot.restored");
+        assertEquals(keys.size(), ZCacheSnapshot.read(file, name -> restored, name -> null));
+        for (int i = 0; i < keys.size(); i++) assertEquals("v" + i, restored.get(keys.get(i)));
+
+        // 读取的键重新计算了hashCode等派生字段，与原来的键相等
+        for (ZEntry<EntityConditionImplBase, String> entry : restored.getSnapshotEntries()) {
+            EntityConditionImplBase key = entry.getKey();
+            EntityConditionImplBase origKey = keys.get(Integer.parseInt(entry.getValue().substring(1)));
+            assertEquals(origKey, key);
+            assertEquals(origKey.hashCode(), key.hashCode());
+            assertEquals(origKey.toString(), key.toString());
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.zmtech.zkit.cache.impl;
+
+import org.junit.After;
+import org.junit.Test;
+
+import javax.cache.expiry.CreatedExpiryPolicy;
+import javax.cache.expiry.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 删除和淘汰条目时同时从时间轮中移除
+ */
+public class ZCacheTest {
+    private ZCache<String, String> cache;
+
+    private ZCache<String, String> makeCache(ZCacheConfiguration<String, String> conf) {
+        conf.setExpiryPolicyFactory(CreatedExpiryPolicy.factoryOf(new Duration(TimeUnit.HOURS, 1)));
+        cache = new ZCache<>("test", null, conf);
+        return cache;
+    }
+
+    @After
+    public void closeCache() {
+        if (cache != null) cache.close();
+    }
+
+    @Test
+    public void removeUnschedules() {
+        makeCache(new ZCacheConfiguration<>());
+        cache.put("a", "1");
+        cache.put("b", "2");
+        cache.put("c", "3");
+        assertEquals(3, cache.getTimerWheelSize());
+
+        cache.remove("a");
+        assertEquals(2, cache.getTimerWheelSize());
+
+        // 值不相等时不删除
+        assertFalse(cache.remove("b", "x"));
+        assertEquals(2, cache.getTimerWheelSize());
+        assertTrue(cache.remove("b", "2"));
+        assertNull(cache.get("b"));
+        assertEquals(1, cache.getTimerWheelSize());
+    }
+
+    @Test
+    public void replaceKeepsOneScheduledEntry() {
+        makeCache(new ZCacheConfiguration<>());
+        cache.put("a", "1");
+        cache.put("a", "2");
+        cache.replace("a", "3");
+        assertEquals(1, cache.getTimerWheelSize());
+    }
+
+    @Test
+    public void evictUnschedules() {
+        makeCache(new ZCacheConfiguration<String, String>().setMaxEntries(10));
+        cache.put("a", "1");
+        ZEntry<String, String> oldEntry = cache.entryStore.get("a");
+        cache.remove("a");
+        cache.put("a", "2");
+        cache.put("b", "3");
+
+        // 已删除后重新放入的键不按旧条目淘汰，当前条目仍在时间轮中
+        assertFalse(cache.evictEntry(oldEntry));
+        assertEquals("2", cache.get("a"));
+        assertEquals(2, cache.getTimerWheelSize());
+
+        assertTrue(cache.evictEntry(cache.entryStore.get("a")));
+        assertNull(cache.get("a"));
+        assertEquals(1, cache.getTimerWheelSize());
+    }
+
+    @Test
+    public void sharedExpireTaskAdvancesAllWheels() throws InterruptedException {
+        ZCacheConfiguration<String, String> conf = new ZCacheConfiguration<>();
+        conf.setExpiryPolicyFactory(CreatedExpiryPolicy.factoryOf(new Duration(TimeUnit.MILLISECONDS, 10)));
+        ZCache<String, String> cache1 = new ZCache<>("test1", null, conf);
+        ZCache<String, String> cache2 = new ZCache<>("test2", null, conf);
+        try {
+            assertTrue(ZCache.expiringCaches.contains(cache1) && ZCache.expiringCaches.contains(cache2));
+            cache1.put("a", "1");
+            cache2.put("b", "2");
+            // 不访问条目，由定时任务清除到期的条目
+            long endTime = System.currentTimeMillis() + 5000;
+            while ((cache1.size() > 0 || cache2.size() > 0) && System.currentTimeMillis() < endTime) Thread.sleep(100);
+            assertEquals(0, cache1.size());
+            assertEquals(0, cache2.size());
+            assertEquals(0, cache1.getTimerWheelSize());
+        } finally {
+            cache1.close();
+            cache2.close();
+        }
+        assertFalse(ZCache.expiringCaches.contains(cache1) || ZCache.expiringCaches.contains(cache2));
+    }
+
+    @Test
+    public void computeIfAbsentWaiterLoadsAfterFailure() throws Exception {
+        makeCache(new ZCacheConfiguration<>());
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch fail = new CountDownLatch(1);
+        Thread first = new Thread(() -> {
+            try {
+                cache.computeIfAbsent("a", k -> {
+                    loading.countDown();
+                    try {
+                        fail.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    throw new IllegalStateException("只有第一个调用者的事务回滚");
+                });
+            } catch (IllegalStateException e) {
+                // 预期的异常
+            }
+        });
+        first.start();
+        loading.await();
+
+        String[] waiterValue = new String[1];
+        Thread waiter = new Thread(() -> waiterValue[0] = cache.computeIfAbsent("a", k -> "2"));
+        waiter.start();
+        long endTime = System.currentTimeMillis() + 5000;
+        while (waiter.getState() != Thread.State.WAITING && System.currentTimeMillis() < endTime) Thread.sleep(10);
+        fail.countDown();
+        first.join(5000);
+        waiter.join(5000);
+
+        // 等待的线程不得到第一个调用者的异常，使用自己的loader加载
+        assertEquals("2", waiterValue[0]);
+        assertEquals("2", cache.get("a"));
+    }
+
+    @Test
+    public void tinyLfuEvictionUnschedules() {
+        makeCache(new ZCacheConfiguration<String, String>().setMaxEntries(4)
+                .setEvictionMode(ZCacheConfiguration.EvictionMode.TINY_LFU));
+        for (int i = 0; i < 50; i++) cache.put("k" + i, "v" + i);
+        assertTrue(cache.size() <= 4);
+        assertEquals(cache.size(), cache.getTimerWheelSize());
+    }
+
+    @Test
+    public void budgetOnlyCacheKeepsFrequentEntry() {
+        // 只有共享预算时按预算划分窗口，频繁访问的条目进入主空间，不会被只访问一次的条目挤出
+        makeCache(new ZCacheConfiguration<String, String>().setWeigher((k, v) -> 100)
+                .setWeightBudget(new ZWeightBudget(1000)));
+        cache.put("hot", "h");
+        for (int i = 0; i < 20; i++) cache.get("hot");
+        for (int i = 0; i < 50; i++) cache.put("k" + i, "v" + i);
+        assertEquals("h", cache.get("hot"));
+        assertTrue(cache.getWeightedSize() <= 1000);
+    }
+}
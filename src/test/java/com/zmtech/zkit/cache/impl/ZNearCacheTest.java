@@ -0,0 +1,203 @@
+package com.zmtech.zkit.cache.impl;
+
+import com.zmtech.zkit.util.MNode;
+import com.zmtech.zkit.util.SimpleTopic;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.configuration.Configuration;
+import javax.cache.spi.CachingProvider;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 两个CacheFacadeImpl模拟两个节点，共享进程内的分布式缓存管理器(L2)和失效通知主题
+ */
+public class ZNearCacheTest {
+    private static final String CACHE_NAME = "test.near";
+
+    private SharedCacheManager distCacheManager;
+    private CacheFacadeImpl node1;
+    private CacheFacadeImpl node2;
+
+    /** 进程内的主题，同步地把消息交给每个节点，代替near-topic-factory */
+    private static class LocalTopic implements SimpleTopic<ZNearCache.NearCacheInvalidate> {
+        final List<CacheFacadeImpl> subscribers = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void publish(ZNearCache.NearCacheInvalidate message) {
+            for (CacheFacadeImpl facade : subscribers) facade.receiveNearCacheInvalidate(message);
+        }
+    }
+
+    /** L2的ZCache，armRead()之后只有下一次get读到值后等待releaseRead，模拟慢的分布式读取 */
+    private static class SlowCache extends ZCache<Object, Object> {
+        volatile CountDownLatch readStarted = null;
+        volatile CountDownLatch releaseRead = null;
+
+        SlowCache(String name, CacheManager manager, Configuration<Object, Object> configuration) {
+            super(name, manager, configuration);
+        }
+
+        void armRead() {
+            readStarted = new CountDownLatch(1);
+            releaseRead = new CountDownLatch(1);
+        }
+
+        @Override
+        public Object get(Object key) {
+            Object value = super.get(key);
+            CountDownLatch release = releaseRead;
+            if (release != null) {
+                releaseRead = null;
+                readStarted.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return value;
+        }
+    }
+
+    /** 两个节点共享的分布式缓存管理器 */
+    private static class SharedCacheManager implements CacheManager {
+        final Map<String, SlowCache> cacheMap = new ConcurrentHashMap<>();
+
+        @Override
+        public CachingProvider getCachingProvider() { return null; }
+        @Override
+        public URI getURI() { return URI.create("SharedCacheManager"); }
+        @Override
+        public ClassLoader getClassLoader() { return getClass().getClassLoader(); }
+        @Override
+        public Properties getProperties() { return new Properties(); }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <K, V, C extends Configuration<K, V>> Cache<K, V> createCache(String cacheName, C configuration) {
+            return (Cache<K, V>) cacheMap.computeIfAbsent(cacheName,
+                    name -> new SlowCache(name, this, (Configuration<Object, Object>) configuration));
+        }
+
+        @Override
+        public <K, V> Cache<K, V> getCache(String cacheName, Class<K> keyType, Class<V> valueType) {
+            return getCache(cacheName);
+        }
+        @Override
+        @SuppressWarnings("unchecked")
+        public <K, V> Cache<K, V> getCache(String cacheName) { return (Cache<K, V>) cacheMap.get(cacheName); }
+        @Override
+        public Iterable<String> getCacheNames() { return cacheMap.keySet(); }
+        @Override
+        public void destroyCache(String cacheName) {
+            SlowCache cache = cacheMap.remove(cacheName);
+            if (cache != null) cache.close();
+        }
+        @Override
+        public void enableManagement(String cacheName, boolean enabled) { }
+        @Override
+        public void enableStatistics(String cacheName, boolean enabled) { }
+        @Override
+        public void close() { }
+        @Override
+        public boolean isClosed() { return false; }
+        @Override
+        public <T> T unwrap(Class<T> clazz) { return clazz.cast(this); }
+    }
+
+    @Before
+    public void makeNodes() {
+        MNode cacheListNode = new MNode("cache-list", null);
+        Map<String, String> cacheAttrs = new HashMap<>();
+        cacheAttrs.put("name", CACHE_NAME);
+        cacheAttrs.put("type", "near");
+        cacheAttrs.put("expire-time-live", "3600");
+        cacheListNode.append("cache", cacheAttrs);
+
+        distCacheManager = new SharedCacheManager();
+        LocalTopic topic = new LocalTopic();
+        node1 = new CacheFacadeImpl(cacheListNode, ZCacheManager.getMCacheManager(), distCacheManager);
+        node2 = new CacheFacadeImpl(cacheListNode, ZCacheManager.getMCacheManager(), distCacheManager);
+        node1.setNearCacheTopic(topic);
+        node2.setNearCacheTopic(topic);
+        topic.subscribers.add(node1);
+        topic.subscribers.add(node2);
+    }
+
+    @After
+    public void destroyNodes() {
+        node1.destroy();
+        node2.destroy();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ZNearCache<Object, Object> nearCache(CacheFacadeImpl node) {
+        return (ZNearCache<Object, Object>) node.getCache(CACHE_NAME);
+    }
+
+    @Test
+    public void writeOnOneNodeInvalidatesOtherNode() {
+        ZNearCache<Object, Object> cache1 = nearCache(node1);
+        ZNearCache<Object, Object> cache2 = nearCache(node2);
+        assertTrue(cache1.getRemoteCache() == cache2.getRemoteCache());
+
+        cache1.put("a", "1");
+        assertEquals("1", cache2.get("a"));
+        assertEquals("1", cache2.getNearCache().get("a"));
+
+        cache1.put("a", "2");
+        assertNull(cache2.getNearCache().get("a"));
+        assertEquals("2", cache2.get("a"));
+
+        cache1.remove("a");
+        assertNull(cache2.getNearCache().get("a"));
+        assertNull(cache2.get("a"));
+
+        cache1.put("b", "3");
+        assertEquals("3", cache2.get("b"));
+        cache1.clear();
+        assertEquals(0, cache2.getNearCache().size());
+    }
+
+    @Test
+    public void lateL2ReadNotCachedAfterInvalidate() throws Exception {
+        ZNearCache<Object, Object> cache1 = nearCache(node1);
+        ZNearCache<Object, Object> cache2 = nearCache(node2);
+        cache1.put("a", "1");
+
+        SlowCache remoteCache = distCacheManager.cacheMap.get(CACHE_NAME);
+        remoteCache.armRead();
+        CountDownLatch readStarted = remoteCache.readStarted;
+        CountDownLatch releaseRead = remoteCache.releaseRead;
+        Object[] readValue = new Object[1];
+        Thread reader = new Thread(() -> readValue[0] = cache2.get("a"));
+        reader.start();
+        assertTrue(readStarted.await(5, TimeUnit.SECONDS));
+
+        // node2的L2读取已经读到旧值但还没有完成时，node1写入新值并通知node2
+        cache1.put("a", "2");
+        releaseRead.countDown();
+        reader.join(5000);
+
+        // 读取开始时的值返回给调用者，但不放入L1
+        assertEquals("1", readValue[0]);
+        assertNull(cache2.getNearCache().get("a"));
+        assertEquals("2", cache2.get("a"));
+    }
+}
@@ -0,0 +1,182 @@
+package com.zmtech.zkit.entity.impl;
+
+import com.zmtech.zkit.exception.EntityException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * createBulk/updateBulk/deleteBulk的JDBC批量写入：在嵌入的H2数据库上检查批量大小的边界、更新0行时的错误，
+ * 以及按连续的实体和字段分组时父记录在子记录之前写入
+ */
+public class EntityBulkWriteTest {
+    private static final String PARENT = "test.BulkParent";
+    private static final String CHILD = "test.BulkChild";
+
+    private Connection con;
+
+    /** 只执行JDBC批量的EntityQueryBuilder（没有实体定义和查询统计），记录每次executeBatch的参数组数 */
+    private static class BatchQueryBuilder extends EntityQueryBuilder {
+        final List<Integer> batchSizes = new ArrayList<>();
+        private int pending = 0;
+
+        BatchQueryBuilder(Connection con, String sql) throws SQLException {
+            super(null, null);
+            finalSql = sql;
+            ps = con.prepareStatement(sql);
+        }
+
+        @Override
+        public void addBatch() throws SQLException {
+            super.addBatch();
+            pending++;
+        }
+
+        @Override
+        public int[] executeBatch() throws SQLException {
+            batchSizes.add(pending);
+            pending = 0;
+            return ps.executeBatch();
+        }
+    }
+
+    @Before
+    public void makeTables() throws SQLException {
+        con = DriverManager.getConnection("jdbc:h2:mem:");
+        try (Statement stmt = con.createStatement()) {
+            stmt.execute("CREATE TABLE BULK_PARENT (ID VARCHAR(20) PRIMARY KEY, NAME VARCHAR(60))");
+            stmt.execute("CREATE TABLE BULK_CHILD (ID VARCHAR(20) PRIMARY KEY, PARENT_ID VARCHAR(20) NOT NULL REFERENCES BULK_PARENT(ID))");
+        }
+    }
+
+    @After
+    public void closeConnection() throws SQLException {
+        con.close();
+    }
+
+    private int count(String table) throws SQLException {
+        try (Statement stmt = con.createStatement(); ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM " + table)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+    private String parentName(String id) throws SQLException {
+        try (Statement stmt = con.createStatement(); ResultSet rs = stmt.executeQuery("SELECT NAME FROM BULK_PARENT WHERE ID = '" + id + "'")) {
+            return rs.next() ? rs.getString(1) : null;
+        }
+    }
+
+    /** 清空BULK_PARENT后按批量插入P0到P(valueCount-1)，返回每次executeBatch的参数组数 */
+    private List<Integer> insertParents(int valueCount, int batchSize) throws SQLException {
+        try (Statement stmt = con.createStatement()) {
+            stmt.execute("DELETE FROM BULK_PARENT");
+        }
+        BatchQueryBuilder eqb = new BatchQueryBuilder(con, "INSERT INTO BULK_PARENT (ID, NAME) VALUES (?, ?)");
+        try {
+            eqb.executeInBatches(valueCount, batchSize, j -> {
+                eqb.ps.setString(1, "P" + j);
+                eqb.ps.setString(2, "name" + j);
+            }, null);
+        } finally {
+            eqb.closeAll();
+        }
+        assertEquals(valueCount, count("BULK_PARENT"));
+        return eqb.batchSizes;
+    }
+
+    @Test
+    public void batchSizeBoundaries() throws SQLException {
+        assertEquals(Arrays.asList(5, 5), insertParents(10, 5));
+        assertEquals(Arrays.asList(5, 5, 1), insertParents(11, 5));
+        assertEquals(Arrays.asList(4, 4, 1), insertParents(9, 4));
+        assertEquals(Collections.singletonList(4), insertParents(4, 5));
+        assertEquals(Arrays.asList(1, 1, 1), insertParents(3, 1));
+        assertEquals(Collections.emptyList(), insertParents(0, 5));
+    }
+
+    @Test
+    public void updateMissingRowThrows() throws SQLException {
+        insertParents(6, 10);
+        final String[] ids = {"P0", "P1", "P2", "MISSING", "P4"};
+        BatchQueryBuilder eqb = new BatchQueryBuilder(con, "UPDATE BULK_PARENT SET NAME=? WHERE ID=?");
+        try {
+            eqb.executeInBatches(ids.length, 2, j -> {
+                eqb.ps.setString(1, "updated");
+                eqb.ps.setString(2, ids[j]);
+            }, (k, count) -> EntityValueImpl.checkBulkUpdateCount(count, ids[k], eqb.finalSql));
+            fail("更新不存在的记录应该抛出EntityException");
+        } catch (EntityException e) {
+            assertTrue(e.getMessage().contains("[MISSING]"));
+        } finally {
+            eqb.closeAll();
+        }
+
+        // 出错的批量之后不再执行，之前的批量已经写入（由事务回滚）
+        assertEquals(Arrays.asList(2, 2), eqb.batchSizes);
+        assertEquals("updated", parentName("P2"));
+        assertEquals("name4", parentName("P4"));
+        assertNull(parentName("MISSING"));
+
+        // SUCCESS_NO_INFO不是错误
+        EntityValueImpl.checkBulkUpdateCount(Statement.SUCCESS_NO_INFO, "P0", eqb.finalSql);
+    }
+
+    @Test
+    public void consecutiveGroupsKeepParentBeforeChild() throws SQLException {
+        // FieldInfo需要实体定义，这里用长度不同的数组代表不同的字段集合
+        FieldInfo[] idName = new FieldInfo[2];
+        FieldInfo[] idOnly = new FieldInfo[1];
+        FieldInfo[] childFields = new FieldInfo[2];
+        // 实体名称、字段、ID、NAME或PARENT_ID；P2只有ID，按整个列表分组时C2会在P2之前写入
+        Object[][] rows = {
+                {PARENT, idName, "P1", "one"}, {PARENT, idName, "P4", "four"}, {CHILD, childFields, "C1", "P1"},
+                {PARENT, idOnly, "P2", null}, {CHILD, childFields, "C2", "P2"}, {PARENT, idName, "P3", "three"}};
+
+        ArrayList<EntityValueBase.BulkGroup> groupList = new ArrayList<>();
+        for (Object[] row : rows) EntityValueBase.addToBulkGroup(groupList, (String) row[0], (FieldInfo[]) row[1], null);
+        List<String> groupEntities = new ArrayList<>();
+        List<Integer> groupSizes = new ArrayList<>();
+        for (EntityValueBase.BulkGroup group : groupList) {
+            groupEntities.add(group.entityName);
+            groupSizes.add(group.valueList.size());
+        }
+        assertEquals(Arrays.asList(PARENT, CHILD, PARENT, CHILD, PARENT), groupEntities);
+        assertEquals(Arrays.asList(2, 1, 1, 1, 1), groupSizes);
+
+        // 按分组的顺序写入，每组的记录是rows中接下来的连续记录，外键约束不会失败
+        int rowIndex = 0;
+        for (EntityValueBase.BulkGroup group : groupList) {
+            final int groupStart = rowIndex;
+            String sql = CHILD.equals(group.entityName) ? "INSERT INTO BULK_CHILD (ID, PARENT_ID) VALUES (?, ?)" :
+                    group.fieldArray.length == 2 ? "INSERT INTO BULK_PARENT (ID, NAME) VALUES (?, ?)" : "INSERT INTO BULK_PARENT (ID) VALUES (?)";
+            BatchQueryBuilder eqb = new BatchQueryBuilder(con, sql);
+            try {
+                eqb.executeInBatches(group.valueList.size(), 500, j -> {
+                    Object[] row = rows[groupStart + j];
+                    eqb.ps.setString(1, (String) row[2]);
+                    if (group.fieldArray.length == 2) eqb.ps.setString(2, (String) row[3]);
+                }, null);
+            } finally {
+                eqb.closeAll();
+            }
+            rowIndex += group.valueList.size();
+        }
+        assertEquals(4, count("BULK_PARENT"));
+        assertEquals(2, count("BULK_CHILD"));
+    }
+}
@@ -0,0 +1,154 @@
+package com.zmtech.zkit.entity.impl;
+
+import com.zmtech.zkit.cache.impl.ZCache;
+import com.zmtech.zkit.entity.EntityCondition;
+import com.zmtech.zkit.entity.impl.condition.EntityConditionImplBase;
+import com.zmtech.zkit.entity.impl.condition.impl.ConditionField;
+import com.zmtech.zkit.entity.impl.condition.impl.FieldValueCondition;
+import com.zmtech.zkit.entity.impl.condition.impl.ListCondition;
+import com.zmtech.zkit.entity.impl.condition.impl.TrueCondition;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 计数缓存的选择性清除：只有能准确判断的条件才保留或调整计数，其他条件都清除
+ */
+public class EntityCacheTest {
+    private ZCache<EntityCondition, Long> countCache;
+
+    private static FieldValueCondition cond(String fieldName, EntityCondition.ComparisonOperator operator, Object value) {
+        return new FieldValueCondition(new ConditionField(fieldName), operator, value);
+    }
+    private static ListCondition list(EntityCondition.JoinOperator operator, EntityConditionImplBase... conds) {
+        return new ListCondition(Arrays.asList(conds), operator);
+    }
+    private static Map<String, Object> record(Object... nameValues) {
+        Map<String, Object> valueMap = new HashMap<>();
+        for (int i = 0; i < nameValues.length; i += 2) valueMap.put((String) nameValues[i], nameValues[i + 1]);
+        return valueMap;
+    }
+
+    @Before
+    public void makeCache() {
+        countCache = new ZCache<>("count", null, null);
+    }
+
+    @After
+    public void closeCache() {
+        countCache.close();
+    }
+
+    @Test
+    public void equalsConditions() {
+        Map<String, Object> rec = record("statusId", "A", "amount", 5L, "parentId", null);
+        assertTrue(EntityCache.countConditionMatches(cond("statusId", EntityCondition.EQUALS, "A"), rec));
+        assertFalse(EntityCache.countConditionMatches(cond("statusId", EntityCondition.EQUALS, "B"), rec));
+        assertTrue(EntityCache.countConditionMatches(cond("statusId", EntityCondition.NOT_EQUAL, "B"), rec));
+        // 条件值为null时为IS NULL/IS NOT NULL
+        assertTrue(EntityCache.countConditionMatches(cond("parentId", EntityCondition.EQUALS, null), rec));
+        assertFalse(EntityCache.countConditionMatches(cond("statusId", EntityCondition.EQUALS, null), rec));
+        // 记录值为null时SQL比较的结果不是true，NOT_EQUAL也一样
+        assertFalse(EntityCache.countConditionMatches(cond("parentId", EntityCondition.NOT_EQUAL, "A"), rec));
+        assertTrue(EntityCache.countConditionMatches(cond("parentId", EntityCondition.ComparisonOperator.IS_NULL, null), rec));
+        assertTrue(EntityCache.countConditionMatches(cond("statusId", EntityCondition.ComparisonOperator.IS_NOT_NULL, null), rec));
+    }
+
+    @Test
+    public void inConditions() {
+        Map<String, Object> rec = record("statusId", "A", "parentId", null);
+        assertTrue(EntityCache.countConditionMatches(cond("statusId", EntityCondition.IN, Arrays.asList("A", "B")), rec));
+        assertFalse(EntityCache.countConditionMatches(cond("statusId", EntityCondition.IN, Arrays.asList("B", "C")), rec));
+        assertFalse(EntityCache.countConditionMatches(cond("statusId", EntityCondition.ComparisonOperator.NOT_IN, Arrays.asList("A")), rec));
+        assertFalse(EntityCache.countConditionMatches(cond("statusId", EntityCondition.IN, Collections.emptyList()), rec));
+        assertTrue(EntityCache.countConditionMatches(cond("statusId", EntityCondition.ComparisonOperator.NOT_IN, Collections.emptyList()), rec));
+        assertFalse(EntityCache.countConditionMatches(cond("parentId", EntityCondition.ComparisonOperator.NOT_IN, Arrays.asList("A")), rec));
+        // 集合中有null或类型不同的值时不能判断
+        assertNull(EntityCache.countConditionMatches(cond("statusId", EntityCondition.IN, Arrays.asList("B", null)), rec));
+        assertNull(EntityCache.countConditionMatches(cond("statusId", EntityCondition.IN, Arrays.asList("B", 1)), rec));
+        // 字符串值在查询时按逗号拆分
+        assertNull(EntityCache.countConditionMatches(cond("statusId", EntityCondition.IN, "A,B"), rec));
+    }
+
+    @Test
+    public void undecidableConditions() {
+        Map<String, Object> rec = record("statusId", "A", "amount", 5L);
+        assertNull(EntityCache.countConditionMatches(cond("amount", EntityCondition.ComparisonOperator.GREATER_THAN, 1L), rec));
+        assertNull(EntityCache.countConditionMatches(cond("statusId", EntityCondition.ComparisonOperator.LIKE, "A%"), rec));
+        assertNull(EntityCache.countConditionMatches(cond("statusId", EntityCondition.EQUALS, "a").ignoreCase(), rec));
+        // 值类型不同（如Integer和Long）时数据库中可能相等
+        assertNull(EntityCache.countConditionMatches(cond("amount", EntityCondition.EQUALS, 5), rec));
+        // 记录中没有条件字段
+        assertNull(EntityCache.countConditionMatches(cond("otherId", EntityCondition.EQUALS, "A"), rec));
+    }
+
+    @Test
+    public void listConditions() {
+        Map<String, Object> rec = record("statusId", "A", "typeId", "T1");
+        EntityConditionImplBase statusA = cond("statusId", EntityCondition.EQUALS, "A");
+        EntityConditionImplBase typeT2 = cond("typeId", EntityCondition.EQUALS, "T2");
+        assertFalse(EntityCache.countConditionMatches(list(EntityCondition.AND, statusA, typeT2), rec));
+        assertTrue(EntityCache.countConditionMatches(list(EntityCondition.JoinOperator.OR, statusA, typeT2), rec));
+        assertTrue(EntityCache.countConditionMatches(new TrueCondition(), rec));
+        // 任何一个子条件不能判断时整个条件都不能判断
+        assertNull(EntityCache.countConditionMatches(list(EntityCondition.JoinOperator.OR, statusA,
+                cond("typeId", EntityCondition.ComparisonOperator.LIKE, "T%")), rec));
+    }
+
+    @Test
+    public void updateAdjustsCounts() {
+        EntityCondition statusA = cond("statusId", EntityCondition.EQUALS, "A");
+        EntityCondition statusB = cond("statusId", EntityCondition.EQUALS, "B");
+        EntityCondition typeT1 = cond("typeId", EntityCondition.EQUALS, "T1");
+        EntityCondition statusLike = cond("statusId", EntityCondition.ComparisonOperator.LIKE, "A%");
+        countCache.put(statusA, 5L);
+        countCache.put(statusB, 3L);
+        countCache.put(typeT1, 2L);
+        countCache.put(statusLike, 7L);
+
+        EntityCache.clearCountCache(countCache, record("statusId", "A", "typeId", "T1"),
+                record("statusId", "B", "typeId", "T1"), true);
+        assertEquals(Long.valueOf(4L), countCache.get(statusA));
+        assertEquals(Long.valueOf(4L), countCache.get(statusB));
+        assertEquals(Long.valueOf(2L), countCache.get(typeT1));
+        assertFalse(countCache.containsKey(statusLike));
+    }
+
+    @Test
+    public void createAndDeleteAdjustCounts() {
+        EntityCondition statusA = cond("statusId", EntityCondition.EQUALS, "A");
+        EntityCondition statusB = cond("statusId", EntityCondition.EQUALS, "B");
+        countCache.put(statusA, 5L);
+        countCache.put(statusB, 3L);
+
+        EntityCache.clearCountCache(countCache, null, record("statusId", "A"), true);
+        assertEquals(Long.valueOf(6L), countCache.get(statusA));
+        assertEquals(Long.valueOf(3L), countCache.get(statusB));
+
+        EntityCache.clearCountCache(countCache, record("statusId", "B"), null, true);
+        assertEquals(Long.valueOf(6L), countCache.get(statusA));
+        assertEquals(Long.valueOf(2L), countCache.get(statusB));
+    }
+
+    @Test
+    public void changedCountsClearedWithoutAdjust() {
+        EntityCondition statusA = cond("statusId", EntityCondition.EQUALS, "A");
+        EntityCondition statusC = cond("statusId", EntityCondition.EQUALS, "C");
+        countCache.put(statusA, 5L);
+        countCache.put(statusC, 1L);
+
+        EntityCache.clearCountCache(countCache, record("statusId", "A"), record("statusId", "B"), false);
+        assertFalse(countCache.containsKey(statusA));
+        assertEquals(Long.valueOf(1L), countCache.get(statusC));
+    }
+}
@@ -0,0 +1,130 @@
+package com.zmtech.zkit.entity.impl;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * oneMany按主键分块查询：按字段类型转换后的值匹配记录，重复的键只查询一次，返回了记录的分块中没有匹配的键不缓存为空记录
+ */
+public class EntityOneManyTest {
+    private static final String[] SINGLE_PK = {"itemId"};
+    private static final String[] SINGLE_TYPES = {"java.lang.Long"};
+    private static final String[] COMPOSITE_PK = {"orderId", "seqNum"};
+    private static final String[] COMPOSITE_TYPES = {"java.lang.String", "java.math.BigDecimal"};
+
+    private static Map<String, Object> map(String[] names, Object... values) {
+        Map<String, Object> valueMap = new HashMap<>();
+        for (int i = 0; i < names.length; i++) valueMap.put(names[i], values[i]);
+        return valueMap;
+    }
+
+    /** 模拟数据库的表，记录每次分块查询的键数量 */
+    private static class Table {
+        final String[] pkNames;
+        final String[] pkJavaTypes;
+        final List<Map<String, Object>> rows = new ArrayList<>();
+        final List<Integer> chunkSizes = new ArrayList<>();
+
+        Table(String[] pkNames, String[] pkJavaTypes) {
+            this.pkNames = pkNames;
+            this.pkJavaTypes = pkJavaTypes;
+        }
+
+        List<Map<String, Object>> query(List<Map<String, Object>> chunkPkValues) {
+            chunkSizes.add(chunkPkValues.size());
+            Set<List<Object>> keys = new HashSet<>();
+            for (Map<String, Object> pkValues : chunkPkValues) keys.add(EntityFindBase.makePkKey(pkNames, pkJavaTypes, pkValues));
+            List<Map<String, Object>> result = new ArrayList<>();
+            for (Map<String, Object> row : rows) if (keys.contains(EntityFindBase.makePkKey(pkNames, pkJavaTypes, row))) result.add(row);
+            return result;
+        }
+
+        Map<List<Object>, Map<String, Object>> match(List<Map<String, Object>> pkValuesList, int chunkSize, Set<List<Object>> uncachedMisses) {
+            return EntityFindBase.matchByPkChunks(pkValuesList, chunkSize, pkNames, pkJavaTypes, this::query, row -> row, uncachedMisses);
+        }
+        List<Object> key(Object... values) { return EntityFindBase.makePkKey(pkNames, pkJavaTypes, map(pkNames, values)); }
+    }
+
+    @Test
+    public void mixedHitMissAndChunkBoundary() {
+        Table table = new Table(SINGLE_PK, SINGLE_TYPES);
+        for (long id : new long[] {1, 2, 4, 5}) table.rows.add(map(SINGLE_PK, id));
+        List<Map<String, Object>> pkValuesList = new ArrayList<>();
+        // 第一块1、2都有记录，第二块3没有、4有，第三块6、7都没有
+        for (long id : new long[] {1, 2, 3, 4, 6, 7}) pkValuesList.add(map(SINGLE_PK, id));
+
+        Set<List<Object>> uncachedMisses = new HashSet<>();
+        Map<List<Object>, Map<String, Object>> found = table.match(pkValuesList, 2, uncachedMisses);
+        assertEquals(Arrays.asList(2, 2, 2), table.chunkSizes);
+        assertEquals(3, found.size());
+        assertSame(table.rows.get(0), found.get(table.key(1L)));
+        assertSame(table.rows.get(2), found.get(table.key(4L)));
+        assertNull(found.get(table.key(3L)));
+        assertNull(found.get(table.key(5L)));
+
+        // 3所在的分块返回了记录，不缓存为空记录；6、7所在的分块没有返回记录，可以缓存
+        assertEquals(Collections.singleton(table.key(3L)), uncachedMisses);
+
+        // 键的数量正好是分块大小的倍数时没有空的分块
+        table.chunkSizes.clear();
+        table.match(pkValuesList.subList(0, 4), 2, new HashSet<>());
+        assertEquals(Arrays.asList(2, 2), table.chunkSizes);
+        table.chunkSizes.clear();
+        table.match(pkValuesList.subList(0, 5), 2, new HashSet<>());
+        assertEquals(Arrays.asList(2, 2, 1), table.chunkSizes);
+    }
+
+    @Test
+    public void convertedValuesMatchAndDuplicatesQueriedOnce() {
+        Table table = new Table(SINGLE_PK, SINGLE_TYPES);
+        table.rows.add(map(SINGLE_PK, 10L));
+        table.rows.add(map(SINGLE_PK, 20L));
+        // 字符串的键转换为Long后与记录匹配，同一个键只查询一次
+        List<Map<String, Object>> pkValuesList = Arrays.asList(map(SINGLE_PK, "10"), map(SINGLE_PK, 10L),
+                map(SINGLE_PK, 20L), map(SINGLE_PK, "20"), map(SINGLE_PK, "010"));
+
+        Set<List<Object>> uncachedMisses = new HashSet<>();
+        Map<List<Object>, Map<String, Object>> found = table.match(pkValuesList, 500, uncachedMisses);
+        assertEquals(Collections.singletonList(2), table.chunkSizes);
+        for (Map<String, Object> pkValues : pkValuesList)
+            assertTrue(found.containsKey(EntityFindBase.makePkKey(SINGLE_PK, SINGLE_TYPES, pkValues)));
+        assertSame(table.rows.get(0), found.get(table.key("10")));
+        assertTrue(uncachedMisses.isEmpty());
+    }
+
+    @Test
+    public void compositePk() {
+        Table table = new Table(COMPOSITE_PK, COMPOSITE_TYPES);
+        table.rows.add(map(COMPOSITE_PK, "A", new BigDecimal("1.00")));
+        table.rows.add(map(COMPOSITE_PK, "A", new BigDecimal("2")));
+        table.rows.add(map(COMPOSITE_PK, "B", new BigDecimal("1")));
+        // BigDecimal不比较末尾的0，字符串转换为BigDecimal
+        List<Map<String, Object>> pkValuesList = Arrays.asList(map(COMPOSITE_PK, "A", "1"), map(COMPOSITE_PK, "A", new BigDecimal("2.0")),
+                map(COMPOSITE_PK, "B", "2"), map(COMPOSITE_PK, "A", new BigDecimal("1.0")), map(COMPOSITE_PK, "B", "1.000"));
+
+        Set<List<Object>> uncachedMisses = new HashSet<>();
+        Map<List<Object>, Map<String, Object>> found = table.match(pkValuesList, 3, uncachedMisses);
+        assertEquals(Arrays.asList(3, 1), table.chunkSizes);
+        assertSame(table.rows.get(0), found.get(table.key("A", "1.0")));
+        assertSame(table.rows.get(1), found.get(table.key("A", "2")));
+        assertSame(table.rows.get(2), found.get(table.key("B", "1")));
+        assertNull(found.get(table.key("B", "2")));
+        // 同一个字段值不同的组合不匹配
+        assertNull(found.get(table.key("B", "1.5")));
+        assertEquals(Collections.singleton(table.key("B", "2")), uncachedMisses);
+    }
+}
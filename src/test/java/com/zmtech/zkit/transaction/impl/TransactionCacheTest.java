@@ -0,0 +1,48 @@
+package com.zmtech.zkit.transaction.impl;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * flushCache写入分组：只合并相邻的同一个键的update，组的顺序与原来的写入顺序相同
+ */
+public class TransactionCacheTest {
+    /** 写入为 "模式:键:序号"，模式U为update，C为create，D为delete */
+    private static List<List<String>> group(String... writes) {
+        ArrayList<ArrayList<String>> groups = TransactionCache.groupAdjacentUpdates(Arrays.asList(writes),
+                w -> w.startsWith("U:"), w -> w.split(":")[1]);
+        return new ArrayList<>(groups);
+    }
+
+    @Test
+    public void adjacentUpdatesMerged() {
+        assertEquals(Arrays.asList(Arrays.asList("U:a:1", "U:a:2", "U:a:3"), Arrays.asList("U:b:4")),
+                group("U:a:1", "U:a:2", "U:a:3", "U:b:4"));
+    }
+
+    @Test
+    public void nonAdjacentUpdatesKeepOrder() {
+        // 中间有其他键的写入时不合并，否则U:a:1会移到C:b:2之后
+        assertEquals(Arrays.asList(Arrays.asList("U:a:1"), Arrays.asList("C:b:2"), Arrays.asList("U:a:3")),
+                group("U:a:1", "C:b:2", "U:a:3"));
+        assertEquals(Arrays.asList(Arrays.asList("U:a:1"), Arrays.asList("U:b:2"), Arrays.asList("U:a:3")),
+                group("U:a:1", "U:b:2", "U:a:3"));
+    }
+
+    @Test
+    public void createAndDeleteNotMerged() {
+        assertEquals(Arrays.asList(Arrays.asList("C:a:1"), Arrays.asList("U:a:2", "U:a:3"), Arrays.asList("D:a:4"),
+                Arrays.asList("C:a:5")),
+                group("C:a:1", "U:a:2", "U:a:3", "D:a:4", "C:a:5"));
+    }
+
+    @Test
+    public void emptyList() {
+        assertEquals(0, group().size());
+    }
+}
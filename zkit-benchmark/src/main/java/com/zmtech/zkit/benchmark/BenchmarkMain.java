@@ -0,0 +1,29 @@
+package com.zmtech.zkit.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 基准测试入口，参数与org.openjdk.jmh.Main相同。没有指定-rf/-rff时结果写到target/jmh-result.json，
+ * 用于不同版本之间比较；预热、测量次数和fork数在各个基准测试类上固定。
+ */
+public class BenchmarkMain {
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cmdOptions = new CommandLineOptions(args);
+        if (cmdOptions.shouldHelp()) {
+            cmdOptions.showHelp();
+            return;
+        }
+        if (cmdOptions.shouldList()) {
+            new Runner(cmdOptions).list();
+            return;
+        }
+        ChainedOptionsBuilder builder = new OptionsBuilder().parent(cmdOptions);
+        if (!cmdOptions.getResultFormat().hasValue()) builder.resultFormat(ResultFormatType.JSON);
+        if (!cmdOptions.getResult().hasValue()) builder.result("target/jmh-result.json");
+        new Runner(builder.build()).run();
+    }
+}
@@ -0,0 +1,94 @@
+package com.zmtech.zkit.cache.impl;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.cache.Cache;
+import javax.cache.expiry.CreatedExpiryPolicy;
+import javax.cache.expiry.Duration;
+import javax.cache.expiry.EternalExpiryPolicy;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ZCache的get/put/getEntryList吞吐量，按缓存大小和是否有到期策略组合；
+ * *Contended方法使用8个线程，与单线程的结果比较锁和ConcurrentHashMap的竞争。
+ * 键按固定种子随机选择，结果可以在不同版本之间比较。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgs = {"-Xms2g", "-Xmx2g"})
+public class ZCacheBenchmark {
+    @Param({"1000", "100000"})
+    int size;
+
+    @Param({"false", "true"})
+    boolean expiry;
+
+    ZCache<String, String> cache;
+    String[] keys;
+
+    @State(Scope.Thread)
+    public static class ThreadKeys {
+        private final SplittableRandom random = new SplittableRandom(42);
+
+        String next(ZCacheBenchmark benchmark) {
+            return benchmark.keys[random.nextInt(benchmark.keys.length)];
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        ZCacheConfiguration<String, String> conf = new ZCacheConfiguration<>();
+        conf.setStatisticsEnabled(true);
+        // 到期时间比测试时间长，只测量到期检查和时间轮的开销
+        conf.setExpiryPolicyFactory(expiry ? CreatedExpiryPolicy.factoryOf(new Duration(TimeUnit.HOURS, 1)) :
+                EternalExpiryPolicy.factoryOf());
+        cache = new ZCache<>("benchmark.cache", null, conf);
+        keys = new String[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = "key-" + i;
+            cache.put(keys[i], "value-" + i);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        cache.close();
+    }
+
+    @Benchmark
+    public String get(ThreadKeys threadKeys) {
+        return cache.get(threadKeys.next(this));
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String getContended(ThreadKeys threadKeys) {
+        return cache.get(threadKeys.next(this));
+    }
+
+    @Benchmark
+    public void put(ThreadKeys threadKeys) {
+        String key = threadKeys.next(this);
+        cache.put(key, key);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void putContended(ThreadKeys threadKeys) {
+        String key = threadKeys.next(this);
+        cache.put(key, key);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void getEntryList(Blackhole blackhole) {
+        List<Cache.Entry<String, String>> entryList = cache.getEntryList();
+        blackhole.consume(entryList);
+    }
+}
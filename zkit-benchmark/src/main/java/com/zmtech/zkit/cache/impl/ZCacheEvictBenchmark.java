@@ -0,0 +1,51 @@
+package com.zmtech.zkit.cache.impl;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按条目数定期淘汰（EvictRunnable）一次的耗时：缓存超出max-elements 10%时排序所有条目并淘汰超出的部分。
+ * 每次调用前重新放入被淘汰的条目，只测量淘汰本身。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 30)
+@Fork(value = 2, jvmArgs = {"-Xms2g", "-Xmx2g"})
+public class ZCacheEvictBenchmark {
+    @Param({"10000", "100000"})
+    int maxEntries;
+
+    ZCache<String, String> cache;
+    String[] keys;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        ZCacheConfiguration<String, String> conf = new ZCacheConfiguration<>();
+        // 定期淘汰线程的间隔设置得很长，只测量evictNow()
+        conf.setMaxEntries(maxEntries).setMaxCheckSeconds(TimeUnit.DAYS.toSeconds(1));
+        cache = new ZCache<>("benchmark.evict", null, conf);
+        int total = maxEntries + maxEntries / 10;
+        keys = new String[total];
+        for (int i = 0; i < total; i++) keys[i] = "key-" + i;
+    }
+
+    @Setup(Level.Invocation)
+    public void fill() {
+        for (String key : keys) if (!cache.containsKey(key)) cache.put(key, key);
+        // 访问一部分条目，使排序时的访问次数不全相同
+        for (int i = 0; i < keys.length; i += 3) cache.get(keys[i]);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        cache.close();
+    }
+
+    @Benchmark
+    public void evict() {
+        cache.evictNow();
+    }
+}
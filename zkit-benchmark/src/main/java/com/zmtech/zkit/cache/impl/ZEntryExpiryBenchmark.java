@@ -0,0 +1,47 @@
+package com.zmtech.zkit.cache.impl;
+
+import org.openjdk.jmh.annotations.*;
+
+import javax.cache.expiry.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ZEntry.isExpired()的开销，每次读取命中都会调用；分别测量只有创建到期、访问和创建都有、以及已经标记到期的条目。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ZEntryExpiryBenchmark {
+    private final Duration accessDuration = new Duration(TimeUnit.MINUTES, 10);
+    private final Duration creationDuration = new Duration(TimeUnit.HOURS, 1);
+
+    ZEntry<String, String> entry;
+    ZEntry<String, String> expiredEntry;
+    long accessTime;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        accessTime = System.currentTimeMillis();
+        entry = new ZEntry<>("key", "value", accessTime);
+        expiredEntry = new ZEntry<>("key", "value", accessTime - TimeUnit.HOURS.toMillis(2));
+        expiredEntry.isExpired(accessTime, null, creationDuration, null);
+    }
+
+    @Benchmark
+    public boolean creationOnly() {
+        return entry.isExpired(accessTime, null, creationDuration, null);
+    }
+
+    @Benchmark
+    public boolean accessAndCreation() {
+        return entry.isExpired(accessTime, accessDuration, creationDuration, null);
+    }
+
+    @Benchmark
+    public boolean alreadyExpired() {
+        return expiredEntry.isExpired(accessTime, accessDuration, creationDuration, null);
+    }
+}
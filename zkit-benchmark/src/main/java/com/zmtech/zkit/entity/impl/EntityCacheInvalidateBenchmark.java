@@ -0,0 +1,103 @@
+package com.zmtech.zkit.entity.impl;
+
+import com.zmtech.zkit.cache.impl.ZCache;
+import com.zmtech.zkit.cache.impl.ZCacheConfiguration;
+import com.zmtech.zkit.entity.EntityCondition;
+import com.zmtech.zkit.entity.impl.condition.EntityConditionImplBase;
+import com.zmtech.zkit.entity.impl.condition.impl.ConditionField;
+import com.zmtech.zkit.entity.impl.condition.impl.FieldValueCondition;
+import com.zmtech.zkit.entity.impl.condition.impl.ListCondition;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 实体记录修改时清除list缓存的开销（EntityCache.clearCacheForValue中的list部分，EntityCache.clearListCache()），
+ * 按list缓存中条件的数量比较，indexed为false时遍历整个list缓存，为true时使用字段值倒排索引（EntityListCacheIndex）。
+ * create只按条件匹配清除，update还按反向关联（RA）清除。
+ * 完整的clearCacheForValue需要运行中的EntityFacadeImpl，这里直接使用ZCache和条件对象。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgs = {"-Xms2g", "-Xmx2g"})
+public class EntityCacheInvalidateBenchmark {
+    private static final int STATUS_COUNT = 10;
+
+    @Param({"1000", "10000", "100000"})
+    int listKeys;
+
+    @Param({"false", "true"})
+    boolean indexed;
+
+    ZCache<EntityCondition, EntityListImpl> listCache;
+    ZCache<EntityCondition, Set<EntityCondition>> listRaCache;
+    EntityListCacheIndex listCacheIndex;
+    EntityCondition[] listConditions;
+    EntityCondition[] pkConditions;
+    Map<String, Object>[] valueMaps;
+    EntityListImpl cachedList = new EntityListImpl();
+    private final SplittableRandom random = new SplittableRandom(42);
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        listCache = new ZCache<>("entity.record.list.BenchmarkOrder", null, new ZCacheConfiguration<>());
+        listRaCache = new ZCache<>("entity.record.list_ra.BenchmarkOrder", null, new ZCacheConfiguration<>());
+        listCacheIndex = indexed ? new EntityListCacheIndex() : null;
+        listConditions = new EntityCondition[listKeys];
+        pkConditions = new EntityCondition[listKeys];
+        valueMaps = new Map[listKeys];
+        for (int i = 0; i < listKeys; i++) {
+            String orderId = "O" + i;
+            String partyId = "P" + i;
+            String statusId = "S" + (i % STATUS_COUNT);
+            // 典型的list查询：按客户和状态查询订单
+            List<EntityConditionImplBase> condList = new ArrayList<>(2);
+            condList.add(new FieldValueCondition(new ConditionField("partyId"), EntityCondition.EQUALS, partyId));
+            condList.add(new FieldValueCondition(new ConditionField("statusId"), EntityCondition.EQUALS, statusId));
+            listConditions[i] = new ListCondition(condList, EntityCondition.AND);
+            pkConditions[i] = new FieldValueCondition(new ConditionField("orderId"), EntityCondition.EQUALS, orderId);
+
+            Map<String, Object> valueMap = new HashMap<>();
+            valueMap.put("orderId", orderId);
+            valueMap.put("partyId", partyId);
+            valueMap.put("statusId", statusId);
+            valueMaps[i] = valueMap;
+            cacheList(i);
+        }
+    }
+
+    private void cacheList(int i) {
+        if (listCacheIndex != null) listCacheIndex.add(listConditions[i]);
+        listCache.put(listConditions[i], cachedList);
+        Set<EntityCondition> raKeySet = ConcurrentHashMap.newKeySet();
+        raKeySet.add(listConditions[i]);
+        listRaCache.put(pkConditions[i], raKeySet);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        listCache.close();
+        listRaCache.close();
+    }
+
+    @Benchmark
+    public void create() {
+        int i = random.nextInt(listKeys);
+        EntityCache.clearListCache(listCache, listCacheIndex, null, valueMaps[i], pkConditions[i]);
+        // 放回被清除的条目，保持缓存大小不变
+        cacheList(i);
+    }
+
+    @Benchmark
+    public void update() {
+        int i = random.nextInt(listKeys);
+        EntityCache.clearListCache(listCache, listCacheIndex, listRaCache, valueMaps[i], pkConditions[i]);
+        cacheList(i);
+    }
+}